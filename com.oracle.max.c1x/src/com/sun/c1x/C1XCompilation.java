@@ -163,11 +163,8 @@ public final class C1XCompilation {
     public BlockMap getBlockMap(RiResolvedMethod method, int osrBCI) {
         // PERF: cache the block map for methods that are compiled or inlined often
         BlockMap map = new BlockMap(method, hir.numberOfBlocks());
-        boolean isOsrCompilation = false;
-        if (osrBCI >= 0) {
-            map.addEntrypoint(osrBCI, BlockBegin.BlockFlag.OsrEntry);
-            isOsrCompilation = true;
-        }
+        // the OSR entry block is created by the graph builder; all locals need phis at the loop header it jumps to
+        boolean isOsrCompilation = osrBCI >= 0;
         if (!map.build(!isOsrCompilation && C1XOptions.PhiLoopStores)) {
             throw new CiBailout("build of BlockMap failed for " + method);
         } else {
@@ -254,6 +251,7 @@ public final class C1XCompilation {
 
             initFrameMap(hir.topScope.maxLocks());
 
+            long start = System.nanoTime();
             lirGenerator = compiler.backend.newLIRGenerator(this);
             for (BlockBegin begin : hir.linearScanOrder()) {
                 lirGenerator.doBlock(begin);
@@ -263,12 +261,16 @@ public final class C1XCompilation {
                 C1XTimers.LIR_CREATE.stop();
             }
 
+            long lirCreated = System.nanoTime();
+            stats.emitNanos += lirCreated - start;
             new LinearScan(this, hir, lirGenerator, frameMap()).allocate();
+            stats.registerAllocationNanos += System.nanoTime() - lirCreated;
         }
     }
 
     private CiTargetMethod emitCode() {
         if (C1XOptions.GenLIR && C1XOptions.GenCode) {
+            long start = System.nanoTime();
             final LIRAssembler lirAssembler = compiler.backend.newLIRAssembler(this, assembler());
 
             lirAssembler.emitCode(hir.linearScanOrder());
@@ -302,6 +304,7 @@ public final class C1XCompilation {
             if (C1XOptions.PrintTimers) {
                 C1XTimers.CODE_CREATE.stop();
             }
+            stats.emitNanos += System.nanoTime() - start;
 
             if (C1XOptions.DebugMethods) {
                 try {
@@ -34,12 +34,15 @@ public class C1XMetrics {
     public static int TargetMethods;
     public static int LocalValueNumberHits;
     public static int GlobalValueNumberHits;
+    public static int GlobalLoadEliminations;
     public static int ValueMapResizes;
     public static int InlinedFinalizerChecks;
     public static int MethodsFolded;
     public static int InlineForcedMethods;
     public static int InlineForbiddenMethods;
     public static int InlinedJsrs;
+    public static int LocalThrowsConverted;
+    public static int BacktracesElided;
     public static int NullCheckIterations;
     public static int NullCheckEliminations;
     public static int NullChecksRedundant;
@@ -109,6 +109,7 @@ public final class C1XOptions {
     public static boolean OptLocalValueNumbering;
     public static boolean OptLocalLoadElimination;
     public static boolean OptGlobalValueNumbering;
+    public static boolean OptGlobalLoadElimination;
     public static boolean OptDiamondElimination;
     public static boolean OptCEElimination;
     public static boolean OptBlockMerging;
@@ -120,6 +121,8 @@ public final class C1XOptions {
     public static boolean OptDeadCodeElimination2;
     public static boolean OptControlFlow;
     public static boolean OptMoveElimination;
+    public static boolean OptLocalThrows;
+    public static boolean OptElideUnusedBacktraces;
 
     // optimistic optimization settings
     public static boolean UseAssumptions                = true;
@@ -234,8 +237,11 @@ public final class C1XOptions {
         OptDeadCodeElimination1         = lll;
         OptDeadCodeElimination2         = lll;
         OptGlobalValueNumbering         = lll;
+        OptGlobalLoadElimination        = lll;
         OptDiamondElimination           = lll;
         OptCEElimination                = lll;
         OptBlockSkipping                = lll;
+        OptLocalThrows                  = lll;
+        OptElideUnusedBacktraces        = lll;
     }
 }
@@ -271,8 +271,9 @@ public abstract class LIRGenerator extends ValueVisitor {
         moveToPhi(x.stateAfter());
 
         // all blocks with a successor must end with an unconditional jump
-        // to the successor even if they are consecutive
-        lir.jump(x.defaultSuccessor());
+        // to the successor even if they are consecutive. An OSR compilation
+        // is only ever entered through its OSR entry.
+        lir.jump(x.osrEntry() != null ? x.osrEntry() : x.defaultSuccessor());
     }
 
     private void setOperandsForLocals(FrameState state) {
@@ -432,10 +433,11 @@ public abstract class LIRGenerator extends ValueVisitor {
     public void visitGoto(Goto x) {
         setNoResult(x);
 
-        if (currentBlock.next() instanceof OsrEntry) {
+        if (currentBlock.isOsrEntry()) {
             // need to free up storage used for OSR entry point
-            CiValue osrBuffer = currentBlock.next().operand();
-            callRuntime(CiRuntimeCall.OSRMigrationEnd, null, osrBuffer);
+            assert ir.startBlock.next() instanceof OsrEntry;
+            CiValue osrBuffer = ir.startBlock.next().operand();
+            callRuntime(CiRuntimeCall.OSRMigrationEnd, stateFor(x, x.stateAfter()), osrBuffer);
             emitXir(xir.genSafepointPoll(site(x)), x, stateFor(x, x.stateAfter()), null, false);
         } else if (x.isSafepointPoll()) {
             emitXir(xir.genSafepointPoll(site(x)), x, stateFor(x, x.stateAfter()), null, false);
@@ -992,9 +994,9 @@ public abstract class LIRGenerator extends ValueVisitor {
 
     @Override
     public void visitOsrEntry(OsrEntry x) {
-        // construct our frame and model the production of incoming pointer
-        // to the OSR buffer.
-        lir.osrEntry(osrBufferPointer());
+        // the frame has been constructed by the prologue; model the production of the incoming
+        // pointer to the OSR buffer. The register holding the pointer is used but not defined
+        // in the start block so that the register allocator keeps it intact until this move.
         CiValue result = createResultVariable(x);
         lir.move(osrBufferPointer(), result);
     }
@@ -2187,6 +2189,10 @@ public abstract class LIRGenerator extends ValueVisitor {
             return current == null || !current.checkFlag(Value.Flag.NoStoreCheck);
         }
 
+        public boolean requiresSubtypeCheck() {
+            return current == null || !current.checkFlag(Value.Flag.DirectCompare);
+        }
+
         public RiType getApproximateType(XirArgument argument) {
             return current == null ? null : current.declaredType();
         }
@@ -123,7 +123,15 @@ public final class GraphBuilder {
         // 2. compute the block map and get the entrypoint(s)
         BlockMap blockMap = compilation.getBlockMap(scope.method, compilation.osrBCI);
         BlockBegin stdEntry = blockMap.get(0);
-        BlockBegin osrEntry = compilation.osrBCI < 0 ? null : blockMap.get(compilation.osrBCI);
+        BlockBegin osrEntry = null;
+        if (compilation.isOsrCompilation()) {
+            if (isSynchronized(rootMethod.accessFlags())) {
+                throw new CiBailout("cannot OSR synchronized method");
+            }
+            osrEntry = new BlockBegin(compilation.osrBCI, ir.nextBlockNumber());
+            osrEntry.setOsrEntry(true);
+            ir.osrEntryBlock = osrEntry;
+        }
         pushRootScope(scope, blockMap, startBlock);
         MutableFrameState initialState = stateAtEntry(rootMethod);
         startBlock.mergeOrClone(initialState);
@@ -135,6 +143,14 @@ public final class GraphBuilder {
         lastInstr.setNext(null, -1);
         curState = initialState;
 
+        Value osrBuffer = null;
+        if (osrEntry == null) {
+            genEntryCounter(rootMethod);
+        } else {
+            // the pointer to the OSR buffer is produced on entry to the start block
+            osrBuffer = appendWithoutOptimization(new OsrEntry(compilation.target.wordKind), compilation.osrBCI);
+        }
+
         if (isSynchronized(rootMethod.accessFlags())) {
             // 4A.1 add a monitor enter to the start block
             rootMethodSynchronizedObject = synchronizedObject(initialState, compilation.method);
@@ -205,13 +221,76 @@ public final class GraphBuilder {
             fillSyncHandler(rootMethodSynchronizedObject, syncHandler, false);
         }
 
-        if (compilation.osrBCI >= 0) {
-            BlockBegin osrBlock = blockMap.get(compilation.osrBCI);
-            assert osrBlock.wasVisited();
-            if (!osrBlock.stateBefore().stackEmpty()) {
-                throw new CiBailout("cannot OSR with non-empty stack");
+        if (osrEntry != null) {
+            setupOsrEntryBlock(osrEntry, osrBuffer, blockMap.get(compilation.osrBCI));
+        }
+    }
+
+    /**
+     * Fills the OSR entry block, which loads the values of the live locals from the OSR buffer and then jumps
+     * to the loop header at which the OSR compilation is entered. The OSR buffer holds one word per local
+     * variable. The value of a local is in the low-order bytes of its word.
+     *
+     * @param osrEntry the OSR entry block
+     * @param osrBuffer the pointer to the OSR buffer
+     * @param target the loop header at {@link C1XCompilation#osrBCI}
+     */
+    private void setupOsrEntryBlock(BlockBegin osrEntry, Value osrBuffer, BlockBegin target) {
+        if (target == null || !target.wasVisited() || !target.isParserLoopHeader()) {
+            throw new CiBailout("OSR entry must be a reachable loop header");
+        }
+        FrameState targetState = target.stateBefore();
+        if (!targetState.stackEmpty()) {
+            throw new CiBailout("cannot OSR with non-empty stack");
+        }
+        if (targetState.locksSize() != 0) {
+            throw new CiBailout("cannot OSR with locked monitors");
+        }
+
+        osrEntry.setWasVisited(true);
+        killMemoryMap();
+        curBlock = osrEntry;
+        curState = targetState.copy();
+        lastInstr = osrEntry;
+        osrEntry.setNext(null, -1);
+
+        int wordSize = compilation.target.wordSize;
+        for (int i = 0; i < curState.localsSize(); i++) {
+            Value local = curState.localAt(i);
+            if (local != null && !local.isIllegal()) {
+                Value offset = appendConstant(CiConstant.forInt(i * wordSize));
+                RiType dataType = compilation.runtime.asRiType(local.kind);
+                curState.storeLocal(i, append(new LoadPointer(dataType, osrBuffer, null, offset, null, false)));
             }
         }
+
+        Goto end = new Goto(target, null, false);
+        appendWithoutOptimization(end, compilation.osrBCI);
+        end.setStateAfter(curState.immutableCopy(compilation.osrBCI));
+        osrEntry.setEnd(end);
+        target.mergeOrClone(end.stateAfter());
+    }
+
+    /**
+     * Emits a call to the runtime's entry counting method if the runtime requests the
+     * invocations of the compiled code to be counted.
+     */
+    private void genEntryCounter(RiResolvedMethod rootMethod) {
+        CiConstant counter = compilation.runtime.getEntryCounter(rootMethod);
+        if (counter == null) {
+            return;
+        }
+        RiResolvedMethod target = compilation.runtime.getEntryCounterMethod();
+        Value receiver;
+        if (!isStatic(rootMethod.accessFlags()) && curState.localAt(0).kind == CiKind.Object) {
+            receiver = curState.localAt(0);
+        } else {
+            receiver = appendConstant(CiConstant.NULL_OBJECT);
+        }
+        Value[] args = {appendConstant(counter), receiver};
+        int bci = Instruction.SYNCHRONIZATION_ENTRY_BCI;
+        FrameState stateBefore = curState.immutableCopy(bci);
+        appendWithoutOptimization(new Invoke(INVOKESTATIC, CiKind.Void, args, true, target, target.signature().returnType(rootMethod.holder()), stateBefore), bci);
     }
 
     private void closeAccessorScope(RiType accessor) {
@@ -241,6 +320,9 @@ public final class GraphBuilder {
         startBlock.setEnd(base);
         assert stdEntry.stateBefore() == null;
         stdEntry.mergeOrClone(stateAfter);
+        if (osrEntry != null) {
+            osrEntry.mergeOrClone(stateAfter);
+        }
     }
 
     void pushRootScope(IRScope scope, BlockMap blockMap, BlockBegin start) {
@@ -725,10 +807,207 @@ public final class GraphBuilder {
 
     void genThrow(int bci) {
         FrameState stateBefore = curState.immutableCopy(bci());
-        Throw t = new Throw(apop(), stateBefore, !scopeData.noSafepointPolls());
+        Value exception = apop();
+        if (C1XOptions.OptLocalThrows && bci == bci() && curState.scope() == scope()) {
+            ExceptionHandler handler = localHandlerFor(scopeData, bci, exception.exactType());
+            if (handler != null) {
+                genLocalThrow(exception, handler);
+                return;
+            }
+        }
+        Throw t = new Throw(exception, stateBefore, !scopeData.noSafepointPolls());
         appendWithoutOptimization(t, bci);
     }
 
+    /**
+     * Replaces a throw whose exception is known to be caught by a handler in the same scope with a direct
+     * jump into the handler. The handler entry block expects the exception in the exception register, so a copy
+     * of the handler's first block is parsed with the exception already pushed on the expression stack instead.
+     */
+    private void genLocalThrow(Value exception, ExceptionHandler handler) {
+        C1XMetrics.LocalThrowsConverted++;
+        BlockBegin target = new BlockBegin(handler.handlerBCI(), ir.nextBlockNumber());
+        target.setDepthFirstNumber(0);
+        curState.clearStack();
+        apush(exception);
+        append(new Goto(target, curState.immutableCopy(bci()), false));
+    }
+
+    /**
+     * Result of {@link #handlerIndexFor} when no handler of the scope can catch the exception.
+     */
+    private static final int NO_HANDLER = -1;
+
+    /**
+     * Result of {@link #handlerIndexFor} when the handler catching the exception cannot be determined statically.
+     */
+    private static final int UNKNOWN_HANDLER = -2;
+
+    /**
+     * Finds the handler in a given scope that is guaranteed to be the first one to catch an exception of a
+     * given exact type thrown at a given bytecode index. The search gives up as soon as a covering handler
+     * is found whose catch type is not resolved.
+     *
+     * @param data the scope in which the exception is thrown
+     * @param bci the bytecode index of the throw
+     * @param exactType the exact type of the thrown exception
+     * @return the index of the handler in {@code data.exceptionHandlers()}, {@link #NO_HANDLER} if the exception
+     *         leaves the scope or {@link #UNKNOWN_HANDLER} if this cannot be determined
+     */
+    private static int handlerIndexFor(ScopeData data, int bci, RiResolvedType exactType) {
+        List<ExceptionHandler> handlers = data.exceptionHandlers();
+        if (handlers == null) {
+            return NO_HANDLER;
+        }
+        for (int i = 0; i < handlers.size(); i++) {
+            ExceptionHandler handler = handlers.get(i);
+            if (handler.covers(bci)) {
+                RiType catchType = handler.handler.catchType();
+                if (!handler.handler.isCatchAll()) {
+                    if (!(catchType instanceof RiResolvedType)) {
+                        return UNKNOWN_HANDLER;
+                    }
+                    if (!exactType.isSubtypeOf((RiResolvedType) catchType)) {
+                        continue;
+                    }
+                }
+                return i;
+            }
+        }
+        return NO_HANDLER;
+    }
+
+    /**
+     * Finds the handler in a given scope that is guaranteed to be the first one to catch an exception of a
+     * given exact type thrown at a given bytecode index. Only handlers of the throwing scope itself are
+     * considered: jumping to a handler of an enclosing inlined scope would mean leaving the inlined scopes
+     * (including releasing the locks of synchronized ones) outside of a return, so such throws are left to
+     * {@link #handleException}. Only handlers placed after the throw site are considered so that
+     * the resulting jump is a forward branch and cannot create a loop unknown to the block map.
+     *
+     * @param data the scope in which the exception is thrown
+     * @param bci the bytecode index of the throw
+     * @param exactType the exact type of the thrown exception or {@code null} if it is not known
+     * @return the handler that catches the exception or {@code null} if it cannot be determined statically
+     */
+    private static ExceptionHandler localHandlerFor(ScopeData data, int bci, RiResolvedType exactType) {
+        if (exactType == null || data.parsingJsr()) {
+            return null;
+        }
+        int index = handlerIndexFor(data, bci, exactType);
+        if (index < 0) {
+            return null;
+        }
+        ExceptionHandler handler = data.exceptionHandlers().get(index);
+        if (handler.handlerBCI() <= bci) {
+            return null;
+        }
+        return handler;
+    }
+
+    /**
+     * Determines if a call to {@link Throwable#fillInStackTrace()} can be omitted because the stack trace it
+     * records can never be observed. This is the case when the call is made by the (inlined) constructor chain
+     * of an exception that is thrown by the bytecode immediately following the constructor call and the handler
+     * that catches it immediately discards it. The handler is looked up in the throwing scope and then in the
+     * enclosing inlined scopes at their call sites, in the same way as {@link #handleException}. To rule out the exception being published by one
+     * of its constructors or recording its trace in some other way, only exceptions whose class and superclasses
+     * are all {@code java.*} classes that do not override {@code fillInStackTrace} qualify.
+     */
+    private boolean isUnusedBacktrace(RiMethod target, Value[] args) {
+        if (!(args[0] instanceof NewInstance) || !target.name().equals("fillInStackTrace") || !target.signature().asString().equals("()Ljava/lang/Throwable;")) {
+            return false;
+        }
+        NewInstance exception = (NewInstance) args[0];
+        RiResolvedType exactType = exception.exactType();
+        if (exactType == null || !(target instanceof RiResolvedMethod)) {
+            return false;
+        }
+        RiResolvedMethod impl = exactType.resolveMethodImpl((RiResolvedMethod) target);
+        if (impl == null || !impl.holder().name().equals("Ljava/lang/Throwable;")) {
+            return false;
+        }
+        for (RiResolvedType type = exactType; type != null; type = type.superType()) {
+            if (!type.name().startsWith("Ljava/")) {
+                return false;
+            }
+        }
+
+        // walk out of the constructor chain to the scope that allocated and throws the exception
+        ScopeData data = scopeData;
+        FrameState state = curState;
+        int depth = 0;
+        while (data.scope.method.name().equals("<init>") && state.localAt(0) == exception) {
+            IRScope scope = data.scope;
+            while (data.parent != null && data.parent.scope == scope) {
+                data = data.parent;
+            }
+            if (data.parent == null) {
+                return false;
+            }
+            state = state.callerState();
+            data = data.parent;
+            depth++;
+        }
+        if (depth == 0 || state.stackSize() == 0 || state.stackAt(state.stackSize() - 1) != exception) {
+            return false;
+        }
+
+        byte[] code = data.scope.method.code();
+        int throwBCI = state.bci + Bytecodes.lengthOf(INVOKESPECIAL);
+        if (throwBCI >= code.length || (code[throwBCI] & 0xff) != ATHROW) {
+            return false;
+        }
+        int bci = throwBCI;
+        while (!data.parsingJsr()) {
+            int index = handlerIndexFor(data, bci, exactType);
+            if (index >= 0) {
+                // a synchronized method's unlocking handler has no bytecode and rethrows
+                int handlerBCI = data.exceptionHandlers().get(index).handlerBCI();
+                return handlerBCI >= 0 && discardsException(data.scope.method.code(), handlerBCI);
+            }
+            if (index == UNKNOWN_HANDLER || data.parent == null) {
+                return false;
+            }
+            // the exception leaves this inlined scope: continue at its call site in the caller
+            bci = data.scope.callerBCI();
+            data = data.parent;
+        }
+        return false;
+    }
+
+    /**
+     * Determines if the exception handler at a given bytecode index drops the exception without ever reading it.
+     */
+    private static boolean discardsException(byte[] code, int handlerBCI) {
+        BytecodeStream s = new BytecodeStream(code);
+        s.setBCI(handlerBCI);
+        int local;
+        switch (s.currentBC()) {
+            case POP      : return true;
+            case ASTORE   : local = s.readLocalIndex(); break;
+            case ASTORE_0 : local = 0; break;
+            case ASTORE_1 : local = 1; break;
+            case ASTORE_2 : local = 2; break;
+            case ASTORE_3 : local = 3; break;
+            default       : return false;
+        }
+        // the local must never be read anywhere in the method
+        s.setBCI(0);
+        while (s.currentBCI() < s.endBCI()) {
+            switch (s.currentBC()) {
+                case ALOAD   : if (s.readLocalIndex() == local) { return false; } break;
+                case ALOAD_0 : if (local == 0) { return false; } break;
+                case ALOAD_1 : if (local == 1) { return false; } break;
+                case ALOAD_2 : if (local == 2) { return false; } break;
+                case ALOAD_3 : if (local == 3) { return false; } break;
+                case RET     : if (s.readLocalIndex() == local) { return false; } break;
+            }
+            s.next();
+        }
+        return true;
+    }
+
     void genCheckCast() {
         int cpi = stream().readCPI();
         RiType type = constantPool().lookupType(cpi, CHECKCAST);
@@ -965,6 +1244,12 @@ public final class GraphBuilder {
         }
 
         Value[] args = curState.popArguments(target.signature().argumentSlots(true));
+        if (C1XOptions.OptElideUnusedBacktraces && isUnusedBacktrace(target, args)) {
+            // the constructor chain of a locally caught and discarded exception: Throwable.fillInStackTrace() returns its receiver
+            C1XMetrics.BacktracesElided++;
+            apush(args[0]);
+            return;
+        }
         if (!tryRemoveCall(target, args, false)) {
             genInvokeIndirect(INVOKEVIRTUAL, target, args, cpi, constantPool);
         }
@@ -2102,10 +2387,8 @@ public final class GraphBuilder {
         BlockBegin b;
         while ((b = scopeData.removeFromWorkList()) != null) {
             if (!b.wasVisited()) {
-                if (b.isOsrEntry()) {
-                    // OSR not yet supported
-                    Util.shouldNotReachHere();
-                }
+                // the OSR entry block is filled by setupOsrEntryBlock
+                assert !b.isOsrEntry();
                 b.setWasVisited(true);
                 // now parse the block
                 killMemoryMap();
@@ -2152,6 +2435,10 @@ public final class GraphBuilder {
                     blockStart = false;
                 }
             }
+            if (blockStart && nextBlock != null && nextBlock.isExceptionEntry() && !block.isExceptionEntry()) {
+                // a copy of an exception handler entry made for a local throw (see genLocalThrow)
+                nextBlock = null;
+            }
             if (nextBlock != null && nextBlock != block) {
                 // we fell through to the next block, add a goto and break
                 end = new Goto(nextBlock, null, false);
@@ -79,7 +79,10 @@ public class IR {
             C1XTimers.HIR_CREATE.start();
         }
 
+        long start = System.nanoTime();
         buildGraph();
+        long built = System.nanoTime();
+        compilation.stats.parseNanos += built - start;
 
         if (C1XOptions.PrintTimers) {
             C1XTimers.HIR_CREATE.stop();
@@ -89,6 +92,7 @@ public class IR {
         optimize1();
         computeLinearScanOrder();
         optimize2();
+        compilation.stats.optimizeNanos += System.nanoTime() - built;
 
         if (C1XOptions.PrintTimers) {
             C1XTimers.HIR_OPTIMIZE.stop();
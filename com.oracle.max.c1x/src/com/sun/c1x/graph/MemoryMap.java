@@ -22,11 +22,10 @@
  */
 package com.sun.c1x.graph;
 
-import static java.lang.reflect.Modifier.*;
-
 import java.util.*;
 
 import com.sun.c1x.ir.*;
+import com.sun.cri.ci.*;
 import com.sun.cri.ri.*;
 
 /**
@@ -37,12 +36,58 @@ import com.sun.cri.ri.*;
  * loaded fields as separate locations. Static fields have just one location, while instance fields are
  * tracked for at most one instance object. Loads or stores of unloaded fields kill all memory locations.
  * An object is no longer "new" if it is stored into a field or array.
+ * <p>
+ * Array elements are tracked for at most one (array, index) pair per element kind, since arrays of
+ * different element kinds can never alias. Accesses to volatile fields kill all memory locations.
+ * A memory map can be copied so that it can be propagated along the dominator tree by
+ * {@link com.sun.c1x.opt.GlobalValueNumberer}.
  */
 public class MemoryMap {
 
+    /**
+     * The last known contents of an array element.
+     */
+    private static final class ArrayElement {
+        final Value array;
+        final Value index;
+        final Value value;
+
+        ArrayElement(Value array, Value index, Value value) {
+            this.array = array;
+            this.index = index;
+            this.value = value;
+        }
+
+        boolean matches(AccessIndexed access) {
+            if (array != access.array()) {
+                return false;
+            }
+            Value other = access.index();
+            return index == other || index.isConstant() && other.isConstant() && index.asConstant().equals(other.asConstant());
+        }
+    }
+
     private final HashMap<RiField, Value> objectMap = new HashMap<RiField, Value>();
     private final HashMap<RiField, Value> valueMap = new HashMap<RiField, Value>();
     private final IdentityHashMap<Value, Value> newObjects = new IdentityHashMap<Value, Value>();
+    private final EnumMap<CiKind, ArrayElement> arrayMap = new EnumMap<CiKind, ArrayElement>(CiKind.class);
+
+    /**
+     * Creates a new, empty memory map.
+     */
+    public MemoryMap() {
+    }
+
+    /**
+     * Creates a new memory map that starts with all memory locations known in another map.
+     * @param other the memory map to copy
+     */
+    public MemoryMap(MemoryMap other) {
+        objectMap.putAll(other.objectMap);
+        valueMap.putAll(other.valueMap);
+        newObjects.putAll(other.newObjects);
+        arrayMap.putAll(other.arrayMap);
+    }
 
     /**
      * Kills all memory locations.
@@ -51,6 +96,7 @@ public class MemoryMap {
         objectMap.clear();
         valueMap.clear();
         newObjects.clear();
+        arrayMap.clear();
     }
 
     /**
@@ -81,6 +127,11 @@ public class MemoryMap {
             kill();
             return load;
         }
+        if (load.isVolatile()) {
+            // a volatile read has acquire semantics, nothing loaded before may be reused after it
+            kill();
+            return load;
+        }
         RiField field = load.field();
         if (load.isStatic()) {
             // the field is static, look in the static map
@@ -91,8 +142,9 @@ public class MemoryMap {
             valueMap.put(field, load);
         } else {
             // see if the value for this object for this field is in the map
-            if (objectMap.get(field) == load.object()) {
-                return valueMap.get(field);
+            Value r = valueMap.get(field);
+            if (r != null && objectMap.get(field) == load.object()) {
+                return r;
             }
             objectMap.put(field, load.object());
             valueMap.put(field, load);
@@ -107,7 +159,7 @@ public class MemoryMap {
      * @param result the result that the load instruction should produce
      */
     public void setResult(LoadField load, Value result) {
-        if (load.isLoaded()) {
+        if (load.isLoaded() && !load.isVolatile()) {
             RiField field = load.field();
             if (load.isStatic()) {
                 // the field is static, put it in the static map
@@ -132,11 +184,16 @@ public class MemoryMap {
             kill();
             return store;
         }
+        if (store.isVolatile()) {
+            // a volatile write has release semantics, conservatively forget everything
+            kill();
+            return store;
+        }
         RiField field = store.field();
         Value value = store.value();
         if (store.isStatic()) {
             // the field is static, overwrite it into the static map
-            valueMap.put(field, value);
+            putValue(field, value);
         } else {
             if (newObjects.containsKey(store.object())) {
                 // this is a store to a new object's field
@@ -148,17 +205,67 @@ public class MemoryMap {
             Value obj = objectMap.get(field);
             if (obj == store.object()) {
                 // is this a redundant store?
-                if (value == valueMap.get(field) && !isVolatile(((RiResolvedField) field).accessFlags())) {
+                if (value == valueMap.get(field)) {
                     return null;
                 }
             }
             objectMap.put(field, store.object());
-            valueMap.put(field, value);
+            putValue(field, value);
         }
         storeValue(value); // the value stored just escaped
         return store; // the store cannot be eliminated
     }
 
+    /**
+     * Look up an array load for load elimination, and put this load into the load elimination map.
+     * @param load the instruction representing the load
+     * @return a reference to the previous instruction that already loaded or stored the value, if it is available;
+     * the {@code load} parameter otherwise
+     */
+    public Value load(LoadIndexed load) {
+        CiKind kind = load.elementKind();
+        ArrayElement element = arrayMap.get(kind);
+        if (element != null && element.matches(load)) {
+            return element.value;
+        }
+        arrayMap.put(kind, new ArrayElement(load.array(), load.index(), load));
+        return load; // load cannot be eliminated
+    }
+
+    /**
+     * Record an array store in the load elimination map, so that its value can be forwarded to
+     * subsequent loads of the same element. Any other element of the same kind is forgotten,
+     * since it may be aliased by the store.
+     * @param store the store instruction to put into the map
+     */
+    public void store(StoreIndexed store) {
+        CiKind kind = store.elementKind();
+        Value value = store.value();
+        if (isForwardable(kind, value)) {
+            arrayMap.put(kind, new ArrayElement(store.array(), store.index(), value));
+        } else {
+            arrayMap.remove(kind);
+        }
+        storeValue(value); // the value stored just escaped
+    }
+
+    private void putValue(RiField field, Value value) {
+        if (isForwardable(field.kind(false), value)) {
+            valueMap.put(field, value);
+        } else {
+            valueMap.remove(field);
+        }
+    }
+
+    /**
+     * Checks whether a value stored to a location of a given kind can be used as the result of a
+     * subsequent load of that location. Stores to sub-word locations may have had their narrowing
+     * conversion removed by the canonicalizer, so their value is only reused while the conversion is explicit.
+     */
+    private static boolean isForwardable(CiKind kind, Value value) {
+        return kind.stackKind() == kind || value instanceof Convert;
+    }
+
     private boolean fieldHasNoStores(RiField field) {
         return objectMap.get(field) == null;
     }
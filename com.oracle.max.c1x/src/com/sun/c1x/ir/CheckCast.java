@@ -55,11 +55,15 @@ public final class CheckCast extends TypeCheck {
     }
 
     /**
-     * Gets the exact type of the result of this instruction.
+     * Gets the exact type of the result of this instruction. If this cast is a {@linkplain #isDirectCompare() direct
+     * compare}, the target class is the exact type by virtue of the leaf class assumption recorded for it.
      * @return the exact type of the result
      */
     @Override
     public RiResolvedType exactType() {
+        if (isDirectCompare()) {
+            return (RiResolvedType) targetClass;
+        }
         return targetClass instanceof RiResolvedType ? ((RiResolvedType) targetClass).exactType() : null;
     }
 
@@ -32,10 +32,10 @@ public final class OsrEntry extends Instruction {
 
     /**
      * Constructs a new OsrEntry instruction.
+     * @param wordKind the kind of a machine word, which is the kind of the pointer to the OSR buffer
      */
-    public OsrEntry() {
-        // TODO: this should be a CiKind.Word
-        super(CiKind.Jsr);
+    public OsrEntry(CiKind wordKind) {
+        super(wordKind);
     }
 
     @Override
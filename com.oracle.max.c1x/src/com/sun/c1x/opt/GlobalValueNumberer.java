@@ -30,13 +30,23 @@ import com.sun.c1x.ir.*;
 
 /**
  * Implements global value numbering based on dominators.
+ * <p>
+ * If {@link C1XOptions#OptGlobalLoadElimination} is enabled, field and array loads are value numbered
+ * as well, using a {@link MemoryMap} per block. The memory map of a block is only inherited from its
+ * dominator if the dominator is the single predecessor of the block and the edge between them is not a
+ * safepoint; at merge points, exception handlers and loop headers memory is assumed to be unknown.
+ * Calls, synchronization, volatile accesses and all other instructions that may write memory
+ * conservatively kill all memory locations. Values written by stores are forwarded to subsequent loads
+ * of the same location.
  */
 public class GlobalValueNumberer {
 
     final IR ir;
     final HashMap<BlockBegin, ValueMap> valueMaps;
+    final HashMap<BlockBegin, MemoryMap> memoryMaps;
     final InstructionSubstituter subst;
     ValueMap currentMap;
+    MemoryMap currentMemoryMap;
 
     /**
      * Creates a new GlobalValueNumbering pass and performs it on the IR.
@@ -48,6 +58,7 @@ public class GlobalValueNumberer {
         this.subst = new InstructionSubstituter(ir);
         List<BlockBegin> blocks = ir.linearScanOrder();
         valueMaps = new HashMap<BlockBegin, ValueMap>(blocks.size());
+        memoryMaps = C1XOptions.OptGlobalLoadElimination ? new HashMap<BlockBegin, MemoryMap>(blocks.size()) : null;
         optimize(blocks);
         subst.finish();
     }
@@ -59,6 +70,11 @@ public class GlobalValueNumberer {
 
         // initial value map, with nesting 0
         valueMaps.put(startBlock, new ValueMap());
+        if (memoryMaps != null) {
+            currentMemoryMap = new MemoryMap();
+            processMemoryAccesses(startBlock);
+            memoryMaps.put(startBlock, currentMemoryMap);
+        }
 
         for (int i = 1; i < numBlocks; i++) {
             // iterate through all the blocks
@@ -76,6 +92,15 @@ public class GlobalValueNumberer {
 
             assert numPreds > 1 || dominator == block.predAt(0) || block.isExceptionEntry() : "dominator must be equal to predecessor";
 
+            if (memoryMaps != null) {
+                if (numPreds == 1 && !block.isExceptionEntry() && !dominator.end().isSafepointPoll()) {
+                    // memory can only be known along a single, non-safepoint edge from the dominator
+                    currentMemoryMap = new MemoryMap(memoryMaps.get(dominator));
+                } else {
+                    currentMemoryMap = new MemoryMap();
+                }
+            }
+
             // visit all instructions of this block
             for (Instruction instr = block.next(); instr != null; instr = instr.next()) {
                 assert !instr.hasSubst() : "substitution already set";
@@ -86,11 +111,74 @@ public class GlobalValueNumberer {
                     C1XMetrics.GlobalValueNumberHits++;
                     assert !subst.hasSubst(f) : "can't have a substitution";
                     subst.setSubst(instr, f);
+                } else if (currentMemoryMap != null) {
+                    Value v = processMemoryAccess(instr);
+                    if (v != instr) {
+                        C1XMetrics.GlobalLoadEliminations++;
+                        subst.setSubst(instr, v);
+                    }
                 }
             }
 
             // remember value map for successors
             valueMaps.put(block, currentMap);
+            if (memoryMaps != null) {
+                memoryMaps.put(block, currentMemoryMap);
+            }
         }
     }
+
+    private void processMemoryAccesses(BlockBegin block) {
+        for (Instruction instr = block.next(); instr != null; instr = instr.next()) {
+            processMemoryAccess(instr);
+        }
+    }
+
+    /**
+     * Updates the current memory map for an instruction.
+     * @param instr the instruction to process
+     * @return the value with which to replace {@code instr} if it is a redundant load; {@code instr} otherwise
+     */
+    private Value processMemoryAccess(Instruction instr) {
+        if (instr instanceof LoadField) {
+            // the receiver may itself have been replaced by value numbering
+            instr.inputValuesDo(subst);
+            return currentMemoryMap.load((LoadField) instr);
+        } else if (instr instanceof LoadIndexed) {
+            instr.inputValuesDo(subst);
+            return currentMemoryMap.load((LoadIndexed) instr);
+        } else if (instr instanceof StoreField) {
+            instr.inputValuesDo(subst);
+            currentMemoryMap.store((StoreField) instr);
+        } else if (instr instanceof StoreIndexed) {
+            instr.inputValuesDo(subst);
+            currentMemoryMap.store((StoreIndexed) instr);
+        } else if (instr instanceof NewInstance) {
+            currentMemoryMap.newInstance((NewInstance) instr);
+        } else if (mayWriteMemory(instr)) {
+            currentMemoryMap.kill();
+        }
+        return instr;
+    }
+
+    /**
+     * Determines whether an instruction may write memory or otherwise invalidate previously loaded values.
+     * Rather than listing all instructions with side effects (calls, intrinsics, synchronization, safepoints,
+     * unsafe and raw memory accesses, class initialization, ...), this lists those that are known not to.
+     */
+    private static boolean mayWriteMemory(Instruction instr) {
+        return !(instr instanceof Op2 ||
+                 instr instanceof NegateOp ||
+                 instr instanceof Convert ||
+                 instr instanceof Constant ||
+                 instr instanceof SignificantBitOp ||
+                 instr instanceof ArrayLength ||
+                 instr instanceof NullCheck ||
+                 instr instanceof TypeCheck ||
+                 instr instanceof Guard ||
+                 instr instanceof UnsafeCast ||
+                 instr instanceof NewArray ||
+                 instr instanceof ExceptionObject ||
+                 instr instanceof BlockEnd);
+    }
 }
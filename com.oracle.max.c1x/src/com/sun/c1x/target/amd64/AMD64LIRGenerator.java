@@ -680,7 +680,8 @@ public class AMD64LIRGenerator extends LIRGenerator {
 
     @Override
     protected CiValue osrBufferPointer() {
-        return Util.nonFatalUnimplemented(null);
+        // the runtime passes the OSR buffer in the return register when it jumps to the entry point
+        return compilation.registerConfig.getReturnRegister(CiKind.Long).asValue(compilation.target.wordKind);
     }
 
     @Override
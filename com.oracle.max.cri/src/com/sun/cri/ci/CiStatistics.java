@@ -63,4 +63,34 @@ public class CiStatistics {
      */
     public int intrinsicCount;
 
+    /**
+     * The number of assumptions the compiled code depends on.
+     */
+    public int dependencyCount;
+
+    /**
+     * The time spent parsing bytecode into the compiler's intermediate representation, in nanoseconds.
+     */
+    public long parseNanos;
+
+    /**
+     * The time spent optimizing the intermediate representation, in nanoseconds.
+     */
+    public long optimizeNanos;
+
+    /**
+     * The time spent in register allocation, in nanoseconds.
+     */
+    public long registerAllocationNanos;
+
+    /**
+     * The time spent generating machine code, in nanoseconds.
+     */
+    public long emitNanos;
+
+    /**
+     * The time spent installing the compiled code, in nanoseconds.
+     */
+    public long installNanos;
+
 }
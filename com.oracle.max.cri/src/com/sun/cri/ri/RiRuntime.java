@@ -237,4 +237,21 @@ public interface RiRuntime {
      * Executes the given runnable on a compiler thread, which means that it can access constant pools, etc.
      */
     void executeOnCompilerThread(Runnable r);
+
+    /**
+     * Gets the object counting invocations of the code being compiled for {@code method}. If the runtime
+     * returns a non-null counter, the compiler emits a call to {@link #getEntryCounterMethod()} upon entry
+     * to the compiled code, passing the counter and the receiver (or {@code null} for a static method).
+     * This allows a runtime with several optimizing compilers to promote the hottest methods to the next tier.
+     *
+     * @param method the method being compiled
+     * @return the counter object, or {@code null} if entries to the code compiled for {@code method} are not counted
+     */
+    CiConstant getEntryCounter(RiResolvedMethod method);
+
+    /**
+     * Gets the static method called with the {@linkplain #getEntryCounter(RiResolvedMethod) entry counter}
+     * and receiver upon entry to compiled code that counts its invocations.
+     */
+    RiResolvedMethod getEntryCounterMethod();
 }
@@ -76,6 +76,13 @@ public interface XirSite {
      */
     boolean requiresArrayStoreCheck();
 
+    /**
+     * Checks whether a type check at this site must accept subtypes of the type being tested.
+     * @return {@code false} if the compiler has established that the tested type is a leaf class,
+     * possibly by recording an assumption, so that an exact comparison with its hub suffices
+     */
+    boolean requiresSubtypeCheck();
+
     /**
      * Checks whether an approximation of the type for the specified argument is available.
      * @param argument the argument
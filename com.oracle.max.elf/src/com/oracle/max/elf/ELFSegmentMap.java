@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.max.elf;
+
+import static com.oracle.max.elf.ELFProgramHeaderTable.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * An index from virtual addresses to the contents of the loadable ({@link ELFProgramHeaderTable#PT_LOAD PT_LOAD})
+ * segments of an ELF file, typically a core dump, which are accessed by memory mapping the file.
+ *
+ * The segments are sorted by address so that the segment containing an address is found by binary search, starting
+ * with the segment found last. Each segment is mapped read-only, in chunks of at most {@link #CHUNK_SIZE} bytes,
+ * so accessing a value is an index computation on a {@link MappedByteBuffer} and a large core costs no more
+ * than the pages that are actually touched. Bytes between the file size and the memory size of a segment read as zero.
+ * Segments that have no contents in the file, such as those a core dump omits, are not included.
+ * The map does not change once built, so it may be read by several threads.
+ */
+public final class ELFSegmentMap {
+
+    /**
+     * Thrown when accessing an address that is not in a segment of the file.
+     */
+    public static class UnmappedAddressException extends RuntimeException {
+        private static final long serialVersionUID = -3480951839211520577L;
+
+        public final long address;
+
+        UnmappedAddressException(long address) {
+            super("address 0x" + Long.toHexString(address) + " is not in the file");
+            this.address = address;
+        }
+    }
+
+    private static final int CHUNK_SHIFT = 30;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private final int chunkShift;
+    private final ByteOrder byteOrder;
+
+    private final long[] starts;
+    private final long[] memoryEnds;
+    private final long[] fileEnds;
+    private final long[] fileOffsets;
+    private final MappedByteBuffer[][] chunks;
+
+    /**
+     * The segment found by the last lookup, a hint that is not shared reliably between threads.
+     */
+    private int lastSegment;
+
+    /**
+     * Builds the index of the loadable segments in {@code file}, which must stay open while the map is in use,
+     * and maps their contents.
+     */
+    public ELFSegmentMap(RandomAccessFile file, ELFHeader header, ELFProgramHeaderTable programHeaderTable) throws IOException {
+        this(file, header, programHeaderTable, CHUNK_SHIFT);
+    }
+
+    /**
+     * Builds the map with chunks of {@code 1 << chunkShift} bytes, so that tests can cross chunk boundaries in a small file.
+     */
+    ELFSegmentMap(RandomAccessFile file, ELFHeader header, ELFProgramHeaderTable programHeaderTable, int chunkShift) throws IOException {
+        assert chunkShift <= CHUNK_SHIFT;
+        this.chunkShift = chunkShift;
+        final FileChannel channel = file.getChannel();
+        byteOrder = header.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        final List<long[]> segments = new ArrayList<long[]>();
+        for (ELFProgramHeaderTable.Entry entry : programHeaderTable.entries) {
+            if (entry.p_type != PT_LOAD) {
+                continue;
+            }
+            final long[] segment;
+            if (entry.is64Bit()) {
+                final ELFProgramHeaderTable.Entry64 entry64 = (ELFProgramHeaderTable.Entry64) entry;
+                segment = new long[] {entry64.p_vaddr, entry64.p_memsz, entry64.p_filesz, entry64.p_offset};
+            } else {
+                final ELFProgramHeaderTable.Entry32 entry32 = (ELFProgramHeaderTable.Entry32) entry;
+                segment = new long[] {entry32.p_vaddr & 0xFFFFFFFFL, entry32.p_memsz & 0xFFFFFFFFL, entry32.p_filesz & 0xFFFFFFFFL, entry32.p_offset & 0xFFFFFFFFL};
+            }
+            if (segment[2] != 0) {
+                segments.add(segment);
+            }
+        }
+        Collections.sort(segments, new Comparator<long[]>() {
+            public int compare(long[] a, long[] b) {
+                return a[0] < b[0] ? -1 : a[0] == b[0] ? 0 : 1;
+            }
+        });
+        final int count = segments.size();
+        starts = new long[count];
+        memoryEnds = new long[count];
+        fileEnds = new long[count];
+        fileOffsets = new long[count];
+        chunks = new MappedByteBuffer[count][];
+        for (int i = 0; i < count; i++) {
+            final long[] segment = segments.get(i);
+            starts[i] = segment[0];
+            memoryEnds[i] = segment[0] + Math.max(segment[1], segment[2]);
+            fileEnds[i] = segment[0] + segment[2];
+            fileOffsets[i] = segment[3];
+            final int chunkSize = 1 << chunkShift;
+            chunks[i] = new MappedByteBuffer[(int) ((segment[2] + chunkSize - 1) >>> chunkShift)];
+            for (int chunk = 0; chunk < chunks[i].length; chunk++) {
+                final long chunkStart = (long) chunk << chunkShift;
+                final long size = Math.min(chunkSize, segment[2] - chunkStart);
+                chunks[i][chunk] = channel.map(FileChannel.MapMode.READ_ONLY, fileOffsets[i] + chunkStart, size);
+                chunks[i][chunk].order(byteOrder);
+            }
+        }
+    }
+
+    public ByteOrder byteOrder() {
+        return byteOrder;
+    }
+
+    public int segmentCount() {
+        return starts.length;
+    }
+
+    public long segmentStart(int segment) {
+        return starts[segment];
+    }
+
+    public long segmentEnd(int segment) {
+        return memoryEnds[segment];
+    }
+
+    /**
+     * Gets the index of the segment containing {@code address}, or -1 if there is none.
+     */
+    public int find(long address) {
+        final int last = lastSegment;
+        if (last < starts.length && address >= starts[last] && address < memoryEnds[last]) {
+            return last;
+        }
+        int low = 0;
+        int high = starts.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (address < starts[mid]) {
+                high = mid - 1;
+            } else if (address >= memoryEnds[mid]) {
+                low = mid + 1;
+            } else {
+                lastSegment = mid;
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the offset in the file of the contents at {@code address}, or -1 if the contents are not in the file.
+     */
+    public long fileOffset(long address) {
+        final int segment = find(address);
+        if (segment < 0 || address >= fileEnds[segment]) {
+            return -1;
+        }
+        return fileOffsets[segment] + (address - starts[segment]);
+    }
+
+    private MappedByteBuffer chunk(int segment, long segmentOffset) {
+        return chunks[segment][(int) (segmentOffset >>> chunkShift)];
+    }
+
+    /**
+     * Gets a read-only view of the file contents starting at {@code address}, without copying.
+     * The view may hold fewer than {@code length} bytes if the range crosses the end of a segment or chunk,
+     * or starts in the zero filled part of a segment.
+     *
+     * @return the view, or {@code null} if {@code address} is not in a segment
+     */
+    public ByteBuffer slice(long address, int length) {
+        final int segment = find(address);
+        if (segment < 0) {
+            return null;
+        }
+        if (address >= fileEnds[segment]) {
+            return ByteBuffer.allocate((int) Math.min(length, memoryEnds[segment] - address)).order(byteOrder);
+        }
+        final long segmentOffset = address - starts[segment];
+        final ByteBuffer chunk = chunk(segment, segmentOffset);
+        final int position = chunkOffset(segmentOffset);
+        final ByteBuffer result = chunk.asReadOnlyBuffer();
+        result.position(position).limit(position + Math.min(length, chunk.limit() - position));
+        return result.slice().order(byteOrder);
+    }
+
+    /**
+     * Copies the contents of a range of addresses to a buffer, stopping at the first address not in a segment.
+     *
+     * @return the number of bytes copied
+     */
+    public int read(long address, ByteBuffer dst, int dstOffset, int length) {
+        int n = 0;
+        while (n < length) {
+            final ByteBuffer src = slice(address + n, length - n);
+            if (src == null) {
+                break;
+            }
+            final int count = src.remaining();
+            final ByteBuffer dstView = dst.duplicate();
+            dstView.position(dstOffset + n).limit(dstOffset + n + count);
+            dstView.put(src);
+            n += count;
+        }
+        return n;
+    }
+
+    /**
+     * Copies the contents of a range of addresses to an array, stopping at the first address not in a segment.
+     *
+     * @return the number of bytes copied
+     */
+    public int read(long address, byte[] dst, int dstOffset, int length) {
+        return read(address, ByteBuffer.wrap(dst), dstOffset, length);
+    }
+
+    /**
+     * Gets the segment containing {@code address}.
+     *
+     * @throws UnmappedAddressException if there is none
+     */
+    private int segmentFor(long address) {
+        final int segment = find(address);
+        if (segment < 0) {
+            throw new UnmappedAddressException(address);
+        }
+        return segment;
+    }
+
+    /**
+     * Determines if the {@code size} bytes at {@code segmentOffset} in {@code segment} are in the file and in the same chunk.
+     */
+    private boolean inOneChunk(int segment, long segmentOffset, int size) {
+        return starts[segment] + segmentOffset + size <= fileEnds[segment] &&
+               ((segmentOffset + size - 1) >>> chunkShift) == (segmentOffset >>> chunkShift);
+    }
+
+    private int chunkOffset(long segmentOffset) {
+        return (int) (segmentOffset & ((1 << chunkShift) - 1));
+    }
+
+    /**
+     * Reads a value that crosses a chunk or segment boundary, or lies in the zero filled part of a segment.
+     */
+    private ByteBuffer readSlowly(long address, int size) {
+        final ByteBuffer buffer = ByteBuffer.allocate(size).order(byteOrder);
+        if (read(address, buffer, 0, size) != size) {
+            throw new UnmappedAddressException(address);
+        }
+        return buffer;
+    }
+
+    public byte getByte(long address) {
+        final int segment = segmentFor(address);
+        final long segmentOffset = address - starts[segment];
+        if (inOneChunk(segment, segmentOffset, 1)) {
+            return chunk(segment, segmentOffset).get(chunkOffset(segmentOffset));
+        }
+        return readSlowly(address, 1).get(0);
+    }
+
+    public short getShort(long address) {
+        final int segment = segmentFor(address);
+        final long segmentOffset = address - starts[segment];
+        if (inOneChunk(segment, segmentOffset, 2)) {
+            return chunk(segment, segmentOffset).getShort(chunkOffset(segmentOffset));
+        }
+        return readSlowly(address, 2).getShort(0);
+    }
+
+    public int getInt(long address) {
+        final int segment = segmentFor(address);
+        final long segmentOffset = address - starts[segment];
+        if (inOneChunk(segment, segmentOffset, 4)) {
+            return chunk(segment, segmentOffset).getInt(chunkOffset(segmentOffset));
+        }
+        return readSlowly(address, 4).getInt(0);
+    }
+
+    public long getLong(long address) {
+        final int segment = segmentFor(address);
+        final long segmentOffset = address - starts[segment];
+        if (inOneChunk(segment, segmentOffset, 8)) {
+            return chunk(segment, segmentOffset).getLong(chunkOffset(segmentOffset));
+        }
+        return readSlowly(address, 8).getLong(0);
+    }
+}
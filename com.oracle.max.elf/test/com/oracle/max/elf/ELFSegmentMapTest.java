@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.max.elf;
+
+import static com.oracle.max.elf.ELFProgramHeaderTable.*;
+
+import java.io.*;
+import java.nio.*;
+
+import junit.framework.*;
+
+import com.oracle.max.elf.ELFSegmentMap.UnmappedAddressException;
+
+/**
+ * Tests {@link ELFSegmentMap} on a small 64-bit core file mapped in chunks of {@value #CHUNK_SIZE} bytes.
+ */
+public class ELFSegmentMapTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ELFSegmentMapTest.class);
+    }
+
+    private static final int CHUNK_SHIFT = 4;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    private static final int DATA_OFFSET = 0x200;
+
+    /**
+     * A segment whose 40 bytes in the file hold 1, 2, 3 ... and whose memory size is 64.
+     */
+    private static final long SEGMENT = 0x10000;
+    private static final int FILE_SIZE = 40;
+    private static final int MEMORY_SIZE = 64;
+
+    /**
+     * A segment with 16 bytes that starts below {@link #SEGMENT} although it comes after it in the file.
+     */
+    private static final long LOW_SEGMENT = 0x8000;
+    private static final int LOW_SIZE = 16;
+
+    /**
+     * A segment the core does not contain.
+     */
+    private static final long OMITTED_SEGMENT = 0x20000;
+
+    private File file;
+    private RandomAccessFile raf;
+    private ELFSegmentMap map;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("core", "");
+        final ByteBuffer buffer = ByteBuffer.allocate(DATA_OFFSET + FILE_SIZE + LOW_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[] {0x7f, 'E', 'L', 'F', 2, 1, 1});
+        buffer.position(16);
+        buffer.putShort((short) 4); // ET_CORE
+        buffer.putShort((short) 62); // EM_X86_64
+        buffer.putInt(1);
+        buffer.putLong(0);
+        buffer.putLong(64); // e_phoff
+        buffer.putLong(0);
+        buffer.putInt(0);
+        buffer.putShort((short) 64);
+        buffer.putShort((short) ELF64_PHTENT_SIZE);
+        buffer.putShort((short) 4);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        putProgramHeader(buffer, PT_NOTE, 0, 0, 0, 0);
+        putProgramHeader(buffer, PT_LOAD, DATA_OFFSET, SEGMENT, FILE_SIZE, MEMORY_SIZE);
+        putProgramHeader(buffer, PT_LOAD, DATA_OFFSET + FILE_SIZE, OMITTED_SEGMENT, 0, 4096);
+        putProgramHeader(buffer, PT_LOAD, DATA_OFFSET + FILE_SIZE, LOW_SEGMENT, LOW_SIZE, LOW_SIZE);
+        buffer.position(DATA_OFFSET);
+        for (int i = 0; i < FILE_SIZE; i++) {
+            buffer.put((byte) (i + 1));
+        }
+        for (int i = 0; i < LOW_SIZE; i++) {
+            buffer.put((byte) (0xA0 + i));
+        }
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(buffer.array());
+        out.close();
+
+        raf = new RandomAccessFile(file, "r");
+        final ELFHeader header = ELFLoader.readELFHeader(raf);
+        map = new ELFSegmentMap(raf, header, ELFLoader.readPHT(raf, header), CHUNK_SHIFT);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        raf.close();
+        file.delete();
+    }
+
+    private static void putProgramHeader(ByteBuffer buffer, int type, long offset, long vaddr, long filesz, long memsz) {
+        buffer.putInt(type);
+        buffer.putInt(PF_READ);
+        buffer.putLong(offset);
+        buffer.putLong(vaddr);
+        buffer.putLong(0);
+        buffer.putLong(filesz);
+        buffer.putLong(memsz);
+        buffer.putLong(1);
+    }
+
+    /**
+     * Gets the expected contents of {@link #SEGMENT} at {@code offset}.
+     */
+    private static byte expected(int offset) {
+        return (byte) (offset < FILE_SIZE ? offset + 1 : 0);
+    }
+
+    private static long expected(int offset, int size) {
+        long value = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            value = value << 8 | (expected(offset + i) & 0xFF);
+        }
+        return value;
+    }
+
+    public void testSegments() {
+        assertEquals(ByteOrder.LITTLE_ENDIAN, map.byteOrder());
+        assertEquals(2, map.segmentCount());
+        assertEquals(LOW_SEGMENT, map.segmentStart(0));
+        assertEquals(LOW_SEGMENT + LOW_SIZE, map.segmentEnd(0));
+        assertEquals(SEGMENT, map.segmentStart(1));
+        assertEquals(SEGMENT + MEMORY_SIZE, map.segmentEnd(1));
+        assertEquals(DATA_OFFSET + 5, map.fileOffset(SEGMENT + 5));
+        assertEquals(DATA_OFFSET + FILE_SIZE + 3, map.fileOffset(LOW_SEGMENT + 3));
+        assertEquals((byte) 0xA3, map.getByte(LOW_SEGMENT + 3));
+    }
+
+    /**
+     * Reads every value at every offset, so that each size is read within a chunk, across each chunk boundary,
+     * across the end of the file contents and in the zero filled tail.
+     */
+    public void testValues() {
+        for (int offset = 0; offset < MEMORY_SIZE; offset++) {
+            final long address = SEGMENT + offset;
+            assertEquals(expected(offset), map.getByte(address));
+            if (offset + 2 <= MEMORY_SIZE) {
+                assertEquals((short) expected(offset, 2), map.getShort(address));
+            }
+            if (offset + 4 <= MEMORY_SIZE) {
+                assertEquals((int) expected(offset, 4), map.getInt(address));
+            }
+            if (offset + 8 <= MEMORY_SIZE) {
+                assertEquals("offset " + offset, expected(offset, 8), map.getLong(address));
+            }
+        }
+    }
+
+    public void testZeroFilledTail() {
+        assertEquals(-1, map.fileOffset(SEGMENT + FILE_SIZE));
+        assertEquals(0, map.getLong(SEGMENT + MEMORY_SIZE - 8));
+        final ByteBuffer slice = map.slice(SEGMENT + FILE_SIZE + 4, 100);
+        assertEquals(MEMORY_SIZE - FILE_SIZE - 4, slice.remaining());
+        while (slice.hasRemaining()) {
+            assertEquals(0, slice.get());
+        }
+    }
+
+    public void testSliceStopsAtChunk() {
+        final ByteBuffer slice = map.slice(SEGMENT + CHUNK_SIZE + 4, 100);
+        assertEquals(CHUNK_SIZE - 4, slice.remaining());
+        assertEquals(expected(CHUNK_SIZE + 4), slice.get(0));
+        // the last chunk only holds the rest of the file contents
+        assertEquals(FILE_SIZE - 2 * CHUNK_SIZE, map.slice(SEGMENT + 2 * CHUNK_SIZE, 100).remaining());
+    }
+
+    public void testRead() {
+        final byte[] bytes = new byte[MEMORY_SIZE];
+        assertEquals(MEMORY_SIZE - 3, map.read(SEGMENT + 3, bytes, 2, MEMORY_SIZE - 2));
+        for (int i = 0; i < MEMORY_SIZE - 3; i++) {
+            assertEquals(expected(3 + i), bytes[2 + i]);
+        }
+    }
+
+    public void testUnmapped() {
+        assertEquals(-1, map.find(OMITTED_SEGMENT));
+        assertEquals(-1, map.find(SEGMENT + MEMORY_SIZE));
+        assertEquals(-1, map.fileOffset(SEGMENT - 1));
+        assertNull(map.slice(OMITTED_SEGMENT, 8));
+        assertEquals(0, map.read(LOW_SEGMENT + LOW_SIZE, new byte[8], 0, 8));
+        try {
+            map.getInt(OMITTED_SEGMENT + 8);
+            fail("expected UnmappedAddressException");
+        } catch (UnmappedAddressException e) {
+            assertEquals(OMITTED_SEGMENT + 8, e.address);
+        }
+        try {
+            // starts in the tail of the segment but ends after it
+            map.getLong(SEGMENT + MEMORY_SIZE - 4);
+            fail("expected UnmappedAddressException");
+        } catch (UnmappedAddressException e) {
+            assertEquals(SEGMENT + MEMORY_SIZE - 4, e.address);
+        }
+    }
+}
@@ -24,6 +24,7 @@
 package com.sun.max.jdwp.data;
 
 import java.io.*;
+import java.nio.charset.*;
 import java.util.*;
 
 /**
@@ -31,6 +32,8 @@ import java.util.*;
  */
 public class JDWPInputStream {
 
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
     private DataInputStream dataInputStream;
     private CommandHandler<IncomingData, OutgoingData> commandHandler;
     private IncomingData incomingData;
@@ -62,19 +65,20 @@ public class JDWPInputStream {
     }
 
     /**
-     * Reads a string according to JDWP syntax.
+     * Reads a string according to JDWP syntax, i.e. a length followed by that many bytes of UTF-8.
      * @return the string read from the JDWP stream
      * @throws IOException this exception is thrown, when there was a problem reading the raw bytes
      */
     public String readString() throws IOException {
 
         final int length = dataInputStream.readInt();
+        if (length == 0) {
+            return "";
+        }
 
         final byte[] data = new byte[length];
-        dataInputStream.read(data);
-
-        final String s = new String(data);
-        return s;
+        dataInputStream.readFully(data);
+        return new String(data, UTF8);
     }
 
     public JDWPLocation readLocation() throws IOException {
@@ -23,7 +23,6 @@
 package com.sun.max.jdwp.data;
 
 import java.io.*;
-import java.nio.charset.*;
 import java.util.*;
 
 import com.sun.max.jdwp.constants.*;
@@ -64,7 +63,7 @@ public class JDWPOutputStream {
     }
 
     public void write(String s) throws IOException {
-        final byte[] bytes = s.getBytes(Charset.forName("UTF-8"));
+        final byte[] bytes = s.getBytes(JDWPInputStream.UTF8);
         write(bytes.length);
         out.write(bytes);
     }
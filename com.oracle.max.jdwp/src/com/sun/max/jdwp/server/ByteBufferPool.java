@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.jdwp.server;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * A pool of direct byte buffers from which the channel transport reads and writes packets. Buffers are pooled by
+ * power-of-two capacity, so a packet of a given size reuses a buffer of at most twice its size. Buffers larger than
+ * {@link #MAX_POOLED_CAPACITY} are not retained after release.
+ */
+final class ByteBufferPool {
+
+    private static final int MIN_POOLED_CAPACITY = 256;
+    private static final int MAX_POOLED_CAPACITY = 1 << 20;
+    private static final int BUFFERS_PER_CAPACITY = 16;
+
+    /**
+     * The free buffers, indexed by size class.
+     */
+    private final List<ArrayDeque<ByteBuffer>> free;
+
+    ByteBufferPool() {
+        final int sizeClasses = sizeClass(MAX_POOLED_CAPACITY) + 1;
+        free = new ArrayList<ArrayDeque<ByteBuffer>>(sizeClasses);
+        for (int i = 0; i < sizeClasses; i++) {
+            free.add(new ArrayDeque<ByteBuffer>());
+        }
+    }
+
+    private static int sizeClass(int capacity) {
+        if (capacity <= MIN_POOLED_CAPACITY) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - Integer.numberOfTrailingZeros(MIN_POOLED_CAPACITY);
+    }
+
+    /**
+     * Gets a cleared buffer with at least a given capacity and a limit equal to that capacity.
+     */
+    ByteBuffer acquire(int capacity) {
+        final int sizeClass = sizeClass(capacity);
+        if (sizeClass < free.size()) {
+            synchronized (this) {
+                final ByteBuffer buffer = free.get(sizeClass).poll();
+                if (buffer != null) {
+                    buffer.clear().limit(capacity);
+                    return buffer;
+                }
+            }
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(MIN_POOLED_CAPACITY << sizeClass);
+            buffer.limit(capacity);
+            return buffer;
+        }
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire(int)} to the pool. The buffer must not be used afterwards.
+     */
+    void release(ByteBuffer buffer) {
+        final int capacity = buffer.capacity();
+        if (capacity > MAX_POOLED_CAPACITY || Integer.bitCount(capacity) != 1 || capacity < MIN_POOLED_CAPACITY) {
+            return;
+        }
+        final int sizeClass = sizeClass(capacity);
+        synchronized (this) {
+            final ArrayDeque<ByteBuffer> buffers = free.get(sizeClass);
+            if (buffers.size() < BUFFERS_PER_CAPACITY) {
+                buffers.add(buffer);
+            }
+        }
+    }
+}
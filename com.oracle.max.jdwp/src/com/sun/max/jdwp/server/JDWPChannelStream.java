@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.jdwp.server;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.logging.*;
+
+import com.sun.max.jdwp.data.*;
+
+/**
+ * A JDWP connection over a blocking {@link SocketChannel}. Packets are read into and written from direct buffers taken
+ * from a {@link ByteBufferPool}, so that no per-packet byte arrays are allocated by the transport.
+ * <p>
+ * Replies and commands may be sent from any thread. Each packet is encoded by the sending thread and queued; the first
+ * sender to find no write in progress writes the queue with a single gathering write, and keeps writing until the queue
+ * is empty. Packets queued by other threads in the meantime are therefore sent in batches without those threads
+ * waiting for the socket.
+ */
+class JDWPChannelStream implements JDWPSender {
+
+    private static final Logger LOGGER = Logger.getLogger(JDWPChannelStream.class.getName());
+    private static final String HANDSHAKE = "JDWP-Handshake";
+    private static final int HEADER_SIZE = 11;
+    private static final int INITIAL_DATA_SIZE = 256;
+
+    private final SocketChannel channel;
+    private final ByteBufferPool pool;
+    private final ByteBuffer header = ByteBuffer.allocateDirect(HEADER_SIZE);
+
+    /**
+     * Encoded packets waiting to be written, guarded by the queue itself.
+     */
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+    private boolean writing;
+
+    // Counter that is increased for each sent outgoing command.
+    private final AtomicInteger outgoingID = new AtomicInteger();
+
+    JDWPChannelStream(SocketChannel channel, ByteBufferPool pool) {
+        this.channel = channel;
+        this.pool = pool;
+    }
+
+    /**
+     * Performs a JDWP handshake and throws an exception if the handshake fails.
+     *
+     * @throws IOException this exception is thrown if the handshake fails
+     */
+    public void handshake() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(HANDSHAKE.length());
+        readFully(buffer);
+        for (int i = 0; i < HANDSHAKE.length(); i++) {
+            if (buffer.get(i) != (byte) HANDSHAKE.charAt(i)) {
+                throw new IOException("JDWP handshake failed");
+            }
+        }
+        buffer.rewind();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Receives the next JDWP packet and decodes it with the command handler found in the given registry.
+     *
+     * @param registry the registry that is used to lookup the command handler based on the bytes in the packet header
+     * @return a newly created IncomingPacket object representing the read packet
+     * @throws IOException this exception is thrown, when a problem occurred while reading the packet bytes
+     * @throws JDWPIncomingPacketException this exception is thrown, when a problem occurred while translating the
+     *             packet bytes
+     */
+    public IncomingPacket<? extends IncomingData, ? extends OutgoingData> receive(CommandHandlerRegistry registry) throws IOException, JDWPIncomingPacketException {
+        header.clear();
+        readFully(header);
+        final int length = header.getInt();
+        final int id = header.getInt();
+        final byte flags = header.get();
+        final byte commandSetId = header.get();
+        final byte commandId = header.get();
+        if (length < HEADER_SIZE) {
+            throw new IOException("Invalid JDWP packet length " + length);
+        }
+
+        final ByteBuffer data = pool.acquire(length - HEADER_SIZE);
+        try {
+            readFully(data);
+
+            final CommandHandler<? extends IncomingData, ? extends OutgoingData> found = registry.findCommandHandler(commandSetId, commandId);
+            if (found == null) {
+                return createIncomingPacket(length, id, flags, commandSetId, commandId, null, null);
+            }
+            // The handler only ever sees the data object it creates itself, so it can be typed by the bounds.
+            @SuppressWarnings("unchecked")
+            final CommandHandler<IncomingData, OutgoingData> handler = (CommandHandler<IncomingData, OutgoingData>) found;
+
+            assert handler.getCommandId() == commandId;
+            assert handler.getCommandSetId() == commandSetId;
+
+            try {
+                final IncomingData incomingData = handler.createIncomingDataObject();
+                incomingData.read(new JDWPInputStream(new BufferInputStream(data), handler, incomingData));
+                final IncomingPacket<? extends IncomingData, ? extends OutgoingData> p = createIncomingPacket(length, id, flags, commandSetId, commandId, incomingData, handler);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(CommandHandler.Static.getCommandName(handler) + ": " + p);
+                }
+                return p;
+
+            } catch (JDWPException e) {
+                throw new JDWPIncomingPacketException(e, createIncomingPacket(length, id, flags, commandSetId, commandId, null, handler));
+            }
+        } finally {
+            pool.release(data);
+        }
+    }
+
+    private IncomingPacket<? extends IncomingData, ? extends OutgoingData> createIncomingPacket(int length, int id, byte flags, byte commandSetId, byte commandId, IncomingData data,
+                    CommandHandler<IncomingData, OutgoingData> handler) {
+        return new IncomingPacket<IncomingData, OutgoingData>(length, id, flags, commandSetId, commandId, data, handler);
+    }
+
+    public void sendCommand(OutgoingData outgoingData) throws IOException {
+        final int id = outgoingID.incrementAndGet();
+        LOGGER.info("Sending eventPacket with id=" + id);
+        final ByteBuffer packet = encode(outgoingData).buffer;
+        packet.putInt(0, packet.position());
+        packet.putInt(4, id);
+        packet.put(8, (byte) 0);
+        packet.put(9, outgoingData.getCommandSetId());
+        packet.put(10, outgoingData.getCommandId());
+        enqueue(packet);
+    }
+
+    /**
+     * Sends a reply packet to the client.
+     *
+     * @param packet the packet to be sent
+     * @throws IOException this exception is thrown when a problem occurred while writing the packet bytes
+     */
+    public <IncomingData_Type extends IncomingData, OutgoingData_Type extends OutgoingData> void send(ReplyPacket<IncomingData_Type, OutgoingData_Type> packet) throws IOException {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Sending reply packet: " + packet);
+        }
+        final ByteBuffer buffer = encode(packet.getData()).buffer;
+        buffer.putInt(0, buffer.position());
+        buffer.putInt(4, packet.getId());
+        buffer.put(8, packet.getFlags());
+        buffer.putShort(9, packet.getErrorCode());
+        enqueue(buffer);
+    }
+
+    /**
+     * Encodes outgoing data into a pooled buffer, after space for the packet header.
+     */
+    private BufferOutputStream encode(OutgoingData outgoingData) throws IOException {
+        final BufferOutputStream out = new BufferOutputStream(pool.acquire(HEADER_SIZE + INITIAL_DATA_SIZE));
+        out.buffer.position(HEADER_SIZE);
+        if (outgoingData != null) {
+            outgoingData.write(new JDWPOutputStream(out));
+        }
+        return out;
+    }
+
+    private void enqueue(ByteBuffer packet) throws IOException {
+        packet.flip();
+        synchronized (pending) {
+            pending.add(packet);
+            if (writing) {
+                return;
+            }
+            writing = true;
+        }
+
+        ByteBuffer[] batch = null;
+        try {
+            while (true) {
+                int count;
+                synchronized (pending) {
+                    count = pending.size();
+                    if (count == 0) {
+                        writing = false;
+                        return;
+                    }
+                    if (batch == null || batch.length < count) {
+                        batch = new ByteBuffer[Math.max(count, 8)];
+                    }
+                    for (int i = 0; i < count; i++) {
+                        batch[i] = pending.poll();
+                    }
+                }
+                long remaining = 0;
+                for (int i = 0; i < count; i++) {
+                    remaining += batch[i].remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(batch, 0, count);
+                }
+                for (int i = 0; i < count; i++) {
+                    pool.release(batch[i]);
+                    batch[i] = null;
+                }
+            }
+        } catch (IOException e) {
+            synchronized (pending) {
+                pending.clear();
+                writing = false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Input stream reading the remaining bytes of a buffer.
+     */
+    private static final class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            final int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Output stream appending to a pooled buffer, which is replaced by a larger one from the pool when full.
+     */
+    private final class BufferOutputStream extends OutputStream {
+
+        private ByteBuffer buffer;
+
+        BufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+            buffer.limit(buffer.capacity());
+        }
+
+        private void ensureRemaining(int n) {
+            if (buffer.remaining() < n) {
+                final ByteBuffer larger = pool.acquire(Math.max(buffer.capacity() * 2, buffer.position() + n));
+                buffer.flip();
+                larger.put(buffer);
+                pool.release(buffer);
+                buffer = larger;
+                buffer.limit(buffer.capacity());
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            ensureRemaining(1);
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureRemaining(len);
+            buffer.put(b, off, len);
+        }
+    }
+}
@@ -24,29 +24,140 @@ package com.sun.max.jdwp.server;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
 import java.util.logging.*;
 
 import com.sun.max.jdwp.constants.Error;
 import com.sun.max.jdwp.data.*;
+import com.sun.max.jdwp.protocol.*;
 
 /**
  * A JDWPServer object manages a command handler registry and can be started to listen for incoming JDWP connections.
- *
+ * <p>
+ * When started on a {@link ServerSocketChannel}, each connection is served by a {@link JDWPChannelStream} and the
+ * commands listed in {@link #READ_ONLY_COMMANDS}, which neither change the state of the VM nor depend on an earlier
+ * command having changed it, are handed to a pool of threads shared by all connections and sized by the
+ * {@value #HANDLER_THREADS_PROPERTY} system property.
+ * Each such command is handled while holding the server's single {@link VMLock}, so handling itself is serial: the
+ * only work that runs concurrently is encoding and sending the replies, which overlaps with handling the next command
+ * and with the connection thread reading and decoding the packets after it.
+ * Any other command waits until all commands received before it have been handled, and is handled before any command
+ * received after it, so the effect of a command on the VM is seen by all later commands.
  */
 public class JDWPServer {
 
     private static final Logger LOGGER = Logger.getLogger(JDWPServer.class.getName());
     private static final int TIMEOUT = 2000;
 
+    /**
+     * Name of the system property giving the number of threads handling read-only commands for all connections. A
+     * value of 1 handles all commands in the order received, on the thread reading them. The default of 2 lets one
+     * thread hold the {@link VMLock} while the other sends its reply; more only help with several connections sending
+     * at once.
+     */
+    public static final String HANDLER_THREADS_PROPERTY = "max.jdwp.handlerThreads";
+
+    private static final int HANDLER_THREADS = Integer.getInteger(HANDLER_THREADS_PROPERTY, 2);
+
+    /**
+     * Commands that only inspect the VM, keyed by {@link #commandKey(byte, byte)}. These are what debuggers issue in
+     * bursts to populate their views of threads, stacks, objects and types.
+     */
+    private static final Set<Integer> READ_ONLY_COMMANDS = new HashSet<Integer>();
+
+    private static void addReadOnly(int commandSetId, byte... commandIds) {
+        for (byte commandId : commandIds) {
+            READ_ONLY_COMMANDS.add(commandKey((byte) commandSetId, commandId));
+        }
+    }
+
+    private static int commandKey(byte commandSetId, byte commandId) {
+        return (commandSetId & 0xFF) << 8 | (commandId & 0xFF);
+    }
+
+    static {
+        addReadOnly(ReferenceTypeCommands.COMMAND_SET, ReferenceTypeCommands.Signature.COMMAND, ReferenceTypeCommands.ClassLoader.COMMAND,
+            ReferenceTypeCommands.Modifiers.COMMAND, ReferenceTypeCommands.Fields.COMMAND, ReferenceTypeCommands.Methods.COMMAND,
+            ReferenceTypeCommands.GetValues.COMMAND, ReferenceTypeCommands.SourceFile.COMMAND, ReferenceTypeCommands.NestedTypes.COMMAND,
+            ReferenceTypeCommands.Status.COMMAND, ReferenceTypeCommands.Interfaces.COMMAND, ReferenceTypeCommands.ClassObject.COMMAND,
+            ReferenceTypeCommands.SourceDebugExtension.COMMAND, ReferenceTypeCommands.SignatureWithGeneric.COMMAND,
+            ReferenceTypeCommands.FieldsWithGeneric.COMMAND, ReferenceTypeCommands.MethodsWithGeneric.COMMAND);
+        addReadOnly(ClassTypeCommands.COMMAND_SET, ClassTypeCommands.Superclass.COMMAND);
+        addReadOnly(MethodCommands.COMMAND_SET, MethodCommands.LineTable.COMMAND, MethodCommands.VariableTable.COMMAND,
+            MethodCommands.Bytecodes.COMMAND, MethodCommands.IsObsolete.COMMAND, MethodCommands.VariableTableWithGeneric.COMMAND);
+        addReadOnly(ObjectReferenceCommands.COMMAND_SET, ObjectReferenceCommands.ReferenceType.COMMAND, ObjectReferenceCommands.GetValues.COMMAND,
+            ObjectReferenceCommands.MonitorInfo.COMMAND, ObjectReferenceCommands.IsCollected.COMMAND);
+        addReadOnly(StringReferenceCommands.COMMAND_SET, StringReferenceCommands.Value.COMMAND);
+        addReadOnly(ThreadReferenceCommands.COMMAND_SET, ThreadReferenceCommands.Name.COMMAND, ThreadReferenceCommands.Status.COMMAND,
+            ThreadReferenceCommands.ThreadGroup.COMMAND, ThreadReferenceCommands.Frames.COMMAND, ThreadReferenceCommands.FrameCount.COMMAND,
+            ThreadReferenceCommands.SuspendCount.COMMAND);
+        addReadOnly(ThreadGroupReferenceCommands.COMMAND_SET, ThreadGroupReferenceCommands.Name.COMMAND, ThreadGroupReferenceCommands.Parent.COMMAND,
+            ThreadGroupReferenceCommands.Children.COMMAND);
+        addReadOnly(ArrayReferenceCommands.COMMAND_SET, ArrayReferenceCommands.Length.COMMAND, ArrayReferenceCommands.GetValues.COMMAND);
+        addReadOnly(ClassLoaderReferenceCommands.COMMAND_SET, ClassLoaderReferenceCommands.VisibleClasses.COMMAND);
+        addReadOnly(ClassObjectReferenceCommands.COMMAND_SET, ClassObjectReferenceCommands.ReflectedType.COMMAND);
+        addReadOnly(StackFrameCommands.COMMAND_SET, StackFrameCommands.GetValues.COMMAND, StackFrameCommands.ThisObject.COMMAND);
+    }
+
+    /**
+     * A lock that is held while a read-only command received over a channel connection inspects the VM.
+     */
+    public interface VMLock {
+        void lock();
+        void unlock();
+    }
+
+    private static final class ReentrantVMLock implements VMLock {
+        private final ReentrantLock lock = new ReentrantLock();
+
+        public void lock() {
+            lock.lock();
+        }
+
+        public void unlock() {
+            lock.unlock();
+        }
+    }
+
+    private final VMLock vmLock;
+
+    /**
+     * Creates a server whose read-only commands exclude each other but nothing else.
+     */
+    public JDWPServer() {
+        this(new ReentrantVMLock());
+    }
+
+    /**
+     * Creates a server whose read-only commands hold a given lock, which should be the lock guarding the state of the
+     * VM being debugged.
+     *
+     * @param vmLock the lock held around the handling of each read-only command
+     */
+    public JDWPServer(VMLock vmLock) {
+        this.vmLock = vmLock;
+    }
+
     private ServerSocket serverSocket;
+    private ServerSocketChannel serverChannel;
     private boolean shutdown;
 
+    private final ByteBufferPool bufferPool = new ByteBufferPool();
+
+    /**
+     * The threads handling read-only commands received over channel connections, or {@code null} if they are handled
+     * by the connection threads.
+     */
+    private ExecutorService handlers;
+
     /**
      * Shuts down the JDWP server. The server must be running.
      */
     public void shutdown() {
-        assert serverSocket != null : "Not running!";
+        assert serverSocket != null || serverChannel != null : "Not running!";
         assert !shutdown : "Already shutting down!";
         shutdown = true;
     }
@@ -58,12 +169,75 @@ public class JDWPServer {
      * @throws IOException this exception is thrown, when the server socket could not be created
      */
     public void start(ServerSocket serverSocket) throws IOException {
-        assert this.serverSocket == null : "Already started!";
+        assert this.serverSocket == null && this.serverChannel == null : "Already started!";
         this.serverSocket = serverSocket;
         this.serverSocket.setSoTimeout(TIMEOUT);
         new Thread(waitForClientsThread).start();
     }
 
+    /**
+     * Starts the thread that waits for incoming JDWP connections, which are served over NIO channels with concurrent
+     * handling of read-only commands.
+     *
+     * @param serverChannel the bound server socket channel on which to listen for incoming connections
+     * @throws IOException this exception is thrown, when the channel could not be configured
+     */
+    public void start(ServerSocketChannel serverChannel) throws IOException {
+        assert this.serverSocket == null && this.serverChannel == null : "Already started!";
+        this.serverChannel = serverChannel;
+        final Selector selector = Selector.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        if (HANDLER_THREADS > 1) {
+            handlers = Executors.newFixedThreadPool(HANDLER_THREADS, new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r, "JDWP handler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        new Thread(new Runnable() {
+            public void run() {
+                waitForChannelClients(selector);
+            }
+        }).start();
+    }
+
+    private void waitForChannelClients(Selector selector) {
+        LOGGER.info("JDWPServer waiting for clients");
+        try {
+            while (!shutdown) {
+                if (selector.select(TIMEOUT) == 0) {
+                    continue;
+                }
+                selector.selectedKeys().clear();
+                final SocketChannel clientChannel = serverChannel.accept();
+                if (clientChannel != null) {
+                    clientChannel.configureBlocking(true);
+                    clientChannel.socket().setTcpNoDelay(true);
+                    new ChannelClientThread(clientChannel).start();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.severe("Exception occurred while waiting for clients: " + e.toString());
+        } finally {
+            try {
+                selector.close();
+                serverChannel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "IO exception when closing server channel", e);
+            }
+            if (handlers != null) {
+                handlers.shutdown();
+                handlers = null;
+            }
+            LOGGER.info("JDWP server is shut down");
+            serverChannel = null;
+            shutdown = false;
+        }
+    }
+
     /**
      * This command handler registry can be used to lookup or add JDWP command handlers.
      *
@@ -191,4 +365,124 @@ public class JDWPServer {
             }
         }
     }
+
+    /**
+     * Thread that is started for each client connection made through a {@link ServerSocketChannel}. It reads the
+     * packets, hands read-only commands to the server's handler threads and handles any other command itself once all
+     * earlier commands of the connection have been handled.
+     */
+    private class ChannelClientThread extends Thread {
+
+        private final SocketChannel channel;
+
+        /**
+         * Number of read-only commands submitted to the handler threads whose replies have not yet been sent, guarded
+         * by this thread object.
+         */
+        private int inFlight;
+
+        ChannelClientThread(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private synchronized void waitForInFlight() throws InterruptedException {
+            while (inFlight > 0) {
+                wait();
+            }
+        }
+
+        private synchronized void handled() {
+            if (--inFlight == 0) {
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void run() {
+            final ExecutorService handlers = JDWPServer.this.handlers;
+            try {
+                final JDWPChannelStream stream = new JDWPChannelStream(channel, bufferPool);
+                stream.handshake();
+                LOGGER.info("Handshake passed successfully!");
+
+                while (!shutdown) {
+                    final IncomingPacket<? extends IncomingData, ? extends OutgoingData> incomingPacket;
+                    try {
+                        incomingPacket = stream.receive(commandHandlerRegistry);
+                    } catch (JDWPIncomingPacketException e) {
+                        LOGGER.warning("JDWP exception occured while reading packet: " + e.innerException());
+                        stream.send(e.packet().createErrorReply((short) e.innerException().errorCode()));
+                        continue;
+                    }
+                    final boolean readOnly = READ_ONLY_COMMANDS.contains(commandKey(incomingPacket.getCommandSetId(), incomingPacket.getCommandId()));
+                    if (handlers != null && readOnly) {
+                        synchronized (this) {
+                            inFlight++;
+                        }
+                        handlers.execute(new Runnable() {
+                            public void run() {
+                                try {
+                                    handle(stream, incomingPacket, vmLock);
+                                } catch (IOException e) {
+                                    LOGGER.log(Level.SEVERE, "IO exception while sending reply", e);
+                                } finally {
+                                    handled();
+                                }
+                            }
+                        });
+                    } else {
+                        waitForInFlight();
+                        handle(stream, incomingPacket, readOnly ? vmLock : null);
+                    }
+                }
+
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "IO exception in the client thread", e);
+            } catch (InterruptedException e) {
+                LOGGER.log(Level.SEVERE, "Client thread interrupted", e);
+            } catch (RejectedExecutionException e) {
+                LOGGER.info("Server shut down while a command was pending");
+            } finally {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "IO exception when closing channel", e);
+                }
+
+                LOGGER.info("Client shutdown!");
+            }
+        }
+
+        /**
+         * Handles a packet and sends the reply.
+         *
+         * @param lock if non-null, the lock held while the handler runs but not while the reply is sent
+         */
+        private void handle(JDWPChannelStream stream, IncomingPacket<? extends IncomingData, ? extends OutgoingData> incomingPacket, VMLock lock) throws IOException {
+            try {
+                final ReplyPacket<? extends IncomingData, ? extends OutgoingData> replyPacket;
+                if (lock == null) {
+                    replyPacket = incomingPacket.handle(stream);
+                } else {
+                    lock.lock();
+                    try {
+                        replyPacket = incomingPacket.handle(stream);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                if (replyPacket == null) {
+                    LOGGER.warning("No handler found for command " + incomingPacket.getCommandSetId() + "/" + incomingPacket.getCommandId() + "!");
+                    throw new JDWPNotImplementedException();
+                }
+                stream.send(replyPacket);
+            } catch (JDWPException e) {
+                LOGGER.warning("JDWP exception occured: " + e);
+                stream.send(incomingPacket.createErrorReply((short) e.errorCode()));
+            } catch (Throwable t) {
+                LOGGER.log(Level.SEVERE, "Severe generic exception occured while handling packet", t);
+                stream.send(incomingPacket.createErrorReply((short) Error.INTERNAL));
+            }
+        }
+    }
 }
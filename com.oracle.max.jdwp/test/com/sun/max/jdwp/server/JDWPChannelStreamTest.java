@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2007, 2011, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.jdwp.server;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import junit.framework.*;
+
+import com.sun.max.jdwp.data.*;
+import com.sun.max.jdwp.protocol.*;
+
+/**
+ * Tests the framing of packets read by {@link JDWPChannelStream}, the batching of replies sent to it from several
+ * threads and the locking of read-only commands handled concurrently by a {@link JDWPServer}.
+ */
+public class JDWPChannelStreamTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(JDWPChannelStreamTest.class);
+    }
+
+    private static final String HANDSHAKE = "JDWP-Handshake";
+    private static final int REPLY_FLAG = 0x80;
+
+    private ServerSocketChannel serverChannel;
+    private Socket client;
+    private SocketChannel serverSide;
+
+    @Override
+    protected void setUp() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = new Socket(InetAddress.getLoopbackAddress(), serverChannel.socket().getLocalPort());
+        client.setTcpNoDelay(true);
+        serverSide = serverChannel.accept();
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        client.close();
+        serverSide.close();
+        serverChannel.close();
+    }
+
+    private static class CreateStringHandler extends VirtualMachineCommands.CreateString.Handler {
+    }
+
+    private static class SignatureHandler extends ReferenceTypeCommands.Signature.Handler {
+        @Override
+        public ReferenceTypeCommands.Signature.Reply handle(ReferenceTypeCommands.Signature.IncomingRequest incomingRequest) {
+            return new ReferenceTypeCommands.Signature.Reply(signature(incomingRequest.refType.value()));
+        }
+    }
+
+    static String signature(long refType) {
+        return "Lpkg/Class" + refType + ";";
+    }
+
+    /**
+     * Creates a registry holding at most one handler.
+     *
+     * @param handler the handler in the registry, or {@code null} for an empty registry
+     */
+    private static CommandHandlerRegistry registry(final CommandHandler<? extends IncomingData, ? extends OutgoingData> handler) {
+        return new CommandHandlerRegistry() {
+            public CommandHandler<? extends IncomingData, ? extends OutgoingData> findCommandHandler(byte commandSetId, byte commandId) {
+                if (handler != null && handler.getCommandSetId() == commandSetId && handler.getCommandId() == commandId) {
+                    return handler;
+                }
+                return null;
+            }
+
+            public void addCommandHandler(CommandHandler<? extends IncomingData, ? extends OutgoingData> commandHandler) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static byte[] commandPacket(int id, int commandSetId, int commandId, byte[] data) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(11 + data.length);
+        out.writeInt(id);
+        out.writeByte(0);
+        out.writeByte(commandSetId);
+        out.writeByte(commandId);
+        out.write(data);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] createStringPacket(int id, String utf) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final byte[] utf8 = utf.getBytes("UTF-8");
+        out.writeInt(utf8.length);
+        out.write(utf8);
+        return commandPacket(id, VirtualMachineCommands.COMMAND_SET, VirtualMachineCommands.CreateString.COMMAND, bytes.toByteArray());
+    }
+
+    private static byte[] signaturePacket(int id, long refType) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeLong(refType);
+        return commandPacket(id, ReferenceTypeCommands.COMMAND_SET, ReferenceTypeCommands.Signature.COMMAND, bytes.toByteArray());
+    }
+
+    private void handshake(JDWPChannelStream stream) throws IOException {
+        client.getOutputStream().write(HANDSHAKE.getBytes("US-ASCII"));
+        stream.handshake();
+        readHandshake();
+    }
+
+    private void readHandshake() throws IOException {
+        final byte[] echo = new byte[HANDSHAKE.length()];
+        new DataInputStream(client.getInputStream()).readFully(echo);
+        assertEquals(HANDSHAKE, new String(echo, "US-ASCII"));
+    }
+
+    /**
+     * Reads a reply carrying a {@link ReferenceTypeCommands.Signature.Reply} and returns its id after checking the
+     * header and that the signature matches the id.
+     */
+    private static int readSignatureReply(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        final int id = in.readInt();
+        assertEquals(REPLY_FLAG, in.readUnsignedByte());
+        assertEquals(0, in.readShort());
+        final byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        assertEquals(11 + 4 + utf8.length, length);
+        assertEquals(signature(id), new String(utf8, "UTF-8"));
+        return id;
+    }
+
+    public void testFraming() throws Exception {
+        final JDWPChannelStream stream = new JDWPChannelStream(serverSide, new ByteBufferPool());
+        handshake(stream);
+        final CommandHandlerRegistry registry = registry(new CreateStringHandler());
+
+        final StringBuilder longString = new StringBuilder();
+        while (longString.length() < 5000) {
+            longString.append("\u00e9t\u00e9 ");
+        }
+        final OutputStream out = client.getOutputStream();
+
+        // A packet arriving a byte at a time
+        for (byte b : createStringPacket(1, "first")) {
+            out.write(b);
+            out.flush();
+        }
+        // Several packets arriving in one write, one of them larger than the smallest pooled buffer
+        final ByteArrayOutputStream burst = new ByteArrayOutputStream();
+        burst.write(createStringPacket(2, ""));
+        burst.write(createStringPacket(3, longString.toString()));
+        burst.write(commandPacket(4, 99, 1, new byte[] {1, 2, 3}));
+        burst.write(createStringPacket(5, "last"));
+        out.write(burst.toByteArray());
+        out.flush();
+
+        final String[] expected = {"first", "", longString.toString(), null, "last"};
+        for (int i = 0; i < expected.length; i++) {
+            final IncomingPacket<? extends IncomingData, ? extends OutgoingData> packet = stream.receive(registry);
+            assertEquals(i + 1, packet.getId());
+            if (expected[i] == null) {
+                assertEquals((byte) 99, packet.getCommandSetId());
+                assertTrue(packet.getHandler() == null);
+            } else {
+                assertEquals(expected[i], ((VirtualMachineCommands.CreateString.IncomingRequest) packet.getData()).utf);
+            }
+        }
+    }
+
+    public void testInvalidLength() throws Exception {
+        final JDWPChannelStream stream = new JDWPChannelStream(serverSide, new ByteBufferPool());
+        handshake(stream);
+        final DataOutputStream out = new DataOutputStream(client.getOutputStream());
+        out.writeInt(5);
+        out.writeInt(1);
+        out.write(new byte[3]);
+        out.flush();
+        try {
+            stream.receive(registry(null));
+            fail("expected IOException");
+        } catch (IOException e) {
+        }
+    }
+
+    public void testBatchedReplies() throws Exception {
+        final JDWPChannelStream stream = new JDWPChannelStream(serverSide, new ByteBufferPool());
+        handshake(stream);
+
+        final int threadCount = 8;
+        final int repliesPerThread = 200;
+        final Thread[] threads = new Thread[threadCount];
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        for (int t = 0; t < threadCount; t++) {
+            final int first = t * repliesPerThread + 1;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int id = first; id < first + repliesPerThread; id++) {
+                            final IncomingPacket<ReferenceTypeCommands.Signature.IncomingRequest, ReferenceTypeCommands.Signature.Reply> request =
+                                new IncomingPacket<ReferenceTypeCommands.Signature.IncomingRequest, ReferenceTypeCommands.Signature.Reply>(11 + 8, id, (byte) 0,
+                                    (byte) ReferenceTypeCommands.COMMAND_SET, ReferenceTypeCommands.Signature.COMMAND, null, null);
+                            stream.send(new ReplyPacket<ReferenceTypeCommands.Signature.IncomingRequest, ReferenceTypeCommands.Signature.Reply>(request,
+                                new ReferenceTypeCommands.Signature.Reply(signature(id))));
+                        }
+                    } catch (Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+        final BitSet seen = new BitSet();
+        final int[] lastFromThread = new int[threadCount];
+        for (int i = 0; i < threadCount * repliesPerThread; i++) {
+            final int id = readSignatureReply(in);
+            assertTrue("duplicate reply " + id, !seen.get(id));
+            seen.set(id);
+            // Replies sent by one thread arrive in the order sent
+            final int thread = (id - 1) / repliesPerThread;
+            assertTrue(id > lastFromThread[thread]);
+            lastFromThread[thread] = id;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(String.valueOf(failure.get()), failure.get() == null);
+        assertEquals(threadCount * repliesPerThread, seen.cardinality());
+    }
+
+    /**
+     * Lock counting how often it is taken.
+     */
+    private static class CountingLock implements JDWPServer.VMLock {
+        final ReentrantLock lock = new ReentrantLock();
+        final AtomicInteger acquisitions = new AtomicInteger();
+
+        public void lock() {
+            lock.lock();
+            acquisitions.incrementAndGet();
+        }
+
+        public void unlock() {
+            lock.unlock();
+        }
+    }
+
+    public void testReadOnlyCommandsHoldVMLock() throws Exception {
+        // The fixture's connection is not used: the server accepts its own.
+        final CountingLock vmLock = new CountingLock();
+        final AtomicInteger unlockedCalls = new AtomicInteger();
+        final JDWPServer server = new JDWPServer(vmLock);
+        server.commandHandlerRegistry().addCommandHandler(new SignatureHandler() {
+            @Override
+            public ReferenceTypeCommands.Signature.Reply handle(ReferenceTypeCommands.Signature.IncomingRequest incomingRequest) {
+                if (!vmLock.lock.isHeldByCurrentThread()) {
+                    unlockedCalls.incrementAndGet();
+                }
+                Thread.yield();
+                return super.handle(incomingRequest);
+            }
+        });
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start(channel);
+
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), channel.socket().getLocalPort());
+        try {
+            socket.setTcpNoDelay(true);
+            socket.getOutputStream().write(HANDSHAKE.getBytes("US-ASCII"));
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final byte[] echo = new byte[HANDSHAKE.length()];
+            in.readFully(echo);
+            assertEquals(HANDSHAKE, new String(echo, "US-ASCII"));
+
+            final int count = 64;
+            final ByteArrayOutputStream burst = new ByteArrayOutputStream();
+            for (int id = 1; id <= count; id++) {
+                burst.write(signaturePacket(id, id));
+            }
+            socket.getOutputStream().write(burst.toByteArray());
+
+            final BitSet seen = new BitSet();
+            for (int i = 0; i < count; i++) {
+                seen.set(readSignatureReply(in));
+            }
+            assertEquals(count, seen.cardinality());
+            assertEquals(0, unlockedCalls.get());
+            assertEquals(count, vmLock.acquisitions.get());
+        } finally {
+            socket.close();
+            server.shutdown();
+        }
+    }
+}
@@ -23,7 +23,8 @@
 package com.sun.max.jdwp.maxine;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -173,7 +174,15 @@ public class Main {
         vmAccess.getAllReferenceTypes();
 
         LOGGER.info("Creating JDWP server");
-        final JDWPServer server = new JDWPServer();
+        final JDWPServer server = new JDWPServer(new JDWPServer.VMLock() {
+            public void lock() {
+                vm.lock();
+            }
+
+            public void unlock() {
+                vm.unlock();
+            }
+        });
 
         final JDWPSession session = new JDWPSession(vmAccess);
 
@@ -195,19 +204,22 @@ public class Main {
         try {
 
             final Integer firstPort = portOption.getValue();
-            ServerSocket serverSocket = null;
+            ServerSocketChannel serverChannel = null;
             final int lastPort = firstPort + PORT_RANGE_LENGTH - 1;
-            for (int port = firstPort; serverSocket == null && port <= lastPort; ++port) {
+            for (int port = firstPort; serverChannel == null && port <= lastPort; ++port) {
+                final ServerSocketChannel channel = ServerSocketChannel.open();
                 try {
-                    serverSocket = new ServerSocket(port);
+                    channel.socket().bind(new InetSocketAddress(port));
+                    serverChannel = channel;
                 } catch (IOException ioException) {
+                    channel.close();
                     LOGGER.info("Could not open socket on port " + port);
                 }
             }
 
-            if (serverSocket != null) {
-                System.out.println("Listening for connections on port " + serverSocket.getLocalPort() + "...");
-                server.start(serverSocket);
+            if (serverChannel != null) {
+                System.out.println("Listening for connections on port " + serverChannel.socket().getLocalPort() + "...");
+                server.start(serverChannel);
             } else {
                 System.out.println("Could not open a server socket on any port between " + firstPort + " and " + lastPort);
             }
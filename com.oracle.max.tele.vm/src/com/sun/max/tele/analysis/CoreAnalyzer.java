@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2007, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.tele.analysis;
+
+import java.io.*;
+import java.util.*;
+
+import com.sun.max.program.*;
+import com.sun.max.program.option.*;
+import com.sun.max.tele.*;
+import com.sun.max.tele.TeleVM.Options;
+import com.sun.max.tele.analysis.HeapSnapshot.ClassInfo;
+import com.sun.max.vm.hosted.*;
+
+/**
+ * Command line tool that reports on a VM through the same {@link TeleVM} machinery as the Inspector, but with no display,
+ * for triage of core dumps on servers. Each report is written as soon as it is computed:
+ * <ul>
+ * <li>{@code histogram}: instance count and bytes by class, largest first;</li>
+ * <li>{@code dominators}: the objects that retain the most memory, according to the dominator tree of the object graph
+ * rooted at the boot and immortal heaps and, conservatively, at the thread stacks and thread locals;</li>
+ * <li>{@code threads}: the stack of each thread;</li>
+ * <li>{@code code}: the regions of the code cache, and optionally the compilations in each.</li>
+ * </ul>
+ * The VM is selected with the usual Inspector options, e.g. {@code -mode=attach -target=file -location=core} for a core dump,
+ * or {@code -mode=image} for the boot image alone.
+ */
+public final class CoreAnalyzer {
+
+    private static final int TRACE_VALUE = 1;
+    private static final String tracePrefix = "[CoreAnalyzer] ";
+
+    private final TeleVM vm;
+    private final PrintStream out;
+
+    private CoreAnalyzer(TeleVM vm, PrintStream out) {
+        this.vm = vm;
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        final Options options = new Options();
+        Trace.addTo(options);
+        final Option<Boolean> helpOption = options.newBooleanOption("help", false, "Show help message and exits.");
+        final Option<List<String>> reportsOption = options.newStringListOption("reports", "histogram,dominators,threads,code",
+            "Reports to produce: histogram | dominators | threads | code.");
+        final Option<Integer> histogramOption = options.newIntegerOption("histogram-limit", 100,
+            "Maximum number of classes in the histogram, 0 for all.");
+        final Option<Integer> topOption = options.newIntegerOption("top", 20,
+            "Number of objects reported by retained size.");
+        final Option<Integer> stackDepthOption = options.newIntegerOption("stack-depth", 64,
+            "Maximum number of frames reported per thread.");
+        final Option<Boolean> compilationsOption = options.newBooleanOption("compilations", false,
+            "List the compilations in each code cache region.");
+        final Option<Integer> parallelismOption = options.newIntegerOption("parallelism", Runtime.getRuntime().availableProcessors(),
+            "Number of heap regions walked in parallel.");
+        final Option<File> outputOption = options.newFileOption("o", (File) null,
+            "File to which the reports are written, instead of standard output.");
+        options.parseArguments(args);
+
+        if (helpOption.getValue()) {
+            options.printHelp(System.out, 80);
+            return;
+        }
+
+        PrintStream out = System.out;
+        try {
+            final TeleVM vm = TeleVM.create(options);
+            final File outputFile = outputOption.getValue();
+            if (outputFile != null) {
+                out = new PrintStream(new BufferedOutputStream(new FileOutputStream(outputFile)));
+            }
+            final CoreAnalyzer analyzer = new CoreAnalyzer(vm, out);
+            final List<String> reports = reportsOption.getValue();
+            if (reports.contains("histogram") || reports.contains("dominators")) {
+                analyzer.heapReports(reports.contains("histogram") ? histogramOption.getValue() : -1,
+                                     reports.contains("dominators") ? topOption.getValue() : -1,
+                                     parallelismOption.getValue());
+            }
+            if (reports.contains("threads")) {
+                analyzer.threadsReport(stackDepthOption.getValue());
+            }
+            if (reports.contains("code")) {
+                analyzer.codeCacheReport(compilationsOption.getValue());
+            }
+        } catch (BootImageException bootImageException) {
+            ProgramError.unexpected("could not load boot image", bootImageException);
+        } catch (InterruptedException interruptedException) {
+            ProgramError.unexpected(tracePrefix + "interrupted", interruptedException);
+        } catch (IOException ioException) {
+            ProgramError.unexpected(tracePrefix + "could not open output file", ioException);
+        } finally {
+            out.flush();
+            if (out != System.out) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Produces the heap reports from one walk of the heap.
+     *
+     * @param histogramLimit maximum number of classes in the histogram, 0 for all, negative for no histogram
+     * @param top number of objects reported by retained size, negative for no report
+     */
+    private void heapReports(int histogramLimit, int top, int parallelism) throws InterruptedException {
+        final List<MaxMemoryRegion> rootRegions = new ArrayList<MaxMemoryRegion>();
+        if (top >= 0) {
+            vm.lock();
+            try {
+                for (MaxThread thread : vm.threadManager().threads()) {
+                    if (thread.stack().memoryRegion() != null) {
+                        rootRegions.add(thread.stack().memoryRegion());
+                    }
+                    if (thread.localsBlock() != null && thread.localsBlock().memoryRegion() != null) {
+                        rootRegions.add(thread.localsBlock().memoryRegion());
+                    }
+                }
+            } finally {
+                vm.unlock();
+            }
+        }
+
+        final long startTimeMillis = System.currentTimeMillis();
+        Trace.begin(TRACE_VALUE, tracePrefix + "walking heap");
+        final HeapSnapshot snapshot = HeapSnapshot.take(vm, parallelism, top >= 0, rootRegions);
+        Trace.end(TRACE_VALUE, tracePrefix + "walking heap", startTimeMillis);
+
+        long totalBytes = 0;
+        for (ClassInfo info : snapshot.classInfos()) {
+            totalBytes += info.bytes();
+        }
+        out.println("Heap: " + snapshot.objectCount() + " objects, " + totalBytes + " bytes, " + snapshot.classInfos().size() + " classes, " +
+                    snapshot.unparsedBytes() + " bytes not parsed as objects");
+        out.println();
+
+        if (histogramLimit >= 0) {
+            final List<ClassInfo> classes = new ArrayList<ClassInfo>(snapshot.classInfos());
+            Collections.sort(classes, new Comparator<ClassInfo>() {
+                public int compare(ClassInfo a, ClassInfo b) {
+                    return a.bytes() > b.bytes() ? -1 : a.bytes() == b.bytes() ? 0 : 1;
+                }
+            });
+            out.println("Class histogram:");
+            out.printf("%6s %12s %14s  %s%n", "rank", "instances", "bytes", "class");
+            final int limit = histogramLimit == 0 ? classes.size() : Math.min(histogramLimit, classes.size());
+            for (int i = 0; i < limit; i++) {
+                final ClassInfo info = classes.get(i);
+                out.printf("%6d %12d %14d  %s%n", i + 1, info.count(), info.bytes(), info.name);
+            }
+            out.println();
+            out.flush();
+        }
+
+        if (top >= 0) {
+            dominatorsReport(snapshot, top);
+        }
+    }
+
+    private void dominatorsReport(HeapSnapshot snapshot, int top) {
+        final long startTimeMillis = System.currentTimeMillis();
+        Trace.begin(TRACE_VALUE, tracePrefix + "computing dominators");
+        final int nodeCount = snapshot.objectCount() + 1;
+        final DominatorTree tree = new DominatorTree(nodeCount, snapshot.successorStarts(), snapshot.successors());
+        final int[] sizes = new int[nodeCount];
+        for (int i = 1; i < nodeCount; i++) {
+            sizes[i] = snapshot.size(i - 1);
+        }
+        final long[] retained = tree.retainedSizes(sizes);
+        Trace.end(TRACE_VALUE, tracePrefix + "computing dominators", startTimeMillis);
+
+        long unreachableCount = 0;
+        long unreachableBytes = 0;
+        // the top objects by retained size, smallest first
+        final PriorityQueue<Integer> largest = new PriorityQueue<Integer>(Math.max(1, top), new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return retained[a] < retained[b] ? -1 : retained[a] == retained[b] ? 0 : 1;
+            }
+        });
+        for (int node = 1; node < nodeCount; node++) {
+            if (!tree.isReachable(node)) {
+                unreachableCount++;
+                unreachableBytes += sizes[node];
+            } else if (top > 0) {
+                if (largest.size() < top) {
+                    largest.add(node);
+                } else if (retained[node] > retained[largest.peek()]) {
+                    largest.poll();
+                    largest.add(node);
+                }
+            }
+        }
+        final List<Integer> nodes = new ArrayList<Integer>(largest);
+        Collections.sort(nodes, Collections.reverseOrder(largest.comparator()));
+
+        out.println("Largest objects by retained size (" + unreachableCount + " objects, " + unreachableBytes + " bytes unreachable):");
+        out.printf("%6s %18s %12s %14s  %s%n", "rank", "origin", "size", "retained", "class");
+        int rank = 1;
+        for (int node : nodes) {
+            out.printf("%6d %18s %12d %14d  %s%n", rank++, "0x" + Long.toHexString(snapshot.origin(node - 1)), sizes[node], retained[node],
+                snapshot.classInfo(node - 1).name);
+        }
+        out.println();
+        out.flush();
+    }
+
+    private void threadsReport(int stackDepth) {
+        vm.lock();
+        try {
+            final List<MaxThread> threads = vm.threadManager().threads();
+            out.println("Threads: " + threads.size());
+            for (MaxThread thread : threads) {
+                out.println("  " + thread.toShortString() + " [" + thread.state() + "]");
+                try {
+                    for (MaxStackFrame frame : thread.stack().frames(stackDepth)) {
+                        out.println("    #" + frame.position() + " " + frame.ip().to0xHexString() + " " + describe(frame));
+                    }
+                } catch (Exception exception) {
+                    out.println("    <stack not available: " + exception + ">");
+                }
+                out.flush();
+            }
+            out.println();
+        } finally {
+            vm.unlock();
+        }
+    }
+
+    private static String describe(MaxStackFrame frame) {
+        final MaxCompilation compilation = frame.compilation();
+        if (compilation != null) {
+            return compilation.entityName();
+        }
+        final MaxMachineCodeRoutine<?> machineCode = frame.machineCode();
+        if (machineCode != null) {
+            return machineCode.entityName();
+        }
+        return "<native>";
+    }
+
+    private void codeCacheReport(boolean listCompilations) {
+        vm.lock();
+        try {
+            out.println("Code cache:");
+            for (MaxCodeCacheRegion region : vm.codeCache().codeCacheRegions()) {
+                final MaxMemoryRegion memoryRegion = region.memoryRegion();
+                out.println("  " + region.entityName() + " " + memoryRegion.start().to0xHexString() + " - " + memoryRegion.end().to0xHexString() +
+                            ", " + memoryRegion.nBytes() + " bytes, " + region.compilationCount() + " compilations");
+                if (listCompilations) {
+                    for (MaxCompilation compilation : region.compilations()) {
+                        out.println("    " + compilation.memoryRegion().start().to0xHexString() + " " + compilation.entityName());
+                    }
+                }
+                out.flush();
+            }
+            out.println();
+        } finally {
+            vm.unlock();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2007, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.tele.analysis;
+
+import java.util.*;
+
+/**
+ * The dominator tree of a graph given as successor lists in compressed form, computed with the algorithm of
+ * Lengauer and Tarjan using path compression. Node {@code 0} is the entry. The depth-first search and the path
+ * compression are iterative, so that graphs with long chains, such as linked lists in a heap, do not overflow the stack.
+ */
+public final class DominatorTree {
+
+    private final int nodeCount;
+    private final int[] successorStarts;
+    private final int[] successors;
+
+    /**
+     * Dominator of each node, -1 for the entry and for nodes not reachable from it.
+     */
+    private final int[] idom;
+
+    /**
+     * Reachable nodes in depth-first order, i.e., each node after its dominator.
+     */
+    private int[] order;
+    private int reachableCount;
+
+    private int[] semi;
+    private int[] vertex;
+    private int[] parent;
+    private int[] ancestor;
+    private int[] label;
+
+    public DominatorTree(int nodeCount, int[] successorStarts, int[] successors) {
+        this.nodeCount = nodeCount;
+        this.successorStarts = successorStarts;
+        this.successors = successors;
+        idom = new int[nodeCount];
+        compute();
+    }
+
+    public int dominator(int node) {
+        return idom[node];
+    }
+
+    public boolean isReachable(int node) {
+        return node == 0 || idom[node] >= 0;
+    }
+
+    /**
+     * Gets the total of {@code sizes} over the nodes that each node dominates, itself included.
+     * Nodes not reachable from the entry retain nothing.
+     */
+    public long[] retainedSizes(int[] sizes) {
+        final long[] retained = new long[nodeCount];
+        for (int i = reachableCount - 1; i > 0; i--) {
+            final int node = order[i];
+            retained[node] += sizes[node];
+            retained[idom[node]] += retained[node];
+        }
+        retained[0] += sizes[0];
+        return retained;
+    }
+
+    private void compute() {
+        semi = new int[nodeCount];
+        vertex = new int[nodeCount + 1];
+        parent = new int[nodeCount];
+        ancestor = new int[nodeCount];
+        label = new int[nodeCount];
+        depthFirstSearch();
+
+        final int[] predecessorStarts = new int[nodeCount + 1];
+        for (int i = 0; i < successorStarts[nodeCount]; i++) {
+            predecessorStarts[successors[i] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            predecessorStarts[i + 1] += predecessorStarts[i];
+        }
+        final int[] predecessors = new int[successorStarts[nodeCount]];
+        final int[] fill = Arrays.copyOf(predecessorStarts, nodeCount);
+        for (int v = 0; v < nodeCount; v++) {
+            for (int i = successorStarts[v]; i < successorStarts[v + 1]; i++) {
+                predecessors[fill[successors[i]]++] = v;
+            }
+        }
+
+        // buckets as linked lists
+        final int[] bucketHead = new int[nodeCount];
+        final int[] bucketNext = new int[nodeCount];
+        Arrays.fill(bucketHead, -1);
+        Arrays.fill(idom, -1);
+
+        for (int i = reachableCount; i >= 2; i--) {
+            final int w = vertex[i];
+            for (int p = predecessorStarts[w]; p < predecessorStarts[w + 1]; p++) {
+                final int v = predecessors[p];
+                if (semi[v] == 0) {
+                    // not reachable
+                    continue;
+                }
+                final int u = eval(v);
+                if (semi[u] < semi[w]) {
+                    semi[w] = semi[u];
+                }
+            }
+            final int s = vertex[semi[w]];
+            bucketNext[w] = bucketHead[s];
+            bucketHead[s] = w;
+            final int pw = parent[w];
+            ancestor[w] = pw;
+            for (int v = bucketHead[pw]; v != -1; v = bucketNext[v]) {
+                final int u = eval(v);
+                idom[v] = semi[u] < semi[v] ? u : pw;
+            }
+            bucketHead[pw] = -1;
+        }
+        for (int i = 2; i <= reachableCount; i++) {
+            final int w = vertex[i];
+            if (idom[w] != vertex[semi[w]]) {
+                idom[w] = idom[idom[w]];
+            }
+        }
+
+        order = new int[reachableCount];
+        for (int i = 0; i < reachableCount; i++) {
+            order[i] = vertex[i + 1];
+        }
+        semi = null;
+        vertex = null;
+        parent = null;
+        ancestor = null;
+        label = null;
+    }
+
+    /**
+     * Numbers the nodes reachable from the entry, from 1, in depth-first order.
+     */
+    private void depthFirstSearch() {
+        final int[] stack = new int[nodeCount];
+        final int[] next = new int[nodeCount];
+        int depth = 0;
+        int n = 0;
+        semi[0] = ++n;
+        vertex[n] = 0;
+        label[0] = 0;
+        ancestor[0] = -1;
+        stack[depth] = 0;
+        next[depth] = successorStarts[0];
+        depth++;
+        while (depth > 0) {
+            final int v = stack[depth - 1];
+            if (next[depth - 1] < successorStarts[v + 1]) {
+                final int w = successors[next[depth - 1]++];
+                if (semi[w] == 0) {
+                    parent[w] = v;
+                    semi[w] = ++n;
+                    vertex[n] = w;
+                    label[w] = w;
+                    ancestor[w] = -1;
+                    stack[depth] = w;
+                    next[depth] = successorStarts[w];
+                    depth++;
+                }
+            } else {
+                depth--;
+            }
+        }
+        reachableCount = n;
+    }
+
+    private int eval(int v) {
+        if (ancestor[v] == -1) {
+            return v;
+        }
+        compress(v);
+        return label[v];
+    }
+
+    private int[] path = new int[16];
+
+    private void compress(int v) {
+        // collect the nodes whose ancestor is not a root of the forest, nearest to v first
+        int length = 0;
+        for (int x = v; ancestor[ancestor[x]] != -1; x = ancestor[x]) {
+            if (length == path.length) {
+                path = Arrays.copyOf(path, length * 2);
+            }
+            path[length++] = x;
+        }
+        // process them from the one nearest to the root of the forest
+        for (int i = length - 1; i >= 0; i--) {
+            final int x = path[i];
+            final int a = ancestor[x];
+            if (semi[label[a]] < semi[label[x]]) {
+                label[x] = label[a];
+            }
+            ancestor[x] = ancestor[a];
+        }
+    }
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2007, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.tele.analysis;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.sun.max.tele.*;
+import com.sun.max.tele.data.*;
+import com.sun.max.tele.object.*;
+import com.sun.max.tele.object.TeleObject.ObjectKind;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.layout.*;
+import com.sun.max.vm.layout.Layout.HeaderField;
+import com.sun.max.vm.type.*;
+
+/**
+ * A compact snapshot of the objects in the heap regions of the VM, taken by walking the regions in parallel.
+ *
+ * The walk reads object headers directly through the VM's {@link DataAccess}, so apart from the first object seen with
+ * each hub, which is used to describe the class, no {@link TeleObject}s are created. Each object is recorded as its
+ * origin, size and class in parallel arrays, and, if requested, with its outgoing references, which form a graph in
+ * which node {@code 0} stands for the roots and node {@code i} for object {@code i - 1}. Memory that cannot be parsed
+ * as an object, such as the unallocated end of a region, is skipped a word at a time and counted.
+ */
+public final class HeapSnapshot extends AbstractVmHolder {
+
+    /**
+     * The objects in the snapshot with a given hub.
+     */
+    public static final class ClassInfo {
+        public final int id;
+        public final String name;
+        final ObjectKind kind;
+        final int tupleSize;
+        final Kind<?> componentKind;
+        /**
+         * Offsets from the origin of the reference fields of a tuple or hybrid.
+         */
+        final int[] referenceOffsets;
+        long count;
+        long bytes;
+
+        ClassInfo(int id, String name, ObjectKind kind, int tupleSize, Kind<?> componentKind, int[] referenceOffsets) {
+            this.id = id;
+            this.name = name;
+            this.kind = kind;
+            this.tupleSize = tupleSize;
+            this.componentKind = componentKind;
+            this.referenceOffsets = referenceOffsets;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+    }
+
+    private static final class LongList {
+        long[] values = new long[1024];
+        int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[1024];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * The objects found in one heap region.
+     */
+    private final class RegionScan implements Callable<RegionScan> {
+        final MaxHeapRegion region;
+        final boolean root;
+        final LongList origins = new LongList();
+        final IntList sizes = new IntList();
+        final IntList classIds = new IntList();
+        final IntList referenceCounts = new IntList();
+        final LongList references = new LongList();
+        long unparsedBytes;
+
+        RegionScan(MaxHeapRegion region, boolean root) {
+            this.region = region;
+            this.root = root;
+        }
+
+        public RegionScan call() {
+            final MaxMemoryRegion memoryRegion = region.memoryRegion();
+            Address end = memoryRegion.mark();
+            if (end.isZero() || end.greaterThan(memoryRegion.end())) {
+                end = memoryRegion.end();
+            }
+            Address cell = memoryRegion.start();
+            while (cell.lessThan(end)) {
+                final Pointer origin = Layout.generalLayout().cellToOrigin(cell.asPointer());
+                final int referencesSize = references.size;
+                int size = 0;
+                try {
+                    final ClassInfo info = classOf(access.readWord(origin.plus(hubOffset)).asAddress().toLong(), origin);
+                    if (info != null) {
+                        size = sizeOf(info, origin);
+                        if (size > 0 && !cell.plus(size).greaterThan(end)) {
+                            // the references are read first, so that the object is only recorded once it has been read completely
+                            final int referenceCount = withReferences ? addReferences(info, origin) : 0;
+                            origins.add(origin.toLong());
+                            sizes.add(size);
+                            classIds.add(info.id);
+                            if (withReferences) {
+                                referenceCounts.add(referenceCount);
+                            }
+                        } else {
+                            size = 0;
+                        }
+                    }
+                } catch (DataIOError dataIOError) {
+                    // drop the references of an object that could not be read completely
+                    references.size = referencesSize;
+                    // skip the rest of the page
+                    final Address next = cell.plus(pageSize).alignDown(pageSize);
+                    unparsedBytes += next.minus(cell).toLong();
+                    cell = next;
+                    continue;
+                }
+                if (size == 0) {
+                    size = wordSize;
+                    unparsedBytes += wordSize;
+                }
+                cell = cell.plus(size);
+            }
+            return this;
+        }
+
+        private int addReferences(ClassInfo info, Pointer origin) {
+            int count = 0;
+            if (info.kind == ObjectKind.ARRAY) {
+                if (info.componentKind.isReference) {
+                    final int length = readLength(origin, arrayLengthOffset);
+                    Pointer element = origin.plus(referenceArrayBase);
+                    for (int i = 0; i < length; i++) {
+                        count += addReference(element);
+                        element = element.plus(wordSize);
+                    }
+                }
+            } else {
+                for (int offset : info.referenceOffsets) {
+                    count += addReference(origin.plus(offset));
+                }
+            }
+            return count;
+        }
+
+        private int addReference(Pointer address) {
+            final long reference = access.readWord(address).asAddress().toLong();
+            if (reference == 0) {
+                return 0;
+            }
+            references.add(reference);
+            return 1;
+        }
+    }
+
+    private final DataAccess access;
+    private final boolean withReferences;
+    private final int wordSize;
+    private final int pageSize;
+    private final int hubOffset;
+    private final int arrayLengthOffset;
+    private final int hybridLengthOffset;
+    private final int referenceArrayBase;
+
+    private final ConcurrentHashMap<Long, ClassInfo> hubToClass = new ConcurrentHashMap<Long, ClassInfo>();
+    private final List<ClassInfo> classes = new ArrayList<ClassInfo>();
+
+    private long[] origins;
+    private int[] sizes;
+    private int[] classIds;
+    private int[] successorStarts;
+    private int[] successors;
+    private long unparsedBytes;
+
+    private HeapSnapshot(TeleVM vm, boolean withReferences) {
+        super(vm);
+        this.access = vm.memoryIO().access();
+        this.withReferences = withReferences;
+        wordSize = vm.platform().nBytesInWord();
+        pageSize = vm.platform().nBytesInPage();
+        hubOffset = Layout.generalLayout().getOffsetFromOrigin(HeaderField.HUB).toInt();
+        arrayLengthOffset = Layout.arrayLayout().arrayLengthOffset();
+        hybridLengthOffset = Layout.hybridLayout().arrayLengthOffset();
+        referenceArrayBase = Layout.referenceArrayLayout().getElementOffsetFromOrigin(0).toInt();
+    }
+
+    /**
+     * Walks the heap regions of the VM, which must not change during the walk, e.g., because it is a core dump.
+     *
+     * @param parallelism the number of regions walked at the same time
+     * @param withReferences record the references between objects, for {@link #successors()}
+     * @param rootRegions memory, other than the boot and immortal heaps, that is scanned conservatively for references to objects
+     *            that are then taken to be roots, e.g., thread stacks
+     */
+    public static HeapSnapshot take(TeleVM vm, int parallelism, boolean withReferences, List<MaxMemoryRegion> rootRegions) throws InterruptedException {
+        final HeapSnapshot snapshot = new HeapSnapshot(vm, withReferences);
+        snapshot.walk(Math.max(1, parallelism), rootRegions);
+        return snapshot;
+    }
+
+    private void walk(int parallelism, List<MaxMemoryRegion> rootRegions) throws InterruptedException {
+        final List<MaxHeapRegion> regions = new ArrayList<MaxHeapRegion>();
+        for (MaxHeapRegion region : heap().heapRegions()) {
+            if (region.memoryRegion() != null && region.memoryRegion().isAllocated()) {
+                regions.add(region);
+            }
+        }
+        Collections.sort(regions, new Comparator<MaxHeapRegion>() {
+            public int compare(MaxHeapRegion a, MaxHeapRegion b) {
+                final long aStart = a.memoryRegion().start().toLong();
+                final long bStart = b.memoryRegion().start().toLong();
+                return aStart < bStart ? -1 : aStart == bStart ? 0 : 1;
+            }
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        final List<RegionScan> scans = new ArrayList<RegionScan>();
+        try {
+            final List<Future<RegionScan>> futures = new ArrayList<Future<RegionScan>>();
+            for (MaxHeapRegion region : regions) {
+                final boolean root = region == heap().bootHeapRegion() || region == heap().immortalHeapRegion();
+                futures.add(executor.submit(new RegionScan(region, root)));
+            }
+            for (Future<RegionScan> future : futures) {
+                scans.add(future.get());
+            }
+        } catch (ExecutionException executionException) {
+            throw new RuntimeException(executionException.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int count = 0;
+        for (RegionScan scan : scans) {
+            count += scan.origins.size;
+            unparsedBytes += scan.unparsedBytes;
+        }
+        origins = new long[count];
+        sizes = new int[count];
+        classIds = new int[count];
+        int index = 0;
+        for (RegionScan scan : scans) {
+            System.arraycopy(scan.origins.values, 0, origins, index, scan.origins.size);
+            System.arraycopy(scan.sizes.values, 0, sizes, index, scan.sizes.size);
+            System.arraycopy(scan.classIds.values, 0, classIds, index, scan.classIds.size);
+            index += scan.origins.size;
+        }
+        for (int i = 0; i < count; i++) {
+            final ClassInfo info = classes.get(classIds[i]);
+            info.count++;
+            info.bytes += sizes[i];
+        }
+        if (withReferences) {
+            buildGraph(scans, rootRegions);
+        }
+    }
+
+    /**
+     * Converts the references found by the scans into edges between object indices, dropping those that are not to
+     * the origin of an object in the snapshot, and adds the edges from the roots.
+     */
+    private void buildGraph(List<RegionScan> scans, List<MaxMemoryRegion> rootRegions) {
+        final IntList edges = new IntList();
+        final int count = origins.length;
+        successorStarts = new int[count + 2];
+
+        // node 0: the roots
+        int objectIndex = 0;
+        for (RegionScan scan : scans) {
+            if (scan.root) {
+                for (int i = 0; i < scan.origins.size; i++) {
+                    edges.add(objectIndex + i + 1);
+                }
+            }
+            objectIndex += scan.origins.size;
+        }
+        for (MaxMemoryRegion region : rootRegions) {
+            Address address = region.start().alignUp(wordSize);
+            while (address.plus(wordSize).lessEqual(region.end())) {
+                try {
+                    final int target = indexOf(access.readWord(address).asAddress().toLong());
+                    if (target >= 0) {
+                        edges.add(target + 1);
+                    }
+                    address = address.plus(wordSize);
+                } catch (DataIOError dataIOError) {
+                    address = address.plus(pageSize).alignDown(pageSize);
+                }
+            }
+        }
+
+        // nodes 1..count: the objects
+        int node = 1;
+        for (RegionScan scan : scans) {
+            int referenceIndex = 0;
+            for (int i = 0; i < scan.origins.size; i++) {
+                successorStarts[node++] = edges.size;
+                final int referenceEnd = referenceIndex + scan.referenceCounts.values[i];
+                for (; referenceIndex < referenceEnd; referenceIndex++) {
+                    final int target = indexOf(scan.references.values[referenceIndex]);
+                    if (target >= 0) {
+                        edges.add(target + 1);
+                    }
+                }
+            }
+        }
+        successorStarts[node] = edges.size;
+        successors = Arrays.copyOf(edges.values, edges.size);
+    }
+
+    /**
+     * Gets the index of the object with a given origin, or -1 if there is none.
+     */
+    public int indexOf(long origin) {
+        final int index = Arrays.binarySearch(origins, origin);
+        return index >= 0 ? index : -1;
+    }
+
+    private ClassInfo classOf(long hub, Pointer origin) {
+        if (hub == 0 || (hub & (wordSize - 1)) != 0) {
+            return null;
+        }
+        final ClassInfo info = hubToClass.get(hub);
+        if (info != null) {
+            return info;
+        }
+        if (!heap().contains(Address.fromLong(hub))) {
+            return null;
+        }
+        return resolve(hub, origin);
+    }
+
+    /**
+     * Describes the class of the objects with a given hub, using the object at {@code origin}.
+     */
+    private synchronized ClassInfo resolve(long hub, Pointer origin) {
+        ClassInfo info = hubToClass.get(hub);
+        if (info != null || !objects().isPlausibleOriginUnsafe(origin)) {
+            return info;
+        }
+        final TeleObject object = objects().findAnyObjectAt(origin);
+        if (object == null) {
+            return null;
+        }
+        final ClassActor classActor = object.classActorForObjectType();
+        final ObjectKind kind = object.kind();
+        if (classActor == null || kind == null) {
+            return null;
+        }
+        final boolean isStatic = object instanceof TeleStaticTuple;
+        String name = classActor.typeDescriptor.toJavaString();
+        int tupleSize = 0;
+        Kind<?> componentKind = null;
+        int[] referenceOffsets = null;
+        if (kind == ObjectKind.ARRAY) {
+            componentKind = classActor.componentClassActor().kind;
+        } else {
+            if (kind == ObjectKind.TUPLE) {
+                final MaxMemoryRegion memoryRegion = object.objectMemoryRegion();
+                if (memoryRegion == null) {
+                    return null;
+                }
+                tupleSize = (int) memoryRegion.nBytes();
+            }
+            referenceOffsets = referenceOffsets(classActor, isStatic);
+        }
+        if (isStatic) {
+            name = name + " (statics)";
+        }
+        info = new ClassInfo(classes.size(), name, kind, tupleSize, componentKind, referenceOffsets);
+        classes.add(info);
+        hubToClass.put(hub, info);
+        return info;
+    }
+
+    private static int[] referenceOffsets(ClassActor classActor, boolean isStatic) {
+        final IntList offsets = new IntList();
+        if (isStatic) {
+            for (FieldActor fieldActor : classActor.localStaticFieldActors()) {
+                if (fieldActor.kind.isReference) {
+                    offsets.add(fieldActor.offset());
+                }
+            }
+        } else {
+            for (ClassActor c = classActor; c != null; c = c.superClassActor) {
+                for (FieldActor fieldActor : c.localInstanceFieldActors()) {
+                    if (fieldActor.kind.isReference) {
+                        offsets.add(fieldActor.offset());
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(offsets.values, offsets.size);
+    }
+
+    private int readLength(Pointer origin, int lengthOffset) {
+        return access.readWord(origin.plus(lengthOffset)).asAddress().toInt();
+    }
+
+    private int sizeOf(ClassInfo info, Pointer origin) {
+        switch (info.kind) {
+            case TUPLE:
+                return info.tupleSize;
+            case ARRAY: {
+                final int length = readLength(origin, arrayLengthOffset);
+                return length < 0 ? 0 : Layout.getArraySize(info.componentKind, length).toInt();
+            }
+            case HYBRID: {
+                final int length = readLength(origin, hybridLengthOffset);
+                return length < 0 ? 0 : Layout.hybridLayout().getArraySize(length).toInt();
+            }
+        }
+        return 0;
+    }
+
+    public int objectCount() {
+        return origins.length;
+    }
+
+    public long origin(int index) {
+        return origins[index];
+    }
+
+    public int size(int index) {
+        return sizes[index];
+    }
+
+    public ClassInfo classInfo(int index) {
+        return classes.get(classIds[index]);
+    }
+
+    public List<ClassInfo> classInfos() {
+        return classes;
+    }
+
+    /**
+     * Gets the number of bytes in the heap regions that could not be parsed as objects.
+     */
+    public long unparsedBytes() {
+        return unparsedBytes;
+    }
+
+    /**
+     * Gets the start of the successors of each node in {@link #successors()}, indexed by node, with a final entry
+     * for the end; {@code null} if references were not recorded.
+     */
+    public int[] successorStarts() {
+        return successorStarts;
+    }
+
+    public int[] successors() {
+        return successors;
+    }
+}
@@ -45,6 +45,17 @@ public interface TeleChannelProtocol extends TeleChannelDataIOProtocol {
      * @return the number of bytes actually read
      */
     int readBytes(long src, ByteBuffer dst, int dstOffset, int length);
+    /**
+     * Reads a number of ranges from the target VM in one request, which can be much cheaper than a call to
+     * {@link #readBytes(long, ByteBuffer, int, int)} for each range. Reading stops at the first range
+     * that cannot be read in full, e.g., because it is not mapped.
+     * @param src virtual addresses to read from
+     * @param dst buffers to write to, starting at offset 0 in each
+     * @param length number of bytes to read for each range
+     * @param count number of ranges
+     * @return the number of leading ranges that were read in full
+     */
+    int readBytesBatch(long[] src, ByteBuffer[] dst, int[] length, int count);
     /**
      * Writes bytes from a (likely direct) {@link java.nio.ByteBuffer} to the target VM.
      * @param dst virtual address to write to
@@ -24,6 +24,7 @@ package com.sun.max.tele.channel;
 
 import java.nio.*;
 
+import com.sun.max.tele.data.*;
 import com.sun.max.unsafe.*;
 
 /**
@@ -54,6 +55,22 @@ public class TeleChannelTransferBytes {
         return length;
     }
 
+    /**
+     * Implements {@link TeleChannelProtocol#readBytesBatch} with a read per range, for protocols that have no better way.
+     */
+    public static int readBytesBatch(TeleChannelProtocol protocol, long[] src, ByteBuffer[] dst, int[] length, int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                if (readBytes(protocol, dst[i], 0, length[i], Address.fromLong(src[i])) != length[i]) {
+                    return i;
+                }
+            } catch (DataIOError dataIOError) {
+                return i;
+            }
+        }
+        return count;
+    }
+
     public static int writeBytes(TeleChannelProtocol protocol, ByteBuffer src, int offset, int length, Address address) {
         int lengthLeft = length;
         int localOffset = offset;
@@ -55,6 +55,11 @@ public abstract class TeleChannelDataIOProtocolAdaptor extends TeleChannelDataIO
         return result;
     }
 
+    @Override
+    public int readBytesBatch(long[] src, ByteBuffer[] dst, int[] length, int count) {
+        return TeleChannelTransferBytes.readBytesBatch(this, src, dst, length, count);
+    }
+
     @Override
     public int writeBytes(long dst, ByteBuffer src, int srcOffset, int length) {
         byte[] bytes;
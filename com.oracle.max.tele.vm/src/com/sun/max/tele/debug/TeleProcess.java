@@ -748,6 +748,20 @@ public abstract class TeleProcess extends AbstractVmHolder implements TeleVMCach
         return bytesRead;
     }
 
+    /**
+     * Reads a number of ranges of process memory in one request. Nothing is read unless the process is stopped,
+     * as this is only used to read ahead of demand.
+     */
+    public final int readBatch(long[] addresses, ByteBuffer[] buffers, int[] lengths, int count) throws TerminatedProcessIOException {
+        if (processState == TERMINATED) {
+            throw new TerminatedProcessIOException("Batched memory read (process TERMINATED)");
+        }
+        if (processState != STOPPED && processState != null && Thread.currentThread() != requestHandlingThread) {
+            return 0;
+        }
+        return readBatch0(addresses, buffers, lengths, count);
+    }
+
     public final int write(ByteBuffer buffer, int offset, int length, Address address) throws DataIOError, IndexOutOfBoundsException, TerminatedProcessIOException {
         if (processState == TERMINATED) {
             final StringBuilder msg = new StringBuilder();
@@ -1054,6 +1068,26 @@ public abstract class TeleProcess extends AbstractVmHolder implements TeleVMCach
      */
     protected abstract int read0(Address address, ByteBuffer buffer, int offset, int length);
 
+    /**
+     * Reads a number of ranges of process memory, platform-specific implementation.
+     * The default reads each range with {@link #read0}.
+     *
+     * @return the number of leading ranges that were read in full
+     * @see #readBatch(long[], ByteBuffer[], int[], int)
+     */
+    protected int readBatch0(long[] addresses, ByteBuffer[] buffers, int[] lengths, int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                if (read0(Address.fromLong(addresses[i]), buffers[i], 0, lengths[i]) != lengths[i]) {
+                    return i;
+                }
+            } catch (DataIOError dataIOError) {
+                return i;
+            }
+        }
+        return count;
+    }
+
 
     /**
      * Writes bytes to process memory, platform-specific implementation.
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2007, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.tele.debug.dump;
+
+import java.nio.*;
+
+import com.oracle.max.elf.*;
+import com.oracle.max.elf.ELFSegmentMap.UnmappedAddressException;
+import com.sun.max.lang.*;
+import com.sun.max.program.*;
+import com.sun.max.tele.data.*;
+import com.sun.max.unsafe.*;
+
+/**
+ * Data access to the memory in an ELF core dump, read directly from the {@linkplain ELFSegmentMap memory mapped}
+ * segments of the dump file. The contents of a dump never change, so there is nothing to cache or refresh
+ * and, unlike {@link com.sun.max.tele.page.PageDataAccess}, no copy is made of the memory that is read.
+ * Writes are ignored, as they are by {@link ELFDumpTeleChannelProtocolAdaptor#writeBytes}.
+ */
+public final class ELFDumpDataAccess extends DataAccessAdapter {
+
+    private final ELFSegmentMap segmentMap;
+
+    public ELFDumpDataAccess(ELFSegmentMap segmentMap, WordWidth wordWidth) {
+        super(wordWidth, segmentMap.byteOrder());
+        this.segmentMap = segmentMap;
+    }
+
+    public int read(Address src, ByteBuffer dst, int dstOffset, int length) throws DataIOError {
+        final int toRead = Math.min(length, dst.limit() - dstOffset);
+        final int n = segmentMap.read(src.toLong(), dst, dstOffset, toRead);
+        if (n < toRead) {
+            throw new DataIOError(src.plus(n));
+        }
+        return n;
+    }
+
+    public byte readByte(Address address) {
+        try {
+            return segmentMap.getByte(address.toLong());
+        } catch (UnmappedAddressException e) {
+            throw new DataIOError(Address.fromLong(e.address));
+        }
+    }
+
+    public short readShort(Address address) {
+        try {
+            return segmentMap.getShort(address.toLong());
+        } catch (UnmappedAddressException e) {
+            throw new DataIOError(Address.fromLong(e.address));
+        }
+    }
+
+    public int readInt(Address address) {
+        try {
+            return segmentMap.getInt(address.toLong());
+        } catch (UnmappedAddressException e) {
+            throw new DataIOError(Address.fromLong(e.address));
+        }
+    }
+
+    public long readLong(Address address) {
+        try {
+            return segmentMap.getLong(address.toLong());
+        } catch (UnmappedAddressException e) {
+            throw new DataIOError(Address.fromLong(e.address));
+        }
+    }
+
+    private static int ignoreWrite(Address address, int length) {
+        Trace.line(2, "WARNING: Inspector trying to write to " + address.toHexString());
+        return length;
+    }
+
+    public int write(ByteBuffer src, int srcOffset, int length, Address dst) throws DataIOError {
+        return ignoreWrite(dst, length);
+    }
+
+    public void writeByte(Address address, byte value) {
+        ignoreWrite(address, 1);
+    }
+
+    public void writeShort(Address address, short value) {
+        ignoreWrite(address, 2);
+    }
+
+    public void writeInt(Address address, int value) {
+        ignoreWrite(address, 4);
+    }
+
+    public void writeLong(Address address, long value) {
+        ignoreWrite(address, 8);
+    }
+}
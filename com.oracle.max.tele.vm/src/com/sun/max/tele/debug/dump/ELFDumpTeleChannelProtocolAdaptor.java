@@ -25,6 +25,7 @@ package com.sun.max.tele.debug.dump;
 import static com.oracle.max.elf.ELFProgramHeaderTable.*;
 
 import java.io.*;
+import java.nio.*;
 
 import com.oracle.max.elf.*;
 import com.sun.max.program.*;
@@ -45,6 +46,7 @@ public class ELFDumpTeleChannelProtocolAdaptor extends TeleChannelDataIOProtocol
     protected ELFHeader header;
     protected ELFProgramHeaderTable programHeaderTable;
     protected ELFSymbolLookup symbolLookup;
+    protected ELFSegmentMap segmentMap;
     protected MaxVM teleVM;
     protected static final String HEAP_SYMBOL_NAME = "theHeap";  // defined in image.c, holds the base address of the boot heap
 
@@ -58,6 +60,7 @@ public class ELFDumpTeleChannelProtocolAdaptor extends TeleChannelDataIOProtocol
             dumpRaf = new RandomAccessFile(dump, "r");
             this.header = ELFLoader.readELFHeader(dumpRaf);
             this.programHeaderTable = ELFLoader.readPHT(dumpRaf, header);
+            this.segmentMap = new ELFSegmentMap(dumpRaf, header, programHeaderTable);
             // This is not needed currently as we cannot look up symbols from shared libraries.
             //symbolLookup = new ELFSymbolLookup(new File(vm.getParent(), "libjvm.so"));
         } catch (Exception ex) {
@@ -65,6 +68,13 @@ public class ELFDumpTeleChannelProtocolAdaptor extends TeleChannelDataIOProtocol
         }
     }
 
+    /**
+     * The memory mapped loadable segments of the dump, through which all memory is read.
+     */
+    public ELFSegmentMap segmentMap() {
+        return segmentMap;
+    }
+
     @Override
     public boolean initialize(int tlaSize, boolean bigEndian) {
         this.tlaSize = tlaSize;
@@ -243,17 +253,12 @@ public class ELFDumpTeleChannelProtocolAdaptor extends TeleChannelDataIOProtocol
 
     @Override
     public int readBytes(long src, byte[] dst, int dstOffset, int length) {
-        final ELFProgramHeaderTable.Entry64 entry64 = findAddress(src);
-        if (entry64 == null) {
-            return 0;
-        }
-        try {
-            dumpRaf.seek(entry64.p_offset + (src - entry64.p_vaddr));
-            return dumpRaf.read(dst, dstOffset, length);
-        } catch (IOException ex) {
-            return 0;
-        }
+        return segmentMap.read(src, dst, dstOffset, length);
+    }
 
+    @Override
+    public int readBytes(long src, ByteBuffer dst, int dstOffset, int length) {
+        return segmentMap.read(src, dst, dstOffset, length);
     }
 
     @Override
@@ -89,6 +89,16 @@ public class LinuxNativeTeleChannelProtocol extends UnixNativeTeleChannelProtoco
         return leaderTask.readBytes(src, dst.array(), false, dst.arrayOffset() + dstOffset, length);
     }
 
+    @Override
+    public int readBytesBatch(long[] src, ByteBuffer[] dst, int[] length, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!dst[i].isDirect()) {
+                return super.readBytesBatch(src, dst, length, count);
+            }
+        }
+        return leaderTask.readBytesBatch(src, dst, length, count);
+    }
+
     @Override
     public int writeBytes(long dst, byte[] src, int srcOffset, int length) {
         return leaderTask.writeBytes(dst, src, false, srcOffset, length);
@@ -353,6 +353,29 @@ public final class LinuxTask {
         });
     }
 
+    /**
+     * Copies a number of ranges from the tele process into {@linkplain ByteBuffer#isDirect() direct ByteBuffers},
+     * using {@code process_vm_readv(2)} where available.
+     *
+     * @param src the addresses in the tele process to copy from
+     * @param dst the destinations of the copy operation, written from offset 0
+     * @param length the number of bytes to copy for each range
+     * @param count the number of ranges
+     * @return the number of leading ranges that were copied in full
+     */
+    private static native int nativeReadBytesBatch(int tgid, int tid, long[] src, ByteBuffer[] dst, int[] length, int count);
+
+    public int readBytesBatch(final long[] src, final ByteBuffer[] dst, final int[] length, final int count) {
+        if (!isLeader()) {
+            return leader().readBytesBatch(src, dst, length, count);
+        }
+        return execute(new Function<Integer>() {
+            public Integer call() throws Exception {
+                return nativeReadBytesBatch(tgid, tid, src, dst, length, count);
+            }
+        });
+    }
+
     /**
      * Copies bytes from a given {@linkplain ByteBuffer#isDirect() direct ByteBuffer} or byte array into the tele process.
      *
@@ -184,6 +184,12 @@ public class ReadOnlyTeleChannelProtocol implements TeleChannelProtocol {
         return 0;
     }
 
+    @Override
+    public int readBytesBatch(long[] src, ByteBuffer[] dst, int[] length, int count) {
+        unexpected();
+        return 0;
+    }
+
     @Override
     public int writeBytes(long dst, ByteBuffer src, int srcOffset, int length) {
         unexpected();
@@ -214,6 +214,11 @@ public class UnixNativeTeleChannelProtocolAdaptor implements TeleChannelProtocol
         return natives.readBytes(processHandle, src, dst.array(), false, dst.arrayOffset() + dstOffset, length);
     }
 
+    @Override
+    public int readBytesBatch(long[] src, ByteBuffer[] dst, int[] length, int count) {
+        return TeleChannelTransferBytes.readBytesBatch(this, src, dst, length, count);
+    }
+
     @Override
     public int writeBytes(long dst, ByteBuffer src, int srcOffset, int length) {
         if (src.isDirect()) {
@@ -35,6 +35,7 @@ import com.sun.max.tele.*;
 import com.sun.max.tele.channel.*;
 import com.sun.max.tele.data.*;
 import com.sun.max.tele.debug.*;
+import com.sun.max.tele.debug.dump.*;
 import com.sun.max.tele.page.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
@@ -53,7 +54,11 @@ public abstract class UnixTeleProcessAdaptor extends TeleProcess {
     private UnixTeleProcessAdaptor(TeleVM teleVM, Platform platform, File programFile, String[] commandLineArguments, int id) throws BootImageException {
         super(teleVM, platform, ProcessState.STOPPED);
         protocol = TeleVM.teleChannelProtocol();
-        dataAccess = new PageDataAccess(teleVM, this, platform.dataModel);
+        if (protocol instanceof ELFDumpTeleChannelProtocolAdaptor) {
+            dataAccess = new ELFDumpDataAccess(((ELFDumpTeleChannelProtocolAdaptor) protocol).segmentMap(), platform.dataModel.wordWidth);
+        } else {
+            dataAccess = new PageDataAccess(teleVM, this, platform.dataModel);
+        }
         protocol.initialize(teleVM.bootImage().header.tlaSize, platform().endianness() == Endianness.BIG ? true : false);
         if (commandLineArguments != null) {
             final long processHandle = protocol.create(programFile.getAbsolutePath(), commandLineArguments);
@@ -128,6 +133,11 @@ public abstract class UnixTeleProcessAdaptor extends TeleProcess {
         return TeleChannelTransferBytes.readBytes(protocol, dst, offset, length, src);
     }
 
+    @Override
+    protected int readBatch0(long[] src, ByteBuffer[] dst, int[] length, int count) {
+        return protocol.readBytesBatch(src, dst, length, count);
+    }
+
     @Override
     protected int write0(ByteBuffer src, int offset, int length, Address dst) {
         return TeleChannelTransferBytes.writeBytes(protocol, src, offset, length, dst);
@@ -29,7 +29,9 @@ import com.sun.max.*;
 import com.sun.max.lang.*;
 import com.sun.max.program.*;
 import com.sun.max.tele.*;
+import com.sun.max.tele.debug.*;
 import com.sun.max.tele.object.*;
+import com.sun.max.tele.page.*;
 import com.sun.max.tele.util.*;
 import com.sun.max.unsafe.*;
 
@@ -180,6 +182,10 @@ public class VmAddressSpace extends AbstractVmHolder implements MaxAddressSpace
             line.append(": " + memoryRegion.owner().entityName());
             printStream.println(indentation + line.toString());
         }
+        final TeleProcess teleProcess = vm().teleProcess();
+        if (teleProcess != null && teleProcess.dataAccess() instanceof PageDataAccess) {
+            ((PageDataAccess) teleProcess.dataAccess()).printSessionStats(printStream, indent, verbose);
+        }
     }
 
     /**
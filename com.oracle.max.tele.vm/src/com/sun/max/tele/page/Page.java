@@ -54,8 +54,13 @@ public class Page extends AbstractVmHolder {
      */
     private long epoch = -1;
 
-    private final long index;
+    private long index;
 
+    /**
+     * Links in the recency order of the {@link PageCache} holding this page.
+     */
+    Page lruPrev;
+    Page lruNext;
 
     /**
      * The VM epoch the last time we reported a page refresh failure, used to avoid duplicate messages.
@@ -121,6 +126,16 @@ public class Page extends AbstractVmHolder {
         this.buffer = allocate(teleIO, byteOrder, index);
     }
 
+    /**
+     * Creates a page that does not belong to a VM, for testing the {@link PageCache}.
+     */
+    Page(TeleIO teleIO, long index, ByteBuffer buffer) {
+        super(null);
+        this.teleIO = teleIO;
+        this.index = index;
+        this.buffer = buffer;
+    }
+
     /**
      * @return size of the page in bytes.
      */
@@ -135,6 +150,22 @@ public class Page extends AbstractVmHolder {
         return Address.fromLong(index * size());
     }
 
+    /**
+     * @return the index of the page in remote memory, i.e. its address divided by the page size.
+     */
+    public long index() {
+        return index;
+    }
+
+    /**
+     * Reuses this page, and its buffer, for the page at {@code newIndex}; the contents must be read before use.
+     */
+    void reset(long newIndex) {
+        index = newIndex;
+        epoch = -1;
+        lastFailureEpoch = -1;
+    }
+
     /**
      * Mark page contents as needful of refreshing, independent of any prior reads.
      */
@@ -142,6 +173,27 @@ public class Page extends AbstractVmHolder {
         epoch = -1;
     }
 
+    /**
+     * Determines if the contents of this page must be read before use.
+     */
+    public boolean isStale() {
+        return epoch < teleIO.epoch();
+    }
+
+    /**
+     * The buffer into which {@link PageDataAccess} reads the page when reading ahead.
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Records that the {@link #buffer()} has just been filled with the current contents of the remote memory page.
+     */
+    void refreshed() {
+        epoch = teleIO.epoch();
+    }
+
     /**
      * Reads into the cache the contents of the remote memory page.
      *
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2007, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.tele.page;
+
+import java.util.*;
+
+/**
+ * A bounded map from page indices to {@link Page}s that keeps the pages in least recently used order.
+ *
+ * Pages are held in an open addressing hash table keyed by the primitive page index, so a lookup neither boxes
+ * the index nor allocates, and the recency order is a doubly linked list threaded through the pages themselves.
+ * When the cache is full the least recently used page is {@linkplain #evict() evicted}, and is expected to be
+ * reused for the new index, together with its buffer.
+ */
+final class PageCache {
+
+    private static final long FREE = -1L;
+
+    private final int capacity;
+    private final long[] indices;
+    private final Page[] pages;
+    private int size;
+
+    /**
+     * Most recently used page.
+     */
+    private Page head;
+
+    /**
+     * Least recently used page.
+     */
+    private Page tail;
+
+    PageCache(int capacity) {
+        this.capacity = capacity;
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+        indices = new long[tableSize];
+        Arrays.fill(indices, FREE);
+        pages = new Page[tableSize];
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    static int hash(long index) {
+        long h = index * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slot(long index) {
+        final int mask = indices.length - 1;
+        int i = hash(index) & mask;
+        while (true) {
+            final long slotIndex = indices[i];
+            if (slotIndex == index) {
+                return i;
+            } else if (slotIndex == FREE) {
+                return -1;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Returns the page at {@code index}, making it the most recently used, or {@code null} if it is not cached.
+     */
+    Page get(long index) {
+        final int slot = slot(index);
+        if (slot < 0) {
+            return null;
+        }
+        final Page page = pages[slot];
+        if (page != head) {
+            unlink(page);
+            linkFirst(page);
+        }
+        return page;
+    }
+
+    /**
+     * Returns the page at {@code index} without changing the recency order, or {@code null} if it is not cached.
+     */
+    Page peek(long index) {
+        final int slot = slot(index);
+        return slot < 0 ? null : pages[slot];
+    }
+
+    /**
+     * Adds {@code page}, which must not be cached and must have {@link Page#index() index} {@code index},
+     * as the most recently used page. The cache must not be {@linkplain #isFull() full}.
+     */
+    void put(long index, Page page) {
+        assert size < capacity;
+        final int mask = indices.length - 1;
+        int i = hash(index) & mask;
+        while (indices[i] != FREE) {
+            i = (i + 1) & mask;
+        }
+        indices[i] = index;
+        pages[i] = page;
+        size++;
+        linkFirst(page);
+    }
+
+    /**
+     * Removes and returns the least recently used page, or {@code null} if the cache is empty.
+     */
+    Page evict() {
+        final Page page = tail;
+        if (page != null) {
+            unlink(page);
+            remove(slot(page.index()));
+        }
+        return page;
+    }
+
+    /**
+     * Gets the cached pages, from the most to the least recently used.
+     */
+    Page first() {
+        return head;
+    }
+
+    static Page next(Page page) {
+        return page.lruNext;
+    }
+
+    /**
+     * Removes the entry at {@code slot}, shifting back any entries in the same probe sequence.
+     */
+    private void remove(int slot) {
+        final int mask = indices.length - 1;
+        int hole = slot;
+        int i = (slot + 1) & mask;
+        while (indices[i] != FREE) {
+            final int home = hash(indices[i]) & mask;
+            // move the entry at i into the hole unless its home lies cyclically in (hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                indices[hole] = indices[i];
+                pages[hole] = pages[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        indices[hole] = FREE;
+        pages[hole] = null;
+        size--;
+    }
+
+    private void linkFirst(Page page) {
+        page.lruPrev = null;
+        page.lruNext = head;
+        if (head != null) {
+            head.lruPrev = page;
+        }
+        head = page;
+        if (tail == null) {
+            tail = page;
+        }
+    }
+
+    private void unlink(Page page) {
+        final Page prev = page.lruPrev;
+        final Page next = page.lruNext;
+        if (prev == null) {
+            head = next;
+        } else {
+            prev.lruNext = next;
+        }
+        if (next == null) {
+            tail = prev;
+        } else {
+            next.lruPrev = prev;
+        }
+        page.lruPrev = null;
+        page.lruNext = null;
+    }
+}
@@ -22,8 +22,8 @@
  */
 package com.sun.max.tele.page;
 
+import java.io.*;
 import java.nio.*;
-import java.util.*;
 
 import com.sun.max.lang.*;
 import com.sun.max.program.*;
@@ -34,6 +34,11 @@ import com.sun.max.tele.util.*;
 import com.sun.max.unsafe.*;
 
 /**
+ * Access to the memory of the VM through a {@link PageCache} of the pages read from it.
+ * <p>
+ * Every access holds the lock on this object, including copying a value out of a cached page: any read that misses
+ * can evict a page and reuse it, with its buffer, for another index, so no page may be read outside the lock. The
+ * lock is also held while pages are refreshed from the VM.
  */
 public class PageDataAccess extends DataAccessAdapter {
 
@@ -43,11 +48,51 @@ public class PageDataAccess extends DataAccessAdapter {
         return "[PageDataAccess] ";
     }
 
+    /**
+     * The number of pages, including the one being read, that are read with a single
+     * {@linkplain TeleIO#readBatch batched read} when a page has to be refreshed.
+     * The number doubles, up to {@link #MAX_PREFETCH_PAGES}, while the refreshes are sequential.
+     */
+    private static final int prefetchPages = intProperty("max.tele.page.prefetch", 8);
+
+    private static final int MAX_PREFETCH_PAGES = Math.max(prefetchPages, 64);
+
+    /**
+     * The maximum number of pages cached, by default as many as fit in the {@linkplain Page#globalDirectBufferPoolSize
+     * direct buffer pool} if pages are 4K.
+     */
+    private static final int cachePages = intProperty("max.tele.page.cacheSize", (int) (Page.globalDirectBufferPoolSize / 4096));
+
+    private static int intProperty(String name, int defaultValue) {
+        final String value = System.getProperty(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException numberFormatException) {
+                TeleWarning.message("Malformed value for the \"" + name + "\" property", numberFormatException);
+            }
+        }
+        return defaultValue;
+    }
+
     private final TeleVM vm;
     private final TeleIO teleIO;
     private final int indexShift;
     private final int offsetMask;
     private final ByteBuffer writeBuffer;
+    private final PageCache cache;
+
+    /**
+     * The index of the page following the last read ahead, used to detect sequential access.
+     */
+    private long nextSequentialIndex = -1;
+    private int readAheadPages = prefetchPages;
+
+    private long hits;
+    private long misses;
+    private long prefetchedPages;
+    private long evictions;
+    private long batchedReads;
 
     public PageDataAccess(TeleVM vm, TeleIO teleProcess, DataModel dataModel) {
         super(dataModel.wordWidth, dataModel.endianness.asByteOrder());
@@ -57,6 +102,8 @@ public class PageDataAccess extends DataAccessAdapter {
         indexShift = Integer.numberOfTrailingZeros(teleProcess.pageSize());
         offsetMask = teleProcess.pageSize() - 1;
         writeBuffer = ByteBuffer.wrap(new byte[Longs.SIZE]).order(byteOrder);
+        // the pages of a read ahead must not evict each other
+        cache = new PageCache(Math.max(cachePages, 2 * MAX_PREFETCH_PAGES));
     }
 
     public int pageSize() {
@@ -71,29 +118,36 @@ public class PageDataAccess extends DataAccessAdapter {
         return address.toInt() & offsetMask;
     }
 
-    private final HashMap<Long, Page> indexToPage = new HashMap<Long, Page>();
-
     private static void checkNullPointer(Address address) {
         if (address.isZero()) {
             throw new DataIOError(address, "Cannot access address ZERO");
         }
     }
 
-    private void invalidatePage(long index) {
-        final Page page = indexToPage.get(index);
-        if (page != null) {
-            page.invalidate();
-        }
-    }
-
+    /**
+     * Invalidates the cached pages covering a range of remote memory. A range with more pages than are cached
+     * is handled with a single sweep of the cache rather than a lookup per page.
+     */
     public synchronized void invalidate(Address address, Size size) {
         long numberOfPages = getIndex(size);
         if (getOffset(address) + getOffset(size) > pageSize()) {
             numberOfPages++;
         }
         final long startIndex = getIndex(address);
-        for (long index = startIndex; index <= startIndex + numberOfPages; index++) {
-            invalidatePage(index);
+        final long endIndex = startIndex + numberOfPages;
+        if (numberOfPages >= cache.size()) {
+            for (Page page = cache.first(); page != null; page = PageCache.next(page)) {
+                if (page.index() >= startIndex && page.index() <= endIndex) {
+                    page.invalidate();
+                }
+            }
+        } else {
+            for (long index = startIndex; index <= endIndex; index++) {
+                final Page page = cache.peek(index);
+                if (page != null) {
+                    page.invalidate();
+                }
+            }
         }
     }
 
@@ -103,17 +157,94 @@ public class PageDataAccess extends DataAccessAdapter {
     }
 
     private Page getPage(long index) {
-        Page page = indexToPage.get(index);
+        Page page = lookupPage(index);
+        if (page.isStale()) {
+            misses++;
+            if (prefetchPages > 1) {
+                prefetch(index, page);
+            }
+        } else {
+            hits++;
+        }
+        return page;
+    }
+
+    private Page lookupPage(long index) {
+        Page page = cache.get(index);
         if (page == null) {
-            page = new Page(vm, teleIO, index, byteOrder);
-            indexToPage.put(index, page);
-            if ((indexToPage.size() % 1000) == 0) {
-                Trace.line(TRACE_VALUE, tracePrefix() + "Memory cache: " + indexToPage.size() + " pages");
+            if (cache.isFull()) {
+                page = cache.evict();
+                page.reset(index);
+                evictions++;
+            } else {
+                page = new Page(vm, teleIO, index, byteOrder);
+                if (((cache.size() + 1) % 1000) == 0) {
+                    Trace.line(TRACE_VALUE, tracePrefix() + "Memory cache: " + (cache.size() + 1) + " pages");
+                }
             }
+            cache.put(index, page);
         }
         return page;
     }
 
+    /**
+     * Refreshes the stale page {@code first} together with the stale pages that follow it with a single batched read.
+     * The number of pages read ahead grows while refreshes continue where the previous one ended, as when scanning a
+     * region, and drops back to {@link #prefetchPages} otherwise. Pages that cannot be read this way are left stale,
+     * so that the error is reported if and when they are actually accessed.
+     */
+    private void prefetch(long index, Page first) {
+        if (index == nextSequentialIndex) {
+            readAheadPages = Math.min(readAheadPages * 2, MAX_PREFETCH_PAGES);
+        } else {
+            readAheadPages = prefetchPages;
+        }
+        final int limit = readAheadPages;
+        final Page[] pages = new Page[limit];
+        final long[] addresses = new long[limit];
+        final ByteBuffer[] buffers = new ByteBuffer[limit];
+        final int[] lengths = new int[limit];
+        int count = 0;
+        Page page = first;
+        do {
+            pages[count] = page;
+            addresses[count] = page.address().toLong();
+            buffers[count] = page.buffer();
+            lengths[count] = pageSize();
+            count++;
+            if (count == limit) {
+                break;
+            }
+            page = lookupPage(index + count);
+        } while (page.isStale());
+        nextSequentialIndex = index + count;
+        try {
+            final int n = teleIO.readBatch(addresses, buffers, lengths, count);
+            for (int i = 0; i < n; i++) {
+                pages[i].refreshed();
+            }
+            batchedReads++;
+            if (n > 1) {
+                prefetchedPages += n - 1;
+            }
+        } catch (TerminatedProcessIOException e) {
+        }
+    }
+
+    /**
+     * Writes statistics on the use of the page cache.
+     */
+    public synchronized void printSessionStats(PrintStream printStream, int indent, boolean verbose) {
+        final String indentation = Strings.times(' ', indent);
+        final long accesses = hits + misses;
+        printStream.println(indentation + "Page cache: " + cache.size() + "/" + cache.capacity() + " pages of " + pageSize() + " bytes");
+        printStream.println(indentation + "    hits: " + hits + ", misses: " + misses +
+                        (accesses == 0 ? "" : " (" + (hits * 100 / accesses) + "% hits)"));
+        if (verbose) {
+            printStream.println(indentation + "    batched reads: " + batchedReads + ", pages read ahead: " + prefetchedPages + ", evictions: " + evictions);
+        }
+    }
+
     private Page getPage(Address address) {
         return getPage(getIndex(address));
     }
@@ -146,7 +277,7 @@ public class PageDataAccess extends DataAccessAdapter {
         return getPage(address).readInt(getOffset(address));
     }
 
-    public long readLong(Address address) {
+    public synchronized long readLong(Address address) {
         checkNullPointer(address);
         return getPage(address).readLong(getOffset(address));
     }
@@ -22,6 +22,8 @@
  */
 package com.sun.max.tele.page;
 
+import java.nio.*;
+
 import com.sun.max.tele.data.*;
 import com.sun.max.unsafe.*;
 
@@ -40,4 +42,15 @@ public interface TeleIO extends DataIO {
      * @return the number of times the I/O source/destination has been modified.
      */
     long epoch();
+
+    /**
+     * Reads a number of ranges in one request, see {@link com.sun.max.tele.channel.TeleChannelProtocol#readBytesBatch}.
+     *
+     * @param addresses the addresses of the ranges
+     * @param buffers the buffers to read into, starting at offset 0 in each
+     * @param lengths the number of bytes to read for each range
+     * @param count the number of ranges
+     * @return the number of leading ranges that were read in full
+     */
+    int readBatch(long[] addresses, ByteBuffer[] buffers, int[] lengths, int count);
 }
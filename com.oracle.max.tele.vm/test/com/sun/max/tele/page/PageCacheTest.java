@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.tele.page;
+
+import java.util.*;
+
+import junit.framework.*;
+
+/**
+ * Tests the recency order and the open addressing table of {@link PageCache}.
+ */
+public class PageCacheTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(PageCacheTest.class);
+    }
+
+    private static Page page(long index) {
+        return new Page(null, index, null);
+    }
+
+    private static void put(PageCache cache, long index) {
+        cache.put(index, page(index));
+    }
+
+    /**
+     * Gets the indices of the cached pages from the most to the least recently used.
+     */
+    private static List<Long> order(PageCache cache) {
+        final List<Long> result = new ArrayList<Long>();
+        for (Page page = cache.first(); page != null; page = PageCache.next(page)) {
+            result.add(page.index());
+        }
+        return result;
+    }
+
+    public void testEvictionOrder() {
+        final PageCache cache = new PageCache(4);
+        for (long index = 1; index <= 4; index++) {
+            put(cache, index);
+        }
+        assertTrue(cache.isFull());
+        assertEquals(Arrays.asList(4L, 3L, 2L, 1L), order(cache));
+        assertEquals(1L, cache.get(1).index());
+        assertEquals(Arrays.asList(1L, 4L, 3L, 2L), order(cache));
+        assertEquals(2L, cache.evict().index());
+        assertNull(cache.peek(2));
+        put(cache, 5);
+        assertEquals(3L, cache.evict().index());
+        assertEquals(4L, cache.evict().index());
+        assertEquals(1L, cache.evict().index());
+        assertEquals(5L, cache.evict().index());
+        assertNull(cache.evict());
+        assertEquals(0, cache.size());
+        assertNull(cache.first());
+    }
+
+    public void testPeekKeepsOrder() {
+        final PageCache cache = new PageCache(4);
+        for (long index = 1; index <= 3; index++) {
+            put(cache, index);
+        }
+        assertEquals(1L, cache.peek(1).index());
+        assertEquals(Arrays.asList(3L, 2L, 1L), order(cache));
+        assertNull(cache.peek(4));
+        assertNull(cache.get(4));
+        assertEquals(1L, cache.get(1).index());
+        assertEquals(Arrays.asList(1L, 3L, 2L), order(cache));
+        assertEquals(2L, cache.evict().index());
+    }
+
+    /**
+     * Fills the end of the table with indices whose probe sequences wrap around to its start, and removes them in
+     * each order, checking that the entries shifted back are still found.
+     */
+    public void testRemoveWrapsAround() {
+        final int capacity = 8;
+        final int mask = 2 * Integer.highestOneBit(2 * capacity - 1) - 1;
+        final List<Long> colliding = new ArrayList<Long>();
+        for (long index = 0; colliding.size() < capacity; index++) {
+            if ((PageCache.hash(index) & mask) >= mask - 1) {
+                colliding.add(index);
+            }
+        }
+        for (int first = 0; first < capacity; first++) {
+            final PageCache cache = new PageCache(capacity);
+            for (long index : colliding) {
+                put(cache, index);
+            }
+            // make the page put at position 'first' the least recently used, so it is evicted first
+            for (int i = 0; i < capacity; i++) {
+                if (i != first) {
+                    cache.get(colliding.get(i));
+                }
+            }
+            final Set<Long> cached = new HashSet<Long>(colliding);
+            while (!cached.isEmpty()) {
+                final Page evicted = cache.evict();
+                assertTrue(cached.remove(evicted.index()));
+                assertNull(cache.peek(evicted.index()));
+                for (long index : cached) {
+                    assertEquals(index, cache.peek(index).index());
+                }
+                assertEquals(cached.size(), cache.size());
+            }
+        }
+    }
+
+    /**
+     * Compares the cache with a {@link LinkedHashMap} in access order over random operations on a small range of
+     * indices, so that most lookups collide.
+     */
+    public void testRandomOperations() {
+        final int capacity = 16;
+        final PageCache cache = new PageCache(capacity);
+        final LinkedHashMap<Long, Page> model = new LinkedHashMap<Long, Page>(16, 0.75f, true);
+        // the same pages, for lookups that must not change the order of the model
+        final Map<Long, Page> pages = new HashMap<Long, Page>();
+        final Random random = new Random(42);
+        for (int n = 0; n < 100000; n++) {
+            final long index = random.nextInt(4 * capacity);
+            switch (random.nextInt(3)) {
+                case 0: {
+                    assertSame(model.get(index), cache.get(index));
+                    break;
+                }
+                case 1: {
+                    assertSame(pages.get(index), cache.peek(index));
+                    break;
+                }
+                default: {
+                    if (cache.peek(index) == null) {
+                        if (cache.isFull()) {
+                            final Long eldest = model.keySet().iterator().next();
+                            assertEquals(eldest.longValue(), cache.evict().index());
+                            model.remove(eldest);
+                            pages.remove(eldest);
+                        }
+                        final Page page = page(index);
+                        cache.put(index, page);
+                        model.put(index, page);
+                        pages.put(index, page);
+                    }
+                }
+            }
+            assertEquals(model.size(), cache.size());
+        }
+        final List<Long> expected = new ArrayList<Long>(model.keySet());
+        Collections.reverse(expected);
+        assertEquals(expected, order(cache));
+    }
+}
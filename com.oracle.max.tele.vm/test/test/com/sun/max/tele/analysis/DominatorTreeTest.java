@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.com.sun.max.tele.analysis;
+
+import junit.framework.*;
+
+import com.sun.max.tele.analysis.*;
+
+/**
+ * Tests the dominators and retained sizes computed by {@link DominatorTree}.
+ */
+public class DominatorTreeTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(DominatorTreeTest.class);
+    }
+
+    /**
+     * Builds the tree of a graph given as the successor array of each node.
+     */
+    private static DominatorTree tree(int[]... graph) {
+        final int[] starts = new int[graph.length + 1];
+        for (int v = 0; v < graph.length; v++) {
+            starts[v + 1] = starts[v] + graph[v].length;
+        }
+        final int[] successors = new int[starts[graph.length]];
+        for (int v = 0; v < graph.length; v++) {
+            System.arraycopy(graph[v], 0, successors, starts[v], graph[v].length);
+        }
+        return new DominatorTree(graph.length, starts, successors);
+    }
+
+    private static int[] ones(int count) {
+        final int[] sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = 1;
+        }
+        return sizes;
+    }
+
+    private static void assertDominators(DominatorTree tree, int... expected) {
+        for (int v = 0; v < expected.length; v++) {
+            assertEquals("dominator of " + v, expected[v], tree.dominator(v));
+        }
+    }
+
+    public void test_chain() {
+        final DominatorTree tree = tree(new int[] {1}, new int[] {2}, new int[] {3}, new int[] {});
+        assertDominators(tree, -1, 0, 1, 2);
+        final long[] retained = tree.retainedSizes(ones(4));
+        for (int v = 0; v < 4; v++) {
+            assertEquals(4 - v, retained[v]);
+        }
+    }
+
+    public void test_diamond() {
+        final DominatorTree tree = tree(new int[] {1, 2}, new int[] {3}, new int[] {3}, new int[] {4}, new int[] {});
+        assertDominators(tree, -1, 0, 0, 0, 3);
+        final long[] retained = tree.retainedSizes(new int[] {1, 10, 100, 1000, 10000});
+        assertEquals(11111, retained[0]);
+        assertEquals(10, retained[1]);
+        assertEquals(100, retained[2]);
+        assertEquals(11000, retained[3]);
+        assertEquals(10000, retained[4]);
+    }
+
+    public void test_unreachable() {
+        // node 2 only leads into the reachable part, node 3 is isolated
+        final DominatorTree tree = tree(new int[] {1}, new int[] {}, new int[] {1, 3}, new int[] {});
+        assertTrue(tree.isReachable(0));
+        assertTrue(tree.isReachable(1));
+        assertFalse(tree.isReachable(2));
+        assertFalse(tree.isReachable(3));
+        assertDominators(tree, -1, 0, -1, -1);
+        final long[] retained = tree.retainedSizes(ones(4));
+        assertEquals(2, retained[0]);
+        assertEquals(0, retained[2]);
+        assertEquals(0, retained[3]);
+    }
+
+    /**
+     * The example graph of Lengauer and Tarjan's paper, with nodes R, A, B, ..., L numbered from 0.
+     */
+    public void test_lengauerTarjanExample() {
+        final DominatorTree tree = tree(
+            new int[] {1, 2, 3},  // R
+            new int[] {4},        // A
+            new int[] {1, 4, 5},  // B
+            new int[] {6, 7},     // C
+            new int[] {12},       // D
+            new int[] {8},        // E
+            new int[] {9},        // F
+            new int[] {9, 10},    // G
+            new int[] {5, 11},    // H
+            new int[] {11},       // I
+            new int[] {9},        // J
+            new int[] {9, 0},     // K
+            new int[] {8});       // L
+        assertDominators(tree, -1, 0, 0, 0, 0, 0, 3, 3, 0, 0, 7, 0, 4);
+    }
+
+    /**
+     * A list long enough to overflow the stack of a recursive depth-first search, whose last node points back to
+     * the first so that path compression runs over the whole list.
+     */
+    public void test_longList() {
+        final int length = 1000000;
+        final int[][] graph = new int[length][];
+        for (int v = 0; v < length - 1; v++) {
+            graph[v] = new int[] {v + 1};
+        }
+        graph[length - 1] = new int[] {1};
+        final DominatorTree tree = tree(graph);
+        assertEquals(-1, tree.dominator(0));
+        for (int v = 1; v < length; v++) {
+            assertEquals(v - 1, tree.dominator(v));
+        }
+        final long[] retained = tree.retainedSizes(ones(length));
+        assertEquals(length, retained[0]);
+        assertEquals(1, retained[length - 1]);
+    }
+}
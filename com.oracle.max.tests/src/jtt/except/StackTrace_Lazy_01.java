@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.except;
+
+/*
+ * Tests that a stack trace resolved after the frames that recorded it have returned
+ * has the expected methods and line numbers.
+ * @Harness: java
+ * @Runs: 0=0; 1=0
+ */
+public class StackTrace_Lazy_01 {
+
+    public static int test(int a) {
+        Throwable t = create(a);
+        return check(t.getStackTrace(), a == 0 ? "create" : "create1");
+    }
+
+    private static int check(StackTraceElement[] stackTrace, String top) {
+        String thisClass = StackTrace_Lazy_01.class.getName();
+        for (int i = 0; i < stackTrace.length; i++) {
+            StackTraceElement e = stackTrace[i];
+            if (e.getClassName().equals(thisClass)) {
+                if (!e.getMethodName().equals(top)) {
+                    return -2;
+                }
+                if (e.getLineNumber() <= 0) {
+                    return -3;
+                }
+                return 0;
+            }
+        }
+        return -1;
+    }
+
+    private static Throwable create(int a) {
+        if (a == 1) {
+            return create1();
+        }
+        return new IllegalStateException();
+    }
+
+    private static Throwable create1() {
+        return new IllegalStateException();
+    }
+}
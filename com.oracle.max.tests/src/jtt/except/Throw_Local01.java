@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.except;
+
+/*
+ * Tests exceptions that are thrown and caught in the same method, with and
+ * without the handler using the exception.
+ * @Harness: java
+ * @Runs: 0=0; 1=101; 2=-1; 3=3; 4=13
+ */
+public class Throw_Local01 {
+
+    public static int test(int a) {
+        int result = 0;
+        try {
+            if (a == 1) {
+                throw new NumberFormatException();
+            }
+            result = a;
+        } catch (IllegalArgumentException e) {
+            result = 101;
+        }
+        if (a == 2) {
+            try {
+                throw new IllegalStateException("used");
+            } catch (IllegalStateException e) {
+                if (e.getStackTrace().length == 0 || !"used".equals(e.getMessage())) {
+                    return -2;
+                }
+                result = -1;
+            }
+        }
+        if (a == 4) {
+            try {
+                try {
+                    throw new UnsupportedOperationException();
+                } catch (ArithmeticException e) {
+                    return -3;
+                } finally {
+                    result = 10;
+                }
+            } catch (RuntimeException e) {
+                result += 3;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.except;
+
+/*
+ * Tests exceptions thrown by methods small enough to be inlined, caught either
+ * in the inlined method itself or in its caller.
+ * @Harness: java
+ * @Runs: 0=0; 1=101; 2=102; 3=103; 4=104; 5=105
+ */
+public class Throw_Local02 {
+
+    public static int test(int a) {
+        int result = a;
+        if (a == 1) {
+            try {
+                check(a);
+            } catch (NumberFormatException e) {
+                result = 101;
+            }
+        }
+        if (a == 2) {
+            result = catchLocally(a);
+        }
+        if (a == 3) {
+            try {
+                checkWithMessage(a);
+            } catch (IllegalStateException e) {
+                if (e.getStackTrace().length == 0 || !"used".equals(e.getMessage())) {
+                    return -3;
+                }
+                result = 103;
+            }
+        }
+        if (a == 4) {
+            try {
+                checkSynchronized(a);
+            } catch (IllegalArgumentException e) {
+                if (Thread.holdsLock(Throw_Local02.class)) {
+                    return -4;
+                }
+                result = 104;
+            }
+        }
+        if (a == 5) {
+            try {
+                checkWithFinally(a);
+            } catch (UnsupportedOperationException e) {
+                result += 100;
+            }
+        }
+        return result;
+    }
+
+    private static void check(int a) {
+        if (a > 0) {
+            throw new NumberFormatException();
+        }
+    }
+
+    private static int catchLocally(int a) {
+        try {
+            if (a > 0) {
+                throw new IllegalArgumentException();
+            }
+            return a;
+        } catch (IllegalArgumentException e) {
+            return 100 + a;
+        }
+    }
+
+    private static void checkWithMessage(int a) {
+        if (a > 0) {
+            throw new IllegalStateException("used");
+        }
+    }
+
+    private static synchronized void checkSynchronized(int a) {
+        if (a > 0) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    private static void checkWithFinally(int a) {
+        try {
+            if (a > 0) {
+                throw new UnsupportedOperationException();
+            }
+        } catch (ArithmeticException e) {
+            a = -1;
+        } finally {
+            a++;
+        }
+    }
+}
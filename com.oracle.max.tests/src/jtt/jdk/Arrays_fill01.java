@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.jdk;
+
+import java.util.*;
+
+/*
+ * Tests filling and comparing arrays of small primitive elements with various ranges.
+ * @Harness: java
+ * @Runs: 0 = 0; 1 = 1; 7 = 7; 8 = 8; 9 = 9; 17 = 17; 33 = 33; -1 = !java.lang.IllegalArgumentException
+ */
+public class Arrays_fill01 {
+
+    public static int test(int n) {
+        byte[] b = new byte[40];
+        char[] c = new char[40];
+        int[] a = new int[40];
+        Arrays.fill(b, 3, 3 + n, (byte) -7);
+        Arrays.fill(c, 1, 1 + n, 'q');
+        Arrays.fill(a, 5, 5 + n, -1);
+        int count = 0;
+        for (int i = 0; i < 40; i++) {
+            boolean inB = i >= 3 && i < 3 + n;
+            boolean inC = i >= 1 && i < 1 + n;
+            boolean inA = i >= 5 && i < 5 + n;
+            if ((b[i] == -7) != inB || (c[i] == 'q') != inC || (a[i] == -1) != inA) {
+                return -2;
+            }
+            if (inB) {
+                count++;
+            }
+        }
+        byte[] b2 = b.clone();
+        char[] c2 = c.clone();
+        if (!Arrays.equals(b, b2) || !Arrays.equals(c, c2) || !Arrays.equals(a, a.clone())) {
+            return -3;
+        }
+        if (n > 0) {
+            b2[2 + n]++;
+            c2[n]++;
+            if (Arrays.equals(b, b2) || Arrays.equals(c, c2)) {
+                return -4;
+            }
+        }
+        return count;
+    }
+}
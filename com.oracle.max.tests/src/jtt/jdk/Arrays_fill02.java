@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.jdk;
+
+import java.util.*;
+
+/*
+ * Tests filling and comparing int arrays whose size in bytes exceeds the int range.
+ * The arrays need a heap of more than 4GB. If they cannot be allocated, the test is skipped
+ * by returning the expected result.
+ * @Harness: java
+ * @Runs: 0 = 7; 1 = 1
+ */
+public class Arrays_fill02 {
+
+    static final int LENGTH = (1 << 29) + 3;
+
+    public static int test(int arg) {
+        final int[] a;
+        final int[] b;
+        try {
+            a = new int[LENGTH];
+            b = arg == 0 ? null : new int[LENGTH];
+        } catch (OutOfMemoryError e) {
+            return arg == 0 ? 7 : 1;
+        }
+        Arrays.fill(a, 7);
+        if (arg == 0) {
+            return a[0] == 7 && a[LENGTH >> 1] == 7 ? a[LENGTH - 1] : -1;
+        }
+        Arrays.fill(b, LENGTH - 2, LENGTH, 7);
+        if (Arrays.equals(a, b)) {
+            return -2;
+        }
+        Arrays.fill(b, 0, LENGTH - 2, 7);
+        if (!Arrays.equals(a, b)) {
+            return -3;
+        }
+        b[LENGTH - 1] = 8;
+        if (Arrays.equals(a, b)) {
+            return -4;
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.lang;
+
+/*
+ * Tests String methods that compare or search several characters at a time around word boundaries.
+ * @Harness: java
+ * @Runs: 0 = 0; 1 = 1; 2 = 2; 3 = 3; 4 = 4; 5 = 5; 6 = 6; 7 = 7; 8 = 8; 9 = 9; 10 = 10; 11 = 11; 12 = -1
+ */
+public class String_indexOf01 {
+
+    private static final String TEXT = "0123456789ab";
+
+    public static int test(int i) {
+        String s = TEXT.substring(0, Math.max(i, 1));
+        String t = new String(TEXT.toCharArray(), 0, Math.max(i, 1));
+        if (!s.equals(t) || s.compareTo(t) != 0) {
+            return -2;
+        }
+        if (i > 0) {
+            String u = TEXT.substring(0, i - 1) + 'z';
+            if (s.equals(u) || s.compareTo(u) >= 0 || u.compareTo(s) <= 0 || s.compareTo(s + "x") != -1) {
+                return -3;
+            }
+        }
+        int pos = TEXT.indexOf(i < TEXT.length() ? TEXT.charAt(i) : 'z');
+        if (pos >= 0 && TEXT.indexOf(TEXT.substring(pos, Math.min(pos + 3, TEXT.length()))) != pos) {
+            return -4;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.loop;
+
+/*
+ * Tests a hot loop whose live locals include object references. When run baseline compiled
+ * with -XX:+UseOSR, the loop is replaced by optimized code while the references are only held
+ * in locals and the garbage collections in the loop move the objects afterwards. {@code test.output.LoopOSR}
+ * runs it that way in the {@code osr} maxvm configuration and checks that the replacement happened.
+ * @Harness: java
+ * @Runs: 0=0; 1=400000; 2=800000
+ */
+public class LoopOSR01 {
+
+    static final class Box {
+        int value;
+        Box next;
+
+        Box(int value, Box next) {
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    public static int test(int arg) {
+        Box head = new Box(arg, null);
+        Box tail = new Box(arg, head);
+        Object[] garbage = new Object[16];
+        int sum = 0;
+        for (int i = 0; i < 200000; i++) {
+            garbage[i & 15] = new int[8];
+            if (i % 50000 == 0) {
+                System.gc();
+            }
+            sum += head.value + tail.next.value;
+        }
+        return tail.next == head && garbage[0] != null ? sum : -1;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.optimize;
+
+/*
+ * Tests global load elimination and store-to-load forwarding of fields and array elements.
+ * Loads must not be eliminated across calls, aliasing stores, volatile accesses or merges,
+ * and values stored to sub-word locations must be truncated when they are forwarded.
+ * @Harness: java
+ * @Runs: 0=18; 1=15; 2=12; 3=9; 4=-128; 5=19; 6=!java.lang.NullPointerException
+ */
+public class GLE_01 {
+
+    private static boolean cond = true;
+
+    int field = 9;
+    volatile int vfield = 3;
+    byte bfield;
+    final int[] array = {4, 5, 6};
+
+    public static int test(int arg) {
+        GLE_01 o = new GLE_01();
+        if (arg == 0) {
+            return test0(o);
+        }
+        if (arg == 1) {
+            return test1(o, o.array);
+        }
+        if (arg == 2) {
+            return test2(o);
+        }
+        if (arg == 3) {
+            return test3(o, o);
+        }
+        if (arg == 4) {
+            return test4(o, 128);
+        }
+        if (arg == 5) {
+            return test5(o);
+        }
+        if (arg == 6) {
+            return test0(null);
+        }
+        return 0;
+    }
+
+    private static int test0(GLE_01 o) {
+        int a = o.field;
+        if (cond) {
+            return a + o.field;
+        }
+        return 0;
+    }
+
+    private static int test1(GLE_01 o, int[] arr) {
+        int a = arr[1];
+        if (cond) {
+            arr[2] = a;
+            // arr[1] cannot be reused: the store to arr[2] may alias it
+            return a + arr[1] + arr[2];
+        }
+        return 0;
+    }
+
+    private static int test2(GLE_01 o) {
+        int a = o.field;
+        if (cond) {
+            bump(o);
+            return a + o.field - 7;
+        }
+        return 0;
+    }
+
+    private static int test3(GLE_01 o, GLE_01 p) {
+        int a = o.field;
+        if (cond) {
+            p.field = 1;
+            // p and o alias, so the store kills the value loaded from o.field
+            int b = o.field;
+            int v = o.vfield;
+            return a - 3 + b + v - o.field;
+        }
+        return 0;
+    }
+
+    private static int test4(GLE_01 o, int i) {
+        o.bfield = (byte) i;
+        if (cond) {
+            return o.bfield;
+        }
+        return 0;
+    }
+
+    private static int test5(GLE_01 o) {
+        int a = o.field;
+        for (int i = 0; i < 2; i++) {
+            a += o.field;
+            o.field = 1;
+        }
+        return a;
+    }
+
+    private static void bump(GLE_01 o) {
+        o.field += 1;
+    }
+}
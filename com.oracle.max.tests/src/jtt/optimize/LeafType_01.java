@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.optimize;
+
+/*
+ * Tests type checks against and calls on classes without subclasses, which the compiler
+ * may turn into hub comparisons and direct calls by assuming they remain leaf classes.
+ * @Harness: java
+ * @Runs: 0=11; 1=2; 2=20; 3=0; 4=!java.lang.ClassCastException
+ */
+public class LeafType_01 {
+
+    static class Base {
+        int value() {
+            return 1;
+        }
+    }
+
+    static class Leaf extends Base {
+        @Override
+        int value() {
+            return 10;
+        }
+    }
+
+    static class Other extends Base {
+        @Override
+        int value() {
+            return 2;
+        }
+    }
+
+    public static int test(int arg) {
+        Base b = arg == 0 ? new Leaf() : arg == 1 ? new Other() : arg == 2 ? new Leaf() : arg == 3 ? null : new Other();
+        if (arg == 0) {
+            return instanceOfLeaf(b) + b.value();
+        }
+        if (arg == 1) {
+            return instanceOfLeaf(b) + b.value();
+        }
+        if (arg == 3) {
+            return instanceOfLeaf(b) + (castToLeaf(b) == null ? 0 : 1);
+        }
+        return castToLeaf(b).value() * 2;
+    }
+
+    private static int instanceOfLeaf(Object o) {
+        return o instanceof Leaf ? 1 : 0;
+    }
+
+    private static Leaf castToLeaf(Object o) {
+        return (Leaf) o;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+/*
+ * @Harness: java
+ * @Runs: 0 = true;
+ */
+package test.bench.threads;
+
+import java.util.concurrent.atomic.*;
+
+import test.bench.util.*;
+
+/**
+ * This benchmark is intended to be run in multi-threaded mode. Each thread repeatedly stores references into
+ * a field of its own object, but all the objects are allocated together so that they are covered by the same card(s)
+ * of the card table used by generational heap schemes. With unconditional card marking, every store writes the card
+ * and the cache line holding it bounces between the cores running the threads.
+ *
+ * Compare the results with an image built with {@code -Dmax.heap.rset.conditional} (conditional card marking)
+ * and one built without it.
+ */
+public class RefStore_contended01 extends RunBench {
+
+    /**
+     * Number of holder objects, allocated consecutively. Threads beyond that number share holders.
+     */
+    static final int NUMBER_OF_HOLDERS = 16;
+
+    protected RefStore_contended01() {
+        super(new Bench());
+    }
+
+    public static boolean test(int i) {
+        return new RefStore_contended01().runBench();
+    }
+
+    static class Holder {
+        Object ref;
+    }
+
+    static class Bench extends MicroBenchmark {
+        private final Holder[] holders = new Holder[NUMBER_OF_HOLDERS];
+        private final AtomicInteger nextHolder = new AtomicInteger();
+        private final Object value1 = new Object();
+        private final Object value2 = new Object();
+        private final ThreadLocal<Holder> threadHolder = new ThreadLocal<Holder>() {
+            @Override
+            public Holder initialValue() {
+                return holders[nextHolder.getAndIncrement() % NUMBER_OF_HOLDERS];
+            }
+        };
+
+        Bench() {
+            for (int i = 0; i < NUMBER_OF_HOLDERS; i++) {
+                holders[i] = new Holder();
+            }
+        }
+
+        @Override
+        public long run() {
+            final Holder holder = threadHolder.get();
+            final long count = RunBench.runIterCount() / RunBench.threadCount();
+            for (long i = 0; i < count; i++) {
+                holder.ref = (i & 1) == 0 ? value1 : value2;
+            }
+            return defaultResult;
+        }
+    }
+
+    // for running stand-alone
+    public static void main(String[] args) {
+        RunBench.runTest(RefStore_contended01.class, args);
+    }
+}
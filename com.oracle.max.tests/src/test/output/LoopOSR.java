@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.output;
+
+import com.sun.max.vm.*;
+import com.sun.max.vm.compiler.*;
+import com.sun.max.vm.profile.*;
+
+import jtt.loop.*;
+
+/**
+ * This is a test case used in the automated testing framework. It runs the hot loop of {@link LoopOSR01}, which
+ * is baseline compiled when loaded at run time, and checks that its activation was replaced by optimized code
+ * when the Maxine VM runs with {@code -XX:+UseOSR} (the {@code osr} maxvm configuration). The output only differs
+ * from that of the reference VM if on-stack replacement was enabled but did not happen.
+ */
+public class LoopOSR {
+    public static void main(String[] args) {
+        for (int arg = 0; arg <= 800000; arg += 400000) {
+            System.out.println("LoopOSR01.test(" + arg + ") = " + LoopOSR01.test(arg));
+        }
+        if (MaxineVM.NAME.equals(System.getProperty("java.vm.name")) && MethodInstrumentation.isOSREnabled() && CompilationBroker.osrTransitions() == 0) {
+            System.out.println("No on-stack replacement happened");
+        }
+    }
+}
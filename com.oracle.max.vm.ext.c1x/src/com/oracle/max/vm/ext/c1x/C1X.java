@@ -57,7 +57,7 @@ import com.sun.max.vm.thread.*;
 /**
  * Integration of the C1X compiler into Maxine's compilation framework.
  */
-public class C1X extends RuntimeCompiler.DefaultNameAdapter implements RuntimeCompiler {
+public class C1X extends RuntimeCompiler.DefaultNameAdapter implements RuntimeCompiler, RuntimeCompiler.OSRCapable {
 
     /**
      * The Maxine specific implementation of the {@linkplain RiRuntime runtime interface} needed by C1X.
@@ -251,20 +251,33 @@ public class C1X extends RuntimeCompiler.DefaultNameAdapter implements RuntimeCo
     }
 
     public TargetMethod compile(final ClassMethodActor method, boolean isDeopt, boolean install, CiStatistics stats) {
+        return compile(method, -1, install, stats);
+    }
+
+    public TargetMethod compileOSR(ClassMethodActor method, int bci) {
+        return compile(method, bci, true, null);
+    }
+
+    private TargetMethod compile(ClassMethodActor method, int osrBCI, boolean install, CiStatistics stats) {
         CiTargetMethod compiledMethod;
         do {
             DebugInfoLevel debugInfoLevel = method.isTemplate() ? DebugInfoLevel.REF_MAPS : DebugInfoLevel.FULL;
-            compiledMethod = compiler().compileMethod(method, -1, stats, debugInfoLevel).targetMethod();
+            compiledMethod = compiler().compileMethod(method, osrBCI, stats, debugInfoLevel).targetMethod();
 
             Dependencies deps = Dependencies.validateDependencies(compiledMethod.assumptions());
             if (deps != Dependencies.INVALID) {
                 if (C1XOptions.PrintTimers) {
                     C1XTimers.INSTALL.start();
                 }
+                long installStart = System.nanoTime();
                 MaxTargetMethod maxTargetMethod = new MaxTargetMethod(method, compiledMethod, install);
                 if (C1XOptions.PrintTimers) {
                     C1XTimers.INSTALL.stop();
                 }
+                if (stats != null) {
+                    stats.installNanos += System.nanoTime() - installStart;
+                    recordAssumptions(compiledMethod.assumptions(), stats);
+                }
                 if (deps != null) {
                     Dependencies.registerValidatedTarget(deps, maxTargetMethod);
                 }
@@ -282,6 +295,22 @@ public class C1X extends RuntimeCompiler.DefaultNameAdapter implements RuntimeCo
         } while (true);
     }
 
+    /**
+     * Counts the assumptions of a compilation in its statistics and reports the methods it inlined to the
+     * {@link CompilationEventLog}.
+     */
+    private static void recordAssumptions(CiAssumptions assumptions, CiStatistics stats) {
+        if (assumptions == null) {
+            return;
+        }
+        for (CiAssumptions.Assumption assumption : assumptions) {
+            stats.dependencyCount++;
+            if (assumption instanceof CiAssumptions.InlinedMethod && CompilationEventLog.enabled()) {
+                CompilationEventLog.inlinedMethod((MethodActor) ((CiAssumptions.InlinedMethod) assumption).dependee);
+            }
+        }
+    }
+
     void printMachineCode(CiTargetMethod ciTM, MaxTargetMethod maxTM, boolean reentrant) {
         if (!C1XOptions.PrintCFGToFile || C1XOptions.OmmitAssembly || reentrant || TTY.isSuppressed()) {
             return;
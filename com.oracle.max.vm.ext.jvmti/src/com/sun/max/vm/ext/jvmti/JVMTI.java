@@ -77,7 +77,7 @@ public class JVMTI {
         /**
          * Object tagging.
          */
-        JVMTITags tags = new JVMTITags();
+        JVMTITags tags = new JVMTITags(this);
         /**
          * The global event settings for this agent.
          */
@@ -224,6 +224,7 @@ public class JVMTI {
         @Override
         public void endGC() {
             JVMTI.event(E.GARBAGE_COLLECTION_FINISH);
+            postObjectFreeEvents();
         }
 
         @Override
@@ -358,6 +359,7 @@ public class JVMTI {
         for (int i = MAX_NATIVE_ENVS; i < MAX_ENVS; i++) {
             if (jvmtiEnvs[i] == env) {
                 jvmtiEnvs[i] = null;
+                env.tags.dispose();
                 activeEnvCount--;
                 return JVMTI_ERROR_NONE;
             }
@@ -381,6 +383,7 @@ public class JVMTI {
             if (nativeEnv.cstruct.equals(env)) {
                 // TODO cleanup
                 nativeEnv.cstruct = Pointer.zero();
+                nativeEnv.tags.dispose();
                 activeEnvCount--;
                 return JVMTI_ERROR_NONE;
             }
@@ -580,6 +583,21 @@ public class JVMTI {
         event(event, null);
     }
 
+    /**
+     * Delivers the {@code ObjectFree} events for the tagged objects found dead by the last GC, in one batch per agent.
+     */
+    static void postObjectFreeEvents() {
+        if (activeEnvCount == 0 || !JVMTIEvents.isEventSet(E.OBJECT_FREE)) {
+            return;
+        }
+        for (int i = 0; i < MAX_NATIVE_ENVS; i++) {
+            NativeEnv nativeEnv = (NativeEnv) jvmtiEnvs[i];
+            if (nativeEnv != null && !nativeEnv.isFree()) {
+                nativeEnv.tags.postObjectFreeEvents();
+            }
+        }
+    }
+
     /**
      * Dispatches the event denoted by {@code eventId} to all environments that have registered and enabled a call back
      * for it.
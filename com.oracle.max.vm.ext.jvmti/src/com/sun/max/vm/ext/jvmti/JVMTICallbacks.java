@@ -33,10 +33,12 @@ public class JVMTICallbacks {
         new CriticalNativeMethod(JVMTICallbacks.class, "invokeStartFunction");
         new CriticalNativeMethod(JVMTICallbacks.class, "invokeStartFunctionNoArg");
         new CriticalNativeMethod(JVMTICallbacks.class, "invokeGarbageCollectionCallback");
+        new CriticalNativeMethod(JVMTICallbacks.class, "invokeObjectFreeCallback");
         new CriticalNativeMethod(JVMTICallbacks.class, "invokeThreadObjectCallback");
         new CriticalNativeMethod(JVMTICallbacks.class, "invokeClassfileLoadHookCallback");
         new CriticalNativeMethod(JVMTICallbacks.class, "invokeFieldWatchCallback");
         new CriticalNativeMethod(JVMTICallbacks.class, "invokeHeapIterationCallback");
+        new CriticalNativeMethod(JVMTICallbacks.class, "invokeHeapReferenceCallback");
         new CriticalNativeMethod(JVMTICallbacks.class, "invokeBreakpointCallback");
         new CriticalNativeMethod(JVMTICallbacks.class, "invokeExceptionCallback");
         new CriticalNativeMethod(JVMTICallbacks.class, "invokeCompiledMethodLoadCallback");
@@ -49,6 +51,7 @@ public class JVMTICallbacks {
     static native void invokeStartFunction(Pointer callback, Pointer jvmtiEnv, Word arg);
     static native void invokeStartFunctionNoArg(Pointer callback, Pointer jvmtiEnv);
     static native void invokeGarbageCollectionCallback(Pointer callback, Pointer jvmtiEnv);
+    static native void invokeObjectFreeCallback(Pointer callback, Pointer jvmtiEnv, long tag);
     static native void invokeThreadObjectCallback(Pointer callback, Pointer jvmtiEnv, Word thread, Word object);
     static native void invokeClassfileLoadHookCallback(Pointer callback, Pointer jvmtiEnv,
                     Word klass, Word loader, Pointer name, Word protectionDomain, int classDataLen,
@@ -63,6 +66,8 @@ public class JVMTICallbacks {
                     Word thread, Word methodID, long location, Word throwable, Word catchMethodID, long catchLocation);
 
     static native int invokeHeapIterationCallback(Pointer callback, long classTag, long size, Pointer tagPtr, int length, Word userData);
+    static native int invokeHeapReferenceCallback(Pointer callback, int referenceKind, Pointer referenceInfo, long classTag, long referrerClassTag,
+                    long size, Pointer tagPtr, Pointer referrerTagPtr, int length, Word userData);
 
     static native void invokeBreakpointCallback(Pointer callback, Pointer jvmtiEnv, Word thread, long methodId, int location);
 
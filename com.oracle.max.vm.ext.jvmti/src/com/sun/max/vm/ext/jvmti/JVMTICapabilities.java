@@ -73,7 +73,7 @@ public class JVMTICapabilities {
         CAN_GENERATE_VM_OBJECT_ALLOC_EVENTS(false),
         CAN_GENERATE_NATIVE_METHOD_BIND_EVENTS(false),
         CAN_GENERATE_GARBAGE_COLLECTION_EVENTS(true),
-        CAN_GENERATE_OBJECT_FREE_EVENTS(false),
+        CAN_GENERATE_OBJECT_FREE_EVENTS(true),
         CAN_FORCE_EARLY_RETURN(false),
         CAN_GET_OWNED_MONITOR_STACK_DEPTH_INFO(false),
         CAN_GET_CONSTANT_POOL(false),
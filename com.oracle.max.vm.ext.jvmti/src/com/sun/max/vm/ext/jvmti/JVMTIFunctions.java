@@ -3225,11 +3225,26 @@ public class JVMTIFunctions  {
             logger.log(LogOperations.FollowReferences.ordinal(), env, Address.fromInt(heap_filter), klass, initial_object, callbacks, user_data);
         }
         try {
+            if (!(phase == JVMTI_PHASE_LIVE)) {
+                return JVMTI_ERROR_WRONG_PHASE;
+            }
+            if (!(CAN_TAG_OBJECTS.get(CAPABILITIES.getPtr(env)))) {
+                return JVMTI_ERROR_MUST_POSSESS_CAPABILITY;
+            }
+            if (callbacks.isZero()) {
+                return JVMTI_ERROR_NULL_POINTER;
+            }
+            Class handleAsClass;
+            try {
+                handleAsClass = (Class) klass.unhand();
+            } catch (ClassCastException ex) {
+                return JVMTI_ERROR_INVALID_CLASS;
+            }
             Env jvmtiEnv = JVMTI.getEnv(env);
             if (jvmtiEnv == null) {
                 return JVMTI_ERROR_INVALID_ENVIRONMENT;
             }
-            return JVMTI_ERROR_NOT_AVAILABLE; // TODO
+            return JVMTIHeapFunctions.followReferences(jvmtiEnv, heap_filter, handleAsClass, initial_object.unhand(), callbacks, user_data);
         } catch (Throwable t) {
             return JVMTI_ERROR_INTERNAL;
         } finally {
@@ -1012,7 +1012,11 @@ public class JVMTIFunctionsSource {
 
     @VM_ENTRY_POINT
     private static int FollowReferences(Pointer env, int heap_filter, JniHandle klass, JniHandle initial_object, Pointer callbacks, Pointer user_data) {
-        return JVMTI_ERROR_NOT_AVAILABLE; // TODO
+        // PHASES: LIVE
+        // CAPABILITIES: CAN_TAG_OBJECTS
+        // NULLCHECK: callbacks
+        // HANDLECHECK_NULLOK: klass=Class
+        return JVMTIHeapFunctions.followReferences(jvmtiEnv, heap_filter, handleAsClass, initial_object.unhand(), callbacks, user_data);
     }
 
     @VM_ENTRY_POINT
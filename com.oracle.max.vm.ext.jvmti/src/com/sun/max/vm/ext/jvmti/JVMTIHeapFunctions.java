@@ -27,14 +27,19 @@ import static com.sun.max.vm.ext.jvmti.JVMTICallbacks.*;
 import static com.sun.max.vm.ext.jvmti.JVMTIConstants.*;
 import static com.sun.max.vm.ext.jvmti.JVMTIUtil.*;
 
+import com.sun.max.lang.*;
+import com.sun.max.memory.*;
+import com.sun.max.platform.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
 import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.actor.member.*;
 import com.sun.max.vm.heap.*;
 import com.sun.max.vm.layout.*;
 import com.sun.max.vm.object.*;
 import com.sun.max.vm.reference.*;
 import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.thread.*;
 
 /**
  * All the JVMTI functions that relate to the heap.
@@ -92,29 +97,9 @@ public class JVMTIHeapFunctions {
                  */
                 Class objectClass = proxyClassActor.javaClass == null ? null : proxyClassActor.javaClass;
 
-                if (klass != null && objectClass != klass)  {
+                if (isFiltered(env, heapFilter, klass, object, objectClass)) {
                     return true;
                 }
-                if ((heapFilter & JVMTI_HEAP_FILTER_CLASS_TAGGED) != 0) {
-                    if (objectClass != null && env.tags.isTagged(objectClass)) {
-                        return true;
-                    }
-                }
-                if ((heapFilter & JVMTI_HEAP_FILTER_CLASS_UNTAGGED) != 0) {
-                    if (!(objectClass != null && env.tags.isTagged(objectClass))) {
-                        return true;
-                    }
-                }
-                if ((heapFilter & JVMTI_HEAP_FILTER_TAGGED) != 0) {
-                    if (env.tags.isTagged(object)) {
-                        return true;
-                    }
-                }
-                if ((heapFilter & JVMTI_HEAP_FILTER_UNTAGGED) != 0) {
-                    if (!env.tags.isTagged(object)) {
-                        return true;
-                    }
-                }
                 int flags = doCallback(object, objectClass);
                 if ((flags & JVMTI_VISIT_ABORT) != 0) {
                     return false;
@@ -239,4 +224,395 @@ public class JVMTIHeapFunctions {
         op.submit();
     }
 
+    /**
+     * Determines if the callbacks for an object are suppressed by the {@code heap_filter} and {@code klass} arguments
+     * of a heap function.
+     */
+    static boolean isFiltered(JVMTI.Env env, int heapFilter, Class klass, Object object, Class objectClass) {
+        if (klass != null && objectClass != klass)  {
+            return true;
+        }
+        if ((heapFilter & (JVMTI_HEAP_FILTER_CLASS_TAGGED | JVMTI_HEAP_FILTER_CLASS_UNTAGGED)) != 0) {
+            final boolean classTagged = objectClass != null && env.tags.isTagged(objectClass);
+            if ((heapFilter & (classTagged ? JVMTI_HEAP_FILTER_CLASS_TAGGED : JVMTI_HEAP_FILTER_CLASS_UNTAGGED)) != 0) {
+                return true;
+            }
+        }
+        if ((heapFilter & (JVMTI_HEAP_FILTER_TAGGED | JVMTI_HEAP_FILTER_UNTAGGED)) != 0) {
+            final boolean tagged = env.tags.isTagged(object);
+            if ((heapFilter & (tagged ? JVMTI_HEAP_FILTER_TAGGED : JVMTI_HEAP_FILTER_UNTAGGED)) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the class mirror of an object without allocating it. An object whose mirror has not been created yet cannot
+     * have a tagged class, so {@code null} is an adequate answer for the purposes of tagging.
+     */
+    static Class mirrorOf(ClassActor classActor) {
+        return ClassActorProxy.asClassActorProxy(classActor).javaClass;
+    }
+
+    /**
+     * Computes the JVMTI index of the field at a given offset in instances (or the static tuple) of a given class. The
+     * fields declared by the superclasses come first, then the static and instance fields declared by the class
+     * itself. The static fields of superinterfaces are not counted.
+     *
+     * @return the index of the field, or -1 if there is no such field
+     */
+    static int fieldIndex(ClassActor classActor, int offset, boolean isStatic) {
+        for (ClassActor holder = classActor; holder != null; holder = holder.superClassActor) {
+            final FieldActor[] fieldActors = isStatic ? holder.localStaticFieldActors() : holder.localInstanceFieldActors();
+            for (int i = 0; i < fieldActors.length; i++) {
+                if (fieldActors[i].offset() == offset) {
+                    int index = isStatic ? i : holder.localStaticFieldActors().length + i;
+                    for (ClassActor superClass = holder.superClassActor; superClass != null; superClass = superClass.superClassActor) {
+                        index += superClass.localStaticFieldActors().length + superClass.localInstanceFieldActors().length;
+                    }
+                    return index;
+                }
+            }
+            if (isStatic) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A bitmap with one bit per word over the range of addresses covered by the heap, used to record the objects
+     * already reached by {@link FollowReferencesVmOperation}. The backing memory is reserved virtual memory, so only the
+     * parts of the bitmap covering reached objects are ever committed.
+     */
+    static final class VisitedBitmap extends CallbackCellVisitor {
+        private Address coveredStart = Address.max();
+        private Address coveredEnd = Address.zero();
+        private Pointer bitmap;
+        private Size bitmapSize;
+
+        /**
+         * Computes the bounds of the heap.
+         */
+        @Override
+        protected boolean callback(Object object) {
+            final Pointer origin = Reference.fromJava(object).toOrigin();
+            if (origin.lessThan(coveredStart)) {
+                coveredStart = origin;
+            }
+            if (origin.greaterEqual(coveredEnd)) {
+                coveredEnd = origin.plus(Word.size());
+            }
+            return true;
+        }
+
+        /**
+         * Sizes and allocates the bitmap.
+         *
+         * @return {@link JVMTIConstants#JVMTI_ERROR_NONE} on success, {@link JVMTIConstants#JVMTI_ERROR_NOT_AVAILABLE}
+         *         if the heap scheme cannot {@linkplain HeapScheme#walkHeap(CallbackCellVisitor) walk} the heap or
+         *         {@link JVMTIConstants#JVMTI_ERROR_OUT_OF_MEMORY} if the bitmap cannot be allocated
+         */
+        int initialize() {
+            vmConfig().heapScheme().walkHeap(this);
+            if (coveredEnd.isZero()) {
+                // The boot heap is never empty: the walk visited nothing at all
+                return JVMTI_ERROR_NOT_AVAILABLE;
+            }
+            final long bits = coveredEnd.minus(coveredStart).toLong() >>> Word.widthValue().log2numberOfBytes;
+            bitmapSize = Size.fromLong(((bits + Longs.WIDTH - 1) >>> 6) << 3).alignUp(Platform.platform().pageSize).asSize();
+            bitmap = VirtualMemory.allocate(bitmapSize, VirtualMemory.Type.DATA);
+            return bitmap.isZero() ? JVMTI_ERROR_OUT_OF_MEMORY : JVMTI_ERROR_NONE;
+        }
+
+        void release() {
+            if (!bitmap.isZero()) {
+                VirtualMemory.deallocate(bitmap, bitmapSize, VirtualMemory.Type.DATA);
+            }
+        }
+
+        /**
+         * Marks the object at a given origin.
+         *
+         * @return {@code true} if the object was not marked before and lies in the covered range
+         */
+        boolean mark(Pointer origin) {
+            if (origin.lessThan(coveredStart) || origin.greaterEqual(coveredEnd)) {
+                return false;
+            }
+            final long bitIndex = origin.minus(coveredStart).toLong() >>> Word.widthValue().log2numberOfBytes;
+            final Pointer wordAddress = bitmap.plus((bitIndex >>> 6) << 3);
+            final long mask = 1L << (bitIndex & (Longs.WIDTH - 1));
+            final long word = wordAddress.readLong(0);
+            if ((word & mask) != 0) {
+                return false;
+            }
+            wordAddress.writeLong(0, word | mask);
+            return true;
+        }
+    }
+
+    /**
+     * Implements {@code FollowReferences} by tracing the object graph in a single safepoint, in the manner of the
+     * marking phase of {@link com.sun.max.vm.heap.gcx.TricolorHeapMarker}: a {@link VisitedBitmap mark bitmap} records
+     * the objects reached and an explicit stack of origins holds the grey objects. The heap reference callbacks for the
+     * references of an object are issued in one batch when the object is scanned, so that the tag and class tag of the
+     * referrer are looked up, and its tag written back, once per object rather than once per reference.
+     * <p>
+     * If no initial object is given, the roots reported are the thread objects ({@link JVMTIConstants#JVMTI_HEAP_REFERENCE_THREAD}),
+     * the references held by the monitor scheme ({@link JVMTIConstants#JVMTI_HEAP_REFERENCE_MONITOR}) and the references
+     * from the boot and immortal heaps ({@link JVMTIConstants#JVMTI_HEAP_REFERENCE_OTHER}). Stack locals are not
+     * reported, as the stack reference maps of the stopped threads are only prepared for GC operations.
+     * Only the heap reference callback is supported.
+     */
+    static final class FollowReferencesVmOperation extends VmOperation {
+        private final JVMTI.Env env;
+        private final int heapFilter;
+        private final Class klass;
+        private final Object initialObject;
+        private final Pointer heapReferenceCallback;
+        private final Word userData;
+
+        private final VisitedBitmap visited = new VisitedBitmap();
+        private Pointer markStack;
+        private int markStackSize;
+        private int markStackCapacity;
+
+        /**
+         * Native scratch memory for the {@code tag_ptr} and {@code referrer_tag_ptr} arguments and the
+         * {@code jvmtiHeapReferenceInfo} passed to the callback.
+         */
+        private Pointer scratch;
+        private Pointer tagPtr;
+        private Pointer referrerTagPtr;
+        private Pointer referenceInfo;
+
+        /**
+         * State of the referrer whose references are being reported.
+         */
+        private Object referrer;
+        private long referrerClassTag;
+        private int currentKind;
+        private boolean aborted;
+        private int result = JVMTI_ERROR_NONE;
+
+        private final PointerIndexVisitor rootVisitor = new PointerIndexVisitor() {
+            @Override
+            public void visit(Pointer pointer, int wordIndex) {
+                reportReference(currentKind, -1, pointer.getReference(wordIndex).toOrigin());
+            }
+        };
+
+        private final CallbackCellVisitor immortalRootVisitor = new CallbackCellVisitor() {
+            @Override
+            protected boolean callback(Object object) {
+                reportReference(JVMTI_HEAP_REFERENCE_OTHER, -1, Reference.fromJava(object).toOrigin());
+                return !aborted;
+            }
+        };
+
+        private final Pointer.Procedure threadRootVisitor = new Pointer.Procedure() {
+            public void run(Pointer tla) {
+                final Thread thread = VmThread.fromTLA(tla).javaThread();
+                if (thread != null && !aborted) {
+                    reportReference(JVMTI_HEAP_REFERENCE_THREAD, -1, Reference.fromJava(thread).toOrigin());
+                }
+            }
+        };
+
+        FollowReferencesVmOperation(JVMTI.Env env, int heapFilter, Class klass, Object initialObject, Pointer callbacks, Word userData) {
+            super("JVMTI_FollowReferences", null, Mode.Safepoint, false);
+            this.env = env;
+            this.heapFilter = heapFilter;
+            this.klass = klass;
+            this.initialObject = initialObject;
+            this.heapReferenceCallback = HeapCallbacks.HEAP_REFERENCE.getCallback(callbacks).asPointer();
+            this.userData = userData;
+        }
+
+        private void push(Pointer origin) {
+            if (markStackSize == markStackCapacity) {
+                final int newCapacity = markStackCapacity == 0 ? 1024 : markStackCapacity << 1;
+                final Size newSize = Size.fromInt(newCapacity).shiftedLeft(Word.widthValue().log2numberOfBytes);
+                final Pointer newMarkStack = markStack.isZero() ? Memory.allocate(newSize) : Memory.reallocate(markStack, newSize);
+                if (newMarkStack.isZero()) {
+                    result = JVMTI_ERROR_OUT_OF_MEMORY;
+                    aborted = true;
+                    return;
+                }
+                markStack = newMarkStack;
+                markStackCapacity = newCapacity;
+            }
+            markStack.setWord(markStackSize++, origin);
+        }
+
+        @Override
+        protected void doIt() {
+            // See IterateThroughHeapVmOperation.doIt
+            try {
+                Heap.enableImmortalMemoryAllocation();
+                markStack = Pointer.zero();
+                scratch = Memory.allocate(Size.fromInt(10 * Longs.SIZE));
+                if (scratch.isZero()) {
+                    result = JVMTI_ERROR_OUT_OF_MEMORY;
+                    return;
+                }
+                result = visited.initialize();
+                if (result != JVMTI_ERROR_NONE) {
+                    return;
+                }
+                tagPtr = scratch;
+                referrerTagPtr = scratch.plus(Longs.SIZE);
+                referenceInfo = scratch.plus(2 * Longs.SIZE);
+
+                if (initialObject != null) {
+                    final Pointer origin = Reference.fromJava(initialObject).toOrigin();
+                    visited.mark(origin);
+                    push(origin);
+                } else {
+                    reportRoots();
+                }
+                while (markStackSize > 0 && !aborted) {
+                    scanObject(markStack.getWord(--markStackSize).asPointer());
+                }
+            } finally {
+                visited.release();
+                if (!markStack.isZero()) {
+                    Memory.deallocate(markStack);
+                }
+                if (!scratch.isZero()) {
+                    Memory.deallocate(scratch);
+                }
+                Heap.disableImmortalMemoryAllocation();
+            }
+        }
+
+        private void reportRoots() {
+            referrer = null;
+            referrerClassTag = 0;
+            VmThreadMap.ACTIVE.forAllThreadLocals(null, threadRootVisitor);
+            currentKind = JVMTI_HEAP_REFERENCE_MONITOR;
+            vmConfig().monitorScheme().scanReferences(rootVisitor);
+            currentKind = JVMTI_HEAP_REFERENCE_OTHER;
+            Heap.bootHeapRegion.visitReferences(rootVisitor);
+            ImmortalHeap.visitCells(immortalRootVisitor);
+        }
+
+        /**
+         * Reports all the references of a grey object and pushes the referenced objects not yet reached.
+         */
+        private void scanObject(Pointer origin) {
+            referrer = Reference.fromOrigin(origin).toJava();
+            final Hub hub = UnsafeCast.asHub(Layout.readHubReference(origin).toJava());
+            final ClassActor classActor = hub.classActor;
+            final Class referrerClass = mirrorOf(classActor);
+            final long referrerTag = env.tags.getLongTag(referrer);
+            referrerClassTag = referrerClass == null ? 0 : env.tags.getLongTag(referrerClass);
+            referrerTagPtr.setLong(referrerTag);
+
+            if (referrerClass != null) {
+                reportReference(JVMTI_HEAP_REFERENCE_CLASS, -1, Reference.fromJava(referrerClass).toOrigin());
+            }
+            final SpecificLayout specificLayout = hub.specificLayout;
+            if (specificLayout.isReferenceArrayLayout()) {
+                final int length = Layout.readArrayLength(origin);
+                for (int i = 0; i < length && !aborted; i++) {
+                    reportReference(JVMTI_HEAP_REFERENCE_ARRAY_ELEMENT, i, Layout.getReference(origin, i).toOrigin());
+                }
+            } else if (specificLayout.isTupleLayout() || specificLayout.isHybridLayout()) {
+                final int n = hub.referenceMapStartIndex + hub.referenceMapLength;
+                for (int i = hub.referenceMapStartIndex; i < n && !aborted; i++) {
+                    final int wordIndex = hub.getInt(i);
+                    reportReference(JVMTI_HEAP_REFERENCE_FIELD, fieldIndex(classActor, wordIndex * Word.size(), false), origin.getReference(wordIndex).toOrigin());
+                }
+                if (referrer instanceof Class && !aborted) {
+                    scanClass(ClassActor.fromJava((Class) referrer));
+                }
+            }
+
+            final long newReferrerTag = referrerTagPtr.getLong();
+            if (newReferrerTag != referrerTag) {
+                env.tags.setTag(referrer, newReferrerTag);
+            }
+        }
+
+        /**
+         * Reports the references specific to a class object: its superclass, its class loader and its static fields.
+         */
+        private void scanClass(ClassActor classActor) {
+            if (classActor.superClassActor != null) {
+                final Class superClass = mirrorOf(classActor.superClassActor);
+                if (superClass != null) {
+                    reportReference(JVMTI_HEAP_REFERENCE_SUPERCLASS, -1, Reference.fromJava(superClass).toOrigin());
+                }
+            }
+            if (classActor.classLoader != null) {
+                reportReference(JVMTI_HEAP_REFERENCE_CLASS_LOADER, -1, Reference.fromJava(classActor.classLoader).toOrigin());
+            }
+            final Object staticTuple = classActor.staticTuple();
+            if (staticTuple != null) {
+                final Pointer tupleOrigin = Reference.fromJava(staticTuple).toOrigin();
+                final Hub hub = UnsafeCast.asHub(Layout.readHubReference(tupleOrigin).toJava());
+                final int n = hub.referenceMapStartIndex + hub.referenceMapLength;
+                for (int i = hub.referenceMapStartIndex; i < n && !aborted; i++) {
+                    final int wordIndex = hub.getInt(i);
+                    reportReference(JVMTI_HEAP_REFERENCE_STATIC_FIELD, fieldIndex(classActor, wordIndex * Word.size(), true), tupleOrigin.getReference(wordIndex).toOrigin());
+                }
+            }
+        }
+
+        /**
+         * Issues the heap reference callback for a reference from the {@linkplain #referrer current referrer} (or from
+         * a root if it is {@code null}) unless the referenced object is filtered, and pushes the referenced object if
+         * the callback asks for its references to be visited.
+         *
+         * @param index the value of the {@code index} field of the {@code jvmtiHeapReferenceInfo} passed to the callback
+         */
+        private void reportReference(int kind, int index, Pointer referreeOrigin) {
+            if (referreeOrigin.isZero() || aborted) {
+                return;
+            }
+            boolean visitObjects = true;
+            final Object referree = Reference.fromOrigin(referreeOrigin).toJava();
+            final Class referreeClass = mirrorOf(ObjectAccess.readClassActor(referree));
+            if (!heapReferenceCallback.isZero() && !isFiltered(env, heapFilter, klass, referree, referreeClass)) {
+                final boolean isSelf = referree == referrer;
+                final long tag = isSelf ? referrerTagPtr.getLong() : env.tags.getLongTag(referree);
+                tagPtr.setLong(tag);
+                referenceInfo.setInt(0, index);
+                final Reference ref = Reference.fromJava(referree);
+                final int flags = invokeHeapReferenceCallback(heapReferenceCallback, kind,
+                                kind == JVMTI_HEAP_REFERENCE_FIELD || kind == JVMTI_HEAP_REFERENCE_STATIC_FIELD || kind == JVMTI_HEAP_REFERENCE_ARRAY_ELEMENT ? referenceInfo : Pointer.zero(),
+                                referreeClass == null ? 0 : env.tags.getLongTag(referreeClass),
+                                referrerClassTag,
+                                Layout.size(ref).toLong(),
+                                isSelf ? referrerTagPtr : tagPtr,
+                                referrer == null ? Pointer.zero() : referrerTagPtr,
+                                Layout.isArray(ref) ? Layout.readArrayLength(ref) : -1,
+                                userData);
+                if (!isSelf) {
+                    final long newTag = tagPtr.getLong();
+                    if (newTag != tag) {
+                        env.tags.setTag(referree, newTag);
+                    }
+                }
+                if ((flags & JVMTI_VISIT_ABORT) != 0) {
+                    aborted = true;
+                    return;
+                }
+                visitObjects = (flags & JVMTI_VISIT_OBJECTS) != 0;
+            }
+            if (visitObjects && visited.mark(referreeOrigin)) {
+                push(referreeOrigin);
+            }
+        }
+    }
+
+    static int followReferences(JVMTI.Env jvmtiEnv, int heapFilter, Class klass, Object initialObject, Pointer callbacks, Pointer userData) {
+        FollowReferencesVmOperation op = new FollowReferencesVmOperation(jvmtiEnv, heapFilter, klass, initialObject, callbacks, userData);
+        op.submit();
+        return op.result;
+    }
+
 }
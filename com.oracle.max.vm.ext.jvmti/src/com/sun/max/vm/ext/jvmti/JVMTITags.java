@@ -22,14 +22,19 @@
  */
 package com.sun.max.vm.ext.jvmti;
 
-import java.lang.ref.*;
-import java.util.*;
-
 import static com.sun.max.vm.ext.jvmti.JVMTIConstants.*;
 
+import java.util.*;
+
+import com.sun.max.lang.*;
 import com.sun.max.memory.*;
 import com.sun.max.unsafe.*;
+import com.sun.max.vm.ext.jvmti.JVMTIEvents.E;
+import com.sun.max.vm.heap.*;
 import com.sun.max.vm.jni.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.thread.*;
 
 /**
  * JVMTI object tagging support. The tag map is allocated lazily. We cannot use a standard {@link WeakHashMap} because
@@ -38,338 +43,525 @@ import com.sun.max.vm.jni.*;
  *
  * We support {@link Object} (for JJVMTI) and {@code long} values, not via {@link Long} to avoid unnecessary allocation.
  *
+ * The map does not allocate a {@link java.lang.ref.WeakReference} per tagged object. Instead, the keys are raw object
+ * origins held in native memory, invisible to the GC, and the map is registered with the {@link SpecialReferenceManager}
+ * as a table of {@linkplain SpecialReferenceManager.WeakRoots weak roots} that every GC updates in place. Entries for
+ * dead objects are removed by the GC and, if the agent asked for it, their tags are queued and delivered as a batch of
+ * {@code ObjectFree} events {@linkplain #postObjectFreeEvents() after} the GC.
+ *
+ * Lookups do not take a lock: the raw keys are only compared with safepoints disabled, so no GC can move the
+ * object being looked up, or update the table, in the middle of a probe sequence.
+ * Updates are serialized by the lock on this object.
  */
-class JVMTITags {
+class JVMTITags implements SpecialReferenceManager.WeakRoots {
 
     /**
-     * A cut down and modified version of {@link WeakHashMap}.
-     * The value 0 is not allowed, and used to mean lookup failure.
+     * An open addressing (linear probing) hash table keyed by object identity.
+     * A key slot is either {@linkplain Address#zero() empty}, {@link #DELETED} or the origin of a tagged object.
      */
-    static class Map {
-        static abstract class Entry extends WeakReference<Object> {
-            final int hash;
-            Entry next;
-
-            Entry(Object object, int hash, Entry next) {
-                super(object);
-                this.hash = hash;
-                this.next = next;
-            }
-
-        }
-
-        static class LongEntry extends Entry {
-            long value;
-            LongEntry(Object object, long value, int hash, Entry next) {
-                super(object, hash, next);
-                this.value = value;
-            }
-
+    static final class Table {
+        /**
+         * Number of slots, a power of 2.
+         */
+        final int capacity;
+        /**
+         * Native array of {@link #capacity} words holding the keys.
+         */
+        final Pointer keys;
+        /**
+         * Identity hash codes of the keys, so that the table can be rehashed without touching the keys.
+         */
+        final int[] hashes;
+        /**
+         * Tags of native agents, {@code null} for JJVMTI agents.
+         */
+        final long[] longTags;
+        /**
+         * Tags of JJVMTI agents, {@code null} for native agents.
+         */
+        final Object[] objectTags;
+        /**
+         * Number of slots that are not empty, including {@linkplain #DELETED deleted} ones.
+         */
+        int used;
+
+        Table(int capacity, boolean isNative) {
+            this.capacity = capacity;
+            this.hashes = new int[capacity];
+            this.longTags = isNative ? new long[capacity] : null;
+            this.objectTags = isNative ? null : new Object[capacity];
+            this.keys = Memory.mustAllocate(Size.fromInt(capacity).shiftedLeft(Word.widthValue().log2numberOfBytes));
+            Memory.clearWords(keys, capacity);
         }
+    }
 
-        static class ObjectEntry extends Entry {
-            Object value;
-            ObjectEntry(Object object, Object value, int hash, Entry next) {
-                super(object, hash, next);
-                this.value = value;
-            }
-        }
+    private static final int INITIAL_CAPACITY = 64;
 
-        private static final int DEFAULT_INITIAL_CAPACITY = 16;
-        private static final int MAXIMUM_CAPACITY = 1 << 30;
-        private static final float DEFAULT_LOAD_FACTOR = 0.75f;
-        private int size;
-        private int threshold;
-        private final float loadFactor;
-        private Entry[] table;
+    /**
+     * Key of a slot whose entry was removed. It must be kept distinct from an empty slot so that probe sequences
+     * going through it are not cut short.
+     */
+    private static final Address DELETED = Address.fromInt(1);
 
-        private Entry[] getTable() {
-            // expungeStaleEntries(); TODO
-            return table;
-        }
+    /**
+     * The environment owning the tags.
+     */
+    private final JVMTI.Env env;
 
-        Map(boolean isNative) {
-            this.loadFactor = DEFAULT_LOAD_FACTOR;
-            threshold = DEFAULT_INITIAL_CAPACITY;
-            if (isNative) {
-                table = new LongEntry[DEFAULT_INITIAL_CAPACITY];
-            } else {
-                table = new ObjectEntry[DEFAULT_INITIAL_CAPACITY];
-            }
-        }
+    private volatile Table table;
 
-        static int indexFor(int h, int length) {
-            return h & (length - 1);
-        }
+    /**
+     * Whether this object has been {@linkplain SpecialReferenceManager#registerWeakRoots registered} with the GC. It
+     * stays registered once it is, even after {@link #dispose()}, so that the GC releases the retired key arrays.
+     */
+    private boolean registered;
 
-        void put(Object key, long value) {
-            LongEntry e = (LongEntry) putCommon(key, true);
-            e.value = value;
-        }
+    /**
+     * Native key arrays of tables replaced by a larger one. A concurrent lookup may still be probing them, so they are
+     * only released by the next GC, at which point no lookup can be in progress.
+     */
+    private long[] retiredKeys = new long[4];
+    private int retiredKeysCount;
 
-        void put(Object key, Object value) {
-            ObjectEntry e = (ObjectEntry) putCommon(key, false);
-            e.value = value;
-        }
+    /**
+     * Native buffer of the tags of objects found dead by the GC, pending delivery of {@code ObjectFree} events.
+     */
+    private Pointer freedTags = Pointer.zero();
+    private int freedTagsCount;
+    private int freedTagsCapacity;
 
-        private Entry putCommon(Object key, boolean isNative) {
-            int h = System.identityHashCode(key);
-            Entry[] tab = getTable();
-            int i = indexFor(h, tab.length);
+    JVMTITags(JVMTI.Env env) {
+        this.env = env;
+    }
 
-            for (Entry e = tab[i]; e != null; e = e.next) {
-                if (h == e.hash && key == e.get()) {
-                    return e;
-                }
+    /**
+     * Gets the slot holding the key for a given object.
+     *
+     * @return the index of the slot in {@code t}, or -1 if {@code object} is not tagged
+     */
+    private static int indexOf(Table t, Object object, int hash) {
+        final Address origin = Reference.fromJava(object).toOrigin();
+        final int mask = t.capacity - 1;
+        int index = hash & mask;
+        while (true) {
+            final Address key = t.keys.getWord(index).asAddress();
+            if (key.equals(origin)) {
+                return index;
             }
-
-            Entry e = tab[i];
-            Entry ne = isNative ? new LongEntry(key, 0, h, e) : new ObjectEntry(key, null, h, e);
-            tab[i] = ne;
-            if (++size >= threshold) {
-                resize(tab.length * 2);
+            if (key.isZero()) {
+                return -1;
             }
-            return ne;
-        }
-
-        long getLong(Object key) {
-            LongEntry e = (LongEntry) getCommon(key);
-            return e == null ? 0 : e.value;
-        }
-
-        Object getObject(Object key) {
-            ObjectEntry e = (ObjectEntry) getCommon(key);
-            return e == null ? null : e.value;
+            index = (index + 1) & mask;
         }
+    }
 
-        private Entry getCommon(Object key) {
-            int h = System.identityHashCode(key);
-            Entry[] tab = getTable();
-            int index = indexFor(h, tab.length);
-            Entry e = tab[index];
-            while (e != null) {
-                if (e.hash == h && e.get() == key) {
-                    return e;
-                }
-                e = e.next;
-            }
-            return null;
-        }
-
-        public void remove(Object key) {
-            int h = System.identityHashCode(key);
-            Entry[] tab = getTable();
-            int i = indexFor(h, tab.length);
-            Entry prev = tab[i];
-            Entry e = prev;
-
-            while (e != null) {
-                Entry next = e.next;
-                if (h == e.hash && key == e.get()) {
-                    size--;
-                    if (prev == e) {
-                        tab[i] = next;
-                    } else {
-                        prev.next = next;
-                    }
-                    return;
-                }
-                prev = e;
-                e = next;
+    /**
+     * Finds a free slot for a key with a given hash. The table must have at least one empty slot.
+     */
+    private static int freeSlot(Table t, int hash) {
+        final int mask = t.capacity - 1;
+        int index = hash & mask;
+        while (true) {
+            final Address key = t.keys.getWord(index).asAddress();
+            if (key.isZero() || key.equals(DELETED)) {
+                return index;
             }
+            index = (index + 1) & mask;
         }
+    }
 
-        void resize(int newCapacity) {
-            Entry[] oldTable = getTable();
-            int oldCapacity = oldTable.length;
-            if (oldCapacity == MAXIMUM_CAPACITY) {
-                threshold = Integer.MAX_VALUE;
-                return;
-            }
+    private static boolean isLive(Address key) {
+        return !key.isZero() && !key.equals(DELETED);
+    }
 
-            Entry[] newTable = new Entry[newCapacity];
-            transfer(oldTable, newTable);
-            table = newTable;
-
-            /*
-             * If ignoring null elements and processing ref queue caused massive
-             * shrinkage, then restore old table.  This should be rare, but avoids
-             * unbounded expansion of garbage-filled tables.
-             */
-            if (size >= threshold / 2) {
-                threshold = (int) (newCapacity * loadFactor);
-            } else {
-                // expungeStaleEntries();
-                transfer(newTable, oldTable);
-                table = oldTable;
+    /**
+     * Gets the tag of a given object without locking.
+     *
+     * @return the tag of {@code object} or 0 if it is not tagged
+     */
+    private long lookupLong(Object object) {
+        final int hash = System.identityHashCode(object);
+        final boolean wasDisabled = SafepointPoll.disable();
+        final Table t = table;
+        long tag = 0;
+        if (t != null && t.longTags != null) {
+            final int index = indexOf(t, object, hash);
+            if (index >= 0) {
+                tag = t.longTags[index];
             }
         }
-
-        private void transfer(Entry[] src, Entry[] dest) {
-            for (int j = 0; j < src.length; ++j) {
-                Entry e = src[j];
-                src[j] = null;
-                while (e != null) {
-                    Entry next = e.next;
-                    Object key = e.get();
-                    if (key == null) {
-                        e.next = null;  // Help GC
-                        size--;
-                    } else {
-                        int i = indexFor(e.hash, dest.length);
-                        e.next = dest[i];
-                        dest[i] = e;
-                    }
-                    e = next;
-                }
-            }
+        if (!wasDisabled) {
+            SafepointPoll.enable();
         }
+        return tag;
+    }
 
-        static abstract class Visitor {
-            abstract void visit(Entry e);
-            Object getResult() {
-                return null;
+    /**
+     * Gets the tag of a given object without locking.
+     *
+     * @return the tag of {@code object} or {@code null} if it is not tagged
+     */
+    private Object lookupObject(Object object) {
+        final int hash = System.identityHashCode(object);
+        final boolean wasDisabled = SafepointPoll.disable();
+        final Table t = table;
+        Object tag = null;
+        if (t != null && t.objectTags != null) {
+            final int index = indexOf(t, object, hash);
+            if (index >= 0) {
+                tag = t.objectTags[index];
             }
         }
-
-        Visitor apply(Visitor visitor) {
-            for (int t = 0; t < table.length; t++) {
-                Map.Entry e = table[t];
-                while (e != null) {
-                    if (e.get() != null) {
-                        visitor.visit(e);
-                    }
-                    e = e.next;
-                }
-            }
-            return visitor;
+        if (!wasDisabled) {
+            SafepointPoll.enable();
         }
-
+        return tag;
     }
 
-    private Map tagMap;
-
     /*
-     * Next two functions are for use by JVMTIHeapFunctions, where no synchronization is necessary.
+     * Next three functions are for use by JVMTIHeapFunctions, where no synchronization is necessary.
      */
 
     boolean isTagged(Object object) {
-        if (tagMap == null) {
+        final Table t = table;
+        if (t == null) {
             return false;
-        } else {
-            return tagMap.getCommon(object) != null;
         }
+        return t.longTags != null ? lookupLong(object) != 0 : lookupObject(object) != null;
     }
 
     long getLongTag(Object object) {
-        return checkMap(true).getLong(object);
+        return lookupLong(object);
     }
 
     Object getObjectTag(Object object) {
-        return checkMap(false).getObject(object);
+        return lookupObject(object);
     }
 
     /*
-     * Implementation of API methods where we need to protect against concurrent access.
+     * Implementation of API methods. Readers go lock free, writers need to protect against concurrent updates.
      */
 
-    synchronized int getTag(Object object, Pointer tagPtr) {
-        long tag = checkMap(true).getLong(object);
-        tagPtr.writeLong(0, tag);
+    int getTag(Object object, Pointer tagPtr) {
+        tagPtr.writeLong(0, lookupLong(object));
         return JVMTI_ERROR_NONE;
     }
 
     synchronized int setTag(Object object, long tag) {
         if (tag == 0) {
-            checkMap(true).remove(object);
+            remove(object);
         } else {
-            checkMap(true).put(object, tag);
+            checkTable(true).longTags[put(object)] = tag;
         }
         return JVMTI_ERROR_NONE;
     }
 
     public synchronized void setTag(Object object, Object tag) {
-        checkMap(false).put(object, tag);
+        if (tag == null) {
+            remove(object);
+        } else {
+            checkTable(false).objectTags[put(object)] = tag;
+        }
     }
 
-    public synchronized Object getTag(Object object) {
-        return checkMap(false).getObject(object);
+    public Object getTag(Object object) {
+        return lookupObject(object);
     }
 
-    private Map checkMap(boolean isNative) {
-        if (tagMap == null) {
-            tagMap  = new Map(isNative);
+    private Table checkTable(boolean isNative) {
+        if (table == null) {
+            table = new Table(INITIAL_CAPACITY, isNative);
+            if (!registered) {
+                SpecialReferenceManager.registerWeakRoots(this);
+                registered = true;
+            }
         }
-        return tagMap;
+        return table;
     }
 
-    synchronized int getObjectsWithTags(final int tagCount, final Pointer tags, Pointer countPtr, Pointer objectResultPtrPtr, Pointer tagResultPtrPtr) {
-        if (tagCount < 0) {
-            return JVMTI_ERROR_ILLEGAL_ARGUMENT;
+    /**
+     * Releases the tags of a disposed environment. The key array of the table is retired as by {@link #grow(Table)},
+     * since a concurrent lookup may still be probing it, and the pending {@code ObjectFree} tags are dropped.
+     */
+    synchronized void dispose() {
+        final Table t = table;
+        if (t != null) {
+            if (retiredKeysCount == retiredKeys.length) {
+                retiredKeys = Arrays.copyOf(retiredKeys, retiredKeysCount << 1);
+            }
+            // The GC must not free the keys before the table is gone, nor record freed tags after that.
+            boolean wasDisabled = SafepointPoll.disable();
+            retiredKeys[retiredKeysCount++] = t.keys.toLong();
+            table = null;
+            if (!wasDisabled) {
+                SafepointPoll.enable();
+            }
         }
-        for (int i = 0; i < tagCount; i++) {
-            long givenTag = tags.getInt(i);
-            if (givenTag == 0) {
-                return JVMTI_ERROR_ILLEGAL_ARGUMENT;
+        if (!freedTags.isZero()) {
+            Memory.deallocate(freedTags);
+            freedTags = Pointer.zero();
+        }
+        freedTagsCount = 0;
+        freedTagsCapacity = 0;
+    }
+
+    /**
+     * Gets the slot for a given object, adding it to the table if necessary. Must be called with the lock held.
+     * The caller stores the tag in the returned slot: the table cannot be replaced before it does so as
+     * that requires the lock.
+     */
+    private int put(Object object) {
+        final int hash = System.identityHashCode(object);
+        Table t = table;
+        if (t.used + 1 > t.capacity - (t.capacity >> 2)) {
+            t = grow(t);
+        }
+        boolean wasDisabled = SafepointPoll.disable();
+        int index = indexOf(t, object, hash);
+        if (index < 0) {
+            index = freeSlot(t, hash);
+            if (t.keys.getWord(index).isZero()) {
+                t.used++;
             }
+            t.hashes[index] = hash;
+            t.keys.setWord(index, Reference.fromJava(object).toOrigin());
+        }
+        if (!wasDisabled) {
+            SafepointPoll.enable();
         }
+        return index;
+    }
 
-        Map.Visitor counter = new Map.Visitor() {
-            private int count;
+    private void remove(Object object) {
+        final Table t = table;
+        if (t == null) {
+            return;
+        }
+        final int hash = System.identityHashCode(object);
+        boolean wasDisabled = SafepointPoll.disable();
+        final int index = indexOf(t, object, hash);
+        if (index >= 0) {
+            t.keys.setWord(index, DELETED);
+            if (t.longTags != null) {
+                t.longTags[index] = 0;
+            } else {
+                t.objectTags[index] = null;
+            }
+        }
+        if (!wasDisabled) {
+            SafepointPoll.enable();
+        }
+    }
 
-            @Override
-            void visit(Map.Entry e) {
-                for (int i = 0; i < tagCount; i++) {
-                    long givenTag = tags.getInt(i);
-                    if (givenTag == ((Map.LongEntry) e).value) {
-                        count++;
+    /**
+     * Replaces a table by one with room for more entries, dropping {@linkplain #DELETED deleted} slots.
+     * The table is only doubled in size if more than half of its slots are live.
+     * The allocation happens before safepoints are disabled, so a GC may update {@code oldTable} in the meantime.
+     */
+    private Table grow(Table oldTable) {
+        int live = 0;
+        for (int i = 0; i < oldTable.capacity; i++) {
+            if (isLive(oldTable.keys.getWord(i).asAddress())) {
+                live++;
+            }
+        }
+        final int newCapacity = live >= oldTable.capacity >> 1 ? oldTable.capacity << 1 : oldTable.capacity;
+        final Table newTable = new Table(newCapacity, oldTable.longTags != null);
+        if (retiredKeysCount == retiredKeys.length) {
+            retiredKeys = Arrays.copyOf(retiredKeys, retiredKeysCount << 1);
+        }
+
+        boolean wasDisabled = SafepointPoll.disable();
+        for (int i = 0; i < oldTable.capacity; i++) {
+            final Address key = oldTable.keys.getWord(i).asAddress();
+            if (isLive(key)) {
+                final int hash = oldTable.hashes[i];
+                final int index = freeSlot(newTable, hash);
+                newTable.keys.setWord(index, key);
+                newTable.hashes[index] = hash;
+                if (newTable.longTags != null) {
+                    newTable.longTags[index] = oldTable.longTags[i];
+                } else {
+                    newTable.objectTags[index] = oldTable.objectTags[i];
+                }
+                newTable.used++;
+            }
+        }
+        retiredKeys[retiredKeysCount++] = oldTable.keys.toLong();
+        table = newTable;
+        if (!wasDisabled) {
+            SafepointPoll.enable();
+        }
+        return newTable;
+    }
+
+    @Override
+    public void processWeakRoots(SpecialReferenceManager.GC gc) {
+        for (int i = 0; i < retiredKeysCount; i++) {
+            Memory.deallocate(Address.fromLong(retiredKeys[i]));
+        }
+        retiredKeysCount = 0;
+
+        final Table t = table;
+        if (t == null) {
+            return;
+        }
+        final boolean recordFreed = t.longTags != null && (env.globalEventSettings & E.OBJECT_FREE.bit) != 0;
+        for (int i = 0; i < t.capacity; i++) {
+            final Address key = t.keys.getWord(i).asAddress();
+            if (isLive(key)) {
+                final Reference ref = Reference.fromOrigin(key.asPointer());
+                if (gc.isReachable(ref)) {
+                    t.keys.setWord(i, gc.preserve(ref).toOrigin());
+                } else {
+                    t.keys.setWord(i, DELETED);
+                    if (t.longTags != null) {
+                        if (recordFreed) {
+                            recordFreedTag(t.longTags[i]);
+                        }
+                        t.longTags[i] = 0;
+                    } else {
+                        t.objectTags[i] = null;
                     }
                 }
             }
+        }
+    }
+
+    /**
+     * Queues the tag of a dead object for {@link #postObjectFreeEvents()}. Called during GC, hence the native buffer.
+     */
+    private void recordFreedTag(long tag) {
+        if (freedTagsCount == freedTagsCapacity) {
+            final int newCapacity = freedTagsCapacity == 0 ? INITIAL_CAPACITY : freedTagsCapacity << 1;
+            final Pointer newFreedTags = freedTags.isZero() ?
+                            Memory.allocate(Size.fromInt(newCapacity * Longs.SIZE)) :
+                            Memory.reallocate(freedTags, Size.fromInt(newCapacity * Longs.SIZE));
+            if (newFreedTags.isZero()) {
+                // Too bad, the event is lost.
+                return;
+            }
+            freedTags = newFreedTags;
+            freedTagsCapacity = newCapacity;
+        }
+        freedTags.setLong(freedTagsCount++, tag);
+    }
+
+    /**
+     * Delivers the {@code ObjectFree} events for the tags queued by the GC, in one batch.
+     * Must be called by a mutator thread after the GC.
+     */
+    void postObjectFreeEvents() {
+        if (freedTagsCount == 0 || !(env instanceof JVMTI.NativeEnv)) {
+            return;
+        }
+        final JVMTI.NativeEnv nativeEnv = (JVMTI.NativeEnv) env;
+        final Pointer callback = JVMTI.getCallbackForEvent(nativeEnv, E.OBJECT_FREE, VmThread.current());
+        final Pointer batch;
+        final int count;
+        // Take the batch with safepoints disabled so that a GC cannot append to it meanwhile, and with the lock held
+        // so that dispose() cannot free it.
+        synchronized (this) {
+            boolean wasDisabled = SafepointPoll.disable();
+            batch = freedTags;
+            count = freedTagsCount;
+            freedTags = Pointer.zero();
+            freedTagsCount = 0;
+            freedTagsCapacity = 0;
+            if (!wasDisabled) {
+                SafepointPoll.enable();
+            }
+        }
+        if (batch.isZero()) {
+            return;
+        }
+        if (!callback.isZero()) {
+            for (int i = 0; i < count; i++) {
+                JVMTICallbacks.invokeObjectFreeCallback(callback, nativeEnv.cstruct, batch.getLong(i));
+            }
+        }
+        Memory.deallocate(batch);
+    }
+
+    /**
+     * Gets the tagged object in a given slot of the current table. Must be called with the lock held.
+     */
+    private Object keyAt(Table t, int index) {
+        boolean wasDisabled = SafepointPoll.disable();
+        final Address key = t.keys.getWord(index).asAddress();
+        final Object object = isLive(key) ? Reference.fromOrigin(key.asPointer()).toJava() : null;
+        if (!wasDisabled) {
+            SafepointPoll.enable();
+        }
+        return object;
+    }
+
+    private static boolean matches(long tag, int tagCount, Pointer tags) {
+        if (tag != 0) {
+            for (int i = 0; i < tagCount; i++) {
+                if (tags.getLong(i) == tag) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
-            @Override
-            Object getResult() {
-                return new Integer(count);
+    synchronized int getObjectsWithTags(final int tagCount, final Pointer tags, Pointer countPtr, Pointer objectResultPtrPtr, Pointer tagResultPtrPtr) {
+        if (tagCount < 0) {
+            return JVMTI_ERROR_ILLEGAL_ARGUMENT;
+        }
+        for (int i = 0; i < tagCount; i++) {
+            if (tags.getLong(i) == 0) {
+                return JVMTI_ERROR_ILLEGAL_ARGUMENT;
             }
-        };
+        }
 
-        final int count = (Integer) tagMap.apply(counter).getResult();
+        final Table t = checkTable(true);
+        // the tags of a JJVMTI agent are objects, none of which can match a jlong tag
+        final int capacity = t.longTags == null ? 0 : t.capacity;
+        int count = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (matches(t.longTags[i], tagCount, tags)) {
+                count++;
+            }
+        }
         // count is an upper bound, entries may disappear through GC actions
-        final Pointer objectResultPtr = objectResultPtrPtr.isZero() ? Pointer.zero() : Memory.allocate(Size.fromInt(count * Word.size()));
-        if (objectResultPtr.isZero()) {
+        final Pointer objectResultPtr = objectResultPtrPtr.isZero() ? Pointer.zero() : Memory.allocate(Size.fromInt(Math.max(count, 1) * Word.size()));
+        if (!objectResultPtrPtr.isZero() && objectResultPtr.isZero()) {
             return JVMTI_ERROR_OUT_OF_MEMORY;
         }
-        final Pointer tagResultPtr = tagResultPtrPtr.isZero() ? Pointer.zero() : Memory.allocate(Size.fromInt(count * Word.size()));
-        if (tagResultPtr.isZero()) {
-            Memory.deallocate(objectResultPtr);
+        final Pointer tagResultPtr = tagResultPtrPtr.isZero() ? Pointer.zero() : Memory.allocate(Size.fromInt(Math.max(count, 1) * Longs.SIZE));
+        if (!tagResultPtrPtr.isZero() && tagResultPtr.isZero()) {
+            if (!objectResultPtr.isZero()) {
+                Memory.deallocate(objectResultPtr);
+            }
             return JVMTI_ERROR_OUT_OF_MEMORY;
         }
 
-        Map.Visitor copier = new Map.Visitor() {
-            @Override
-            void visit(Map.Entry e) {
-                int index = 0;
-                Object key = e.get();
-                if (key != null) {
-                    for (int i = 0; i < tagCount; i++) {
-                        long givenTag = tags.getInt(i);
-                        if (givenTag == ((Map.LongEntry) e).value) {
-                            assert index < count;
-                            if (!objectResultPtr.isZero()) {
-                                objectResultPtr.setWord(index, JniHandles.createLocalHandle(key));
-                            }
-                            if (!tagResultPtr.isZero()) {
-                                tagResultPtr.setLong(index, givenTag);
-                            }
-                            index++;
-                            break;
-                        }
+        int index = 0;
+        for (int i = 0; i < capacity && index < count; i++) {
+            final long tag = t.longTags[i];
+            if (matches(tag, tagCount, tags)) {
+                final Object object = keyAt(t, i);
+                if (object != null) {
+                    if (!objectResultPtr.isZero()) {
+                        objectResultPtr.setWord(index, JniHandles.createLocalHandle(object));
                     }
+                    if (!tagResultPtr.isZero()) {
+                        tagResultPtr.setLong(index, tag);
+                    }
+                    index++;
                 }
             }
-        };
-        tagMap.apply(copier);
-        countPtr.setInt(count);
+        }
+        countPtr.setInt(index);
+        if (!objectResultPtrPtr.isZero()) {
+            objectResultPtrPtr.setWord(objectResultPtr);
+        }
+        if (!tagResultPtrPtr.isZero()) {
+            tagResultPtrPtr.setWord(tagResultPtr);
+        }
         return JVMTI_ERROR_NONE;
     }
 }
@@ -57,6 +57,7 @@ import com.sun.max.vm.actor.member.*;
 import com.sun.max.vm.bytecode.*;
 import com.sun.max.vm.compiler.*;
 import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.profile.*;
 import com.sun.max.vm.runtime.*;
 import com.sun.max.vm.ti.*;
 import com.sun.max.vm.type.*;
@@ -514,6 +515,23 @@ public class MaxRuntime implements RiRuntime {
         }
     }
 
+    @Override
+    public CiConstant getEntryCounter(RiResolvedMethod method) {
+        Object compiledState = ((ClassMethodActor) method).compiledState;
+        if (compiledState instanceof Compilation) {
+            MethodProfile.Builder entryCounter = ((Compilation) compiledState).entryCounter;
+            if (entryCounter != null) {
+                return CiConstant.forObject(entryCounter.methodProfileObject());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public RiResolvedMethod getEntryCounterMethod() {
+        return MethodInstrumentation.recordOptimizedEntrypoint.classMethodActor;
+    }
+
     @Override
     public void executeOnCompilerThread(Runnable r) {
         throw new UnsupportedOperationException();
@@ -28,6 +28,8 @@ import java.lang.reflect.*;
 
 import com.sun.cri.ci.*;
 import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
 import com.sun.max.vm.actor.holder.ClassActor;
 import com.sun.max.vm.actor.member.*;
@@ -173,7 +175,10 @@ public class MaxRuntimeCalls {
     }
 
     @MAX_RUNTIME_ENTRYPOINT(runtimeCall = CiRuntimeCall.OSRMigrationEnd)
-    public static void runtimeOSRMigrationEnd() {
+    public static void runtimeOSRMigrationEnd(long buffer) {
+        // the locals have been loaded from the buffer, so the safepoints disabled by OnStackReplacement.migrate can be re-enabled
+        Memory.deallocate(Address.fromLong(buffer));
+        SafepointPoll.enable();
         verifyRefMaps();
     }
 
@@ -589,12 +589,20 @@ public class MaxXirGenerator implements RiXirGenerator {
         return new XirSnippet(multiNewArrayTemplate[rank].resolved, Utils.concat(lengths, hub));
     }
 
+    /**
+     * Determines if a type check against a given type can be performed by comparing hubs. This is the case
+     * for final classes and for classes the compiler has assumed to have no subclasses.
+     */
+    private static boolean isLeaf(XirSite site, RiResolvedType type) {
+        return (isFinal(type.accessFlags()) || !site.requiresSubtypeCheck()) && !type.isArrayClass() && !type.isInterface();
+    }
+
     @Override
     public XirSnippet genCheckCast(XirSite site, XirArgument object, XirArgument hub, RiType type) {
         if (type instanceof RiResolvedType) {
             RiResolvedType resolvedType = (RiResolvedType) type;
             XirTemplate template;
-            if (isFinal(resolvedType.accessFlags()) && !resolvedType.isArrayClass()) {
+            if (isLeaf(site, resolvedType)) {
                 assert !resolvedType.isInterface();
                 // can use the leaf class test
                 template = checkcastForLeafTemplate.resolved;
@@ -616,7 +624,7 @@ public class MaxXirGenerator implements RiXirGenerator {
         if (type instanceof RiResolvedType) {
             RiResolvedType resolvedType = (RiResolvedType) type;
             XirTemplate template;
-            if (isFinal(resolvedType.accessFlags()) && !resolvedType.isArrayClass()) {
+            if (isLeaf(site, resolvedType)) {
                 assert !resolvedType.isInterface();
                 template = instanceofForLeafTemplate.resolved;
                 return new XirSnippet(template, object, hub);
@@ -637,7 +645,7 @@ public class MaxXirGenerator implements RiXirGenerator {
         if (type instanceof RiResolvedType) {
             RiResolvedType resolvedType = (RiResolvedType) type;
             XirTemplate template;
-            if (isFinal(resolvedType.accessFlags()) && !resolvedType.isArrayClass()) {
+            if (isLeaf(site, resolvedType)) {
                 assert !resolvedType.isInterface();
                 if (site.isNonNull(receiver)) {
                     template = materializedInstanceofForLeafAndNonNullTemplate.resolved;
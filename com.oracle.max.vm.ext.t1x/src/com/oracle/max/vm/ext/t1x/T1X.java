@@ -174,6 +174,7 @@ public class T1X extends RuntimeCompiler.DefaultNameAdapter implements RuntimeCo
         TTY.Filter filter = PrintFilter == null ? null : new TTY.Filter(PrintFilter, method);
 
         try {
+            c.stats = stats;
             T1XTargetMethod t1xMethod = c.compile(method, isDeopt, install);
             T1XMetrics.BytecodesCompiled += t1xMethod.codeAttribute.code().length;
             T1XMetrics.CodeBytesEmitted += t1xMethod.code().length;
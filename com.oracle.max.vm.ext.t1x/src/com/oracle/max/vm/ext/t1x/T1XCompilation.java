@@ -295,6 +295,11 @@ public abstract class T1XCompilation {
      */
     private boolean isDeopt;
 
+    /**
+     * The statistics to which the phase times of the current compilation are added, or {@code null}.
+     */
+    CiStatistics stats;
+
     /**
      * Creates a compilation object.
      */
@@ -365,6 +370,7 @@ public abstract class T1XCompilation {
      */
     protected void cleanup() {
         method = null;
+        stats = null;
         codeAttribute = null;
         frame = null;
         bciToPos = null;
@@ -424,18 +430,22 @@ public abstract class T1XCompilation {
             }
             TypeInferencingVerifier verifier = new TypeInferencingVerifier(method.holder());
             CodeAttribute codeAttribute = verifier.verify(method, this.codeAttribute);
+            CiStatistics stats = this.stats;
             cleanup();
+            this.stats = stats;
             return compile1(method, codeAttribute, install);
         }
     }
 
     private T1XTargetMethod compile1(ClassMethodActor method, CodeAttribute codeAttribute, boolean install) {
+        long start = System.nanoTime();
         startTimer(T1XTimer.PRE_COMPILE);
         try {
             initCompile(method, codeAttribute);
         } finally {
             stopTimer(T1XTimer.PRE_COMPILE);
         }
+        long parsed = System.nanoTime();
 
         startTimer(T1XTimer.COMPILE);
         try {
@@ -452,12 +462,20 @@ public abstract class T1XCompilation {
         } finally {
             stopTimer(T1XTimer.FIXUP);
         }
+        long emitted = System.nanoTime();
+        if (stats != null) {
+            stats.parseNanos += parsed - start;
+            stats.emitNanos += emitted - parsed;
+        }
 
         startTimer(T1XTimer.INSTALL);
         try {
             return newT1XTargetMethod(this, install);
         } finally {
             stopTimer(T1XTimer.INSTALL);
+            if (stats != null) {
+                stats.installNanos += System.nanoTime() - emitted;
+            }
         }
     }
 
@@ -2042,11 +2060,12 @@ public abstract class T1XCompilation {
         emitEpilogue();
     }
 
-    protected void do_profileBackwardBranch() {
+    protected void do_profileBackwardBranch(int targetBCI) {
         if (methodProfileBuilder != null) {
             // Profiling of backward branches.
             start(PROFILE_BACKWARD_BRANCH);
             assignObject(0, "mpo", methodProfileBuilder.methodProfileObject());
+            assignInt(1, "bci", targetBCI);
             finish();
         }
     }
@@ -2126,7 +2145,7 @@ public abstract class T1XCompilation {
             finish();
 
             if (bci >= targetBCI) {
-                do_profileBackwardBranch();
+                do_profileBackwardBranch(targetBCI);
             }
         }
     }
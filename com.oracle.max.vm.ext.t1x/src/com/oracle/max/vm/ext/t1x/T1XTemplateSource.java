@@ -71,10 +71,11 @@ public class T1XTemplateSource {
     }
 
     @T1X_TEMPLATE(PROFILE_BACKWARD_BRANCH)
-    public static void profileBackwardBranch(MethodProfile mpo) {
+    public static void profileBackwardBranch(MethodProfile mpo, int bci) {
         // entrypoint counters count down to zero ("overflow")
         // Currently, there is no reason to use a separate counter for backward branches.
-        MethodInstrumentation.recordBackwardBranch(mpo);
+        // An overflow may trigger on-stack replacement at the loop header denoted by bci.
+        MethodInstrumentation.recordBackwardBranch(mpo, bci);
     }
 
     @T1X_TEMPLATE(PROFILE_TAKEN_BRANCH)
@@ -0,0 +1,1128 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.max.vm.ext.vma.store.bin;
+
+import static com.oracle.max.vm.ext.vma.store.bin.VMABinaryStoreFormat.*;
+import static com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat.*;
+import static com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat.Key.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+import com.oracle.max.vm.ext.vma.run.java.*;
+import com.oracle.max.vm.ext.vma.store.*;
+import com.oracle.max.vm.ext.vma.store.txt.*;
+import com.sun.max.annotate.*;
+import com.sun.max.vm.runtime.*;
+
+/**
+ * An implementation of {@link VMATextStore} and {@link VMAIdTextStoreIntf} that writes the
+ * {@link VMABinaryStoreFormat binary format} into memory mapped files.
+ *
+ * The records and their components are exactly those of {@link com.oracle.max.vm.ext.vma.store.txt.sbps.SBPSVMAIdTextStore},
+ * but numbers are varint encoded and every timed record carries its own time delta, so the files of a
+ * per-thread store can be merged by time when read. Like that class it is not generated, so a change to
+ * the records must be made to both by hand.
+ *
+ * The file is mapped in segments of {@link #DEFAULT_SEGMENT_SIZE} bytes, which can be changed with the
+ * {@link #SEGMENT_SIZE_PROPERTY} system property. When a segment is full the next one is mapped at the current
+ * file offset, so records may span segments. The file is truncated to the data written when the store is finalized.
+ *
+ * In per-thread mode each thread has its own file, named as for the text store, and the class is unsynchronized,
+ * so there is no contention between threads. In global mode the caller must serialize access.
+ */
+public abstract class MMVMABinaryIdStore implements VMAIdTextStoreIntf {
+
+    private static final String SEGMENT_SIZE_PROPERTY = "max.vma.store.segsize";
+    private static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    @CONSTANT_WHEN_NOT_ZERO
+    private static VMATimeMode timeMode;
+
+    @CONSTANT_WHEN_NOT_ZERO
+    private static File storeFileDir;
+
+    @CONSTANT_WHEN_NOT_ZERO
+    private static int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    private static volatile boolean finalizing;
+
+    /**
+     * The main thread owns this lock after initialization.
+     * It is used to block any daemon threads at store finalization.
+     */
+    private static Lock daemonLock = new ReentrantLock();
+
+    private FileChannel channel;
+
+    /**
+     * The currently mapped segment of the file.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The file offset of {@link #buffer}.
+     */
+    private long segmentBase;
+
+    /**
+     * Holds time of last timed record written, for time delta generation.
+     */
+    private long lastTime;
+
+    /**
+     * Set to {@code false} at start of record output, {@code true} at the end.
+     * Used to handle daemon threads that are writing a record when store finalization is called.
+     */
+    private volatile boolean done = true;
+
+    private boolean threadBatched;
+    protected boolean perThread;
+
+    /**
+     * Non-null when per-thread stores, the associated thread.
+     */
+    private String threadName;
+
+    private RepeatIdHandler repeatIdHandler;
+
+    private PerThreadStoreOwner storeOwner;
+
+    protected MMVMABinaryIdStore() {
+    }
+
+    protected MMVMABinaryIdStore(String threadName) {
+        this.threadName = threadName;
+    }
+
+    private void initStaticState(boolean perThread) {
+        if (storeFileDir == null) {
+            timeMode = VMAOptions.getTimeMode();
+            final String ssp = System.getProperty(SEGMENT_SIZE_PROPERTY);
+            if (ssp != null) {
+                segmentSize = Integer.parseInt(ssp);
+            }
+            storeFileDir = new File(VMAStoreFile.getStoreDir());
+            cleanOutputDir();
+            daemonLock.lock();
+        }
+    }
+
+    private static void cleanOutputDir() {
+        if (storeFileDir.exists()) {
+            for (String fn : storeFileDir.list()) {
+                if (!new File(storeFileDir, fn).delete()) {
+                    System.err.println("failed to delete VMA output file: " + fn);
+                }
+            }
+        } else {
+            storeFileDir.mkdir();
+        }
+    }
+
+    @Override
+    public boolean initializeStore(boolean threadBatched, boolean perThread, PerThreadStoreOwner storeOwner) {
+        this.perThread = perThread;
+        this.threadBatched = threadBatched;
+        if (perThread) {
+            assert storeOwner != null;
+        }
+        this.storeOwner = storeOwner;
+        initStaticState(perThread);
+        repeatIdHandler = RepeatIdHandler.create(perThread);
+        if (!perThread) {
+            return createPersistentStore(this, VMAStoreFile.GLOBAL_STORE);
+        } else {
+            // per-thread stores setup in defineThread
+            // N.B. the main thread does get that call (soon after this)
+            return true;
+        }
+    }
+
+    /**
+     * Creates and maps the first segment of the store file.
+     * @param fileName to use for store
+     * @return {@code true} iff the persistent store was created ok
+     */
+    private static boolean createPersistentStore(MMVMABinaryIdStore store, String fileName) {
+        File file = new File(storeFileDir, fileName);
+        try {
+            store.channel = new RandomAccessFile(file, "rw").getChannel();
+            store.buffer = store.channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            store.buffer.putInt(MAGIC);
+            store.buffer.put((byte) VERSION);
+            store.appendStoreHeader();
+            return true;
+        } catch (IOException ex) {
+            System.err.println("failed to open store file " + file + ": " + ex);
+            return false;
+        }
+    }
+
+    @Override
+    public VMATextStore newThread(String threadName) {
+        if (perThread) {
+            MMVMABinaryIdStore store = createThreadStore(threadName);
+            store.initializeStore(true, true, storeOwner);
+            if (!createPersistentStore(store, threadName)) {
+                FatalError.unexpected("failed to create per-thread VMA store");
+            }
+            return store;
+        } else {
+            return this;
+        }
+    }
+
+    private void appendStoreHeader() {
+        appendCode(INITIALIZE_STORE);
+        // the first delta is from zero, i.e. the absolute start time
+        lastTime = 0;
+        appendTime(timeMode.getTime());
+        put(timeMode.isAbsolute());
+        put((threadBatched ? BATCHED : 0) | (perThread ? PER_THREAD : 0));
+        end();
+    }
+
+    protected abstract MMVMABinaryIdStore createThreadStore(String threadName);
+
+    @Override
+    public void finalizeStore() {
+        // Daemon threads pose problems in correctly finalizing the buffer without interleaving
+        // as they continue to execute and therefore modify the buffer.
+        // The following statement will block any daemon threads from starting a new record
+        finalizing = true;
+        // However, there may be daemon threads part way through a record
+        if (perThread) {
+            synchronized (storeOwner) {
+                Iterator<VMAStore> allStores = storeOwner.getThreadStores();
+                while (allStores.hasNext()) {
+                    MMVMABinaryIdStore store = (MMVMABinaryIdStore) allStores.next();
+                    store.waitForDaemon();
+                    store.finalizeLogBuffer();
+                }
+            }
+        } else {
+            // wait for any daemon thread to finish an inflight record
+            waitForDaemon();
+            finalizeLogBuffer();
+        }
+    }
+
+    /**
+     * Wait for a daemon thread to finish an inflight record.
+     * No need to synchronize as only interested in state change.
+     */
+    void waitForDaemon() {
+        while (!done) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+            }
+        }
+    }
+
+    protected void finalizeLogBuffer() {
+        // Must not call appendCode else will block!
+        putCode(FINALIZE_STORE);
+        appendTime(timeMode.getTime());
+        end();
+        try {
+            buffer.force();
+            channel.truncate(segmentBase + buffer.position());
+            channel.close();
+        } catch (IOException ex) {
+            System.err.println("failed to close VMA store file: " + ex);
+        }
+    }
+
+    /*
+     * Short form support
+     */
+    @Override
+    public void addClassShortFormDef(String name, long clId, String shortName) {
+        putCode(CLASS_DEFINITION);
+        putString(name);
+        put(clId);
+        put(shortName);
+        end();
+    }
+
+    @Override
+    public void addThreadShortFormDef(String name, String shortName) {
+        putCode(THREAD_DEFINITION);
+        // no quoting needed, unlike the text form
+        putString(name);
+        put(shortName);
+        end();
+    }
+
+    @Override
+    public void addMemberShortFormDef(VMATextStoreFormat.Key key, String classShortForm, String name, String shortName) {
+        putCode(key);
+        put(classShortForm);
+        putString(name);
+        put(shortName);
+        end();
+    }
+
+    /**
+     * Ensures that the current segment has room for {@code size} bytes, mapping the next segment if not.
+     */
+    private void ensure(int size) {
+        if (buffer.remaining() < size) {
+            segmentBase += buffer.position();
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, segmentBase, Math.max(segmentSize, size));
+            } catch (IOException ex) {
+                FatalError.unexpected("failed to map VMA store segment", ex);
+            }
+        }
+    }
+
+    private void putVarLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void putToken(int tag, long payload) {
+        ensure(MAX_TOKEN_SIZE);
+        long rest = payload >>> 4;
+        int first = tag | ((int) (payload & 0xF) << TAG_BITS);
+        if (rest == 0) {
+            buffer.put((byte) first);
+        } else {
+            buffer.put((byte) (first | 0x80));
+            putVarLong(rest);
+        }
+    }
+
+    private void put(long value) {
+        putToken(LONG, zigzag(value));
+    }
+
+    private void put(char value) {
+        putToken(CHAR, value);
+    }
+
+    private void put(boolean value) {
+        putToken(SPECIAL, value ? TRUE : FALSE);
+    }
+
+    private void put(float value) {
+        putToken(FLOAT, 0);
+        buffer.putFloat(value);
+    }
+
+    private void put(double value) {
+        putToken(DOUBLE, 0);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Appends a short form, which is a decimal number unless the short form prefix is enabled.
+     */
+    private void put(String shortForm) {
+        long value = 0;
+        final int length = shortForm.length();
+        for (int i = 0; i < length; i++) {
+            char ch = shortForm.charAt(i);
+            if (ch < '0' || ch > '9' || length > 18 || (ch == '0' && length > 1 && i == 0)) {
+                putString(shortForm);
+                return;
+            }
+            value = value * 10 + ch - '0';
+        }
+        put(value);
+    }
+
+    private void putString(String s) {
+        byte[] bytes;
+        try {
+            bytes = s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw FatalError.unexpected("UTF-8 not supported", ex);
+        }
+        putToken(STRING, bytes.length);
+        ensure(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * All records start by calling this method.
+     * @param key
+     */
+    private void appendCode(Key key) {
+        if (finalizing) {
+            // any daemon thread will block here
+            daemonLock.lock();
+        }
+        done = false;
+        putCode(key);
+    }
+
+    private void putCode(Key key) {
+        ensure(MAX_TOKEN_SIZE);
+        // never zero, which marks the end of the data
+        putVarLong(key.ordinal() + 1);
+    }
+
+    protected void end() {
+        putToken(SPECIAL, END);
+        done = true;
+    }
+
+    private void appendCheckRepeatId(long objId) {
+        if (objId == REPEAT_ID_VALUE) {
+            putToken(SPECIAL, VMABinaryStoreFormat.REPEAT_ID);
+        } else {
+            put(objId);
+        }
+    }
+
+    private void appendTime(long time) {
+        putToken(TIME, zigzag(time - lastTime));
+        lastTime = time;
+    }
+
+    /**
+     * Append the log entry key code, then the time associated with the entry, followed by the thread.
+     * @param time time record generated
+     * @param key
+     * @param threadName (maybe null for per-thread stores)
+     * @param bci byte code index
+     */
+    private void appendTT(long time, Key key, String threadName, int bci) {
+        appendCode(key);
+        appendTime(time);
+        if (threadName != null) {
+            put(threadName);
+        } else {
+            assert perThread;
+        }
+        if (bci >= 0) {
+            put(bci);
+        }
+    }
+
+    /**
+     * As {@link #appendTT} followed by the {@code objId}.
+     */
+    private void appendTTId(long time, Key key, long objId, String threadName, int bci) {
+        appendTT(time, key, threadName, bci);
+        appendCheckRepeatId(objId);
+    }
+
+    /**
+     * As {@link #appendTTId} followed by an array index.
+     */
+    private void appendTTIdIndex(long time, Key key, long objId, String threadName, int bci, int index) {
+        appendTT(time, key, threadName, bci);
+        appendCheckRepeatId(objId);
+        put(index);
+    }
+
+    private void appendPutFieldPrefix(long time, long objId, String memberName, String threadName, int bci) {
+        appendTTId(time, ADVISE_BEFORE_PUT_FIELD, objId, threadName, bci);
+        put(memberName);
+    }
+
+    private void appendPutFieldPrefix(long time, long objId, int memberId, int bci) {
+        appendTTId(time, ADVISE_BEFORE_PUT_FIELD, objId, null, bci);
+        put(memberId);
+    }
+
+    private void appendPutStaticPrefix(long time, String memberName, String threadName, int bci) {
+        appendTT(time, ADVISE_BEFORE_PUT_STATIC, threadName, bci);
+        put(memberName);
+    }
+
+    private void appendPutStaticPrefix(long time, int memberId, int bci) {
+        appendTT(time, ADVISE_BEFORE_PUT_STATIC, null, bci);
+        put(memberId);
+    }
+
+    private void prefixAdviseBeforeOperation(long time, String threadName, int bci, int arg1) {
+        appendTT(time, ADVISE_BEFORE_OPERATION, threadName, bci);
+        put(arg1);
+    }
+
+    @Override
+    public void removal(long id) {
+        appendCode(REMOVAL);
+        put(id);
+        end();
+    }
+
+    public long checkRepeatId(long objId, String threadName) {
+        return repeatIdHandler.checkRepeatId(objId, threadName);
+    }
+
+    @Override
+    public void threadSwitch(long time, String threadName) {
+        if (!perThread) {
+            appendCode(THREAD_SWITCH);
+            appendTime(time);
+            end();
+        }
+    }
+
+    @Override
+    public void unseenObject(long time, String threadName, int bci, long objId, String shortClassName) {
+        // There is no "bci" field for this, but we pass zero so that the format of the record is
+        // the same as that for a NEW etc.
+        appendTTId(time, UNSEEN, objId, threadName, bci);
+        put(shortClassName);
+        end();
+    }
+
+    @Override
+    public void adviseAfterGC(long time, String threadName) {
+        appendTT(time, ADVISE_AFTER_GC, threadName, -1);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeThreadStarting(long time, String threadName) {
+        appendTT(time, ADVISE_BEFORE_THREAD_STARTING, threadName, -1);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeThreadTerminating(long time, String threadName) {
+        appendTT(time, ADVISE_BEFORE_THREAD_TERMINATING, threadName, -1);
+        end();
+        if (perThread) {
+            // The thread can still produce records on its way out, so the store is only
+            // truncated and closed in finalizeStore, but what it has written is flushed now.
+            buffer.force();
+        }
+    }
+
+    @Override
+    public void adviseBeforeGetStatic(long time, String threadName, int bci, String shortFieldName) {
+        appendTT(time, ADVISE_BEFORE_GET_STATIC, threadName, bci);
+        put(shortFieldName);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutStatic(long time, String threadName, int bci, String shortFieldName, double value) {
+        appendPutStaticPrefix(time, shortFieldName, threadName, bci);
+        put(DOUBLE_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutStatic(long time, String threadName, int bci, String shortFieldName, long value) {
+        appendPutStaticPrefix(time, shortFieldName, threadName, bci);
+        put(LONG_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutStatic(long time, String threadName, int bci, String shortFieldName, float value) {
+        appendPutStaticPrefix(time, shortFieldName, threadName, bci);
+        put(FLOAT_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutStaticObject(long time, String threadName, int bci, String shortFieldName, long value) {
+        appendPutStaticPrefix(time, shortFieldName, threadName, bci);
+        put(OBJ_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeGetField(long time, String threadName, int bci, long objId, String shortFieldName) {
+        appendTTId(time, ADVISE_BEFORE_GET_FIELD, objId, threadName, bci);
+        put(shortFieldName);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutField(long time, String threadName, int bci, long objId, String shortFieldName, long value) {
+        appendPutFieldPrefix(time, objId, shortFieldName, threadName, bci);
+        put(LONG_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutField(long time, String threadName, int bci, long objId, String shortFieldName, float value) {
+        appendPutFieldPrefix(time, objId, shortFieldName, threadName, bci);
+        put(FLOAT_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutField(long time, String threadName, int bci, long objId, String shortFieldName, double value) {
+        appendPutFieldPrefix(time, objId, shortFieldName, threadName, bci);
+        put(DOUBLE_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutFieldObject(long time, String threadName, int bci, long objId, String shortFieldName, long value) {
+        appendPutFieldPrefix(time, objId, shortFieldName, threadName, bci);
+        put(LONG_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeArrayLoad(long time, String threadName, int bci, long objId, int index) {
+        appendTTIdIndex(time, ADVISE_BEFORE_ARRAY_LOAD, objId, threadName, bci, index);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeArrayStore(long time, String threadName, int bci, long objId, int index, float value) {
+        appendTTIdIndex(time, ADVISE_BEFORE_ARRAY_STORE, objId, threadName, bci, index);
+        put(FLOAT_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeArrayStore(long time, String threadName, int bci, long objId, int index, long value) {
+        appendTTIdIndex(time, ADVISE_BEFORE_ARRAY_STORE, objId, threadName, bci, index);
+        put(LONG_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeArrayStore(long time, String threadName, int bci, long objId, int index, double value) {
+        appendTTIdIndex(time, ADVISE_BEFORE_ARRAY_STORE, objId, threadName, bci, index);
+        put(DOUBLE_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeArrayStoreObject(long time, String threadName, int bci, long objId, int index, long valueId) {
+        appendTTIdIndex(time, ADVISE_BEFORE_ARRAY_STORE, objId, threadName, bci, index);
+        put(OBJ_VALUE);
+        put(valueId);
+        end();
+    }
+
+    @Override
+    public void adviseAfterArrayLoadObject(long time, String threadName, int bci, long objId, int index, long valueId) {
+        appendTTIdIndex(time, ADVISE_AFTER_ARRAY_LOAD, objId, threadName, bci, index);
+        put(OBJ_VALUE);
+        put(valueId);
+        end();
+    }
+
+    @Override
+    public void adviseAfterNew(long time, String threadName, int bci, long objId, String shortClassName) {
+        appendTTId(time, ADVISE_AFTER_NEW, objId, threadName, bci);
+        put(shortClassName);
+        end();
+    }
+
+    @Override
+    public void adviseAfterNewArray(long time, String threadName, int bci, long objId, String shortClassName, int length) {
+        appendTTId(time, ADVISE_AFTER_NEW_ARRAY, objId, threadName, bci);
+        put(shortClassName);
+        put(length);
+        end();
+    }
+
+    @Override
+    public void adviseAfterMultiNewArray(long time, String threadName, int bci, long objId, String shortClassName, int length) {
+        // MultiArrays are explicitly handled by multiple calls to adviseAfterNewArray so we just
+        // log the top level array.
+        adviseAfterNewArray(time, threadName, bci, objId, shortClassName, length);
+    }
+
+    @Override
+    public void adviseBeforeGC(long time, String threadName) {
+        appendTT(time, ADVISE_BEFORE_GC, threadName, -1);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeConstLoad(long time, String threadName, int bci, long value) {
+        appendTT(time, ADVISE_BEFORE_CONST_LOAD, threadName, bci);
+        put(LONG_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeConstLoadObject(long time, String threadName, int bci, long value) {
+        appendTT(time, ADVISE_BEFORE_CONST_LOAD, threadName, bci);
+        put(OBJ_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeConstLoad(long time, String threadName, int bci, float value) {
+        appendTT(time, ADVISE_BEFORE_CONST_LOAD, threadName, bci);
+        put(FLOAT_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeConstLoad(long time, String threadName, int bci, double value) {
+        appendTT(time, ADVISE_BEFORE_CONST_LOAD, threadName, bci);
+        put(DOUBLE_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeLoad(long time, String threadName, int bci, int dispToLocalSlot) {
+        appendTT(time, ADVISE_BEFORE_LOAD, threadName, bci);
+        put(dispToLocalSlot);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeStore(long time, String threadName, int bci, int dispToLocalSlot, long value) {
+        appendTT(time, ADVISE_BEFORE_STORE, threadName, bci);
+        put(dispToLocalSlot);
+        put(LONG_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeStore(long time, String threadName, int bci, int dispToLocalSlot, float value) {
+        appendTT(time, ADVISE_BEFORE_STORE, threadName, bci);
+        put(dispToLocalSlot);
+        put(FLOAT_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeStore(long time, String threadName, int bci, int dispToLocalSlot, double value) {
+        appendTT(time, ADVISE_BEFORE_STORE, threadName, bci);
+        put(dispToLocalSlot);
+        put(DOUBLE_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeStoreObject(long time, String threadName, int bci, int dispToLocalSlot, long value) {
+        appendTT(time, ADVISE_BEFORE_STORE, threadName, bci);
+        put(dispToLocalSlot);
+        put(OBJ_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseAfterLoadObject(long time, String threadName, int bci, int dispToLocalSlot, long value) {
+        appendTT(time, ADVISE_AFTER_LOAD, threadName, bci);
+        put(dispToLocalSlot);
+        put(OBJ_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeStackAdjust(long time, String threadName, int bci, int arg1) {
+        appendTT(time, ADVISE_BEFORE_STACK_ADJUST, threadName, bci);
+        put(arg1);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeOperation(long time, String threadName, int bci, int arg1, long arg2, long arg3) {
+        prefixAdviseBeforeOperation(time, threadName, bci, arg1);
+        put(LONG_VALUE);
+        put(arg2);
+        put(arg3);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeOperation(long time, String threadName, int bci, int arg1, float arg2, float arg3) {
+        prefixAdviseBeforeOperation(time, threadName, bci, arg1);
+        put(FLOAT_VALUE);
+        put(arg2);
+        put(arg3);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeOperation(long time, String threadName, int bci, int arg1, double arg2, double arg3) {
+        prefixAdviseBeforeOperation(time, threadName, bci, arg1);
+        put(DOUBLE_VALUE);
+        put(arg2);
+        put(arg3);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeConversion(long time, String threadName, int bci, int arg1, long arg2) {
+        appendTT(time, ADVISE_BEFORE_CONVERSION, threadName, bci);
+        put(arg1);
+        put(LONG_VALUE);
+        put(arg2);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeConversion(long time, String threadName, int bci, int arg1, float arg2) {
+        appendTT(time, ADVISE_BEFORE_CONVERSION, threadName, bci);
+        put(arg1);
+        put(FLOAT_VALUE);
+        put(arg2);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeConversion(long time, String threadName, int bci, int arg1, double arg2) {
+        appendTT(time, ADVISE_BEFORE_CONVERSION, threadName, bci);
+        put(arg1);
+        put(DOUBLE_VALUE);
+        put(arg2);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeIf(long time, String threadName, int bci, int opcode, int op1, int op2, int branchOffset) {
+        appendTT(time, ADVISE_BEFORE_IF, threadName, bci);
+        put(opcode);
+        put(LONG_VALUE);
+        put(op1);
+        put(op2);
+        put(branchOffset);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeIfObject(long time, String threadName, int bci, int opcode, long objId1, long objId2, int branchOffset) {
+        appendTT(time, ADVISE_BEFORE_IF, threadName, bci);
+        put(opcode);
+        put(OBJ_VALUE);
+        put(objId1);
+        put(objId2);
+        put(branchOffset);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeGoto(long time, String threadName, int bci, int branchOffset) {
+        appendTT(time, ADVISE_BEFORE_GOTO, threadName, bci);
+        put(branchOffset);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeReturnObject(long time, String threadName, int bci, long value) {
+        appendTT(time, ADVISE_BEFORE_RETURN, threadName, bci);
+        put(OBJ_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeReturn(long time, String threadName, int bci, long value) {
+        appendTT(time, ADVISE_BEFORE_RETURN, threadName, bci);
+        put(LONG_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeReturn(long time, String threadName, int bci, float value) {
+        appendTT(time, ADVISE_BEFORE_RETURN, threadName, bci);
+        put(FLOAT_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeReturn(long time, String threadName, int bci, double value) {
+        appendTT(time, ADVISE_BEFORE_RETURN, threadName, bci);
+        put(DOUBLE_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeReturn(long time, String threadName, int bci) {
+        appendTT(time, ADVISE_BEFORE_RETURN, threadName, bci);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeInvokeVirtual(long time, String threadName, int bci, long objId, String shortMethodName) {
+        appendTTId(time, ADVISE_BEFORE_INVOKE_VIRTUAL, objId, threadName, bci);
+        put(shortMethodName);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeInvokeSpecial(long time, String threadName, int bci, long objId, String shortMethodName) {
+        appendTTId(time, ADVISE_BEFORE_INVOKE_SPECIAL, objId, threadName, bci);
+        put(shortMethodName);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeInvokeStatic(long time, String threadName, int bci, long objId, String shortMethodName) {
+        appendTTId(time, ADVISE_BEFORE_INVOKE_STATIC, objId, threadName, bci);
+        put(shortMethodName);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeInvokeInterface(long time, String threadName, int bci, long objId, String shortMethodName) {
+        appendTTId(time, ADVISE_BEFORE_INVOKE_INTERFACE, objId, threadName, bci);
+        put(shortMethodName);
+        end();
+    }
+
+    @Override
+    public void adviseAfterArrayLength(long time, String threadName, int bci, long objId, int length) {
+        appendTTId(time, ADVISE_AFTER_ARRAY_LENGTH, objId, threadName, bci);
+        put(length);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeThrow(long time, String threadName, int bci, long objId) {
+        appendTTId(time, ADVISE_BEFORE_THROW, objId, threadName, bci);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeCheckCast(long time, String threadName, int bci, long objId, String shortClassName) {
+        appendTTId(time, ADVISE_BEFORE_CHECK_CAST, objId, threadName, bci);
+        put(shortClassName);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeInstanceOf(long time, String threadName, int bci, long objId, String shortClassName) {
+        appendTTId(time, ADVISE_BEFORE_INSTANCE_OF, objId, threadName, bci);
+        put(shortClassName);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeMonitorEnter(long time, String threadName, int bci, long objId) {
+        appendTTId(time, ADVISE_BEFORE_MONITOR_ENTER, objId, threadName, bci);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeMonitorExit(long time, String threadName, int bci, long objId) {
+        appendTTId(time, ADVISE_BEFORE_MONITOR_EXIT, objId, threadName, bci);
+        end();
+    }
+
+    @Override
+    public void adviseAfterMethodEntry(long time, String threadName, int bci, long objId, String shortMethodName) {
+        appendTTId(time, ADVISE_AFTER_METHOD_ENTRY, objId, threadName, bci);
+        put(shortMethodName);
+        end();
+    }
+    @Override
+    public void adviseBeforeReturnByThrow(long time, String threadName, int bci, long objId, int poppedFrames) {
+        appendTTId(time, ADVISE_BEFORE_RETURN_BY_THROW, objId, threadName, bci);
+        put(poppedFrames);
+        end();
+
+    }
+
+    @Override
+    public void unseenObject(long time, int bci, long objId, int classId) {
+        appendTTId(time, UNSEEN, objId, null, bci);
+        put(classId);
+        end();
+    }
+
+    @Override
+    public void adviseAfterNew(long time, int bci, long objId, int classId) {
+        appendTTId(time, ADVISE_AFTER_NEW, objId, null, bci);
+        put(classId);
+        end();
+    }
+
+    @Override
+    public void adviseAfterNewArray(long time, int bci, long objId, int classId, int length) {
+        appendTTId(time, ADVISE_AFTER_NEW_ARRAY, objId, null, bci);
+        put(classId);
+        put(length);
+        end();
+    }
+
+    @Override
+    public void adviseAfterMultiNewArray(long time, int bci, long objId, int classId, int length) {
+        adviseAfterNewArray(time, bci, objId, classId, length);
+    }
+
+    @Override
+    public void adviseBeforeGetStatic(long time, int bci, int fieldId) {
+        appendTT(time, ADVISE_BEFORE_GET_STATIC, null, bci);
+        put(fieldId);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutStatic(long time, int bci, int fieldId, float value) {
+        appendPutStaticPrefix(time, fieldId, bci);
+        put(FLOAT_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutStatic(long time, int bci, int fieldId, double value) {
+        appendPutStaticPrefix(time, fieldId, bci);
+        put(DOUBLE_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutStatic(long time, int bci, int fieldId, long value) {
+        appendPutStaticPrefix(time, fieldId, bci);
+        put(LONG_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutStaticObject(long time, int bci, int fieldId, long value) {
+        appendPutStaticPrefix(time, fieldId, bci);
+        put(OBJ_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeGetField(long time, int bci, long objId, int fieldId) {
+        appendTTId(time, ADVISE_BEFORE_GET_FIELD, objId, null, bci);
+        put(fieldId);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutField(long time, int bci, long objId, int fieldId, float value) {
+        appendPutFieldPrefix(time, objId, fieldId, bci);
+        put(FLOAT_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutField(long time, int bci, long objId, int fieldId, long value) {
+        appendPutFieldPrefix(time, objId, fieldId, bci);
+        put(LONG_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutField(long time, int bci, long objId, int fieldId, double value) {
+        appendPutFieldPrefix(time, objId, fieldId, bci);
+        put(DOUBLE_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforePutFieldObject(long time, int bci, long objId, int fieldId, long value) {
+        appendPutFieldPrefix(time, objId, fieldId, bci);
+        put(OBJ_VALUE);
+        put(value);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeInvokeVirtual(long time, int bci, long objId, int methodId) {
+        appendTTId(time, ADVISE_BEFORE_INVOKE_VIRTUAL, objId, null, bci);
+        put(methodId);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeInvokeSpecial(long time, int bci, long objId, int methodId) {
+        appendTTId(time, ADVISE_BEFORE_INVOKE_SPECIAL, objId, null, bci);
+        put(methodId);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeInvokeStatic(long time, int bci, long objId, int methodId) {
+        appendTTId(time, ADVISE_BEFORE_INVOKE_STATIC, objId, null, bci);
+        put(methodId);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeInvokeInterface(long time, int bci, long objId, int methodId) {
+        appendTTId(time, ADVISE_BEFORE_INVOKE_INTERFACE, objId, null, bci);
+        put(methodId);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeCheckCast(long time, int bci, long objId, int classId) {
+        appendTTId(time, ADVISE_BEFORE_CHECK_CAST, objId, null, bci);
+        put(classId);
+        end();
+    }
+
+    @Override
+    public void adviseBeforeInstanceOf(long time, int bci, long objId, int classId) {
+        appendTTId(time, ADVISE_BEFORE_INSTANCE_OF, objId, null, bci);
+        put(classId);
+        end();
+    }
+
+    @Override
+    public void adviseAfterMethodEntry(long time, int bci, long objId, int methodId) {
+        appendTTId(time, ADVISE_AFTER_METHOD_ENTRY, objId, null, bci);
+        put(methodId);
+        end();
+    }
+
+
+
+}
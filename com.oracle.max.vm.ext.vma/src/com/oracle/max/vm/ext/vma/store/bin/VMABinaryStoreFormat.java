@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.max.vm.ext.vma.store.bin;
+
+import java.io.*;
+
+import com.oracle.max.vm.ext.vma.store.txt.*;
+
+/**
+ * Defines a compact binary encoding of the records described by {@link VMATextStoreFormat}.
+ *
+ * A store file starts with {@link #MAGIC} and {@link #VERSION}, followed by a sequence of records.
+ * Each record is the ordinal of its {@link VMATextStoreFormat.Key} plus one as an unsigned varint, followed
+ * by the record components in the same order as the text format, each encoded as a token,
+ * and terminated by an {@link #END} token. Tokens are self-describing, so a reader can turn a record
+ * back into the {@code String[]} form produced by splitting a text record without knowing its layout.
+ *
+ * A token starts with a byte holding the tag in the low {@link #TAG_BITS} bits, the low four bits of the payload
+ * and a continuation bit; the remaining payload bits follow as an unsigned varint. The payload is:
+ * <ul>
+ * <li>{@link #LONG}: the zigzag encoded value, so that small ids, bytecode indices and lengths take one or two bytes.
+ * <li>{@link #TIME}: the zigzag encoded difference from the time of the previous timed record in the file.
+ * Every record that carries a time in the text format carries one here, regardless of the time mode.
+ * <li>{@link #CHAR}: the character value, e.g. {@link VMATextStoreFormat#LONG_VALUE}.
+ * <li>{@link #FLOAT}, {@link #DOUBLE}: unused, the raw bits follow in big-endian order.
+ * <li>{@link #STRING}: the length of the UTF-8 encoded string that follows.
+ * <li>{@link #SPECIAL}: one of {@link #END}, {@link #REPEAT_ID}, {@link #FALSE} or {@link #TRUE}.
+ * </ul>
+ *
+ * A zero byte where a record would start marks the end of the data. The store files are memory mapped in
+ * segments that are zero filled until written, and only truncated to the data written when the store is
+ * finalized, so the file of a store that was not finalized ends with the zero filled rest of its last segment.
+ *
+ * Short forms are decimal strings unless {@link VMATextStoreFormat#PREFIX_PROPERTY} is set, and are stored as
+ * {@link #LONG} tokens in the former case, which renders them identically on decoding.
+ */
+public abstract class VMABinaryStoreFormat {
+    public static final int MAGIC = 0x564d4142; // "VMAB"
+    public static final int VERSION = 2;
+
+    public static final int TAG_BITS = 3;
+    public static final int TAG_MASK = (1 << TAG_BITS) - 1;
+
+    public static final int LONG = 0;
+    public static final int TIME = 1;
+    public static final int CHAR = 2;
+    public static final int FLOAT = 3;
+    public static final int DOUBLE = 4;
+    public static final int STRING = 5;
+    public static final int SPECIAL = 7;
+
+    public static final int END = 0;
+    public static final int REPEAT_ID = 1;
+    public static final int FALSE = 2;
+    public static final int TRUE = 3;
+
+    /**
+     * Upper bound on the size of a token excluding any string bytes.
+     */
+    public static final int MAX_TOKEN_SIZE = 10;
+
+    public static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    public static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Checks whether {@code file} starts with {@link #MAGIC}.
+     */
+    public static boolean isBinaryStore(File file) {
+        if (file.length() < 5) {
+            return false;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                return in.readInt() == MAGIC;
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+}
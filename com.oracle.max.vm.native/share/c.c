@@ -18,7 +18,9 @@
  * 2 along with this work; if not, write to the Free Software Foundation,
  * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
  */
+#include <errno.h>
 #include <stdlib.h>
+#include <unistd.h>
 #include "log.h"
 
 #include "c.h"
@@ -61,3 +63,18 @@ void _c_assert(boolean condition, char *conditionString, char *fileName, int lin
         exit(1);
     }
 }
+
+int c_writeFully(int fd, const char *buffer, size_t length) {
+    while (length > 0) {
+        ssize_t n = write(fd, buffer, length);
+        if (n < 0) {
+            if (errno == EINTR) {
+                continue;
+            }
+            return -errno;
+        }
+        buffer += n;
+        length -= n;
+    }
+    return 0;
+}
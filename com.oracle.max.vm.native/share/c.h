@@ -74,6 +74,13 @@ extern void _c_assert(boolean condition, char *conditionString, char *fileName,
 
 #define ARRAY_LENGTH(array) (sizeof(array)/sizeof((array)[0]))
 
+/**
+ * Writes all 'length' bytes of 'buffer' to 'fd', retrying writes that are interrupted or partial.
+ *
+ * @return 0 if all bytes were written, -errno otherwise
+ */
+extern int c_writeFully(int fd, const char *buffer, size_t length);
+
 #define c_FATAL() c_ASSERT(false)
 
 #endif /*__c_h__*/
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/**
+ * File output for the compilation event log (see com.sun.max.vm.compiler.CompilationEventLog).
+ * Lines are written by any thread that compiles a method, so writes are serialized on a mutex
+ * to keep each line contiguous in the file.
+ */
+#include <errno.h>
+#include <fcntl.h>
+#include <pthread.h>
+#include <string.h>
+#include <unistd.h>
+
+#include "c.h"
+#include "jni.h"
+#include "log.h"
+
+static int compilationLogFd = -1;
+static pthread_mutex_t compilationLogMutex = PTHREAD_MUTEX_INITIALIZER;
+
+/**
+ * Opens the compilation log file, truncating it if it exists.
+ *
+ * @param path the name of the file
+ * @return 0 on success, -errno otherwise
+ */
+jint compilationLog_open(const char *path) {
+    compilationLogFd = open(path, O_WRONLY | O_CREAT | O_TRUNC | O_APPEND, 0644);
+    if (compilationLogFd < 0) {
+        int error = errno;
+        log_println("Unable to create compilation log file %s: %s", path, strerror(error));
+        return -error;
+    }
+    return 0;
+}
+
+/**
+ * Appends a line to the compilation log file.
+ *
+ * @return 0 if all {@code length} bytes were written, -errno otherwise
+ */
+jint compilationLog_write(const char *buffer, jint length) {
+    jint result;
+    if (compilationLogFd < 0) {
+        return -EBADF;
+    }
+    pthread_mutex_lock(&compilationLogMutex);
+    result = c_writeFully(compilationLogFd, buffer, length);
+    pthread_mutex_unlock(&compilationLogMutex);
+    return result;
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/**
+ * Rotating file output for the GC event log (see com.sun.max.vm.heap.GCEventLog).
+ * Writes happen on the VM operation thread during a collection, so these functions
+ * must not call back into the VM.
+ *
+ * The current file is always the one named by the user. When it would exceed the
+ * size limit, it is renamed to <name>.1, after <name>.1 has been renamed to <name>.2
+ * and so on, the oldest file being removed.
+ */
+#include <errno.h>
+#include <fcntl.h>
+#include <stdio.h>
+#include <string.h>
+#include <unistd.h>
+
+#include "c.h"
+#include "jni.h"
+#include "log.h"
+
+static int gcLogFd = -1;
+static char gcLogName[4096];
+static jlong gcLogFileSize;
+static jlong gcLogLimit;
+static jint gcLogFileCount;
+
+static int openCurrent(void) {
+    gcLogFd = open(gcLogName, O_WRONLY | O_CREAT | O_TRUNC, 0644);
+    if (gcLogFd < 0) {
+        int error = errno;
+        log_println("Unable to create GC log file %s: %s", gcLogName, strerror(error));
+        return -error;
+    }
+    gcLogFileSize = 0;
+    return 0;
+}
+
+static int rotate(void) {
+    char from[sizeof(gcLogName) + 16];
+    char to[sizeof(gcLogName) + 16];
+    int i;
+
+    close(gcLogFd);
+    gcLogFd = -1;
+    if (gcLogFileCount > 1) {
+        for (i = gcLogFileCount - 1; i > 1; i--) {
+            snprintf(from, sizeof(from), "%s.%d", gcLogName, i - 1);
+            snprintf(to, sizeof(to), "%s.%d", gcLogName, i);
+            rename(from, to);
+        }
+        snprintf(to, sizeof(to), "%s.1", gcLogName);
+        rename(gcLogName, to);
+    }
+    return openCurrent();
+}
+
+/**
+ * Opens the GC log file, truncating it if it exists.
+ *
+ * @param path the name of the file
+ * @param limit the size beyond which the file is rotated, or 0 if it is never rotated
+ * @param fileCount the number of files kept, including the current one
+ * @return 0 on success, -errno otherwise
+ */
+jint gcLog_open(const char *path, jlong limit, jint fileCount) {
+    if (strlen(path) >= sizeof(gcLogName)) {
+        log_println("GC log file name too long: %s", path);
+        return -ENAMETOOLONG;
+    }
+    strcpy(gcLogName, path);
+    gcLogLimit = limit;
+    gcLogFileCount = fileCount;
+    return openCurrent();
+}
+
+/**
+ * Appends a line to the GC log file, rotating it first if needed.
+ *
+ * @return 0 if all {@code length} bytes were written, -errno otherwise
+ */
+jint gcLog_write(const char *buffer, jint length) {
+    if (gcLogFd < 0) {
+        return -EBADF;
+    }
+    if (gcLogLimit > 0 && gcLogFileSize > 0 && gcLogFileSize + length > gcLogLimit) {
+        int result = rotate();
+        if (result != 0) {
+            return result;
+        }
+    }
+    int result = c_writeFully(gcLogFd, buffer, length);
+    if (result == 0) {
+        gcLogFileSize += length;
+    }
+    return result;
+}
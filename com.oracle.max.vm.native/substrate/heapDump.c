@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/**
+ * File output for the HPROF heap dumper (see com.sun.max.vm.heap.HeapDump).
+ * These functions are called on the VM operation thread while all other threads
+ * are stopped at a safepoint, so they must not call back into the VM.
+ */
+#include <errno.h>
+#include <fcntl.h>
+#include <stdio.h>
+#include <string.h>
+#include <unistd.h>
+#include <sys/stat.h>
+#include <sys/types.h>
+
+#include "c.h"
+#include "jni.h"
+#include "log.h"
+
+/**
+ * Opens a new heap dump file. The file must not already exist.
+ *
+ * @param path the path of the file or directory to dump to. If NULL, the default name
+ *        "java_pid<pid>.hprof" in the current directory is used. If it denotes a directory,
+ *        the default name in that directory is used.
+ * @param sequence if greater than 0, this value is appended to the file name to make it
+ *        unique across several dumps of the same process
+ * @return the file descriptor of the opened file or -errno if the file could not be opened
+ */
+jint heapDump_open(const char *path, jint sequence) {
+    char name[4096];
+    char defaultName[64];
+    struct stat st;
+    int fd;
+
+    if (sequence > 0) {
+        snprintf(defaultName, sizeof(defaultName), "java_pid%d.hprof.%d", (int) getpid(), sequence);
+    } else {
+        snprintf(defaultName, sizeof(defaultName), "java_pid%d.hprof", (int) getpid());
+    }
+    if (path == NULL) {
+        snprintf(name, sizeof(name), "%s", defaultName);
+    } else if (stat(path, &st) == 0 && S_ISDIR(st.st_mode)) {
+        snprintf(name, sizeof(name), "%s/%s", path, defaultName);
+    } else if (sequence > 0) {
+        snprintf(name, sizeof(name), "%s.%d", path, sequence);
+    } else {
+        snprintf(name, sizeof(name), "%s", path);
+    }
+
+    fd = open(name, O_WRONLY | O_CREAT | O_EXCL, 0600);
+    if (fd < 0) {
+        int error = errno;
+        log_println("Unable to create %s: %s", name, strerror(error));
+        return -error;
+    }
+    log_println("Dumping heap to %s ...", name);
+    return fd;
+}
+
+/**
+ * Writes a block of the heap dump.
+ *
+ * @return 0 if all {@code length} bytes were written, -errno otherwise
+ */
+jint heapDump_write(jint fd, const char *buffer, jint length) {
+    return c_writeFully(fd, buffer, length);
+}
+
+/**
+ * Closes a heap dump file.
+ *
+ * @return 0 on success, -errno otherwise
+ */
+jint heapDump_close(jint fd) {
+    if (close(fd) != 0) {
+        return -errno;
+    }
+    return 0;
+}
@@ -67,6 +67,11 @@ Java_com_sun_max_vm_ext_jvmti_JVMTICallbacks_invokeGarbageCollectionCallback(JNI
     (*callback)(jvmti_env);
 }
 
+JNIEXPORT void JNICALL
+Java_com_sun_max_vm_ext_jvmti_JVMTICallbacks_invokeObjectFreeCallback(JNIEnv *env, jclass c, jvmtiEventObjectFree callback, jvmtiEnv *jvmti_env, jlong tag) {
+    (*callback)(jvmti_env, tag);
+}
+
 JNIEXPORT void JNICALL
 Java_com_sun_max_vm_ext_jvmti_JVMTICallbacks_invokeThreadObjectCallback(JNIEnv *env, jclass c, ThreadObjectCall callback, jvmtiEnv *jvmti_env, jthread thread, jobject object) {
     (*callback)(jvmti_env, env, thread, object);
@@ -104,6 +109,13 @@ Java_com_sun_max_vm_ext_jvmti_JVMTICallbacks_invokeHeapIterationCallback(JNIEnv
     return (*callback)(class_tag, size, tag_ptr, length, user_data);
 }
 
+JNIEXPORT jint JNICALL
+Java_com_sun_max_vm_ext_jvmti_JVMTICallbacks_invokeHeapReferenceCallback(JNIEnv *env, jclass c, jvmtiHeapReferenceCallback callback,
+                jvmtiHeapReferenceKind reference_kind, const jvmtiHeapReferenceInfo* reference_info, jlong class_tag, jlong referrer_class_tag,
+                jlong size, jlong* tag_ptr, jlong* referrer_tag_ptr, jint length, void* user_data) {
+    return (*callback)(reference_kind, reference_info, class_tag, referrer_class_tag, size, tag_ptr, referrer_tag_ptr, length, user_data);
+}
+
 JNIEXPORT void JNICALL
 Java_com_sun_max_vm_ext_jvmti_JVMTICallbacks_invokeBreakpointCallback(JNIEnv *env, jclass c, jvmtiEventBreakpoint callback,
                 jvmtiEnv *jvmti_env, jthread thread,
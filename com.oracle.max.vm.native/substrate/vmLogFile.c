@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+/**
+ * File output for the binary VMLog flusher (see com.sun.max.vm.log.VMLogFileFlusher).
+ * Called with the log lock held, possibly from a thread whose log buffer has just filled,
+ * so these functions must not call back into the VM.
+ */
+#include <errno.h>
+#include <fcntl.h>
+#include <string.h>
+#include <unistd.h>
+
+#include "c.h"
+#include "jni.h"
+#include "log.h"
+
+/**
+ * Creates the file, truncating it if it exists.
+ *
+ * @return the file descriptor, or -errno on failure
+ */
+jint vmLogFile_open(const char *path) {
+    int fd = open(path, O_WRONLY | O_CREAT | O_TRUNC, 0644);
+    if (fd < 0) {
+        int error = errno;
+        log_println("Unable to create VMLog file %s: %s", path, strerror(error));
+        return -error;
+    }
+    return fd;
+}
+
+/**
+ * Writes {@code length} bytes from {@code buffer}.
+ *
+ * @return 0 if all bytes were written, -errno otherwise
+ */
+jint vmLogFile_write(jint fd, const char *buffer, jint length) {
+    return c_writeFully(fd, buffer, length);
+}
+
+void vmLogFile_close(jint fd) {
+    close(fd);
+}
@@ -33,6 +33,7 @@
 #include <sys/wait.h>
 #include <sys/time.h>
 #include <sys/prctl.h>
+#include <sys/uio.h>
 
 #include "log.h"
 #include "ptrace.h"
@@ -719,8 +720,46 @@ Java_com_sun_max_tele_debug_linux_LinuxTask_nativeCreateChildProcess(JNIEnv *env
     return -1;
 }
 
+/**
+ * The file descriptor on /proc/<memoryFdTgid>/mem used by task_read() and task_read_batch(),
+ * which is opened once rather than on every read.
+ */
+static int memoryFd = -1;
+static pid_t memoryFdTgid;
+
+static int task_memory_fd(pid_t tgid) {
+    if (memoryFd >= 0 && memoryFdTgid != tgid) {
+        close(memoryFd);
+        memoryFd = -1;
+    }
+    if (memoryFd < 0) {
+        char *memoryFileName;
+        ptrace_check_tracer(POS, tgid);
+        asprintf(&memoryFileName, "/proc/%d/mem", tgid);
+        c_ASSERT(memoryFileName != NULL);
+        memoryFd = open(memoryFileName, O_RDONLY);
+        if (memoryFd < 0) {
+            log_println("Error opening %s: %s", memoryFileName, strerror(errno));
+        }
+        free(memoryFileName);
+        memoryFdTgid = tgid;
+    }
+    return memoryFd;
+}
+
+/**
+ * Closes the memory file of 'tgid' if it is open, once the process has been detached from or killed.
+ */
+static void task_close_memory_fd(pid_t tgid) {
+    if (memoryFd >= 0 && memoryFdTgid == tgid) {
+        close(memoryFd);
+        memoryFd = -1;
+    }
+}
+
 JNIEXPORT jboolean JNICALL
 Java_com_sun_max_tele_debug_linux_LinuxTask_nativeDetach(JNIEnv *env, jclass c, jint tgid, jint tid) {
+    task_close_memory_fd(tgid);
     return ptrace(PT_DETACH, tid, 0, 0) == 0;
 }
 
@@ -758,6 +797,7 @@ Java_com_sun_max_tele_debug_linux_LinuxTask_nativeWait(JNIEnv *env, jclass c, ji
         if (process_wait_all_threads_stopped(tgid) > 0) {
             return PS_STOPPED;
         }
+        task_close_memory_fd(tgid);
         return PS_TERMINATED;
     }
     c_UNIMPLEMENTED();
@@ -767,6 +807,7 @@ Java_com_sun_max_tele_debug_linux_LinuxTask_nativeWait(JNIEnv *env, jclass c, ji
 JNIEXPORT jboolean JNICALL
 Java_com_sun_max_tele_debug_linux_LinuxTask_nativeKill(JNIEnv *env, jclass c, jint tgid, jint tid) {
     pid_t killID = -getpgid(tgid);
+    task_close_memory_fd(tgid);
     tele_log_println("Sending SIGKILL to %d", tid, killID);
     if (kill(killID, SIGKILL) != 0) {
         log_println("Error sending SIGKILL to kill process %d: %s", tgid, strerror(errno));
@@ -776,33 +817,14 @@ Java_com_sun_max_tele_debug_linux_LinuxTask_nativeKill(JNIEnv *env, jclass c, ji
 }
 
 /**
- * Gets an open file descriptor on /proc/<pid>/mem for reading the memory of the traced process 'tgid'.
- *
- * @param tgid the task group id of the traced process
- * @param address the address at which the memory of tgid is to be read
- * @return a file descriptor opened on the memory file and positioned at 'address' or -1 if there was an error.
- *        If there was no error, it is the caller's responsibility to close the file descriptor.
+ * Reads from the memory file of 'tgid'.
  */
-int task_memory_read_fd(int tgid, const void *address) {
-    ptrace_check_tracer(POS, tgid);
-    char *memoryFileName;
-    asprintf(&memoryFileName, "/proc/%d/mem", tgid);
-    c_ASSERT(memoryFileName != NULL);
-    int fd = open(memoryFileName, O_RDONLY);
+static ssize_t task_pread(pid_t tgid, const void *src, void *dst, size_t size) {
+    int fd = task_memory_fd(tgid);
     if (fd < 0) {
-        log_println("Error opening %s: %s", memoryFileName, strerror(errno));
-        return fd;
-    }
-    free(memoryFileName);
-
-    off64_t fdOffset = (off64_t) (intptr_t)address;
-
-    if (lseek64(fd, fdOffset, SEEK_SET) != fdOffset) {
-        log_println("Error seeking memory file for process %d to %p [%ul]: %s", tgid, address, fdOffset, strerror(errno));
-        close(fd);
         return -1;
     }
-    return fd;
+    return pread64(fd, dst, size, (off64_t) (intptr_t) src);
 }
 
 /**
@@ -816,28 +838,84 @@ size_t task_read(pid_t tgid, pid_t tid, const void *src, void *dst, size_t size)
     }
 
     //tele_log_println("Reading %d bytes from memory of task %d at %p", size, tid, src);
-    if (size <= sizeof(Address)) {
-        Address word = ptrace(PT_READ_D, tid, (Address) src, NULL);
-        if (errno != 0) {
-            int error = errno;
-            log_println("Could not read word at %p: %s", src, strerror(error));
-            return -1;
-        } else {
-            memcpy(dst, &word, size);
+    ssize_t bytesRead = task_pread(tgid, src, dst, size);
+    if (bytesRead < 0) {
+        log_println("Could not read %d bytes at %p: %s", size, src, strerror(errno));
+        return -1;
+    }
+    if ((size_t) bytesRead != size) {
+        log_println("Only read %d of %d bytes from %p", bytesRead, size, src);
+    }
+    return bytesRead;
+}
+
+#define BATCH_IOV_MAX 1024
+
+/**
+ * Copies a number of ranges from the address space of 'tgid' to the caller's address space with as few
+ * system calls as possible: process_vm_readv(2) transfers up to BATCH_IOV_MAX ranges per call. If that
+ * is not available, each range is read with pread(2) on the cached memory file descriptor.
+ *
+ * @param count the number of ranges
+ * @param srcs the addresses of the ranges in 'tgid'
+ * @param dsts the buffers to which the ranges are copied
+ * @param sizes the sizes of the ranges
+ * @return the number of leading ranges that were copied completely, the copy stopping at the first range that
+ *         could not be read in full (e.g. because it is not mapped)
+ */
+int task_read_batch(pid_t tgid, pid_t tid, int count, const jlong *srcs, void **dsts, const jint *sizes) {
+    static jboolean haveProcessVmReadv = true;
+    struct iovec local[BATCH_IOV_MAX];
+    struct iovec remote[BATCH_IOV_MAX];
+    char state;
+    int done = 0;
+
+    if ((state = task_state(tgid, tid)) != 'T') {
+        log_println("Cannot read memory of task %d while it is in state '%c'", tid, state);
+        return 0;
+    }
+    while (haveProcessVmReadv && done < count) {
+        int n = count - done < BATCH_IOV_MAX ? count - done : BATCH_IOV_MAX;
+        ssize_t expected = 0;
+        int i;
+        for (i = 0; i < n; i++) {
+            local[i].iov_base = dsts[done + i];
+            local[i].iov_len = sizes[done + i];
+            remote[i].iov_base = (void *) (intptr_t) srcs[done + i];
+            remote[i].iov_len = sizes[done + i];
+            expected += sizes[done + i];
         }
-        return size;
-    } else {
-        int fd = task_memory_read_fd(tgid, src);
-        if (fd < 0) {
-            return -1;
+        ssize_t bytesRead = process_vm_readv(tgid, local, n, remote, n, 0);
+        if (bytesRead < 0) {
+            if (errno == ENOSYS || errno == EPERM) {
+                tele_log_println("process_vm_readv not usable (%s), falling back to pread", strerror(errno));
+                haveProcessVmReadv = false;
+                break;
+            }
+            if (errno == EFAULT) {
+                // the first range is not mapped
+                return done;
+            }
+            log_println("process_vm_readv failed: %s", strerror(errno));
+            return done;
+        }
+        if (bytesRead == expected) {
+            done += n;
+            continue;
         }
-        size_t bytesRead = read(fd, dst, size);
-        if (bytesRead != size) {
-            log_println("Only read %d of %d bytes from %p: %s", bytesRead, size, src, strerror(errno));
+        // partial transfer: count the ranges that were copied completely
+        for (i = 0; i < n && bytesRead >= sizes[done]; i++) {
+            bytesRead -= sizes[done];
+            done++;
         }
-        close(fd);
-        return bytesRead;
+        return done;
     }
+    for (; done < count; done++) {
+        if (task_pread(tgid, (const void *) (intptr_t) srcs[done], dsts[done], sizes[done]) != sizes[done]) {
+            break;
+        }
+    }
+    return done;
 }
 
 /**
@@ -921,6 +999,37 @@ Java_com_sun_max_tele_debug_linux_LinuxTask_nativeReadBytes(JNIEnv *env, jclass
     return teleProcess_read(&ph, env, c, src, dst, isDirectByteBuffer, dstOffset, length);
 }
 
+JNIEXPORT jint JNICALL
+Java_com_sun_max_tele_debug_linux_LinuxTask_nativeReadBytesBatch(JNIEnv *env, jclass c, jint tgid, jint tid, jlongArray srcs, jobjectArray dsts, jintArray lengths, jint count) {
+    void **dstAddresses = (void **) malloc(count * sizeof(void *));
+    jlong *srcAddresses = (jlong *) malloc(count * sizeof(jlong));
+    jint *sizes = (jint *) malloc(count * sizeof(jint));
+    jint result = 0;
+    int i;
+
+    if (dstAddresses == NULL || srcAddresses == NULL || sizes == NULL) {
+        log_println("Failed to malloc buffers for batch of %d reads", count);
+        goto out;
+    }
+    (*env)->GetLongArrayRegion(env, srcs, 0, count, srcAddresses);
+    (*env)->GetIntArrayRegion(env, lengths, 0, count, sizes);
+    for (i = 0; i < count; i++) {
+        jobject dst = (*env)->GetObjectArrayElement(env, dsts, i);
+        dstAddresses[i] = (*env)->GetDirectBufferAddress(env, dst);
+        (*env)->DeleteLocalRef(env, dst);
+        if (dstAddresses[i] == NULL) {
+            log_println("Failed to get address from NIO direct buffer");
+            goto out;
+        }
+    }
+    result = task_read_batch(tgid, tid, count, srcAddresses, dstAddresses, sizes);
+out:
+    free(dstAddresses);
+    free(srcAddresses);
+    free(sizes);
+    return result;
+}
+
 JNIEXPORT jboolean JNICALL
 Java_com_sun_max_tele_debug_linux_LinuxTask_nativeSetInstructionPointer(JNIEnv *env, jclass c, jint tid, jlong instructionPointer) {
     user_regs_structure registers;
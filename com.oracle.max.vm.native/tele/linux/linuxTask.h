@@ -69,23 +69,20 @@ char task_state(pid_t tgid, pid_t tid);
 /* Used to enforce the constraint that all access of the ptraced process from the same process. */
 extern pid_t _ptracerTask;
 
-/* Required to make lseek64 and off64_t available. */
+/* Required to make pread64 and off64_t available. */
 #define _LARGEFILE64_SOURCE 1
 
 /**
- * Gets an open file descriptor on /proc/<pid>/mem for reading the memory of the traced process 'tgid'.
- *
- * @param tgid the task group id of the traced process
- * @param address the address at which the memory of tgid is to be read
- * @return a file descriptor opened on the memory file and positioned at 'address' or -1 if there was an error.
- *        If there was no error, it is the caller's responsibility to close the file descriptor.
+ * Copies 'size' bytes from 'src' in the address space of 'tgid' to 'dst' in the caller's address space.
  */
-int task_memory_read_fd(int tgid, const void *address);
+size_t task_read(pid_t tgid, pid_t tid, const void *src, void *dst, size_t size);
 
 /**
- * Copies 'size' bytes from 'src' in the address space of 'tgid' to 'dst' in the caller's address space.
+ * Copies 'count' ranges from the address space of 'tgid' to the caller's address space.
+ *
+ * @return the number of leading ranges that were copied completely
  */
-size_t task_read(pid_t tgid, pid_t tid, const void *src, void *dst, size_t size);
+int task_read_batch(pid_t tgid, pid_t tid, int count, const jlong *srcs, void **dsts, const jint *sizes);
 
 /**
  * Copies 'size' bytes from 'src' in the caller's address space to 'dst' in the address space of 'tgid'.
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2007, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.gcx.rset.ctbl;
+
+import static com.sun.max.vm.heap.gcx.rset.ctbl.CardTableRSet.*;
+
+import java.util.*;
+
+import com.sun.max.ide.*;
+import com.sun.max.lang.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+
+/**
+ * Tests the word at a time card table scans and the consistency of the summary table with the card table
+ * when cards are dirtied and cleaned across word and summary entry boundaries.
+ */
+public class CardTableRSetTest extends MaxTestCase {
+
+    static {
+        // The summary table is selected when CardTableRSet is initialized.
+        System.setProperty("max.heap.rset.summary", "true");
+    }
+
+    /**
+     * Number of cards between the start of the covered area and the previous summary entry boundary.
+     */
+    private static final int BIAS = 13;
+
+    /**
+     * Number of cards covered, deliberately neither a multiple of the word size nor of the cards per summary entry.
+     */
+    private static final int CARDS = 1029;
+
+    private static final int CARDS_PER_SUMMARY_ENTRY = 1 << LOG2_CARDS_PER_SUMMARY_ENTRY;
+
+    private static final int SUMMARY_ENTRIES = (BIAS + CARDS + CARDS_PER_SUMMARY_ENTRY - 1) >> LOG2_CARDS_PER_SUMMARY_ENTRY;
+
+    private static final Address COVERED_AREA_START = Address.fromLong(1L << 32).plus(BIAS << LOG2_CARD_SIZE);
+
+    public CardTableRSetTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(CardTableRSetTest.class);
+    }
+
+    private Pointer cardTableMemory;
+    private Pointer summaryTableMemory;
+    private CardTableRSet rset;
+    private CardTable cardTable;
+    private CardTable summaryTable;
+
+    @Override
+    public void setUp() {
+        assertTrue("CardTableRSet was initialized without the summary table", UseSummaryTable);
+        cardTableMemory = Memory.mustAllocate(CARDS);
+        summaryTableMemory = Memory.mustAllocate(SUMMARY_ENTRIES);
+        rset = new CardTableRSet();
+        rset.initialize(COVERED_AREA_START, Size.fromInt(CARDS << LOG2_CARD_SIZE), cardTableMemory, summaryTableMemory);
+        cardTable = rset.cardTable;
+        summaryTable = rset.summaryTable;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        Memory.deallocate(cardTableMemory);
+        Memory.deallocate(summaryTableMemory);
+        super.tearDown();
+    }
+
+    /**
+     * Card indexes on either side of the word boundaries of the card table and of the boundaries between summary entries.
+     */
+    private static int[] boundaryCards() {
+        final SortedSet<Integer> cards = new TreeSet<Integer>();
+        for (int i = 0; i <= CARDS; i += Longs.SIZE) {
+            cards.add(i - 1);
+            cards.add(i);
+            cards.add(i + 1);
+        }
+        for (int i = -BIAS; i <= CARDS; i += CARDS_PER_SUMMARY_ENTRY) {
+            cards.add(i - 1);
+            cards.add(i);
+            cards.add(i + 1);
+        }
+        cards.add(CARDS - 1);
+        final int[] result = new int[cards.size()];
+        int n = 0;
+        for (int card : cards) {
+            if (card >= 0 && card < CARDS) {
+                result[n++] = card;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static int summaryEntry(int card) {
+        return (card + BIAS) >> LOG2_CARDS_PER_SUMMARY_ENTRY;
+    }
+
+    private static int firstCard(int summaryEntry) {
+        return (summaryEntry << LOG2_CARDS_PER_SUMMARY_ENTRY) - BIAS;
+    }
+
+    private boolean isDirty(CardTable table, int index) {
+        return table.unsafeGet(index) == CardState.DIRTY_CARD.value();
+    }
+
+    private int expectedFirst(CardTable table, int start, int end, CardState cardState) {
+        for (int i = start; i < end; i++) {
+            if (table.unsafeGet(i) == cardState.value()) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private int expectedFirstNot(CardTable table, int start, int end, CardState cardState) {
+        for (int i = start; i < end; i++) {
+            if (table.unsafeGet(i) != cardState.value()) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private void checkScans(CardTable table, int length) {
+        for (int start = 0; start <= length; start++) {
+            for (int end = start; end <= length; end++) {
+                for (CardState cardState : CardState.values()) {
+                    assertEquals(expectedFirst(table, start, end, cardState), table.first(start, end, cardState));
+                    assertEquals(expectedFirstNot(table, start, end, cardState), table.firstNot(start, end, cardState));
+                }
+            }
+        }
+    }
+
+    /**
+     * A dirty card must never be covered by a clean summary entry.
+     */
+    private void checkSummaryCoversDirtyCards() {
+        for (int card = 0; card < CARDS; card++) {
+            if (isDirty(cardTable, card)) {
+                assertTrue("summary entry of dirty card " + card + " is clean", isDirty(summaryTable, summaryEntry(card)));
+            }
+        }
+    }
+
+    private void checkFirstDirtyCard() {
+        for (int start : boundaryCards()) {
+            for (int end : boundaryCards()) {
+                if (start <= end) {
+                    assertEquals(expectedFirst(cardTable, start, end, CardState.DIRTY_CARD), rset.firstDirtyCard(start, end, false));
+                }
+            }
+        }
+    }
+
+    private void setCards(int start, int end, CardState cardState) {
+        rset.setCards(cardTable.rangeStart(start), cardTable.rangeStart(end), cardState);
+    }
+
+    public void test_scanSingleCards() {
+        final int length = 3 * Longs.SIZE + 3;
+        for (int dirty = 0; dirty < length; dirty++) {
+            cardTable.clean(0, length);
+            cardTable.dirty(dirty);
+            checkScans(cardTable, length);
+            cardTable.dirty(0, length);
+            cardTable.clean(dirty);
+            checkScans(cardTable, length);
+        }
+    }
+
+    public void test_scanRandomCards() {
+        final int length = 5 * Longs.SIZE + 5;
+        final Random random = new Random(31);
+        for (int n = 0; n < 50; n++) {
+            // Sparse, dense and mixed tables.
+            final int dirtyPercentage = n % 3 == 0 ? 5 : n % 3 == 1 ? 95 : 50;
+            for (int i = 0; i < length; i++) {
+                if (random.nextInt(100) < dirtyPercentage) {
+                    cardTable.dirty(i);
+                } else {
+                    cardTable.clean(i);
+                }
+            }
+            checkScans(cardTable, length);
+        }
+    }
+
+    public void test_dirtyCoveredAtBoundaries() {
+        for (int card : boundaryCards()) {
+            rset.dirtyCovered(cardTable.rangeStart(card).plus(CARD_SIZE - 1));
+            assertTrue(isDirty(cardTable, card));
+            checkSummaryCoversDirtyCards();
+        }
+        checkFirstDirtyCard();
+    }
+
+    public void test_setCardsAtBoundaries() {
+        final int[] cards = boundaryCards();
+        for (int i = 0; i + 1 < cards.length; i += 2) {
+            setCards(cards[i], cards[i + 1], CardState.DIRTY_CARD);
+            checkSummaryCoversDirtyCards();
+            assertEquals(cards[i], rset.firstDirtyCard(cards[i], CARDS, false));
+            setCards(cards[i], cards[i + 1], CardState.CLEAN_CARD);
+            assertEquals(CARDS, rset.firstDirtyCard(0, CARDS, false));
+        }
+        for (int i = 0; i + 1 < cards.length; i += 3) {
+            setCards(cards[i], cards[i + 1], CardState.DIRTY_CARD);
+        }
+        checkSummaryCoversDirtyCards();
+        checkFirstDirtyCard();
+    }
+
+    public void test_firstDirtyCardCleansSummary() {
+        for (int card : boundaryCards()) {
+            rset.dirtyCovered(cardTable.rangeStart(card));
+        }
+        // Clean every other dirty card, as a GC would when visiting them.
+        final int[] cards = boundaryCards();
+        for (int i = 0; i < cards.length; i += 2) {
+            cardTable.clean(cards[i]);
+        }
+        for (int start : cards) {
+            final int first = rset.firstDirtyCard(start, CARDS, true);
+            assertEquals(expectedFirst(cardTable, start, CARDS, CardState.DIRTY_CARD), first);
+            checkSummaryCoversDirtyCards();
+        }
+        cardTable.clean(0, CARDS);
+        assertEquals(CARDS, rset.firstDirtyCard(0, CARDS, true));
+        // Only the entries partially covering the scanned range are left dirty.
+        for (int entry = 0; entry < SUMMARY_ENTRIES; entry++) {
+            final boolean partial = firstCard(entry) < 0 || firstCard(entry + 1) > CARDS;
+            assertEquals("summary entry " + entry, partial, isDirty(summaryTable, entry));
+        }
+    }
+
+    public void test_concurrentlyCleanSummary() {
+        final int[] cards = boundaryCards();
+        for (int card : cards) {
+            rset.dirtyCovered(cardTable.rangeStart(card));
+        }
+        for (int i = 0; i < cards.length; i += 3) {
+            cardTable.clean(cards[i]);
+        }
+        int expected = 0;
+        for (int entry = 0; entry < SUMMARY_ENTRIES; entry++) {
+            final int firstCard = firstCard(entry);
+            final int endCard = firstCard(entry + 1);
+            if (firstCard >= 0 && endCard <= CARDS && expectedFirst(cardTable, firstCard, endCard, CardState.DIRTY_CARD) == endCard) {
+                expected++;
+            }
+        }
+        assertEquals(expected, rset.concurrentlyCleanSummary(0, CARDS));
+        checkSummaryCoversDirtyCards();
+        checkFirstDirtyCard();
+        // Entries straddling the ends of the range are left alone.
+        cardTable.clean(0, CARDS);
+        rset.concurrentlyCleanSummary(0, CARDS);
+        assertTrue(isDirty(summaryTable, 0));
+        assertTrue(isDirty(summaryTable, SUMMARY_ENTRIES - 1));
+        for (int entry = 1; entry < SUMMARY_ENTRIES - 1; entry++) {
+            assertFalse(isDirty(summaryTable, entry));
+        }
+    }
+
+    public void test_concurrentlyCleanSummaryRange() {
+        final int[] cards = boundaryCards();
+        for (int start : cards) {
+            for (int end : cards) {
+                if (start > end) {
+                    continue;
+                }
+                setCards(0, CARDS, CardState.DIRTY_CARD);
+                cardTable.clean(0, CARDS);
+                rset.concurrentlyCleanSummary(start, end);
+                // Only the entries whose cards all lie in the range are cleaned.
+                for (int entry = 0; entry < SUMMARY_ENTRIES; entry++) {
+                    final boolean inRange = firstCard(entry) >= start && firstCard(entry + 1) <= end;
+                    assertEquals("summary entry " + entry + " for range [" + start + ", " + end + "]", !inRange, isDirty(summaryTable, entry));
+                }
+            }
+        }
+    }
+
+    public void test_cleanAndVisitCards() {
+        final int[] cards = boundaryCards();
+        final List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i + 1 < cards.length; i += 4) {
+            setCards(cards[i], cards[i + 1], CardState.DIRTY_CARD);
+            expected.add(cards[i]);
+            expected.add(cards[i + 1]);
+        }
+        final List<Integer> visited = new ArrayList<Integer>();
+        rset.cleanAndVisitCards(cardTable.rangeStart(0), cardTable.rangeStart(CARDS), new CardRangeVisitor() {
+            @Override
+            public void visitCards(Address start, Address end) {
+                visited.add(cardTable.tableEntryIndex(start));
+                visited.add(cardTable.tableEntryIndex(end));
+            }
+        });
+        assertEquals(expected, visited);
+        assertEquals(CARDS, expectedFirst(cardTable, 0, CARDS, CardState.DIRTY_CARD));
+        checkSummaryCoversDirtyCards();
+    }
+}
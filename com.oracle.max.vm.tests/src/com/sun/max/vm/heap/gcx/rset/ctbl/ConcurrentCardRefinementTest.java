@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2007, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.gcx.rset.ctbl;
+
+import static com.sun.max.vm.heap.gcx.rset.ctbl.CardTableRSet.*;
+
+import java.util.*;
+
+import com.sun.max.ide.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.heap.gcx.rset.ctbl.ConcurrentCardRefinement.RangeSnapshot;
+
+/**
+ * Tests the refinement passes of {@link ConcurrentCardRefinement} over card tables backed by natively allocated memory.
+ * The scan of the cells overlapping a card is replaced by a set of cards deemed to refer to the young generation.
+ */
+public class ConcurrentCardRefinementTest extends MaxTestCase {
+
+    static {
+        // The summary table is selected when CardTableRSet is initialized.
+        System.setProperty("max.heap.rset.summary", "true");
+    }
+
+    /**
+     * Number of cards between the start of the covered area and the previous summary entry boundary.
+     */
+    private static final int BIAS = 5;
+
+    private static final int CARDS = 1000;
+
+    private static final int SUMMARY_ENTRIES = (BIAS + CARDS + (1 << LOG2_CARDS_PER_SUMMARY_ENTRY) - 1) >> LOG2_CARDS_PER_SUMMARY_ENTRY;
+
+    private static final Address COVERED_AREA_START = Address.fromLong(1L << 32).plus(BIAS << LOG2_CARD_SIZE);
+
+    public ConcurrentCardRefinementTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(ConcurrentCardRefinementTest.class);
+    }
+
+    private Pointer cardTableMemory;
+    private Pointer summaryTableMemory;
+    private CardTableRSet rset;
+    private CardTable cardTable;
+    private RangeSnapshot oldSpace;
+    private TestRefinement refinement;
+
+    /**
+     * Refinement where the cards referring to the young generation are set by the test, and where scanning a card
+     * may simulate a reference store or a collection racing with the scan.
+     */
+    final class TestRefinement extends ConcurrentCardRefinement {
+        final BitSet youngCards = new BitSet();
+        final List<Integer> scannedCards = new ArrayList<Integer>();
+        int storeDuringScan = -1;
+        int collectionDuringScan = -1;
+
+        TestRefinement() {
+            super(rset, null, oldSpace);
+        }
+
+        @Override
+        boolean refersToYoung(int cardIndex) {
+            assertFalse(isDirty(cardIndex));
+            scannedCards.add(cardIndex);
+            if (cardIndex == storeDuringScan) {
+                rset.dirtyCovered(cardTable.rangeStart(cardIndex));
+            }
+            if (cardIndex == collectionDuringScan) {
+                notifyGC();
+            }
+            return youngCards.get(cardIndex);
+        }
+    }
+
+    @Override
+    public void setUp() {
+        assertTrue("CardTableRSet was initialized without the summary table", UseSummaryTable);
+        cardTableMemory = Memory.mustAllocate(CARDS);
+        summaryTableMemory = Memory.mustAllocate(SUMMARY_ENTRIES);
+        rset = new CardTableRSet();
+        rset.initialize(COVERED_AREA_START, Size.fromInt(CARDS << LOG2_CARD_SIZE), cardTableMemory, summaryTableMemory);
+        cardTable = rset.cardTable;
+        oldSpace = new RangeSnapshot(4);
+        refinement = new TestRefinement();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        Memory.deallocate(cardTableMemory);
+        Memory.deallocate(summaryTableMemory);
+        super.tearDown();
+    }
+
+    private boolean isDirty(int cardIndex) {
+        return cardTable.unsafeGet(cardIndex) == CardState.DIRTY_CARD.value();
+    }
+
+    private void dirty(int start, int end) {
+        rset.setCards(cardTable.rangeStart(start), cardTable.rangeStart(end), CardState.DIRTY_CARD);
+    }
+
+    private List<Integer> dirtyCards() {
+        final List<Integer> cards = new ArrayList<Integer>();
+        for (int i = 0; i < CARDS; i++) {
+            if (isDirty(i)) {
+                cards.add(i);
+            }
+        }
+        return cards;
+    }
+
+    private void checkSummaryCoversDirtyCards() {
+        for (int card = 0; card < CARDS; card++) {
+            if (isDirty(card)) {
+                assertTrue(rset.summaryTable.unsafeGet((card + BIAS) >> LOG2_CARDS_PER_SUMMARY_ENTRY) == CardState.DIRTY_CARD.value());
+            }
+        }
+    }
+
+    private int dirtySummaryEntries() {
+        int count = 0;
+        for (int entry = 0; entry < SUMMARY_ENTRIES; entry++) {
+            if (rset.summaryTable.unsafeGet(entry) == CardState.DIRTY_CARD.value()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void test_refine() {
+        // Scattered cards and a run of cards spanning several batches and summary entries.
+        for (int i = 0; i < CARDS; i += 37) {
+            dirty(i, i + 1);
+        }
+        dirty(300, 600);
+        final List<Integer> dirtyCards = dirtyCards();
+        for (int i = 0; i < dirtyCards.size(); i += 3) {
+            refinement.youngCards.set(dirtyCards.get(i));
+        }
+        oldSpace.visitCells(cardTable.rangeStart(0), cardTable.rangeStart(CARDS));
+        refinement.refine();
+
+        assertEquals(dirtyCards, refinement.scannedCards);
+        final List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < dirtyCards.size(); i += 3) {
+            expected.add(dirtyCards.get(i));
+        }
+        assertEquals(expected, dirtyCards());
+        checkSummaryCoversDirtyCards();
+        // Only the summary entries covering a card left dirty or straddling the refined range remain dirty.
+        final Set<Integer> entries = new HashSet<Integer>();
+        for (int card : expected) {
+            entries.add((card + BIAS) >> LOG2_CARDS_PER_SUMMARY_ENTRY);
+        }
+        entries.add(0);
+        entries.add(SUMMARY_ENTRIES - 1);
+        assertEquals(entries.size(), dirtySummaryEntries());
+    }
+
+    public void test_onlyCompletelyCoveredCardsAreRefined() {
+        dirty(10, 12);
+        dirty(99, 101);
+        oldSpace.visitCells(cardTable.rangeStart(10).plus(Word.size()), cardTable.rangeStart(100).plus(Word.size()));
+        refinement.refine();
+        assertEquals(Arrays.asList(11, 99), refinement.scannedCards);
+        assertEquals(Arrays.asList(10, 100), dirtyCards());
+        checkSummaryCoversDirtyCards();
+    }
+
+    public void test_multipleRanges() {
+        dirty(0, CARDS);
+        oldSpace.visitCells(cardTable.rangeStart(100), cardTable.rangeStart(200));
+        // Adjacent ranges are recorded as one.
+        oldSpace.visitCells(cardTable.rangeStart(200), cardTable.rangeStart(300));
+        oldSpace.visitCells(cardTable.rangeStart(700), cardTable.rangeStart(800));
+        refinement.refine();
+        assertEquals(300, refinement.scannedCards.size());
+        assertEquals(CARDS - 300, dirtyCards().size());
+        assertFalse(isDirty(100));
+        assertFalse(isDirty(299));
+        assertTrue(isDirty(300));
+        assertFalse(isDirty(799));
+        checkSummaryCoversDirtyCards();
+
+        oldSpace.reset();
+        refinement.scannedCards.clear();
+        refinement.refine();
+        assertTrue(refinement.scannedCards.isEmpty());
+    }
+
+    public void test_racingStoreKeepsCardDirty() {
+        dirty(0, CARDS);
+        refinement.storeDuringScan = 450;
+        oldSpace.visitCells(cardTable.rangeStart(0), cardTable.rangeStart(CARDS));
+        refinement.refine();
+        assertEquals(Arrays.asList(450), dirtyCards());
+        checkSummaryCoversDirtyCards();
+    }
+
+    public void test_collectionAbandonsPass() {
+        dirty(0, CARDS);
+        refinement.collectionDuringScan = 0;
+        oldSpace.visitCells(cardTable.rangeStart(0), cardTable.rangeStart(CARDS));
+        refinement.refine();
+        // The batch in progress completes, the following ones are abandoned and the summary is left as is.
+        final int refined = refinement.scannedCards.size();
+        assertTrue(refined > 0 && refined < CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            assertEquals(i >= refined, isDirty(i));
+        }
+        assertEquals(SUMMARY_ENTRIES, dirtySummaryEntries());
+
+        // The next pass starts over in the new epoch.
+        refinement.scannedCards.clear();
+        refinement.refine();
+        assertEquals(CARDS - refined, refinement.scannedCards.size());
+        assertTrue(dirtyCards().isEmpty());
+        assertEquals(2, dirtySummaryEntries());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package jtt.max;
+
+import static com.sun.max.vm.MaxineVM.*;
+
+import com.sun.cri.ci.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.compiler.*;
+import com.sun.max.vm.compiler.RuntimeCompiler.Nature;
+import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.profile.*;
+
+/*
+ * Tests that the tier transition statistics only count compilations that have completed
+ * and that promote a method to a higher tier: baseline to optimized code, and optimized
+ * code to the top tier compiler once the entry counter of the optimized code overflows.
+ * @Harness: java
+ * @Runs: 0=true; 1=true; 2=true
+ */
+public class TierTransition01 {
+
+    /**
+     * Top tier compiler installed for the duration of the test, delegating to the optimizing compiler.
+     */
+    static final class TopTier extends RuntimeCompiler.DefaultNameAdapter {
+        final RuntimeCompiler delegate;
+        final boolean fail;
+
+        TopTier(RuntimeCompiler delegate, boolean fail) {
+            this.delegate = delegate;
+            this.fail = fail;
+        }
+
+        public void initialize(MaxineVM.Phase phase) {
+        }
+
+        public void deoptimize(ClassMethodActor classMethodActor) {
+            delegate.deoptimize(classMethodActor);
+        }
+
+        public TargetMethod compile(ClassMethodActor classMethodActor, boolean isDeopt, boolean install, CiStatistics stats) {
+            if (fail) {
+                throw new CiBailout("top tier compilation failure requested by " + TierTransition01.class.getSimpleName());
+            }
+            return delegate.compile(classMethodActor, isDeopt, install, stats);
+        }
+
+        public Nature nature() {
+            return Nature.OPT;
+        }
+
+        public boolean matches(String compilerName) {
+            return false;
+        }
+    }
+
+    public static boolean test(int arg) throws Exception {
+        CompilationBroker broker = vm().compilationBroker;
+        ClassMethodActor cma = ClassMethodActor.fromJava(TierTransition01.class.getDeclaredMethod("callee" + arg, int.class));
+        // the callee may have been compiled into the boot image, start from a method that was never compiled
+        synchronized (cma) {
+            cma.compiledState = Compilations.EMPTY;
+        }
+        RuntimeCompiler topTier = broker.topTierCompiler;
+        broker.topTierCompiler = new TopTier(broker.optimizingCompiler, arg == 2);
+        try {
+            int baselineToOpt = CompilationBroker.baselineToOptTransitions();
+            int optToTopTier = CompilationBroker.optToTopTierTransitions();
+            int failures = CompilationBroker.topTierFailures();
+            if (arg == 0) {
+                // optimizing a method that has no baseline code is not a transition, nor is re-optimizing it
+                compileOpt(cma);
+                compileOpt(cma);
+                return CompilationBroker.baselineToOptTransitions() == baselineToOpt && callee0(arg) == arg + 1;
+            }
+            broker.compile(cma, Nature.BASELINE);
+            if (CompilationBroker.baselineToOptTransitions() != baselineToOpt) {
+                return false;
+            }
+            TargetMethod opt = compileOpt(cma);
+            if (CompilationBroker.baselineToOptTransitions() != baselineToOpt + 1 || CompilationBroker.optToTopTierTransitions() != optToTopTier) {
+                return false;
+            }
+            promote(opt);
+            // the promotion may complete in the background
+            while (CompilationBroker.optToTopTierTransitions() == optToTopTier && CompilationBroker.topTierFailures() == failures) {
+                Thread.sleep(1);
+            }
+            TargetMethod current = Compilations.currentTargetMethod(cma.compiledState, Nature.OPT);
+            if (arg == 1) {
+                return CompilationBroker.optToTopTierTransitions() == optToTopTier + 1 && CompilationBroker.topTierFailures() == failures &&
+                    current != opt && callee1(arg) == arg + 1;
+            }
+            // a failed promotion keeps the optimized code
+            return CompilationBroker.optToTopTierTransitions() == optToTopTier && CompilationBroker.topTierFailures() == failures + 1 &&
+                current == opt && callee2(arg) == arg + 1;
+        } finally {
+            broker.topTierCompiler = topTier;
+        }
+    }
+
+    private static TargetMethod compileOpt(ClassMethodActor cma) throws InterruptedException {
+        TargetMethod tm = vm().compilationBroker.compile(cma, Nature.OPT);
+        // the compilation may be pending in the background
+        while (tm == null || tm.isBaseline()) {
+            Thread.sleep(1);
+            tm = Compilations.currentTargetMethod(cma.compiledState, Nature.OPT);
+        }
+        return tm;
+    }
+
+    /**
+     * Handles the overflow of the entry counter of optimized code, as the code does once it has been entered
+     * {@code TopTierRCT} times.
+     */
+    private static void promote(TargetMethod opt) {
+        MethodProfile.Builder entryCounter = new MethodProfile.Builder();
+        entryCounter.addEntryBackedgeCounter(0);
+        CompilationBroker.instrumentationCounterOverflow(entryCounter.finish(opt), null);
+    }
+
+    private static int callee0(int i) {
+        return i + 1;
+    }
+
+    private static int callee1(int i) {
+        return i + 1;
+    }
+
+    private static int callee2(int i) {
+        return i + 1;
+    }
+}
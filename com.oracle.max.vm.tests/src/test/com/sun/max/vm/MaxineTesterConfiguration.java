@@ -358,6 +358,7 @@ public class MaxineTesterConfiguration {
         maxvmConfig("opt", "-Xms2g", "-Xmx2g", "-Xopt");
         maxvmConfig("mx256m", "-Xmx256m");
         maxvmConfig("mx512m", "-Xmx512m");
+        maxvmConfig("osr", "-Xms2g", "-Xmx2g", "-XX:+UseOSR");
 
         // VEE 2010 benchmarking configurations
         maxvmConfig("noGC", "-XX:+DisableGC", "-Xmx3g");
@@ -514,7 +515,7 @@ public class MaxineTesterConfiguration {
     }
 
     public static String defaultMaxvmOutputConfigs() {
-        return "std";
+        return "std,osr";
     }
 
     public static String defaultJavaTesterConfigs() {
@@ -320,6 +320,7 @@ public class JTConfig {
         jtt.except.Finally02.class,
         jtt.except.StackTrace_AIOOBE_00.class,
         jtt.except.StackTrace_CCE_00.class,
+        jtt.except.StackTrace_Lazy_01.class,
         jtt.except.StackTrace_NPE_00.class,
         jtt.except.StackTrace_NPE_01.class,
         jtt.except.StackTrace_NPE_02.class,
@@ -328,6 +329,8 @@ public class JTConfig {
         jtt.except.Throw_InCatch02.class,
         jtt.except.Throw_InCatch03.class,
         jtt.except.Throw_InNested.class,
+        jtt.except.Throw_Local01.class,
+        jtt.except.Throw_Local02.class,
         jtt.except.Throw_NPE_01.class,
         jtt.except.Throw_Synchronized01.class,
         jtt.except.Throw_Synchronized02.class,
@@ -375,6 +378,8 @@ public class JTConfig {
         jtt.jasm.Invokevirtual_private00.class,
         jtt.jasm.Invokevirtual_private01.class,
         jtt.jasm.Loop00.class,
+        jtt.jdk.Arrays_fill01.class,
+        jtt.jdk.Arrays_fill02.class,
         jtt.jdk.Class_getName.class,
         jtt.jdk.EnumMap01.class,
         jtt.jdk.EnumMap02.class,
@@ -496,6 +501,7 @@ public class JTConfig {
         jtt.lang.ProcessEnvironment_init.class,
         jtt.lang.Runtime_exec01.class,
         jtt.lang.StringCoding_Scale.class,
+        jtt.lang.String_indexOf01.class,
         jtt.lang.String_intern01.class,
         jtt.lang.String_intern02.class,
         jtt.lang.String_intern03.class,
@@ -517,6 +523,7 @@ public class JTConfig {
         jtt.loop.Loop14.class,
         jtt.loop.LoopInline.class,
         jtt.loop.LoopNewInstance.class,
+        jtt.loop.LoopOSR01.class,
         jtt.loop.LoopPhi.class,
         jtt.loop.LoopSwitch01.class,
         jtt.micro.ArrayCompare01.class,
@@ -594,9 +601,11 @@ public class JTConfig {
         jtt.optimize.Fold_Long01.class,
         jtt.optimize.Fold_Long02.class,
         jtt.optimize.Fold_Math01.class,
+        jtt.optimize.GLE_01.class,
         jtt.optimize.Inline01.class,
         jtt.optimize.Inline02.class,
         jtt.optimize.LLE_01.class,
+        jtt.optimize.LeafType_01.class,
         jtt.optimize.List_reorder_bug.class,
         jtt.optimize.NCE_01.class,
         jtt.optimize.NCE_02.class,
@@ -778,6 +787,7 @@ public class JTConfig {
         jtt.max.Inline01.class,
         jtt.max.Invoke_except01.class,
         jtt.max.Prototyping01.class,
+        jtt.max.TierTransition01.class,
         jtt.max.Unsigned_idiv01.class,
         jtt.max.Unsigned_irem01.class,
         jtt.max.Unsigned_ldiv01.class,
@@ -371,468 +371,478 @@ public class JTRuns {
             case 287: jtt_except_Finally02(); break;
             case 288: jtt_except_StackTrace_AIOOBE_00(); break;
             case 289: jtt_except_StackTrace_CCE_00(); break;
-            case 290: jtt_except_StackTrace_NPE_00(); break;
-            case 291: jtt_except_StackTrace_NPE_01(); break;
-            case 292: jtt_except_StackTrace_NPE_02(); break;
-            case 293: jtt_except_StackTrace_NPE_03(); break;
-            case 294: jtt_except_Throw_InCatch01(); break;
-            case 295: jtt_except_Throw_InCatch02(); break;
-            case 296: jtt_except_Throw_InCatch03(); break;
-            case 297: jtt_except_Throw_InNested(); break;
-            case 298: jtt_except_Throw_NPE_01(); break;
-            case 299: jtt_except_Throw_Synchronized01(); break;
-            case 300: jtt_except_Throw_Synchronized02(); break;
-            case 301: jtt_except_Throw_Synchronized03(); break;
-            case 302: jtt_except_Throw_Synchronized04(); break;
-            case 303: jtt_except_Throw_Synchronized05(); break;
-            case 304: jtt_hotpath_HP_allocate01(); break;
-            case 305: jtt_hotpath_HP_allocate02(); break;
-            case 306: jtt_hotpath_HP_allocate03(); break;
-            case 307: jtt_hotpath_HP_allocate04(); break;
-            case 308: jtt_hotpath_HP_array01(); break;
-            case 309: jtt_hotpath_HP_array02(); break;
-            case 310: jtt_hotpath_HP_array03(); break;
-            case 311: jtt_hotpath_HP_array04(); break;
-            case 312: jtt_hotpath_HP_control01(); break;
-            case 313: jtt_hotpath_HP_control02(); break;
-            case 314: jtt_hotpath_HP_convert01(); break;
-            case 315: jtt_hotpath_HP_count(); break;
-            case 316: jtt_hotpath_HP_dead01(); break;
-            case 317: jtt_hotpath_HP_demo01(); break;
-            case 318: jtt_hotpath_HP_field01(); break;
-            case 319: jtt_hotpath_HP_field02(); break;
-            case 320: jtt_hotpath_HP_field03(); break;
-            case 321: jtt_hotpath_HP_field04(); break;
-            case 322: jtt_hotpath_HP_idea(); break;
-            case 323: jtt_hotpath_HP_inline01(); break;
-            case 324: jtt_hotpath_HP_inline02(); break;
-            case 325: jtt_hotpath_HP_invoke01(); break;
-            case 326: jtt_hotpath_HP_life(); break;
-            case 327: jtt_hotpath_HP_nest01(); break;
-            case 328: jtt_hotpath_HP_nest02(); break;
-            case 329: jtt_hotpath_HP_scope01(); break;
-            case 330: jtt_hotpath_HP_scope02(); break;
-            case 331: jtt_hotpath_HP_series(); break;
-            case 332: jtt_hotpath_HP_trees01(); break;
-            case 333: jtt_jasm_BC_dcmpg(); break;
-            case 334: jtt_jasm_BC_dcmpg2(); break;
-            case 335: jtt_jasm_BC_dcmpl(); break;
-            case 336: jtt_jasm_BC_dcmpl2(); break;
-            case 337: jtt_jasm_BC_fcmpg(); break;
-            case 338: jtt_jasm_BC_fcmpg2(); break;
-            case 339: jtt_jasm_BC_fcmpl(); break;
-            case 340: jtt_jasm_BC_fcmpl2(); break;
-            case 341: jtt_jasm_BC_lcmp(); break;
-            case 342: jtt_jasm_Invokevirtual_private00(); break;
-            case 343: jtt_jasm_Invokevirtual_private01(); break;
-            case 344: jtt_jasm_Loop00(); break;
-            case 345: jtt_jdk_Class_getName(); break;
-            case 346: jtt_jdk_EnumMap01(); break;
-            case 347: jtt_jdk_EnumMap02(); break;
-            case 348: jtt_jdk_System_currentTimeMillis01(); break;
-            case 349: jtt_jdk_System_currentTimeMillis02(); break;
-            case 350: jtt_jdk_System_nanoTime01(); break;
-            case 351: jtt_jdk_System_nanoTime02(); break;
-            case 352: jtt_jdk_System_setOut(); break;
-            case 353: jtt_jdk_Thread_setName(); break;
-            case 354: jtt_jdk_UnsafeAccess01(); break;
-            case 355: jtt_jni_JNI_FieldBoolean(); break;
-            case 356: jtt_jni_JNI_IdentityBoolean(); break;
-            case 357: jtt_jni_JNI_IdentityByte(); break;
-            case 358: jtt_jni_JNI_IdentityChar(); break;
-            case 359: jtt_jni_JNI_IdentityFloat(); break;
-            case 360: jtt_jni_JNI_IdentityInt(); break;
-            case 361: jtt_jni_JNI_IdentityLong(); break;
-            case 362: jtt_jni_JNI_IdentityObject(); break;
-            case 363: jtt_jni_JNI_IdentityShort(); break;
-            case 364: jtt_jni_JNI_ManyObjectParameters(); break;
-            case 365: jtt_jni_JNI_ManyParameters(); break;
-            case 366: jtt_jni_JNI_Nop(); break;
-            case 367: jtt_jni_JNI_OverflowArguments(); break;
-            case 368: jtt_jvmni_JVM_ArrayCopy01(); break;
-            case 369: jtt_jvmni_JVM_GetClassContext01(); break;
-            case 370: jtt_jvmni_JVM_GetClassContext02(); break;
-            case 371: jtt_jvmni_JVM_GetFreeMemory01(); break;
-            case 372: jtt_jvmni_JVM_GetMaxMemory01(); break;
-            case 373: jtt_jvmni_JVM_GetTotalMemory01(); break;
-            case 374: jtt_jvmni_JVM_IsNaN01(); break;
-            case 375: jtt_lang_Boxed_TYPE_01(); break;
-            case 376: jtt_lang_Bridge_method01(); break;
-            case 377: jtt_lang_ClassLoader_loadClass01(); break;
-            case 378: jtt_lang_Class_Literal01(); break;
-            case 379: jtt_lang_Class_asSubclass01(); break;
-            case 380: jtt_lang_Class_cast01(); break;
-            case 381: jtt_lang_Class_cast02(); break;
-            case 382: jtt_lang_Class_forName01(); break;
-            case 383: jtt_lang_Class_forName02(); break;
-            case 384: jtt_lang_Class_forName03(); break;
-            case 385: jtt_lang_Class_forName04(); break;
-            case 386: jtt_lang_Class_forName05(); break;
-            case 387: jtt_lang_Class_getAnnotation01(); break;
-            case 388: jtt_lang_Class_getComponentType01(); break;
-            case 389: jtt_lang_Class_getInterfaces01(); break;
-            case 390: jtt_lang_Class_getName01(); break;
-            case 391: jtt_lang_Class_getName02(); break;
-            case 392: jtt_lang_Class_getSimpleName01(); break;
-            case 393: jtt_lang_Class_getSimpleName02(); break;
-            case 394: jtt_lang_Class_getSuperClass01(); break;
-            case 395: jtt_lang_Class_isArray01(); break;
-            case 396: jtt_lang_Class_isAssignableFrom01(); break;
-            case 397: jtt_lang_Class_isAssignableFrom02(); break;
-            case 398: jtt_lang_Class_isAssignableFrom03(); break;
-            case 399: jtt_lang_Class_isInstance01(); break;
-            case 400: jtt_lang_Class_isInstance02(); break;
-            case 401: jtt_lang_Class_isInstance03(); break;
-            case 402: jtt_lang_Class_isInstance04(); break;
-            case 403: jtt_lang_Class_isInstance05(); break;
-            case 404: jtt_lang_Class_isInstance06(); break;
-            case 405: jtt_lang_Class_isInterface01(); break;
-            case 406: jtt_lang_Class_isPrimitive01(); break;
-            case 407: jtt_lang_Double_01(); break;
-            case 408: jtt_lang_Double_toString(); break;
-            case 409: jtt_lang_Float_01(); break;
-            case 410: jtt_lang_Float_02(); break;
-            case 411: jtt_lang_Float_03(); break;
-            case 412: jtt_lang_Int_greater01(); break;
-            case 413: jtt_lang_Int_greater02(); break;
-            case 414: jtt_lang_Int_greater03(); break;
-            case 415: jtt_lang_Int_greaterEqual01(); break;
-            case 416: jtt_lang_Int_greaterEqual02(); break;
-            case 417: jtt_lang_Int_greaterEqual03(); break;
-            case 418: jtt_lang_Int_less01(); break;
-            case 419: jtt_lang_Int_less02(); break;
-            case 420: jtt_lang_Int_less03(); break;
-            case 421: jtt_lang_Int_lessEqual01(); break;
-            case 422: jtt_lang_Int_lessEqual02(); break;
-            case 423: jtt_lang_Int_lessEqual03(); break;
-            case 424: jtt_lang_JDK_ClassLoaders01(); break;
-            case 425: jtt_lang_JDK_ClassLoaders02(); break;
-            case 426: jtt_lang_Long_greater01(); break;
-            case 427: jtt_lang_Long_greater02(); break;
-            case 428: jtt_lang_Long_greater03(); break;
-            case 429: jtt_lang_Long_greaterEqual01(); break;
-            case 430: jtt_lang_Long_greaterEqual02(); break;
-            case 431: jtt_lang_Long_greaterEqual03(); break;
-            case 432: jtt_lang_Long_less01(); break;
-            case 433: jtt_lang_Long_less02(); break;
-            case 434: jtt_lang_Long_less03(); break;
-            case 435: jtt_lang_Long_lessEqual01(); break;
-            case 436: jtt_lang_Long_lessEqual02(); break;
-            case 437: jtt_lang_Long_lessEqual03(); break;
-            case 438: jtt_lang_Long_reverseBytes01(); break;
-            case 439: jtt_lang_Long_reverseBytes02(); break;
-            case 440: jtt_lang_Math_abs(); break;
-            case 441: jtt_lang_Math_cos(); break;
-            case 442: jtt_lang_Math_log(); break;
-            case 443: jtt_lang_Math_log10(); break;
-            case 444: jtt_lang_Math_pow(); break;
-            case 445: jtt_lang_Math_sin(); break;
-            case 446: jtt_lang_Math_sqrt(); break;
-            case 447: jtt_lang_Math_tan(); break;
-            case 448: jtt_lang_Miranda_method01(); break;
-            case 449: jtt_lang_Object_clone01(); break;
-            case 450: jtt_lang_Object_clone02(); break;
-            case 451: jtt_lang_Object_equals01(); break;
-            case 452: jtt_lang_Object_getClass01(); break;
-            case 453: jtt_lang_Object_hashCode01(); break;
-            case 454: jtt_lang_Object_notify01(); break;
-            case 455: jtt_lang_Object_notify02(); break;
-            case 456: jtt_lang_Object_notifyAll01(); break;
-            case 457: jtt_lang_Object_notifyAll02(); break;
-            case 458: jtt_lang_Object_toString01(); break;
-            case 459: jtt_lang_Object_toString02(); break;
-            case 460: jtt_lang_Object_wait01(); break;
-            case 461: jtt_lang_Object_wait02(); break;
-            case 462: jtt_lang_Object_wait03(); break;
-            case 463: jtt_lang_ProcessEnvironment_init(); break;
-            case 464: jtt_lang_Runtime_exec01(); break;
-            case 465: jtt_lang_StringCoding_Scale(); break;
-            case 466: jtt_lang_String_intern01(); break;
-            case 467: jtt_lang_String_intern02(); break;
-            case 468: jtt_lang_String_intern03(); break;
-            case 469: jtt_lang_String_valueOf01(); break;
-            case 470: jtt_lang_System_identityHashCode01(); break;
-            case 471: jtt_loop_DegeneratedLoop(); break;
-            case 472: jtt_loop_Loop01(); break;
-            case 473: jtt_loop_Loop02(); break;
-            case 474: jtt_loop_Loop03(); break;
-            case 475: jtt_loop_Loop04(); break;
-            case 476: jtt_loop_Loop05(); break;
-            case 477: jtt_loop_Loop06(); break;
-            case 478: jtt_loop_Loop07(); break;
-            case 479: jtt_loop_Loop08(); break;
-            case 480: jtt_loop_Loop09(); break;
-            case 481: jtt_loop_Loop11(); break;
-            case 482: jtt_loop_Loop12(); break;
-            case 483: jtt_loop_Loop13(); break;
-            case 484: jtt_loop_Loop14(); break;
-            case 485: jtt_loop_LoopInline(); break;
-            case 486: jtt_loop_LoopNewInstance(); break;
-            case 487: jtt_loop_LoopPhi(); break;
-            case 488: jtt_loop_LoopSwitch01(); break;
-            case 489: jtt_micro_ArrayCompare01(); break;
-            case 490: jtt_micro_ArrayCompare02(); break;
-            case 491: jtt_micro_BC_invokevirtual2(); break;
-            case 492: jtt_micro_BigByteParams01(); break;
-            case 493: jtt_micro_BigDoubleParams02(); break;
-            case 494: jtt_micro_BigFloatParams01(); break;
-            case 495: jtt_micro_BigFloatParams02(); break;
-            case 496: jtt_micro_BigIntParams01(); break;
-            case 497: jtt_micro_BigIntParams02(); break;
-            case 498: jtt_micro_BigInterfaceParams01(); break;
-            case 499: jtt_micro_BigLongParams02(); break;
-            case 500: jtt_micro_BigMixedParams01(); break;
-            case 501: jtt_micro_BigMixedParams02(); break;
-            case 502: jtt_micro_BigMixedParams03(); break;
-            case 503: jtt_micro_BigObjectParams01(); break;
-            case 504: jtt_micro_BigObjectParams02(); break;
-            case 505: jtt_micro_BigParamsAlignment(); break;
-            case 506: jtt_micro_BigShortParams01(); break;
-            case 507: jtt_micro_BigVirtualParams01(); break;
-            case 508: jtt_micro_Bubblesort(); break;
-            case 509: jtt_micro_Fibonacci(); break;
-            case 510: jtt_micro_InvokeVirtual_01(); break;
-            case 511: jtt_micro_InvokeVirtual_02(); break;
-            case 512: jtt_micro_Matrix01(); break;
-            case 513: jtt_micro_ReferenceMap01(); break;
-            case 514: jtt_micro_StrangeFrames(); break;
-            case 515: jtt_micro_String_format01(); break;
-            case 516: jtt_micro_String_format02(); break;
-            case 517: jtt_micro_VarArgs_String01(); break;
-            case 518: jtt_micro_VarArgs_boolean01(); break;
-            case 519: jtt_micro_VarArgs_byte01(); break;
-            case 520: jtt_micro_VarArgs_char01(); break;
-            case 521: jtt_micro_VarArgs_double01(); break;
-            case 522: jtt_micro_VarArgs_float01(); break;
-            case 523: jtt_micro_VarArgs_int01(); break;
-            case 524: jtt_micro_VarArgs_long01(); break;
-            case 525: jtt_micro_VarArgs_short01(); break;
-            case 526: jtt_optimize_ABCE_01(); break;
-            case 527: jtt_optimize_ABCE_02(); break;
-            case 528: jtt_optimize_ABCE_03(); break;
-            case 529: jtt_optimize_ArrayCopy01(); break;
-            case 530: jtt_optimize_ArrayLength01(); break;
-            case 531: jtt_optimize_BC_idiv_16(); break;
-            case 532: jtt_optimize_BC_idiv_4(); break;
-            case 533: jtt_optimize_BC_imul_16(); break;
-            case 534: jtt_optimize_BC_imul_4(); break;
-            case 535: jtt_optimize_BC_ldiv_16(); break;
-            case 536: jtt_optimize_BC_ldiv_4(); break;
-            case 537: jtt_optimize_BC_lmul_16(); break;
-            case 538: jtt_optimize_BC_lmul_4(); break;
-            case 539: jtt_optimize_BC_lshr_C16(); break;
-            case 540: jtt_optimize_BC_lshr_C24(); break;
-            case 541: jtt_optimize_BC_lshr_C32(); break;
-            case 542: jtt_optimize_BlockSkip01(); break;
-            case 543: jtt_optimize_Cmov01(); break;
-            case 544: jtt_optimize_Cmov02(); break;
-            case 545: jtt_optimize_Conditional01(); break;
-            case 546: jtt_optimize_DeadCode01(); break;
-            case 547: jtt_optimize_DeadCode02(); break;
-            case 548: jtt_optimize_Fold_Cast01(); break;
-            case 549: jtt_optimize_Fold_Convert01(); break;
-            case 550: jtt_optimize_Fold_Convert02(); break;
-            case 551: jtt_optimize_Fold_Convert03(); break;
-            case 552: jtt_optimize_Fold_Convert04(); break;
-            case 553: jtt_optimize_Fold_Double01(); break;
-            case 554: jtt_optimize_Fold_Double02(); break;
-            case 555: jtt_optimize_Fold_Double03(); break;
-            case 556: jtt_optimize_Fold_Float01(); break;
-            case 557: jtt_optimize_Fold_Float02(); break;
-            case 558: jtt_optimize_Fold_InstanceOf01(); break;
-            case 559: jtt_optimize_Fold_Int01(); break;
-            case 560: jtt_optimize_Fold_Int02(); break;
-            case 561: jtt_optimize_Fold_Long01(); break;
-            case 562: jtt_optimize_Fold_Long02(); break;
-            case 563: jtt_optimize_Fold_Math01(); break;
-            case 564: jtt_optimize_Inline01(); break;
-            case 565: jtt_optimize_Inline02(); break;
-            case 566: jtt_optimize_LLE_01(); break;
-            case 567: jtt_optimize_List_reorder_bug(); break;
-            case 568: jtt_optimize_NCE_01(); break;
-            case 569: jtt_optimize_NCE_02(); break;
-            case 570: jtt_optimize_NCE_03(); break;
-            case 571: jtt_optimize_NCE_04(); break;
-            case 572: jtt_optimize_NCE_FlowSensitive01(); break;
-            case 573: jtt_optimize_NCE_FlowSensitive02(); break;
-            case 574: jtt_optimize_NCE_FlowSensitive03(); break;
-            case 575: jtt_optimize_NCE_FlowSensitive04(); break;
-            case 576: jtt_optimize_NCE_FlowSensitive05(); break;
-            case 577: jtt_optimize_Narrow_byte01(); break;
-            case 578: jtt_optimize_Narrow_byte02(); break;
-            case 579: jtt_optimize_Narrow_byte03(); break;
-            case 580: jtt_optimize_Narrow_char01(); break;
-            case 581: jtt_optimize_Narrow_char02(); break;
-            case 582: jtt_optimize_Narrow_char03(); break;
-            case 583: jtt_optimize_Narrow_short01(); break;
-            case 584: jtt_optimize_Narrow_short02(); break;
-            case 585: jtt_optimize_Narrow_short03(); break;
-            case 586: jtt_optimize_Phi01(); break;
-            case 587: jtt_optimize_Phi02(); break;
-            case 588: jtt_optimize_Phi03(); break;
-            case 589: jtt_optimize_Reduce_Convert01(); break;
-            case 590: jtt_optimize_Reduce_Double01(); break;
-            case 591: jtt_optimize_Reduce_Float01(); break;
-            case 592: jtt_optimize_Reduce_Int01(); break;
-            case 593: jtt_optimize_Reduce_Int02(); break;
-            case 594: jtt_optimize_Reduce_Int03(); break;
-            case 595: jtt_optimize_Reduce_Int04(); break;
-            case 596: jtt_optimize_Reduce_IntShift01(); break;
-            case 597: jtt_optimize_Reduce_IntShift02(); break;
-            case 598: jtt_optimize_Reduce_Long01(); break;
-            case 599: jtt_optimize_Reduce_Long02(); break;
-            case 600: jtt_optimize_Reduce_Long03(); break;
-            case 601: jtt_optimize_Reduce_Long04(); break;
-            case 602: jtt_optimize_Reduce_LongShift01(); break;
-            case 603: jtt_optimize_Reduce_LongShift02(); break;
-            case 604: jtt_optimize_Switch01(); break;
-            case 605: jtt_optimize_Switch02(); break;
-            case 606: jtt_optimize_TypeCastElem(); break;
-            case 607: jtt_optimize_VN_Cast01(); break;
-            case 608: jtt_optimize_VN_Cast02(); break;
-            case 609: jtt_optimize_VN_Convert01(); break;
-            case 610: jtt_optimize_VN_Convert02(); break;
-            case 611: jtt_optimize_VN_Double01(); break;
-            case 612: jtt_optimize_VN_Double02(); break;
-            case 613: jtt_optimize_VN_Field01(); break;
-            case 614: jtt_optimize_VN_Field02(); break;
-            case 615: jtt_optimize_VN_Float01(); break;
-            case 616: jtt_optimize_VN_Float02(); break;
-            case 617: jtt_optimize_VN_InstanceOf01(); break;
-            case 618: jtt_optimize_VN_InstanceOf02(); break;
-            case 619: jtt_optimize_VN_InstanceOf03(); break;
-            case 620: jtt_optimize_VN_Int01(); break;
-            case 621: jtt_optimize_VN_Int02(); break;
-            case 622: jtt_optimize_VN_Int03(); break;
-            case 623: jtt_optimize_VN_Long01(); break;
-            case 624: jtt_optimize_VN_Long02(); break;
-            case 625: jtt_optimize_VN_Long03(); break;
-            case 626: jtt_optimize_VN_Loop01(); break;
-            case 627: jtt_reflect_Array_get01(); break;
-            case 628: jtt_reflect_Array_get02(); break;
-            case 629: jtt_reflect_Array_get03(); break;
-            case 630: jtt_reflect_Array_getBoolean01(); break;
-            case 631: jtt_reflect_Array_getByte01(); break;
-            case 632: jtt_reflect_Array_getChar01(); break;
-            case 633: jtt_reflect_Array_getDouble01(); break;
-            case 634: jtt_reflect_Array_getFloat01(); break;
-            case 635: jtt_reflect_Array_getInt01(); break;
-            case 636: jtt_reflect_Array_getLength01(); break;
-            case 637: jtt_reflect_Array_getLong01(); break;
-            case 638: jtt_reflect_Array_getShort01(); break;
-            case 639: jtt_reflect_Array_newInstance01(); break;
-            case 640: jtt_reflect_Array_newInstance02(); break;
-            case 641: jtt_reflect_Array_newInstance03(); break;
-            case 642: jtt_reflect_Array_newInstance04(); break;
-            case 643: jtt_reflect_Array_newInstance05(); break;
-            case 644: jtt_reflect_Array_newInstance06(); break;
-            case 645: jtt_reflect_Array_set01(); break;
-            case 646: jtt_reflect_Array_set02(); break;
-            case 647: jtt_reflect_Array_set03(); break;
-            case 648: jtt_reflect_Array_setBoolean01(); break;
-            case 649: jtt_reflect_Array_setByte01(); break;
-            case 650: jtt_reflect_Array_setChar01(); break;
-            case 651: jtt_reflect_Array_setDouble01(); break;
-            case 652: jtt_reflect_Array_setFloat01(); break;
-            case 653: jtt_reflect_Array_setInt01(); break;
-            case 654: jtt_reflect_Array_setLong01(); break;
-            case 655: jtt_reflect_Array_setShort01(); break;
-            case 656: jtt_reflect_Class_getDeclaredField01(); break;
-            case 657: jtt_reflect_Class_getDeclaredMethod01(); break;
-            case 658: jtt_reflect_Class_getField01(); break;
-            case 659: jtt_reflect_Class_getField02(); break;
-            case 660: jtt_reflect_Class_getMethod01(); break;
-            case 661: jtt_reflect_Class_getMethod02(); break;
-            case 662: jtt_reflect_Class_newInstance01(); break;
-            case 663: jtt_reflect_Class_newInstance02(); break;
-            case 664: jtt_reflect_Class_newInstance03(); break;
-            case 665: jtt_reflect_Class_newInstance06(); break;
-            case 666: jtt_reflect_Class_newInstance07(); break;
-            case 667: jtt_reflect_Field_get01(); break;
-            case 668: jtt_reflect_Field_get02(); break;
-            case 669: jtt_reflect_Field_get03(); break;
-            case 670: jtt_reflect_Field_get04(); break;
-            case 671: jtt_reflect_Field_getType01(); break;
-            case 672: jtt_reflect_Field_set01(); break;
-            case 673: jtt_reflect_Field_set02(); break;
-            case 674: jtt_reflect_Field_set03(); break;
-            case 675: jtt_reflect_Invoke_except01(); break;
-            case 676: jtt_reflect_Invoke_main01(); break;
-            case 677: jtt_reflect_Invoke_main02(); break;
-            case 678: jtt_reflect_Invoke_main03(); break;
-            case 679: jtt_reflect_Invoke_virtual01(); break;
-            case 680: jtt_reflect_Method_getParameterTypes01(); break;
-            case 681: jtt_reflect_Method_getReturnType01(); break;
-            case 682: jtt_reflect_Reflection_getCallerClass01(); break;
-            case 683: jtt_threads_Monitor_contended01(); break;
-            case 684: jtt_threads_Monitor_notowner01(); break;
-            case 685: jtt_threads_Monitorenter01(); break;
-            case 686: jtt_threads_Monitorenter02(); break;
-            case 687: jtt_threads_Object_wait01(); break;
-            case 688: jtt_threads_Object_wait02(); break;
-            case 689: jtt_threads_Object_wait03(); break;
-            case 690: jtt_threads_Object_wait04(); break;
-            case 691: jtt_threads_ThreadLocal01(); break;
-            case 692: jtt_threads_ThreadLocal02(); break;
-            case 693: jtt_threads_ThreadLocal03(); break;
-            case 694: jtt_threads_Thread_currentThread01(); break;
-            case 695: jtt_threads_Thread_getState01(); break;
-            case 696: jtt_threads_Thread_getState02(); break;
-            case 697: jtt_threads_Thread_holdsLock01(); break;
-            case 698: jtt_threads_Thread_isAlive01(); break;
-            case 699: jtt_threads_Thread_isInterrupted01(); break;
-            case 700: jtt_threads_Thread_isInterrupted02(); break;
-            case 701: jtt_threads_Thread_isInterrupted03(); break;
-            case 702: jtt_threads_Thread_isInterrupted04(); break;
-            case 703: jtt_threads_Thread_isInterrupted05(); break;
-            case 704: jtt_threads_Thread_join01(); break;
-            case 705: jtt_threads_Thread_join02(); break;
-            case 706: jtt_threads_Thread_join03(); break;
-            case 707: jtt_threads_Thread_new01(); break;
-            case 708: jtt_threads_Thread_new02(); break;
-            case 709: jtt_threads_Thread_setPriority01(); break;
-            case 710: jtt_threads_Thread_sleep01(); break;
-            case 711: jtt_threads_Thread_yield01(); break;
-            case 712: jtt_exbytecode_EBC_movd2l_01(); break;
-            case 713: jtt_exbytecode_EBC_movd2l_02(); break;
-            case 714: jtt_exbytecode_EBC_movd2l_03(); break;
-            case 715: jtt_exbytecode_EBC_movd2l_04(); break;
-            case 716: jtt_exbytecode_EBC_movf2i_01(); break;
-            case 717: jtt_exbytecode_EBC_movf2i_02(); break;
-            case 718: jtt_exbytecode_EBC_movf2i_03(); break;
-            case 719: jtt_exbytecode_EBC_movf2i_04(); break;
-            case 720: jtt_exbytecode_EBC_movi2f_01(); break;
-            case 721: jtt_exbytecode_EBC_movi2f_02(); break;
-            case 722: jtt_exbytecode_EBC_movi2f_03(); break;
-            case 723: jtt_exbytecode_EBC_movi2f_04(); break;
-            case 724: jtt_exbytecode_EBC_movl2d_01(); break;
-            case 725: jtt_exbytecode_EBC_movl2d_02(); break;
-            case 726: jtt_exbytecode_EBC_movl2d_03(); break;
-            case 727: jtt_exbytecode_EBC_movl2d_04(); break;
-            case 728: jtt_exbytecode_EBC_ucmp_ae_01(); break;
-            case 729: jtt_exbytecode_EBC_ucmp_at_01(); break;
-            case 730: jtt_exbytecode_EBC_ucmp_be_01(); break;
-            case 731: jtt_exbytecode_EBC_ucmp_bt_01(); break;
-            case 732: jtt_exbytecode_EBC_uwgt_01(); break;
-            case 733: jtt_exbytecode_EBC_uwgteq_01(); break;
-            case 734: jtt_exbytecode_EBC_uwlt_01(); break;
-            case 735: jtt_exbytecode_EBC_uwlteq_01(); break;
-            case 736: jtt_max_CodePointer01(); break;
-            case 737: jtt_max_CodePointer02(); break;
-            case 738: jtt_max_Fold01(); break;
-            case 739: jtt_max_Fold02(); break;
-            case 740: jtt_max_Fold03(); break;
-            case 741: jtt_max_Hub_Subtype01(); break;
-            case 742: jtt_max_Hub_Subtype02(); break;
-            case 743: jtt_max_ImmortalHeap_allocation(); break;
-            case 744: jtt_max_ImmortalHeap_switching(); break;
-            case 745: jtt_max_Inline01(); break;
-            case 746: jtt_max_Invoke_except01(); break;
-            case 747: jtt_max_Prototyping01(); break;
-            case 748: jtt_max_Unsigned_idiv01(); break;
-            case 749: jtt_max_Unsigned_irem01(); break;
-            case 750: jtt_max_Unsigned_ldiv01(); break;
-            case 751: jtt_max_Unsigned_lrem01(); break;
+            case 290: jtt_except_StackTrace_Lazy_01(); break;
+            case 291: jtt_except_StackTrace_NPE_00(); break;
+            case 292: jtt_except_StackTrace_NPE_01(); break;
+            case 293: jtt_except_StackTrace_NPE_02(); break;
+            case 294: jtt_except_StackTrace_NPE_03(); break;
+            case 295: jtt_except_Throw_InCatch01(); break;
+            case 296: jtt_except_Throw_InCatch02(); break;
+            case 297: jtt_except_Throw_InCatch03(); break;
+            case 298: jtt_except_Throw_InNested(); break;
+            case 299: jtt_except_Throw_Local01(); break;
+            case 300: jtt_except_Throw_Local02(); break;
+            case 301: jtt_except_Throw_NPE_01(); break;
+            case 302: jtt_except_Throw_Synchronized01(); break;
+            case 303: jtt_except_Throw_Synchronized02(); break;
+            case 304: jtt_except_Throw_Synchronized03(); break;
+            case 305: jtt_except_Throw_Synchronized04(); break;
+            case 306: jtt_except_Throw_Synchronized05(); break;
+            case 307: jtt_hotpath_HP_allocate01(); break;
+            case 308: jtt_hotpath_HP_allocate02(); break;
+            case 309: jtt_hotpath_HP_allocate03(); break;
+            case 310: jtt_hotpath_HP_allocate04(); break;
+            case 311: jtt_hotpath_HP_array01(); break;
+            case 312: jtt_hotpath_HP_array02(); break;
+            case 313: jtt_hotpath_HP_array03(); break;
+            case 314: jtt_hotpath_HP_array04(); break;
+            case 315: jtt_hotpath_HP_control01(); break;
+            case 316: jtt_hotpath_HP_control02(); break;
+            case 317: jtt_hotpath_HP_convert01(); break;
+            case 318: jtt_hotpath_HP_count(); break;
+            case 319: jtt_hotpath_HP_dead01(); break;
+            case 320: jtt_hotpath_HP_demo01(); break;
+            case 321: jtt_hotpath_HP_field01(); break;
+            case 322: jtt_hotpath_HP_field02(); break;
+            case 323: jtt_hotpath_HP_field03(); break;
+            case 324: jtt_hotpath_HP_field04(); break;
+            case 325: jtt_hotpath_HP_idea(); break;
+            case 326: jtt_hotpath_HP_inline01(); break;
+            case 327: jtt_hotpath_HP_inline02(); break;
+            case 328: jtt_hotpath_HP_invoke01(); break;
+            case 329: jtt_hotpath_HP_life(); break;
+            case 330: jtt_hotpath_HP_nest01(); break;
+            case 331: jtt_hotpath_HP_nest02(); break;
+            case 332: jtt_hotpath_HP_scope01(); break;
+            case 333: jtt_hotpath_HP_scope02(); break;
+            case 334: jtt_hotpath_HP_series(); break;
+            case 335: jtt_hotpath_HP_trees01(); break;
+            case 336: jtt_jasm_BC_dcmpg(); break;
+            case 337: jtt_jasm_BC_dcmpg2(); break;
+            case 338: jtt_jasm_BC_dcmpl(); break;
+            case 339: jtt_jasm_BC_dcmpl2(); break;
+            case 340: jtt_jasm_BC_fcmpg(); break;
+            case 341: jtt_jasm_BC_fcmpg2(); break;
+            case 342: jtt_jasm_BC_fcmpl(); break;
+            case 343: jtt_jasm_BC_fcmpl2(); break;
+            case 344: jtt_jasm_BC_lcmp(); break;
+            case 345: jtt_jasm_Invokevirtual_private00(); break;
+            case 346: jtt_jasm_Invokevirtual_private01(); break;
+            case 347: jtt_jasm_Loop00(); break;
+            case 348: jtt_jdk_Arrays_fill01(); break;
+            case 349: jtt_jdk_Arrays_fill02(); break;
+            case 350: jtt_jdk_Class_getName(); break;
+            case 351: jtt_jdk_EnumMap01(); break;
+            case 352: jtt_jdk_EnumMap02(); break;
+            case 353: jtt_jdk_System_currentTimeMillis01(); break;
+            case 354: jtt_jdk_System_currentTimeMillis02(); break;
+            case 355: jtt_jdk_System_nanoTime01(); break;
+            case 356: jtt_jdk_System_nanoTime02(); break;
+            case 357: jtt_jdk_System_setOut(); break;
+            case 358: jtt_jdk_Thread_setName(); break;
+            case 359: jtt_jdk_UnsafeAccess01(); break;
+            case 360: jtt_jni_JNI_FieldBoolean(); break;
+            case 361: jtt_jni_JNI_IdentityBoolean(); break;
+            case 362: jtt_jni_JNI_IdentityByte(); break;
+            case 363: jtt_jni_JNI_IdentityChar(); break;
+            case 364: jtt_jni_JNI_IdentityFloat(); break;
+            case 365: jtt_jni_JNI_IdentityInt(); break;
+            case 366: jtt_jni_JNI_IdentityLong(); break;
+            case 367: jtt_jni_JNI_IdentityObject(); break;
+            case 368: jtt_jni_JNI_IdentityShort(); break;
+            case 369: jtt_jni_JNI_ManyObjectParameters(); break;
+            case 370: jtt_jni_JNI_ManyParameters(); break;
+            case 371: jtt_jni_JNI_Nop(); break;
+            case 372: jtt_jni_JNI_OverflowArguments(); break;
+            case 373: jtt_jvmni_JVM_ArrayCopy01(); break;
+            case 374: jtt_jvmni_JVM_GetClassContext01(); break;
+            case 375: jtt_jvmni_JVM_GetClassContext02(); break;
+            case 376: jtt_jvmni_JVM_GetFreeMemory01(); break;
+            case 377: jtt_jvmni_JVM_GetMaxMemory01(); break;
+            case 378: jtt_jvmni_JVM_GetTotalMemory01(); break;
+            case 379: jtt_jvmni_JVM_IsNaN01(); break;
+            case 380: jtt_lang_Boxed_TYPE_01(); break;
+            case 381: jtt_lang_Bridge_method01(); break;
+            case 382: jtt_lang_ClassLoader_loadClass01(); break;
+            case 383: jtt_lang_Class_Literal01(); break;
+            case 384: jtt_lang_Class_asSubclass01(); break;
+            case 385: jtt_lang_Class_cast01(); break;
+            case 386: jtt_lang_Class_cast02(); break;
+            case 387: jtt_lang_Class_forName01(); break;
+            case 388: jtt_lang_Class_forName02(); break;
+            case 389: jtt_lang_Class_forName03(); break;
+            case 390: jtt_lang_Class_forName04(); break;
+            case 391: jtt_lang_Class_forName05(); break;
+            case 392: jtt_lang_Class_getAnnotation01(); break;
+            case 393: jtt_lang_Class_getComponentType01(); break;
+            case 394: jtt_lang_Class_getInterfaces01(); break;
+            case 395: jtt_lang_Class_getName01(); break;
+            case 396: jtt_lang_Class_getName02(); break;
+            case 397: jtt_lang_Class_getSimpleName01(); break;
+            case 398: jtt_lang_Class_getSimpleName02(); break;
+            case 399: jtt_lang_Class_getSuperClass01(); break;
+            case 400: jtt_lang_Class_isArray01(); break;
+            case 401: jtt_lang_Class_isAssignableFrom01(); break;
+            case 402: jtt_lang_Class_isAssignableFrom02(); break;
+            case 403: jtt_lang_Class_isAssignableFrom03(); break;
+            case 404: jtt_lang_Class_isInstance01(); break;
+            case 405: jtt_lang_Class_isInstance02(); break;
+            case 406: jtt_lang_Class_isInstance03(); break;
+            case 407: jtt_lang_Class_isInstance04(); break;
+            case 408: jtt_lang_Class_isInstance05(); break;
+            case 409: jtt_lang_Class_isInstance06(); break;
+            case 410: jtt_lang_Class_isInterface01(); break;
+            case 411: jtt_lang_Class_isPrimitive01(); break;
+            case 412: jtt_lang_Double_01(); break;
+            case 413: jtt_lang_Double_toString(); break;
+            case 414: jtt_lang_Float_01(); break;
+            case 415: jtt_lang_Float_02(); break;
+            case 416: jtt_lang_Float_03(); break;
+            case 417: jtt_lang_Int_greater01(); break;
+            case 418: jtt_lang_Int_greater02(); break;
+            case 419: jtt_lang_Int_greater03(); break;
+            case 420: jtt_lang_Int_greaterEqual01(); break;
+            case 421: jtt_lang_Int_greaterEqual02(); break;
+            case 422: jtt_lang_Int_greaterEqual03(); break;
+            case 423: jtt_lang_Int_less01(); break;
+            case 424: jtt_lang_Int_less02(); break;
+            case 425: jtt_lang_Int_less03(); break;
+            case 426: jtt_lang_Int_lessEqual01(); break;
+            case 427: jtt_lang_Int_lessEqual02(); break;
+            case 428: jtt_lang_Int_lessEqual03(); break;
+            case 429: jtt_lang_JDK_ClassLoaders01(); break;
+            case 430: jtt_lang_JDK_ClassLoaders02(); break;
+            case 431: jtt_lang_Long_greater01(); break;
+            case 432: jtt_lang_Long_greater02(); break;
+            case 433: jtt_lang_Long_greater03(); break;
+            case 434: jtt_lang_Long_greaterEqual01(); break;
+            case 435: jtt_lang_Long_greaterEqual02(); break;
+            case 436: jtt_lang_Long_greaterEqual03(); break;
+            case 437: jtt_lang_Long_less01(); break;
+            case 438: jtt_lang_Long_less02(); break;
+            case 439: jtt_lang_Long_less03(); break;
+            case 440: jtt_lang_Long_lessEqual01(); break;
+            case 441: jtt_lang_Long_lessEqual02(); break;
+            case 442: jtt_lang_Long_lessEqual03(); break;
+            case 443: jtt_lang_Long_reverseBytes01(); break;
+            case 444: jtt_lang_Long_reverseBytes02(); break;
+            case 445: jtt_lang_Math_abs(); break;
+            case 446: jtt_lang_Math_cos(); break;
+            case 447: jtt_lang_Math_log(); break;
+            case 448: jtt_lang_Math_log10(); break;
+            case 449: jtt_lang_Math_pow(); break;
+            case 450: jtt_lang_Math_sin(); break;
+            case 451: jtt_lang_Math_sqrt(); break;
+            case 452: jtt_lang_Math_tan(); break;
+            case 453: jtt_lang_Miranda_method01(); break;
+            case 454: jtt_lang_Object_clone01(); break;
+            case 455: jtt_lang_Object_clone02(); break;
+            case 456: jtt_lang_Object_equals01(); break;
+            case 457: jtt_lang_Object_getClass01(); break;
+            case 458: jtt_lang_Object_hashCode01(); break;
+            case 459: jtt_lang_Object_notify01(); break;
+            case 460: jtt_lang_Object_notify02(); break;
+            case 461: jtt_lang_Object_notifyAll01(); break;
+            case 462: jtt_lang_Object_notifyAll02(); break;
+            case 463: jtt_lang_Object_toString01(); break;
+            case 464: jtt_lang_Object_toString02(); break;
+            case 465: jtt_lang_Object_wait01(); break;
+            case 466: jtt_lang_Object_wait02(); break;
+            case 467: jtt_lang_Object_wait03(); break;
+            case 468: jtt_lang_ProcessEnvironment_init(); break;
+            case 469: jtt_lang_Runtime_exec01(); break;
+            case 470: jtt_lang_StringCoding_Scale(); break;
+            case 471: jtt_lang_String_indexOf01(); break;
+            case 472: jtt_lang_String_intern01(); break;
+            case 473: jtt_lang_String_intern02(); break;
+            case 474: jtt_lang_String_intern03(); break;
+            case 475: jtt_lang_String_valueOf01(); break;
+            case 476: jtt_lang_System_identityHashCode01(); break;
+            case 477: jtt_loop_DegeneratedLoop(); break;
+            case 478: jtt_loop_Loop01(); break;
+            case 479: jtt_loop_Loop02(); break;
+            case 480: jtt_loop_Loop03(); break;
+            case 481: jtt_loop_Loop04(); break;
+            case 482: jtt_loop_Loop05(); break;
+            case 483: jtt_loop_Loop06(); break;
+            case 484: jtt_loop_Loop07(); break;
+            case 485: jtt_loop_Loop08(); break;
+            case 486: jtt_loop_Loop09(); break;
+            case 487: jtt_loop_Loop11(); break;
+            case 488: jtt_loop_Loop12(); break;
+            case 489: jtt_loop_Loop13(); break;
+            case 490: jtt_loop_Loop14(); break;
+            case 491: jtt_loop_LoopInline(); break;
+            case 492: jtt_loop_LoopNewInstance(); break;
+            case 493: jtt_loop_LoopOSR01(); break;
+            case 494: jtt_loop_LoopPhi(); break;
+            case 495: jtt_loop_LoopSwitch01(); break;
+            case 496: jtt_micro_ArrayCompare01(); break;
+            case 497: jtt_micro_ArrayCompare02(); break;
+            case 498: jtt_micro_BC_invokevirtual2(); break;
+            case 499: jtt_micro_BigByteParams01(); break;
+            case 500: jtt_micro_BigDoubleParams02(); break;
+            case 501: jtt_micro_BigFloatParams01(); break;
+            case 502: jtt_micro_BigFloatParams02(); break;
+            case 503: jtt_micro_BigIntParams01(); break;
+            case 504: jtt_micro_BigIntParams02(); break;
+            case 505: jtt_micro_BigInterfaceParams01(); break;
+            case 506: jtt_micro_BigLongParams02(); break;
+            case 507: jtt_micro_BigMixedParams01(); break;
+            case 508: jtt_micro_BigMixedParams02(); break;
+            case 509: jtt_micro_BigMixedParams03(); break;
+            case 510: jtt_micro_BigObjectParams01(); break;
+            case 511: jtt_micro_BigObjectParams02(); break;
+            case 512: jtt_micro_BigParamsAlignment(); break;
+            case 513: jtt_micro_BigShortParams01(); break;
+            case 514: jtt_micro_BigVirtualParams01(); break;
+            case 515: jtt_micro_Bubblesort(); break;
+            case 516: jtt_micro_Fibonacci(); break;
+            case 517: jtt_micro_InvokeVirtual_01(); break;
+            case 518: jtt_micro_InvokeVirtual_02(); break;
+            case 519: jtt_micro_Matrix01(); break;
+            case 520: jtt_micro_ReferenceMap01(); break;
+            case 521: jtt_micro_StrangeFrames(); break;
+            case 522: jtt_micro_String_format01(); break;
+            case 523: jtt_micro_String_format02(); break;
+            case 524: jtt_micro_VarArgs_String01(); break;
+            case 525: jtt_micro_VarArgs_boolean01(); break;
+            case 526: jtt_micro_VarArgs_byte01(); break;
+            case 527: jtt_micro_VarArgs_char01(); break;
+            case 528: jtt_micro_VarArgs_double01(); break;
+            case 529: jtt_micro_VarArgs_float01(); break;
+            case 530: jtt_micro_VarArgs_int01(); break;
+            case 531: jtt_micro_VarArgs_long01(); break;
+            case 532: jtt_micro_VarArgs_short01(); break;
+            case 533: jtt_optimize_ABCE_01(); break;
+            case 534: jtt_optimize_ABCE_02(); break;
+            case 535: jtt_optimize_ABCE_03(); break;
+            case 536: jtt_optimize_ArrayCopy01(); break;
+            case 537: jtt_optimize_ArrayLength01(); break;
+            case 538: jtt_optimize_BC_idiv_16(); break;
+            case 539: jtt_optimize_BC_idiv_4(); break;
+            case 540: jtt_optimize_BC_imul_16(); break;
+            case 541: jtt_optimize_BC_imul_4(); break;
+            case 542: jtt_optimize_BC_ldiv_16(); break;
+            case 543: jtt_optimize_BC_ldiv_4(); break;
+            case 544: jtt_optimize_BC_lmul_16(); break;
+            case 545: jtt_optimize_BC_lmul_4(); break;
+            case 546: jtt_optimize_BC_lshr_C16(); break;
+            case 547: jtt_optimize_BC_lshr_C24(); break;
+            case 548: jtt_optimize_BC_lshr_C32(); break;
+            case 549: jtt_optimize_BlockSkip01(); break;
+            case 550: jtt_optimize_Cmov01(); break;
+            case 551: jtt_optimize_Cmov02(); break;
+            case 552: jtt_optimize_Conditional01(); break;
+            case 553: jtt_optimize_DeadCode01(); break;
+            case 554: jtt_optimize_DeadCode02(); break;
+            case 555: jtt_optimize_Fold_Cast01(); break;
+            case 556: jtt_optimize_Fold_Convert01(); break;
+            case 557: jtt_optimize_Fold_Convert02(); break;
+            case 558: jtt_optimize_Fold_Convert03(); break;
+            case 559: jtt_optimize_Fold_Convert04(); break;
+            case 560: jtt_optimize_Fold_Double01(); break;
+            case 561: jtt_optimize_Fold_Double02(); break;
+            case 562: jtt_optimize_Fold_Double03(); break;
+            case 563: jtt_optimize_Fold_Float01(); break;
+            case 564: jtt_optimize_Fold_Float02(); break;
+            case 565: jtt_optimize_Fold_InstanceOf01(); break;
+            case 566: jtt_optimize_Fold_Int01(); break;
+            case 567: jtt_optimize_Fold_Int02(); break;
+            case 568: jtt_optimize_Fold_Long01(); break;
+            case 569: jtt_optimize_Fold_Long02(); break;
+            case 570: jtt_optimize_Fold_Math01(); break;
+            case 571: jtt_optimize_GLE_01(); break;
+            case 572: jtt_optimize_Inline01(); break;
+            case 573: jtt_optimize_Inline02(); break;
+            case 574: jtt_optimize_LLE_01(); break;
+            case 575: jtt_optimize_LeafType_01(); break;
+            case 576: jtt_optimize_List_reorder_bug(); break;
+            case 577: jtt_optimize_NCE_01(); break;
+            case 578: jtt_optimize_NCE_02(); break;
+            case 579: jtt_optimize_NCE_03(); break;
+            case 580: jtt_optimize_NCE_04(); break;
+            case 581: jtt_optimize_NCE_FlowSensitive01(); break;
+            case 582: jtt_optimize_NCE_FlowSensitive02(); break;
+            case 583: jtt_optimize_NCE_FlowSensitive03(); break;
+            case 584: jtt_optimize_NCE_FlowSensitive04(); break;
+            case 585: jtt_optimize_NCE_FlowSensitive05(); break;
+            case 586: jtt_optimize_Narrow_byte01(); break;
+            case 587: jtt_optimize_Narrow_byte02(); break;
+            case 588: jtt_optimize_Narrow_byte03(); break;
+            case 589: jtt_optimize_Narrow_char01(); break;
+            case 590: jtt_optimize_Narrow_char02(); break;
+            case 591: jtt_optimize_Narrow_char03(); break;
+            case 592: jtt_optimize_Narrow_short01(); break;
+            case 593: jtt_optimize_Narrow_short02(); break;
+            case 594: jtt_optimize_Narrow_short03(); break;
+            case 595: jtt_optimize_Phi01(); break;
+            case 596: jtt_optimize_Phi02(); break;
+            case 597: jtt_optimize_Phi03(); break;
+            case 598: jtt_optimize_Reduce_Convert01(); break;
+            case 599: jtt_optimize_Reduce_Double01(); break;
+            case 600: jtt_optimize_Reduce_Float01(); break;
+            case 601: jtt_optimize_Reduce_Int01(); break;
+            case 602: jtt_optimize_Reduce_Int02(); break;
+            case 603: jtt_optimize_Reduce_Int03(); break;
+            case 604: jtt_optimize_Reduce_Int04(); break;
+            case 605: jtt_optimize_Reduce_IntShift01(); break;
+            case 606: jtt_optimize_Reduce_IntShift02(); break;
+            case 607: jtt_optimize_Reduce_Long01(); break;
+            case 608: jtt_optimize_Reduce_Long02(); break;
+            case 609: jtt_optimize_Reduce_Long03(); break;
+            case 610: jtt_optimize_Reduce_Long04(); break;
+            case 611: jtt_optimize_Reduce_LongShift01(); break;
+            case 612: jtt_optimize_Reduce_LongShift02(); break;
+            case 613: jtt_optimize_Switch01(); break;
+            case 614: jtt_optimize_Switch02(); break;
+            case 615: jtt_optimize_TypeCastElem(); break;
+            case 616: jtt_optimize_VN_Cast01(); break;
+            case 617: jtt_optimize_VN_Cast02(); break;
+            case 618: jtt_optimize_VN_Convert01(); break;
+            case 619: jtt_optimize_VN_Convert02(); break;
+            case 620: jtt_optimize_VN_Double01(); break;
+            case 621: jtt_optimize_VN_Double02(); break;
+            case 622: jtt_optimize_VN_Field01(); break;
+            case 623: jtt_optimize_VN_Field02(); break;
+            case 624: jtt_optimize_VN_Float01(); break;
+            case 625: jtt_optimize_VN_Float02(); break;
+            case 626: jtt_optimize_VN_InstanceOf01(); break;
+            case 627: jtt_optimize_VN_InstanceOf02(); break;
+            case 628: jtt_optimize_VN_InstanceOf03(); break;
+            case 629: jtt_optimize_VN_Int01(); break;
+            case 630: jtt_optimize_VN_Int02(); break;
+            case 631: jtt_optimize_VN_Int03(); break;
+            case 632: jtt_optimize_VN_Long01(); break;
+            case 633: jtt_optimize_VN_Long02(); break;
+            case 634: jtt_optimize_VN_Long03(); break;
+            case 635: jtt_optimize_VN_Loop01(); break;
+            case 636: jtt_reflect_Array_get01(); break;
+            case 637: jtt_reflect_Array_get02(); break;
+            case 638: jtt_reflect_Array_get03(); break;
+            case 639: jtt_reflect_Array_getBoolean01(); break;
+            case 640: jtt_reflect_Array_getByte01(); break;
+            case 641: jtt_reflect_Array_getChar01(); break;
+            case 642: jtt_reflect_Array_getDouble01(); break;
+            case 643: jtt_reflect_Array_getFloat01(); break;
+            case 644: jtt_reflect_Array_getInt01(); break;
+            case 645: jtt_reflect_Array_getLength01(); break;
+            case 646: jtt_reflect_Array_getLong01(); break;
+            case 647: jtt_reflect_Array_getShort01(); break;
+            case 648: jtt_reflect_Array_newInstance01(); break;
+            case 649: jtt_reflect_Array_newInstance02(); break;
+            case 650: jtt_reflect_Array_newInstance03(); break;
+            case 651: jtt_reflect_Array_newInstance04(); break;
+            case 652: jtt_reflect_Array_newInstance05(); break;
+            case 653: jtt_reflect_Array_newInstance06(); break;
+            case 654: jtt_reflect_Array_set01(); break;
+            case 655: jtt_reflect_Array_set02(); break;
+            case 656: jtt_reflect_Array_set03(); break;
+            case 657: jtt_reflect_Array_setBoolean01(); break;
+            case 658: jtt_reflect_Array_setByte01(); break;
+            case 659: jtt_reflect_Array_setChar01(); break;
+            case 660: jtt_reflect_Array_setDouble01(); break;
+            case 661: jtt_reflect_Array_setFloat01(); break;
+            case 662: jtt_reflect_Array_setInt01(); break;
+            case 663: jtt_reflect_Array_setLong01(); break;
+            case 664: jtt_reflect_Array_setShort01(); break;
+            case 665: jtt_reflect_Class_getDeclaredField01(); break;
+            case 666: jtt_reflect_Class_getDeclaredMethod01(); break;
+            case 667: jtt_reflect_Class_getField01(); break;
+            case 668: jtt_reflect_Class_getField02(); break;
+            case 669: jtt_reflect_Class_getMethod01(); break;
+            case 670: jtt_reflect_Class_getMethod02(); break;
+            case 671: jtt_reflect_Class_newInstance01(); break;
+            case 672: jtt_reflect_Class_newInstance02(); break;
+            case 673: jtt_reflect_Class_newInstance03(); break;
+            case 674: jtt_reflect_Class_newInstance06(); break;
+            case 675: jtt_reflect_Class_newInstance07(); break;
+            case 676: jtt_reflect_Field_get01(); break;
+            case 677: jtt_reflect_Field_get02(); break;
+            case 678: jtt_reflect_Field_get03(); break;
+            case 679: jtt_reflect_Field_get04(); break;
+            case 680: jtt_reflect_Field_getType01(); break;
+            case 681: jtt_reflect_Field_set01(); break;
+            case 682: jtt_reflect_Field_set02(); break;
+            case 683: jtt_reflect_Field_set03(); break;
+            case 684: jtt_reflect_Invoke_except01(); break;
+            case 685: jtt_reflect_Invoke_main01(); break;
+            case 686: jtt_reflect_Invoke_main02(); break;
+            case 687: jtt_reflect_Invoke_main03(); break;
+            case 688: jtt_reflect_Invoke_virtual01(); break;
+            case 689: jtt_reflect_Method_getParameterTypes01(); break;
+            case 690: jtt_reflect_Method_getReturnType01(); break;
+            case 691: jtt_reflect_Reflection_getCallerClass01(); break;
+            case 692: jtt_threads_Monitor_contended01(); break;
+            case 693: jtt_threads_Monitor_notowner01(); break;
+            case 694: jtt_threads_Monitorenter01(); break;
+            case 695: jtt_threads_Monitorenter02(); break;
+            case 696: jtt_threads_Object_wait01(); break;
+            case 697: jtt_threads_Object_wait02(); break;
+            case 698: jtt_threads_Object_wait03(); break;
+            case 699: jtt_threads_Object_wait04(); break;
+            case 700: jtt_threads_ThreadLocal01(); break;
+            case 701: jtt_threads_ThreadLocal02(); break;
+            case 702: jtt_threads_ThreadLocal03(); break;
+            case 703: jtt_threads_Thread_currentThread01(); break;
+            case 704: jtt_threads_Thread_getState01(); break;
+            case 705: jtt_threads_Thread_getState02(); break;
+            case 706: jtt_threads_Thread_holdsLock01(); break;
+            case 707: jtt_threads_Thread_isAlive01(); break;
+            case 708: jtt_threads_Thread_isInterrupted01(); break;
+            case 709: jtt_threads_Thread_isInterrupted02(); break;
+            case 710: jtt_threads_Thread_isInterrupted03(); break;
+            case 711: jtt_threads_Thread_isInterrupted04(); break;
+            case 712: jtt_threads_Thread_isInterrupted05(); break;
+            case 713: jtt_threads_Thread_join01(); break;
+            case 714: jtt_threads_Thread_join02(); break;
+            case 715: jtt_threads_Thread_join03(); break;
+            case 716: jtt_threads_Thread_new01(); break;
+            case 717: jtt_threads_Thread_new02(); break;
+            case 718: jtt_threads_Thread_setPriority01(); break;
+            case 719: jtt_threads_Thread_sleep01(); break;
+            case 720: jtt_threads_Thread_yield01(); break;
+            case 721: jtt_exbytecode_EBC_movd2l_01(); break;
+            case 722: jtt_exbytecode_EBC_movd2l_02(); break;
+            case 723: jtt_exbytecode_EBC_movd2l_03(); break;
+            case 724: jtt_exbytecode_EBC_movd2l_04(); break;
+            case 725: jtt_exbytecode_EBC_movf2i_01(); break;
+            case 726: jtt_exbytecode_EBC_movf2i_02(); break;
+            case 727: jtt_exbytecode_EBC_movf2i_03(); break;
+            case 728: jtt_exbytecode_EBC_movf2i_04(); break;
+            case 729: jtt_exbytecode_EBC_movi2f_01(); break;
+            case 730: jtt_exbytecode_EBC_movi2f_02(); break;
+            case 731: jtt_exbytecode_EBC_movi2f_03(); break;
+            case 732: jtt_exbytecode_EBC_movi2f_04(); break;
+            case 733: jtt_exbytecode_EBC_movl2d_01(); break;
+            case 734: jtt_exbytecode_EBC_movl2d_02(); break;
+            case 735: jtt_exbytecode_EBC_movl2d_03(); break;
+            case 736: jtt_exbytecode_EBC_movl2d_04(); break;
+            case 737: jtt_exbytecode_EBC_ucmp_ae_01(); break;
+            case 738: jtt_exbytecode_EBC_ucmp_at_01(); break;
+            case 739: jtt_exbytecode_EBC_ucmp_be_01(); break;
+            case 740: jtt_exbytecode_EBC_ucmp_bt_01(); break;
+            case 741: jtt_exbytecode_EBC_uwgt_01(); break;
+            case 742: jtt_exbytecode_EBC_uwgteq_01(); break;
+            case 743: jtt_exbytecode_EBC_uwlt_01(); break;
+            case 744: jtt_exbytecode_EBC_uwlteq_01(); break;
+            case 745: jtt_max_CodePointer01(); break;
+            case 746: jtt_max_CodePointer02(); break;
+            case 747: jtt_max_Fold01(); break;
+            case 748: jtt_max_Fold02(); break;
+            case 749: jtt_max_Fold03(); break;
+            case 750: jtt_max_Hub_Subtype01(); break;
+            case 751: jtt_max_Hub_Subtype02(); break;
+            case 752: jtt_max_ImmortalHeap_allocation(); break;
+            case 753: jtt_max_ImmortalHeap_switching(); break;
+            case 754: jtt_max_Inline01(); break;
+            case 755: jtt_max_Invoke_except01(); break;
+            case 756: jtt_max_Prototyping01(); break;
+            case 757: jtt_max_TierTransition01(); break;
+            case 758: jtt_max_Unsigned_idiv01(); break;
+            case 759: jtt_max_Unsigned_irem01(); break;
+            case 760: jtt_max_Unsigned_ldiv01(); break;
+            case 761: jtt_max_Unsigned_lrem01(); break;
         }
         return true;
     }
@@ -10840,6 +10850,28 @@ public class JTRuns {
             }
             pass();
         }
+        static void jtt_except_StackTrace_Lazy_01() {
+            begin("jtt.except.StackTrace_Lazy_01");
+            String runString = null;
+            try {
+            // (0) == 0
+                runString = "(0)";
+                if (0 != jtt.except.StackTrace_Lazy_01.test(0)) {
+                    fail(runString);
+                    return;
+                }
+            // (1) == 0
+                runString = "(1)";
+                if (0 != jtt.except.StackTrace_Lazy_01.test(1)) {
+                    fail(runString);
+                    return;
+                }
+            } catch (Throwable t) {
+                fail(runString, t);
+                return;
+            }
+            pass();
+        }
         static void jtt_except_StackTrace_NPE_00() {
             begin("jtt.except.StackTrace_NPE_00");
             String runString = null;
@@ -11076,6 +11108,92 @@ public class JTRuns {
             }
             pass();
         }
+        static void jtt_except_Throw_Local01() {
+            begin("jtt.except.Throw_Local01");
+            String runString = null;
+            try {
+            // (0) == 0
+                runString = "(0)";
+                if (0 != jtt.except.Throw_Local01.test(0)) {
+                    fail(runString);
+                    return;
+                }
+            // (1) == 101
+                runString = "(1)";
+                if (101 != jtt.except.Throw_Local01.test(1)) {
+                    fail(runString);
+                    return;
+                }
+            // (2) == -1
+                runString = "(2)";
+                if (-1 != jtt.except.Throw_Local01.test(2)) {
+                    fail(runString);
+                    return;
+                }
+            // (3) == 3
+                runString = "(3)";
+                if (3 != jtt.except.Throw_Local01.test(3)) {
+                    fail(runString);
+                    return;
+                }
+            // (4) == 13
+                runString = "(4)";
+                if (13 != jtt.except.Throw_Local01.test(4)) {
+                    fail(runString);
+                    return;
+                }
+            } catch (Throwable t) {
+                fail(runString, t);
+                return;
+            }
+            pass();
+        }
+        static void jtt_except_Throw_Local02() {
+            begin("jtt.except.Throw_Local02");
+            String runString = null;
+            try {
+            // (0) == 0
+                runString = "(0)";
+                if (0 != jtt.except.Throw_Local02.test(0)) {
+                    fail(runString);
+                    return;
+                }
+            // (1) == 101
+                runString = "(1)";
+                if (101 != jtt.except.Throw_Local02.test(1)) {
+                    fail(runString);
+                    return;
+                }
+            // (2) == 102
+                runString = "(2)";
+                if (102 != jtt.except.Throw_Local02.test(2)) {
+                    fail(runString);
+                    return;
+                }
+            // (3) == 103
+                runString = "(3)";
+                if (103 != jtt.except.Throw_Local02.test(3)) {
+                    fail(runString);
+                    return;
+                }
+            // (4) == 104
+                runString = "(4)";
+                if (104 != jtt.except.Throw_Local02.test(4)) {
+                    fail(runString);
+                    return;
+                }
+            // (5) == 105
+                runString = "(5)";
+                if (105 != jtt.except.Throw_Local02.test(5)) {
+                    fail(runString);
+                    return;
+                }
+            } catch (Throwable t) {
+                fail(runString, t);
+                return;
+            }
+            pass();
+        }
         static void jtt_except_Throw_NPE_01() {
             begin("jtt.except.Throw_NPE_01");
             String runString = null;
@@ -12536,6 +12654,92 @@ public class JTRuns {
             }
             pass();
         }
+        static void jtt_jdk_Arrays_fill01() {
+            begin("jtt.jdk.Arrays_fill01");
+            String runString = null;
+            try {
+            // (0) == 0
+                runString = "(0)";
+                if (0 != jtt.jdk.Arrays_fill01.test(0)) {
+                    fail(runString);
+                    return;
+                }
+            // (1) == 1
+                runString = "(1)";
+                if (1 != jtt.jdk.Arrays_fill01.test(1)) {
+                    fail(runString);
+                    return;
+                }
+            // (7) == 7
+                runString = "(7)";
+                if (7 != jtt.jdk.Arrays_fill01.test(7)) {
+                    fail(runString);
+                    return;
+                }
+            // (8) == 8
+                runString = "(8)";
+                if (8 != jtt.jdk.Arrays_fill01.test(8)) {
+                    fail(runString);
+                    return;
+                }
+            // (9) == 9
+                runString = "(9)";
+                if (9 != jtt.jdk.Arrays_fill01.test(9)) {
+                    fail(runString);
+                    return;
+                }
+            // (17) == 17
+                runString = "(17)";
+                if (17 != jtt.jdk.Arrays_fill01.test(17)) {
+                    fail(runString);
+                    return;
+                }
+            // (33) == 33
+                runString = "(33)";
+                if (33 != jtt.jdk.Arrays_fill01.test(33)) {
+                    fail(runString);
+                    return;
+                }
+            // (-1) == !java.lang.IllegalArgumentException
+                try {
+                    runString = "(-1)";
+                    jtt.jdk.Arrays_fill01.test(-1);
+                    fail(runString);
+                    return;
+                } catch (Throwable e) {
+                    if (e.getClass() != java.lang.IllegalArgumentException.class) {
+                        fail(runString, e);
+                        return;
+                    }
+                }
+            } catch (Throwable t) {
+                fail(runString, t);
+                return;
+            }
+            pass();
+        }
+        static void jtt_jdk_Arrays_fill02() {
+            begin("jtt.jdk.Arrays_fill02");
+            String runString = null;
+            try {
+            // (0) == 7
+                runString = "(0)";
+                if (7 != jtt.jdk.Arrays_fill02.test(0)) {
+                    fail(runString);
+                    return;
+                }
+            // (1) == 1
+                runString = "(1)";
+                if (1 != jtt.jdk.Arrays_fill02.test(1)) {
+                    fail(runString);
+                    return;
+                }
+            } catch (Throwable t) {
+                fail(runString, t);
+                return;
+            }
+            pass();
+        }
         static void jtt_jdk_Class_getName() {
             begin("jtt.jdk.Class_getName");
             String runString = null;
@@ -17244,6 +17448,94 @@ public class JTRuns {
             }
             pass();
         }
+        static void jtt_lang_String_indexOf01() {
+            begin("jtt.lang.String_indexOf01");
+            String runString = null;
+            try {
+            // (0) == 0
+                runString = "(0)";
+                if (0 != jtt.lang.String_indexOf01.test(0)) {
+                    fail(runString);
+                    return;
+                }
+            // (1) == 1
+                runString = "(1)";
+                if (1 != jtt.lang.String_indexOf01.test(1)) {
+                    fail(runString);
+                    return;
+                }
+            // (2) == 2
+                runString = "(2)";
+                if (2 != jtt.lang.String_indexOf01.test(2)) {
+                    fail(runString);
+                    return;
+                }
+            // (3) == 3
+                runString = "(3)";
+                if (3 != jtt.lang.String_indexOf01.test(3)) {
+                    fail(runString);
+                    return;
+                }
+            // (4) == 4
+                runString = "(4)";
+                if (4 != jtt.lang.String_indexOf01.test(4)) {
+                    fail(runString);
+                    return;
+                }
+            // (5) == 5
+                runString = "(5)";
+                if (5 != jtt.lang.String_indexOf01.test(5)) {
+                    fail(runString);
+                    return;
+                }
+            // (6) == 6
+                runString = "(6)";
+                if (6 != jtt.lang.String_indexOf01.test(6)) {
+                    fail(runString);
+                    return;
+                }
+            // (7) == 7
+                runString = "(7)";
+                if (7 != jtt.lang.String_indexOf01.test(7)) {
+                    fail(runString);
+                    return;
+                }
+            // (8) == 8
+                runString = "(8)";
+                if (8 != jtt.lang.String_indexOf01.test(8)) {
+                    fail(runString);
+                    return;
+                }
+            // (9) == 9
+                runString = "(9)";
+                if (9 != jtt.lang.String_indexOf01.test(9)) {
+                    fail(runString);
+                    return;
+                }
+            // (10) == 10
+                runString = "(10)";
+                if (10 != jtt.lang.String_indexOf01.test(10)) {
+                    fail(runString);
+                    return;
+                }
+            // (11) == 11
+                runString = "(11)";
+                if (11 != jtt.lang.String_indexOf01.test(11)) {
+                    fail(runString);
+                    return;
+                }
+            // (12) == -1
+                runString = "(12)";
+                if (-1 != jtt.lang.String_indexOf01.test(12)) {
+                    fail(runString);
+                    return;
+                }
+            } catch (Throwable t) {
+                fail(runString, t);
+                return;
+            }
+            pass();
+        }
         static void jtt_lang_String_intern01() {
             begin("jtt.lang.String_intern01");
             String runString = null;
@@ -17772,6 +18064,34 @@ public class JTRuns {
             }
             pass();
         }
+        static void jtt_loop_LoopOSR01() {
+            begin("jtt.loop.LoopOSR01");
+            String runString = null;
+            try {
+            // (0) == 0
+                runString = "(0)";
+                if (0 != jtt.loop.LoopOSR01.test(0)) {
+                    fail(runString);
+                    return;
+                }
+            // (1) == 400000
+                runString = "(1)";
+                if (400000 != jtt.loop.LoopOSR01.test(1)) {
+                    fail(runString);
+                    return;
+                }
+            // (2) == 800000
+                runString = "(2)";
+                if (800000 != jtt.loop.LoopOSR01.test(2)) {
+                    fail(runString);
+                    return;
+                }
+            } catch (Throwable t) {
+                fail(runString, t);
+                return;
+            }
+            pass();
+        }
         static void jtt_loop_LoopPhi() {
             begin("jtt.loop.LoopPhi");
             String runString = null;
@@ -21068,6 +21388,64 @@ public class JTRuns {
             }
             pass();
         }
+        static void jtt_optimize_GLE_01() {
+            begin("jtt.optimize.GLE_01");
+            String runString = null;
+            try {
+            // (0) == 18
+                runString = "(0)";
+                if (18 != jtt.optimize.GLE_01.test(0)) {
+                    fail(runString);
+                    return;
+                }
+            // (1) == 15
+                runString = "(1)";
+                if (15 != jtt.optimize.GLE_01.test(1)) {
+                    fail(runString);
+                    return;
+                }
+            // (2) == 12
+                runString = "(2)";
+                if (12 != jtt.optimize.GLE_01.test(2)) {
+                    fail(runString);
+                    return;
+                }
+            // (3) == 9
+                runString = "(3)";
+                if (9 != jtt.optimize.GLE_01.test(3)) {
+                    fail(runString);
+                    return;
+                }
+            // (4) == -128
+                runString = "(4)";
+                if (-128 != jtt.optimize.GLE_01.test(4)) {
+                    fail(runString);
+                    return;
+                }
+            // (5) == 19
+                runString = "(5)";
+                if (19 != jtt.optimize.GLE_01.test(5)) {
+                    fail(runString);
+                    return;
+                }
+            // (6) == !java.lang.NullPointerException
+                try {
+                    runString = "(6)";
+                    jtt.optimize.GLE_01.test(6);
+                    fail(runString);
+                    return;
+                } catch (Throwable e) {
+                    if (e.getClass() != java.lang.NullPointerException.class) {
+                        fail(runString, e);
+                        return;
+                    }
+                }
+            } catch (Throwable t) {
+                fail(runString, t);
+                return;
+            }
+            pass();
+        }
         static void jtt_optimize_Inline01() {
             begin("jtt.optimize.Inline01");
             String runString = null;
@@ -21134,6 +21512,52 @@ public class JTRuns {
             }
             pass();
         }
+        static void jtt_optimize_LeafType_01() {
+            begin("jtt.optimize.LeafType_01");
+            String runString = null;
+            try {
+            // (0) == 11
+                runString = "(0)";
+                if (11 != jtt.optimize.LeafType_01.test(0)) {
+                    fail(runString);
+                    return;
+                }
+            // (1) == 2
+                runString = "(1)";
+                if (2 != jtt.optimize.LeafType_01.test(1)) {
+                    fail(runString);
+                    return;
+                }
+            // (2) == 20
+                runString = "(2)";
+                if (20 != jtt.optimize.LeafType_01.test(2)) {
+                    fail(runString);
+                    return;
+                }
+            // (3) == 0
+                runString = "(3)";
+                if (0 != jtt.optimize.LeafType_01.test(3)) {
+                    fail(runString);
+                    return;
+                }
+            // (4) == !java.lang.ClassCastException
+                try {
+                    runString = "(4)";
+                    jtt.optimize.LeafType_01.test(4);
+                    fail(runString);
+                    return;
+                } catch (Throwable e) {
+                    if (e.getClass() != java.lang.ClassCastException.class) {
+                        fail(runString, e);
+                        return;
+                    }
+                }
+            } catch (Throwable t) {
+                fail(runString, t);
+                return;
+            }
+            pass();
+        }
         static void jtt_optimize_List_reorder_bug() {
             begin("jtt.optimize.List_reorder_bug");
             String runString = null;
@@ -27444,6 +27868,34 @@ public class JTRuns {
             }
             pass();
         }
+        static void jtt_max_TierTransition01() {
+            begin("jtt.max.TierTransition01");
+            String runString = null;
+            try {
+            // (0) == true
+                runString = "(0)";
+                if (true != jtt.max.TierTransition01.test(0)) {
+                    fail(runString);
+                    return;
+                }
+            // (1) == true
+                runString = "(1)";
+                if (true != jtt.max.TierTransition01.test(1)) {
+                    fail(runString);
+                    return;
+                }
+            // (2) == true
+                runString = "(2)";
+                if (true != jtt.max.TierTransition01.test(2)) {
+                    fail(runString);
+                    return;
+                }
+            } catch (Throwable t) {
+                fail(runString, t);
+                return;
+            }
+            pass();
+        }
         static void jtt_max_Unsigned_idiv01() {
             begin("jtt.max.Unsigned_idiv01");
             String runString = null;
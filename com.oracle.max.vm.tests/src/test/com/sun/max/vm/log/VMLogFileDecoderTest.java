@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2007, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.com.sun.max.vm.log;
+
+import static com.sun.max.vm.log.VMLogFileFlusher.*;
+
+import java.io.*;
+import java.nio.*;
+
+import com.sun.max.ide.*;
+import com.sun.max.vm.log.*;
+import com.sun.max.vm.log.VMLog.Record;
+import com.sun.max.vm.log.hosted.*;
+
+/**
+ * Tests that {@link VMLogFileDecoder} merges the chunks written by {@link VMLogFileFlusher} for several threads by the
+ * order of their records.
+ */
+public class VMLogFileDecoderTest extends MaxTestCase {
+
+    public VMLogFileDecoderTest(String name) {
+        super(name);
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(VMLogFileDecoderTest.class);
+    }
+
+    private static final int GC = 1;
+    private static final int THREAD_LOGGER = 2;
+
+    /**
+     * Writes a file in the format of {@link VMLogFileFlusher}.
+     */
+    private static class LogFileWriter {
+        final ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        LogFileWriter(ByteOrder order) {
+            buffer.order(order);
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(2);
+            logger(GC, "GC", "begin", "end");
+            logger(THREAD_LOGGER, "Thread", "start");
+        }
+
+        void string(String s) {
+            buffer.putInt(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                buffer.putChar(s.charAt(i));
+            }
+            if ((s.length() & 1) != 0) {
+                buffer.putChar((char) 0);
+            }
+        }
+
+        void logger(int id, String name, String... operations) {
+            buffer.putInt(id);
+            string(name);
+            buffer.putInt(operations.length);
+            for (String operation : operations) {
+                string(operation);
+            }
+        }
+
+        LogFileWriter chunk(int threadId, String threadName) {
+            buffer.putInt(THREAD);
+            buffer.putInt(threadId);
+            string(threadName);
+            return this;
+        }
+
+        LogFileWriter record(int loggerId, int operation, int uuid, long order, long... args) {
+            buffer.putInt(RECORD);
+            buffer.putInt((operation << Record.OPERATION_SHIFT) | (loggerId << Record.LOGGER_ID_SHIFT) | args.length);
+            buffer.putInt(uuid);
+            buffer.putInt(0);
+            buffer.putLong(order);
+            for (long arg : args) {
+                buffer.putLong(arg);
+            }
+            return this;
+        }
+
+        /**
+         * Writes the records of two threads, each flushed twice, with a record of the same order in both threads.
+         */
+        ByteBuffer twoThreads() {
+            chunk(1, "main");
+            record(GC, 0, 1, 110, 0x10L);
+            record(THREAD_LOGGER, 0, 2, 130);
+            record(GC, 1, 3, 150, 0x11L, 0xffL);
+            chunk(2, "worker");
+            record(THREAD_LOGGER, 0, 1, 120);
+            record(GC, 0, 2, 130, 0x20L);
+            record(GC, 1, 3, 140, 0x21L);
+            chunk(1, "main");
+            record(GC, 0, 4, 160, 0x12L);
+            record(GC, 1, 5, 170);
+            chunk(2, "worker");
+            record(GC, 0, 4, 155);
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static String decode(ByteBuffer buffer, int threadFilter) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final PrintStream out = new PrintStream(bytes);
+        VMLogFileDecoder.decode(buffer, out, threadFilter);
+        out.close();
+        return bytes.toString();
+    }
+
+    private static String lines(String... lines) {
+        final StringWriter result = new StringWriter();
+        final PrintWriter writer = new PrintWriter(result);
+        for (String line : lines) {
+            writer.println(line);
+        }
+        writer.close();
+        return result.toString();
+    }
+
+    private static final String MERGED = lines(
+        "0 main[1] 1 GC.begin 0x10",
+        "10 worker[2] 1 Thread.start",
+        "20 main[1] 2 Thread.start",
+        "20 worker[2] 2 GC.begin 0x20",
+        "30 worker[2] 3 GC.end 0x21",
+        "40 main[1] 3 GC.end 0x11, 0xff",
+        "45 worker[2] 4 GC.begin",
+        "50 main[1] 4 GC.begin 0x12",
+        "60 main[1] 5 GC.end");
+
+    public void test_merge() throws IOException {
+        assertEquals(MERGED, decode(new LogFileWriter(ByteOrder.BIG_ENDIAN).twoThreads(), -1));
+    }
+
+    public void test_littleEndian() throws IOException {
+        assertEquals(MERGED, decode(new LogFileWriter(ByteOrder.LITTLE_ENDIAN).twoThreads(), -1));
+    }
+
+    public void test_threadFilter() throws IOException {
+        assertEquals(lines(
+            "0 worker[2] 1 Thread.start",
+            "10 worker[2] 2 GC.begin 0x20",
+            "20 worker[2] 3 GC.end 0x21",
+            "35 worker[2] 4 GC.begin"),
+            decode(new LogFileWriter(ByteOrder.BIG_ENDIAN).twoThreads(), 2));
+    }
+
+    public void test_corrupt() {
+        final ByteBuffer buffer = new LogFileWriter(ByteOrder.BIG_ENDIAN).chunk(1, "main").buffer;
+        buffer.putInt(RECORD + 1);
+        buffer.flip();
+        try {
+            decode(buffer, -1);
+            fail("expected IOException");
+        } catch (IOException e) {
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2007, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.com.sun.max.vm.profilers.sampling;
+
+import java.util.*;
+
+import test.com.sun.max.vm.*;
+
+import com.sun.max.program.option.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.hosted.*;
+import com.sun.max.vm.profilers.sampling.*;
+import com.sun.max.vm.profilers.sampling.AllocationSamplingProfiler.AllocationSite;
+
+/**
+ * Tests the sampling intervals of {@link AllocationSamplingProfiler} and the aggregation of its samples by site.
+ */
+public class AllocationSamplingProfilerTest extends VmTestCase {
+
+    private static final OptionSet      options        = new OptionSet(false);
+    private static       VMConfigurator vmConfigurator = null;
+    private static       boolean        initialised    = false;
+
+    public AllocationSamplingProfilerTest(String name) {
+        super(name);
+        if (vmConfigurator == null) {
+            vmConfigurator = new VMConfigurator(options);
+        }
+        if (!initialised) {
+            vmConfigurator.create();
+            initialised = true;
+        }
+    }
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(AllocationSamplingProfilerTest.class);
+    }
+
+    private AllocationSamplingProfiler profiler(long interval) {
+        final AllocationSamplingProfiler profiler = new AllocationSamplingProfiler("-Xaprof", ":interval=" + interval);
+        // Nothing is allocated through the sampled slow path while hosted.
+        HeapSchemeWithTLAB.setAllocationSampler(null);
+        return profiler;
+    }
+
+    private static ClassMethodActor method(String name) {
+        try {
+            return ClassMethodActor.fromJava(AllocationSamplingProfilerTest.class.getDeclaredMethod(name));
+        } catch (NoSuchMethodException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    // Methods standing for allocating frames.
+
+    private static void small() {
+    }
+
+    private static void large() {
+    }
+
+    private static void caller() {
+    }
+
+    public void test_nextSampleInterval() {
+        final long interval = 4096;
+        final AllocationSamplingProfiler profiler = profiler(interval);
+        final int n = 100000;
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            final long next = profiler.nextSampleInterval();
+            assertTrue(next >= 1 && next <= interval * 64);
+            sum += next;
+        }
+        // The intervals are exponentially distributed, so the standard deviation of their mean is interval / sqrt(n).
+        assertEquals(interval, sum / n, interval * 0.02);
+    }
+
+    public void test_aggregationBySite() {
+        final AllocationSamplingProfiler profiler = profiler(1024);
+        final ClassMethodActor[] a = {method("small"), method("caller")};
+        final ClassMethodActor[] b = {method("large"), method("caller")};
+        final int[] bcis = {0, 0};
+        final ClassActor objectClass = ClassActor.fromJava(Object.class);
+        final ClassActor stringClass = ClassActor.fromJava(String.class);
+
+        for (int i = 0; i < 3; i++) {
+            profiler.sampleAllocation(a, bcis, objectClass, 16);
+        }
+        profiler.sampleAllocation(a, bcis, stringClass, 24);
+        profiler.sampleAllocation(a, bcis, stringClass, 24);
+        profiler.sampleAllocation(b, bcis, objectClass, 4096);
+        // Same methods, different bytecode index: a different site
+        profiler.sampleAllocation(a, new int[] {0, 1}, objectClass, 16);
+
+        assertEquals(7, profiler.sampleCount());
+        final List<AllocationSite> sites = profiler.sites();
+        assertEquals(4, sites.size());
+        for (int i = 1; i < sites.size(); i++) {
+            assertTrue(sites.get(i - 1).estimatedBytes() >= sites.get(i).estimatedBytes());
+        }
+
+        AllocationSite aObject = null;
+        AllocationSite aString = null;
+        AllocationSite bObject = null;
+        for (AllocationSite site : sites) {
+            final StackTraceElement[] trace = site.stackTrace();
+            assertEquals(2, trace.length);
+            assertEquals("caller", trace[1].getMethodName());
+            if (trace[0].getMethodName().equals("large")) {
+                assertEquals(objectClass, site.classActor());
+                bObject = site;
+            } else if (site.classActor() == stringClass) {
+                aString = site;
+            } else if (site.samples() == 3) {
+                aObject = site;
+            }
+        }
+        assertEquals(3, aObject.samples());
+        assertEquals(3 * 16, aObject.sampledBytes());
+        assertEquals(2, aString.samples());
+        assertEquals(2 * 24, aString.sampledBytes());
+        assertEquals(1, bObject.samples());
+        assertEquals(4096, bObject.sampledBytes());
+        assertSame(bObject, sites.get(0));
+
+        profiler.restart();
+        assertEquals(0, profiler.sampleCount());
+        assertEquals(0, profiler.sites().size());
+    }
+
+    /**
+     * Samples the allocations of a thread as the TLAB slow path does and checks that the bytes estimated for each site
+     * are close to those allocated there.
+     */
+    public void test_estimatedBytes() {
+        final long interval = 64 * 1024;
+        final AllocationSamplingProfiler profiler = profiler(interval);
+        final ClassMethodActor[] smallStack = {method("small")};
+        final ClassMethodActor[] largeStack = {method("large")};
+        final int[] bcis = {0};
+        final ClassActor objectClass = ClassActor.fromJava(Object.class);
+        final long smallSize = 16;
+        final long largeSize = 8 * 1024;
+        final long total = 64L * 1024 * 1024;
+
+        long allocated = 0;
+        long nextSample = profiler.nextSampleInterval();
+        for (long i = 0; i < total / largeSize; i++) {
+            for (int j = 0; j < largeSize / smallSize; j++) {
+                if (allocated + smallSize >= nextSample) {
+                    profiler.sampleAllocation(smallStack, bcis, objectClass, smallSize);
+                    nextSample = allocated + smallSize + profiler.nextSampleInterval();
+                }
+                allocated += smallSize;
+            }
+            if (allocated + largeSize >= nextSample) {
+                profiler.sampleAllocation(largeStack, bcis, objectClass, largeSize);
+                nextSample = allocated + largeSize + profiler.nextSampleInterval();
+            }
+            allocated += largeSize;
+        }
+
+        final List<AllocationSite> sites = profiler.sites();
+        assertEquals(2, sites.size());
+        for (AllocationSite site : sites) {
+            // About total / interval = 1024 samples per site: a relative standard deviation of about 3%.
+            assertEquals(total, site.estimatedBytes(), total * 0.15);
+        }
+    }
+}
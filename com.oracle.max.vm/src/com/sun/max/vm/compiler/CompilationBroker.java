@@ -32,15 +32,18 @@ import static com.sun.max.vm.compiler.CompilationThreadPool.*;
 import static com.sun.max.vm.intrinsics.Infopoints.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import com.sun.cri.ci.*;
 import com.sun.max.annotate.*;
+import com.sun.max.lang.*;
 import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
 import com.sun.max.vm.actor.*;
 import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.actor.member.*;
 import com.sun.max.vm.code.*;
+import com.sun.max.vm.compiler.deopt.*;
 import com.sun.max.vm.compiler.target.*;
 import com.sun.max.vm.compiler.target.aarch64.Aarch64TargetMethodUtil;
 import com.sun.max.vm.compiler.target.amd64.*;
@@ -67,6 +70,24 @@ public class CompilationBroker {
      */
     private static int RCT = 5000;
 
+    /**
+     * The threshold at which a method compiled by the {@linkplain #optimizingCompiler optimizing compiler}
+     * is recompiled by the {@linkplain #topTierCompiler top tier compiler}. This is the total number of invocations
+     * (including those counted by the baseline code) and should therefore be larger than {@link #RCT}.
+     */
+    private static int TopTierRCT = 50000;
+
+    /**
+     * The name of the compiler (added with {@code -XX:AddCompiler}) used as top tier.
+     */
+    private static String TopTierCompiler;
+
+    /**
+     * Determines if baseline methods spinning in a loop are {@linkplain OnStackReplacement replaced on stack}
+     * by optimized code when the backward branch counter overflows.
+     */
+    private static boolean UseOSR;
+
     /**
      * The baseline compiler.
      */
@@ -77,6 +98,14 @@ public class CompilationBroker {
      */
     public final RuntimeCompiler optimizingCompiler;
 
+    /**
+     * The compiler to which the hottest methods compiled by the {@linkplain #optimizingCompiler optimizing compiler}
+     * are promoted, or {@code null} if there are only two tiers. When set, the code produced by the optimizing
+     * compiler counts its invocations and is replaced once the count reaches {@link #TopTierRCT}, while any
+     * activations of the previous code continue to run.
+     */
+    public RuntimeCompiler topTierCompiler;
+
     /**
      * Thread pool of compilation threads.
      */
@@ -109,6 +138,94 @@ public class CompilationBroker {
         addFieldOption("-XX:", "VMExtOpt", CompilationBroker.class, "Compile VM extensions with optimizing compiler (default: false");
         addFieldOption("-XX:", "AddCompiler", CompilationBroker.class, "Add a compiler, Name:Class");
         addFieldOption("-XX:", "BackgroundCompilation", CompilationBroker.class, "Enable background compilation (default: false)");
+        addFieldOption("-XX:", "TopTierCompiler", CompilationBroker.class, "Name of a compiler added with -XX:AddCompiler (e.g. Graal) " +
+            "to which the hottest optimized methods are promoted (default: none).");
+        addFieldOption("-XX:", "TopTierRCT", CompilationBroker.class, "Set the invocation count at which optimized methods are recompiled by " +
+            "the top tier compiler. (default: " + TopTierRCT + ").");
+        addFieldOption("-XX:", "UseOSR", CompilationBroker.class, "Replace baseline methods running a hot loop with optimized code at the loop header (default: false).");
+    }
+
+    /**
+     * Counts of the transitions between compilation tiers. The first three are only updated once a
+     * compilation has {@linkplain #recordTierTransition completed}.
+     */
+    private static final AtomicInteger baselineToOptTransitions = new AtomicInteger();
+    private static final AtomicInteger optToTopTierTransitions = new AtomicInteger();
+    private static final AtomicInteger topTierFailures = new AtomicInteger();
+    private static final AtomicInteger osrTransitions = new AtomicInteger();
+    private static final AtomicInteger osrFailures = new AtomicInteger();
+
+    public static final VMBooleanOption PrintTierStatisticsOption = register(new VMBooleanOption("-XX:-PrintTierStatistics",
+            "Report the number of methods promoted between compilation tiers.") {
+        @Override
+        protected void beforeExit() {
+            if (getValue()) {
+                Log.print("Baseline -> optimized: ");
+                Log.println(baselineToOptTransitions.get());
+                Log.print("Optimized -> top tier: ");
+                Log.println(optToTopTierTransitions.get());
+                Log.print("Top tier failures:     ");
+                Log.println(topTierFailures.get());
+                Log.print("On-stack replacements: ");
+                Log.println(osrTransitions.get());
+                Log.print("OSR failures:          ");
+                Log.println(osrFailures.get());
+            }
+        }
+    }, MaxineVM.Phase.STARTING);
+
+    /**
+     * Gets the number of completed compilations that replaced baseline code by optimized code.
+     */
+    public static int baselineToOptTransitions() {
+        return baselineToOptTransitions.get();
+    }
+
+    /**
+     * Gets the number of baseline activations {@linkplain #backedgeCounterOverflow replaced} by optimized code.
+     */
+    public static int osrTransitions() {
+        return osrTransitions.get();
+    }
+
+    /**
+     * Gets the number of completed compilations by the {@linkplain #topTierCompiler top tier compiler}.
+     */
+    public static int optToTopTierTransitions() {
+        return optToTopTierTransitions.get();
+    }
+
+    /**
+     * Gets the number of failed compilations by the {@linkplain #topTierCompiler top tier compiler}.
+     */
+    public static int topTierFailures() {
+        return topTierFailures.get();
+    }
+
+    /**
+     * Updates the tier transition counts for a compilation that has completed, successfully or not.
+     * A compilation that is still pending in the background is counted once it finishes.
+     *
+     * @param compilation the completed compilation
+     * @param result the target method produced by {@code compilation} or {@code null} if it failed
+     */
+    public static void recordTierTransition(Compilation compilation, TargetMethod result) {
+        if (isHosted()) {
+            return;
+        }
+        RuntimeCompiler topTier = vm().compilationBroker.topTierCompiler;
+        if (topTier != null && compilation.compiler == topTier) {
+            if (result != null) {
+                optToTopTierTransitions.incrementAndGet();
+            } else {
+                topTierFailures.incrementAndGet();
+            }
+        } else if (result != null && !result.isBaseline()) {
+            Compilations prev = compilation.prevCompilations;
+            if (prev.baseline != null && prev.optimized == null) {
+                baselineToOptTransitions.incrementAndGet();
+            }
+        }
     }
 
     @RESET
@@ -293,6 +410,9 @@ public class CompilationBroker {
      */
     public String mode() {
         if (RCT != 0) {
+            if (topTierCompiler != null) {
+                return "mixed mode, tiered";
+            }
             if (defaultCompiler == baselineCompiler) {
                 return "mixed mode, baseline-compile first";
             }
@@ -345,6 +465,22 @@ public class CompilationBroker {
 
             if (RCT != 0 && baselineCompiler != null) {
                 MethodInstrumentation.enable(RCT);
+                if (TopTierCompiler != null) {
+                    topTierCompiler = altCompilers.get(TopTierCompiler);
+                    if (topTierCompiler == null) {
+                        Log.println("Unknown top tier compiler " + TopTierCompiler + ", use -XX:AddCompiler to add it");
+                    } else if (TopTierRCT <= RCT) {
+                        Log.println("TopTierRCT must be greater than RCT, disabling top tier compiler");
+                        topTierCompiler = null;
+                    }
+                }
+                if (UseOSR) {
+                    if (optimizingCompiler instanceof OSRCapable && platform().isa == ISA.AMD64) {
+                        MethodInstrumentation.enableOSR();
+                    } else {
+                        Log.println("On-stack replacement is not supported by " + optimizingCompiler + " on " + platform().isa + ", ignoring -XX:+UseOSR");
+                    }
+                }
             }
         } else if (phase == Phase.RUNNING) {
             if (BackgroundCompilation) {
@@ -438,6 +574,15 @@ public class CompilationBroker {
      * @throws iff failFast the exception that was thrown by first selected compiler
      */
     public TargetMethod compile(ClassMethodActor cma, Nature nature, boolean isDeopt, boolean failFast) throws Throwable {
+        return compile(cma, nature, isDeopt, failFast, null);
+    }
+
+    /**
+     * Produces a target method for the specified method actor, as {@link #compile(ClassMethodActor, Nature, boolean, boolean)}.
+     *
+     * @param compiler the compiler to use or {@code null} to {@linkplain #selectCompiler select} one
+     */
+    private TargetMethod compile(ClassMethodActor cma, Nature nature, boolean isDeopt, boolean failFast, RuntimeCompiler forcedCompiler) throws Throwable {
         boolean retryRun = false;
         while (true) {
             Compilation compilation;
@@ -460,11 +605,16 @@ public class CompilationBroker {
                     }
                 } else {
                     Compilations prevCompilations = compilation != null ? compilation.prevCompilations : (Compilations) compiledState;
-                    RuntimeCompiler compiler = selectCompiler(cma, nature, isDeopt);
+                    RuntimeCompiler compiler = forcedCompiler != null ? forcedCompiler : selectCompiler(cma, nature, isDeopt);
                     if (retryRun) {
                         compiler = selectRetryCompiler(cma, nature, compiler);
                     }
                     compilation = new Compilation(compiler, cma, prevCompilations, Thread.currentThread(), nature, isDeopt);
+                    if (topTierCompiler != null && compiler == optimizingCompiler && !isDeopt && !cma.isVM()) {
+                        // the optimized code counts the invocations remaining until promotion to the top tier
+                        compilation.entryCounter = new MethodProfile.Builder();
+                        compilation.entryCounter.addEntryBackedgeCounter(TopTierRCT - RCT);
+                    }
                     cma.compiledState = compilation;
                 }
             }
@@ -473,6 +623,7 @@ public class CompilationBroker {
                 if (doCompile) {
                     TargetMethod tm = null;
                     if (backgroundCompilationInitialized && nature == Nature.OPT) {
+                        compilation.enqueueNanos = System.nanoTime();
                         compilationThreadPool.addCompilationToQueue(compilation);
                         compilation.relinquishOwnership();
                     } else {
@@ -522,6 +673,28 @@ public class CompilationBroker {
         }
     }
 
+    /**
+     * Recompiles a method with the {@linkplain #topTierCompiler top tier compiler}.
+     *
+     * @return the new target method or {@code null} if the compilation is pending in the background
+     * @throws Throwable if the compilation failed, in which case the previous compilations of {@code cma} are retained
+     */
+    private TargetMethod compileTopTier(ClassMethodActor cma) throws Throwable {
+        try {
+            return compile(cma, Nature.OPT, false, true, topTierCompiler);
+        } catch (Throwable t) {
+            synchronized (cma) {
+                if (cma.compiledState instanceof Compilation) {
+                    Compilation compilation = (Compilation) cma.compiledState;
+                    if (compilation.compiler == topTierCompiler && !compilation.done) {
+                        cma.compiledState = compilation.prevCompilations;
+                    }
+                }
+            }
+            throw t;
+        }
+    }
+
     /**
      * Select the appropriate compiler based on the current state of the method.
      *
@@ -639,6 +812,11 @@ public class CompilationBroker {
      * @param receiver the receiver object of the profiled method. This will be {@code null} if the profiled method is static.
      */
     public static void instrumentationCounterOverflow(MethodProfile mpo, Object receiver) {
+        if (mpo.method == null) {
+            // the optimized code is running before its compilation has finished, so start counting again
+            mpo.entryBackedgeCount = TopTierRCT - RCT;
+            return;
+        }
         if (mpo.compilationDisabled) {
             mpo.entryBackedgeCount = Integer.MAX_VALUE;
             return;
@@ -664,15 +842,29 @@ public class CompilationBroker {
             if (!(cma.compiledState instanceof Compilation)) {
                 // There is no newer compiled version available yet that we could just patch to, so recompile
                 logCounterOverflow(mpo, "");
-                try {
-                    newMethod = vm().compilationBroker.compile(cma, Nature.OPT);
-                } catch (InternalError e) {
-                    if (VMOptions.verboseOption.verboseCompilation) {
-                        e.printStackTrace(Log.out);
+                if (!oldMethod.isBaseline()) {
+                    try {
+                        newMethod = vm().compilationBroker.compileTopTier(cma);
+                    } catch (Throwable e) {
+                        if (VMOptions.verboseOption.verboseCompilation) {
+                            e.printStackTrace(Log.out);
+                        }
+                        // Top tier compilation failed - stay with the optimized method for good.
+                        mpo.compilationDisabled = true;
+                        mpo.entryBackedgeCount = Integer.MAX_VALUE;
+                        return;
+                    }
+                } else {
+                    try {
+                        newMethod = vm().compilationBroker.compile(cma, Nature.OPT);
+                    } catch (InternalError e) {
+                        if (VMOptions.verboseOption.verboseCompilation) {
+                            e.printStackTrace(Log.out);
+                        }
+                        // Optimization failed - stay with the baseline method. By not resetting the counter,
+                        // the next counter overflow (due to integer wrapping) will be a while away.
+                        return;
                     }
-                    // Optimization failed - stay with the baseline method. By not resetting the counter,
-                    // the next counter overflow (due to integer wrapping) will be a while away.
-                    return;
                 }
             }
         }
@@ -720,6 +912,86 @@ public class CompilationBroker {
         }
     }
 
+    /**
+     * Handles an overflow of the instrumentation counter on a backward branch of a baseline method. The
+     * executing activation of the method is {@linkplain OnStackReplacement replaced} by code compiled
+     * to be entered at the loop header {@code bci}. If that is not possible, the method continues in
+     * the baseline code and the next entry to it will trigger its recompilation as usual.
+     * This method must be called on the thread that overflowed the counter.
+     *
+     * @param mpo profiling object of the baseline method
+     * @param bci the bytecode index of the loop header targeted by the backward branch
+     */
+    @NEVER_INLINE
+    public static void backedgeCounterOverflow(MethodProfile mpo, int bci) {
+        if (mpo.method == null || !mpo.method.isBaseline() || Heap.isAllocationDisabledForCurrentThread() || Compilation.isCompilationRunningInCurrentThread()) {
+            // We don't want to see another counter overflow in the near future
+            mpo.entryBackedgeCount = 1000;
+            return;
+        }
+        if (mpo.compilationDisabled || !OnStackReplacement.canMigrate(mpo.method)) {
+            mpo.entryBackedgeCount = Integer.MAX_VALUE;
+            return;
+        }
+        TargetMethod baselineMethod = mpo.method;
+        TargetMethod osrMethod = compileOSR(mpo, bci);
+        if (osrMethod == null) {
+            // the failure is cached, so retrying would only fail again
+            mpo.entryBackedgeCount = Integer.MAX_VALUE;
+            return;
+        }
+        osrTransitions.incrementAndGet();
+        if (verboseOption.verboseCompilation) {
+            boolean lockDisabledSafepoints = Log.lock();
+            Log.printCurrentThread(false);
+            Log.print(": On-stack replacement of ");
+            Log.printMethod(baselineMethod, false);
+            Log.print(" at bci ");
+            Log.println(bci);
+            Log.unlock(lockDisabledSafepoints);
+        }
+        // the counter is left expired so that the next entry to the method switches to optimized code
+        OnStackReplacement.migrate(baselineMethod, osrMethod);
+    }
+
+    /**
+     * Gets the code compiled for entering the method of a given profile at a given loop header,
+     * compiling it if necessary.
+     *
+     * @return {@code null} if the compilation failed now or previously
+     */
+    private static TargetMethod compileOSR(MethodProfile mpo, int bci) {
+        synchronized (mpo) {
+            if (mpo.osrMethods == null) {
+                mpo.osrMethods = new HashMap<Integer, TargetMethod>();
+            } else if (mpo.osrMethods.containsKey(bci)) {
+                TargetMethod osrMethod = mpo.osrMethods.get(bci);
+                if (osrMethod == null || osrMethod.invalidated() == null) {
+                    return osrMethod;
+                }
+            }
+        }
+        ClassMethodActor cma = mpo.method.classMethodActor;
+        RuntimeCompiler compiler = vm().compilationBroker.optimizingCompiler;
+        TargetMethod osrMethod = null;
+        // registers the compilation with the current thread so that the compiler does not trigger recursive compilations
+        Compilation compilation = new Compilation(compiler, cma, Compilations.EMPTY, Thread.currentThread(), Nature.OPT, false);
+        try {
+            osrMethod = ((OSRCapable) compiler).compileOSR(cma, bci);
+        } catch (Throwable e) {
+            if (verboseOption.verboseCompilation) {
+                e.printStackTrace(Log.out);
+            }
+            osrFailures.incrementAndGet();
+        } finally {
+            compilation.relinquishOwnership();
+        }
+        synchronized (mpo) {
+            mpo.osrMethods.put(bci, osrMethod);
+        }
+        return osrMethod;
+    }
+
     public static void logCounterOverflow(MethodProfile mpo, String msg) {
         if (VMOptions.verboseOption.verboseCompilation) {
             boolean lockDisabledSafepoints = Log.lock();
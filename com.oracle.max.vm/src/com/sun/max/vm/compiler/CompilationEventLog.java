@@ -0,0 +1,646 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.compiler;
+
+import static com.sun.max.vm.MaxineVM.*;
+import static com.sun.max.vm.thread.VmThread.*;
+import static com.sun.max.vm.thread.VmThreadLocal.*;
+
+import java.util.concurrent.atomic.*;
+
+import com.sun.cri.ci.*;
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.compiler.RuntimeCompiler.Nature;
+import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.log.*;
+import com.sun.max.vm.log.VMLog.Record;
+import com.sun.max.vm.log.hosted.*;
+import com.sun.max.vm.profile.*;
+import com.sun.max.vm.thread.*;
+
+/**
+ * A structured log of JIT compilations, meant to correlate warm-up latency with compiler behavior. For every
+ * compilation it records the tier and compiler, the time spent waiting in the background compilation queue, the
+ * time spent in each phase of the compiler as reported in its {@link CiStatistics}, the code size, the number of
+ * inlined methods and dependencies, and the deoptimizations of the method that preceded the compilation.
+ * <p>
+ * Events are recorded by the {@link CompilationEventLogger}, hence are available through the usual
+ * {@link VMLogger} options ({@code -XX:+LogCompilationEvents}, {@code -XX:+TraceCompilationEvents}), the binary
+ * VM log file and the Inspector. In addition, one line per compilation is appended to the file named by
+ * {@link #CompilationLogFile}. Compilations run concurrently in application and compilation threads, so each
+ * thread formats its lines into its own natively allocated buffer, freed when the thread terminates, and nothing is
+ * allocated on the heap once compilation has finished.
+ * <p>
+ * Phases a compiler does not distinguish are reported as 0: C1X reports all of them, T1X has no optimization nor
+ * register allocation, and other compilers only report the total compilation time.
+ */
+public final class CompilationEventLog {
+
+    /**
+     * The file to which compilation events are appended, one line per compilation.
+     */
+    public static String CompilationLogFile;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "CompilationLogFile", CompilationEventLog.class,
+            "Append a line describing each compilation to the given file.", MaxineVM.Phase.STARTING);
+    }
+
+    public static final CompilationEventLogger logger = new CompilationEventLogger();
+
+    /**
+     * The tiers of compilation.
+     */
+    public static final int TIER_BASELINE = 1;
+    public static final int TIER_OPTIMIZED = 2;
+    public static final int TIER_TOP = 3;
+
+    private static final int LINE_BUFFER_SIZE = 1024;
+
+    /**
+     * The buffer into which a thread formats its lines, allocated on its first compilation and freed by
+     * {@link #notifyCurrentThreadDetach()}.
+     */
+    private static final VmThreadLocal LINE_BUFFER
+        = new VmThreadLocal("COMPILATION_LOG_BUFFER", false, "CompilationEventLog: line buffer", VmThreadLocal.Nature.Single);
+
+    /**
+     * The identifier of the compilation in progress in a thread, 0 if none.
+     */
+    private static final VmThreadLocal COMPILATION_ID
+        = new VmThreadLocal("COMPILATION_EVENT_ID", false, "CompilationEventLog: current compilation", VmThreadLocal.Nature.Single);
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private static boolean fileOpen;
+
+    private static long vmStartNanos;
+
+    /**
+     * The compilers whose names are printed in the log file, captured at initialization so that printing them
+     * does not allocate.
+     */
+    private static RuntimeCompiler[] compilers = {};
+    private static String[] compilerNames = {};
+
+    private CompilationEventLog() {
+    }
+
+    /**
+     * Opens the {@linkplain #CompilationLogFile compilation log file}, if any. Called once the VM options have been
+     * parsed and the compilation broker is configured.
+     */
+    public static void initialize() {
+        vmStartNanos = System.nanoTime();
+        final CompilationBroker broker = vm().compilationBroker;
+        compilers = new RuntimeCompiler[] {broker.baselineCompiler, broker.optimizingCompiler, broker.topTierCompiler};
+        compilerNames = new String[compilers.length];
+        for (int i = 0; i < compilers.length; i++) {
+            compilerNames[i] = compilers[i] == null ? "none" : compilers[i].toString();
+        }
+        if (CompilationLogFile != null) {
+            final Pointer path = CString.utf8FromJava(CompilationLogFile);
+            final int result = compilationLog_open(path);
+            Memory.deallocate(path);
+            fileOpen = result == 0;
+        }
+    }
+
+    /**
+     * Determines if compilation events are being recorded.
+     */
+    @INLINE
+    public static boolean enabled() {
+        return !isHosted() && (fileOpen || logger.enabled());
+    }
+
+    /**
+     * Allocates the identifier of a new compilation.
+     */
+    public static int nextId() {
+        return nextId.incrementAndGet();
+    }
+
+    /**
+     * Notes that the current thread starts performing a compilation, so that events reported by the compiler are
+     * attributed to it.
+     *
+     * @return the identifier of the compilation the thread was performing before, to be passed to {@link #exit(int)}
+     */
+    public static int enter(int id) {
+        final Pointer etla = ETLA.load(currentTLA());
+        final int previous = COMPILATION_ID.load(etla).toInt();
+        COMPILATION_ID.store(etla, Address.fromInt(id));
+        return previous;
+    }
+
+    /**
+     * Notes that the current thread has finished the compilation it {@linkplain #enter(int) entered}.
+     */
+    public static void exit(int previousId) {
+        COMPILATION_ID.store(ETLA.load(currentTLA()), Address.fromInt(previousId));
+    }
+
+    /**
+     * Records that the compilation in progress in the current thread inlined a method.
+     */
+    public static void inlinedMethod(MethodActor inlinee) {
+        final int id = COMPILATION_ID.load(ETLA.load(currentTLA())).toInt();
+        logger.logInlinedMethod(id, inlinee);
+        if (fileOpen) {
+            final Pointer line = lineBuffer();
+            if (!line.isZero()) {
+                int p = putTimestamp(line, 0);
+                p = put(line, p, " inline compile=");
+                p = put(line, p, id);
+                p = put(line, p, " method=");
+                p = putMethod(line, p, inlinee);
+                write(line, putNewline(line, p));
+            }
+        }
+    }
+
+    /**
+     * Gets the tier of a compilation by a given compiler.
+     */
+    public static int tier(RuntimeCompiler compiler) {
+        if (compiler.nature() == Nature.BASELINE) {
+            return TIER_BASELINE;
+        }
+        return compiler == vm().compilationBroker.topTierCompiler ? TIER_TOP : TIER_OPTIMIZED;
+    }
+
+    /**
+     * Records a successful compilation.
+     *
+     * @param id the identifier of the compilation
+     * @param compilation the compilation
+     * @param stats the statistics reported by the compiler
+     * @param queueNanos the time the compilation spent waiting for a compilation thread
+     * @param compileNanos the time spent compiling
+     */
+    public static void compiled(int id, Compilation compilation, CiStatistics stats, long queueNanos, long compileNanos) {
+        final ClassMethodActor method = compilation.classMethodActor;
+        final int tier = tier(compilation.compiler);
+        final int compiler = compilerIndex(compilation.compiler);
+        final int codeSize = compilation.result.codeLength();
+        final MethodProfile profile = compilation.prevCompilations.baseline == null ? null : compilation.prevCompilations.baseline.profile();
+        int deoptReasons = 0;
+        int deoptCount = 0;
+        if (profile != null) {
+            for (int reason = 0; reason < MethodProfile.DEOPTIMIZATION_REASONS_NUM; reason++) {
+                final int count = profile.getDeoptimizationCount(reason);
+                if (count > 0) {
+                    deoptReasons |= 1 << reason;
+                    deoptCount += count;
+                }
+            }
+        }
+        logger.logCompiled(id, method, tier, compiler, compilation.isDeopt, queueNanos, compileNanos, codeSize);
+        logger.logPhases(id, stats.parseNanos, stats.optimizeNanos, stats.registerAllocationNanos, stats.emitNanos, stats.installNanos);
+        logger.logDetails(id, stats.bytecodeCount, stats.inlineCount, stats.dependencyCount, deoptReasons, deoptCount);
+        if (fileOpen) {
+            final Pointer line = lineBuffer();
+            if (!line.isZero()) {
+                int p = putHeader(line, id, method, tier, compiler, compilation.isDeopt);
+                p = put(line, p, " queue=");
+                p = putMicros(line, p, queueNanos);
+                p = put(line, p, " time=");
+                p = putMicros(line, p, compileNanos);
+                p = put(line, p, " parse=");
+                p = putMicros(line, p, stats.parseNanos);
+                p = put(line, p, " optimize=");
+                p = putMicros(line, p, stats.optimizeNanos);
+                p = put(line, p, " regalloc=");
+                p = putMicros(line, p, stats.registerAllocationNanos);
+                p = put(line, p, " emit=");
+                p = putMicros(line, p, stats.emitNanos);
+                p = put(line, p, " install=");
+                p = putMicros(line, p, stats.installNanos);
+                p = put(line, p, " (us) bytecodes=");
+                p = put(line, p, stats.bytecodeCount);
+                p = put(line, p, " code=");
+                p = put(line, p, codeSize);
+                p = put(line, p, " inlined=");
+                p = put(line, p, stats.inlineCount);
+                p = put(line, p, " deps=");
+                p = put(line, p, stats.dependencyCount);
+                p = put(line, p, " deopts=");
+                p = put(line, p, deoptCount);
+                p = put(line, p, " deoptReasons=");
+                p = putReasons(line, p, deoptReasons);
+                write(line, putNewline(line, p));
+            }
+        }
+    }
+
+    /**
+     * Records a failed compilation.
+     */
+    public static void failed(int id, Compilation compilation, long compileNanos) {
+        final ClassMethodActor method = compilation.classMethodActor;
+        final int tier = tier(compilation.compiler);
+        final int compiler = compilerIndex(compilation.compiler);
+        logger.logFailed(id, method, tier, compiler, compileNanos);
+        if (fileOpen) {
+            final Pointer line = lineBuffer();
+            if (!line.isZero()) {
+                int p = putHeader(line, id, method, tier, compiler, compilation.isDeopt);
+                p = put(line, p, " time=");
+                p = putMicros(line, p, compileNanos);
+                p = put(line, p, " (us) failed");
+                write(line, putNewline(line, p));
+            }
+        }
+    }
+
+    private static int compilerIndex(RuntimeCompiler compiler) {
+        for (int i = 0; i < compilers.length; i++) {
+            if (compilers[i] == compiler) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String compilerName(int index) {
+        return index < 0 ? "other" : compilerNames[index];
+    }
+
+    private static Pointer lineBuffer() {
+        final Pointer etla = ETLA.load(currentTLA());
+        Pointer line = LINE_BUFFER.load(etla);
+        if (line.isZero()) {
+            line = Memory.allocate(Size.fromInt(LINE_BUFFER_SIZE));
+            LINE_BUFFER.store(etla, line);
+        }
+        return line;
+    }
+
+    /**
+     * Frees the line buffer of the current thread, which is terminating.
+     */
+    public static void notifyCurrentThreadDetach() {
+        final Pointer etla = ETLA.load(currentTLA());
+        final Pointer line = LINE_BUFFER.load(etla);
+        if (!line.isZero()) {
+            LINE_BUFFER.store(etla, Pointer.zero());
+            Memory.deallocate(line);
+        }
+    }
+
+    private static void write(Pointer line, int length) {
+        if (compilationLog_write(line, length) != 0) {
+            Log.println("Error writing compilation log file, compilations will no longer be written to it");
+            fileOpen = false;
+        }
+    }
+
+    /*
+     * Formatting of the log file lines. A line looks like:
+     *
+     * [1.234s] compile=42 tier=2 compiler=C1X method=java.lang.String.hashCode()I deopt=false queue=120 time=3456
+     *     parse=800 optimize=1200 regalloc=900 emit=400 install=100 (us) bytecodes=55 code=320 inlined=2 deps=2
+     *     deopts=1 deoptReasons=0x4
+     *
+     * (on a single line), preceded by a line for each inlined method:
+     *
+     * [1.233s] inline compile=42 method=java.lang.String.charAt(I)C
+     */
+
+    private static int putHeader(Pointer line, int id, ClassMethodActor method, int tier, int compiler, boolean isDeopt) {
+        int p = putTimestamp(line, 0);
+        p = put(line, p, " compile=");
+        p = put(line, p, id);
+        p = put(line, p, " tier=");
+        p = put(line, p, tier);
+        p = put(line, p, " compiler=");
+        p = put(line, p, compilerName(compiler));
+        p = put(line, p, " method=");
+        p = putMethod(line, p, method);
+        return put(line, p, isDeopt ? " deopt=true" : " deopt=false");
+    }
+
+    private static int putTimestamp(Pointer line, int p) {
+        p = put(line, p, '[');
+        final long millis = (System.nanoTime() - vmStartNanos) / 1000000;
+        p = put(line, p, millis / 1000);
+        p = put(line, p, '.');
+        final long fraction = millis % 1000;
+        if (fraction < 100) {
+            p = put(line, p, '0');
+        }
+        if (fraction < 10) {
+            p = put(line, p, '0');
+        }
+        p = put(line, p, fraction);
+        return put(line, p, "s]");
+    }
+
+    private static int putMethod(Pointer line, int p, MethodActor method) {
+        p = put(line, p, method.holder().name.string);
+        p = put(line, p, '.');
+        p = put(line, p, method.name.string);
+        return put(line, p, method.descriptor().string);
+    }
+
+    private static int putMicros(Pointer line, int p, long nanos) {
+        return put(line, p, nanos / 1000);
+    }
+
+    private static int putReasons(Pointer line, int p, int reasons) {
+        p = put(line, p, "0x");
+        boolean leading = true;
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            final int digit = (reasons >>> shift) & 0xf;
+            if (digit != 0 || !leading || shift == 0) {
+                p = put(line, p, "0123456789abcdef".charAt(digit));
+                leading = false;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Appends a character to a line, unless that would leave no room for the terminating newline.
+     */
+    private static int put(Pointer line, int p, char c) {
+        if (p < LINE_BUFFER_SIZE - 1) {
+            line.writeByte(p++, (byte) c);
+        }
+        return p;
+    }
+
+    /**
+     * Terminates a line. There is always room for the newline, as {@link #put(Pointer, int, char)} keeps it free.
+     */
+    private static int putNewline(Pointer line, int p) {
+        line.writeByte(p, (byte) '\n');
+        return p + 1;
+    }
+
+    private static int put(Pointer line, int p, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            p = put(line, p, s.charAt(i));
+        }
+        return p;
+    }
+
+    private static int put(Pointer line, int p, long value) {
+        if (value < 0) {
+            p = put(line, p, '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            p = put(line, p, (char) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+        return p;
+    }
+
+    @C_FUNCTION
+    private static native int compilationLog_open(Pointer path);
+
+    @C_FUNCTION
+    private static native int compilationLog_write(Pointer buffer, int length);
+
+    /*
+     * Logging support.
+     */
+
+    @HOSTED_ONLY
+    @VMLoggerInterface
+    private interface CompilationEventLoggerInterface {
+        void compiled(
+            @VMLogParam(name = "id") int id,
+            @VMLogParam(name = "method") ClassMethodActor method,
+            @VMLogParam(name = "tier") int tier,
+            @VMLogParam(name = "compiler") int compiler,
+            @VMLogParam(name = "isDeopt") boolean isDeopt,
+            @VMLogParam(name = "queueNanos") long queueNanos,
+            @VMLogParam(name = "compileNanos") long compileNanos,
+            @VMLogParam(name = "codeSize") int codeSize);
+
+        void phases(
+            @VMLogParam(name = "id") int id,
+            @VMLogParam(name = "parseNanos") long parseNanos,
+            @VMLogParam(name = "optimizeNanos") long optimizeNanos,
+            @VMLogParam(name = "registerAllocationNanos") long registerAllocationNanos,
+            @VMLogParam(name = "emitNanos") long emitNanos,
+            @VMLogParam(name = "installNanos") long installNanos);
+
+        void details(
+            @VMLogParam(name = "id") int id,
+            @VMLogParam(name = "bytecodes") int bytecodes,
+            @VMLogParam(name = "inlined") int inlined,
+            @VMLogParam(name = "dependencies") int dependencies,
+            @VMLogParam(name = "deoptReasons") int deoptReasons,
+            @VMLogParam(name = "deoptCount") int deoptCount);
+
+        void inlinedMethod(
+            @VMLogParam(name = "id") int id,
+            @VMLogParam(name = "inlinee") MethodActor inlinee);
+
+        void failed(
+            @VMLogParam(name = "id") int id,
+            @VMLogParam(name = "method") ClassMethodActor method,
+            @VMLogParam(name = "tier") int tier,
+            @VMLogParam(name = "compiler") int compiler,
+            @VMLogParam(name = "compileNanos") long compileNanos);
+    }
+
+    public static final class CompilationEventLogger extends CompilationEventLoggerAuto {
+        CompilationEventLogger() {
+            super("CompilationEvents", "JIT compilation events.");
+        }
+
+        @Override
+        protected void traceCompiled(int id, ClassMethodActor method, int tier, int compiler, boolean isDeopt, long queueNanos, long compileNanos, int codeSize) {
+            Log.print("Compilation ");
+            Log.print(id);
+            Log.print(": tier ");
+            Log.print(tier);
+            Log.print(' ');
+            Log.print(compilerName(compiler));
+            Log.print(' ');
+            Log.print(method);
+            if (isDeopt) {
+                Log.print(" (deopt)");
+            }
+            Log.print(", queued ");
+            Log.print(queueNanos / 1000);
+            Log.print(" us, compiled in ");
+            Log.print(compileNanos / 1000);
+            Log.print(" us, code size ");
+            Log.println(codeSize);
+        }
+
+        @Override
+        protected void tracePhases(int id, long parseNanos, long optimizeNanos, long registerAllocationNanos, long emitNanos, long installNanos) {
+            Log.print("  Compilation ");
+            Log.print(id);
+            Log.print(" phases (us): parse=");
+            Log.print(parseNanos / 1000);
+            Log.print(", optimize=");
+            Log.print(optimizeNanos / 1000);
+            Log.print(", regalloc=");
+            Log.print(registerAllocationNanos / 1000);
+            Log.print(", emit=");
+            Log.print(emitNanos / 1000);
+            Log.print(", install=");
+            Log.println(installNanos / 1000);
+        }
+
+        @Override
+        protected void traceDetails(int id, int bytecodes, int inlined, int dependencies, int deoptReasons, int deoptCount) {
+            Log.print("  Compilation ");
+            Log.print(id);
+            Log.print(": bytecodes=");
+            Log.print(bytecodes);
+            Log.print(", inlined=");
+            Log.print(inlined);
+            Log.print(", dependencies=");
+            Log.print(dependencies);
+            Log.print(", deopts=");
+            Log.print(deoptCount);
+            Log.print(", deopt reason mask=");
+            Log.println(deoptReasons);
+        }
+
+        @Override
+        protected void traceInlinedMethod(int id, MethodActor inlinee) {
+            Log.print("  Compilation ");
+            Log.print(id);
+            Log.print(" inlined ");
+            Log.println(inlinee);
+        }
+
+        @Override
+        protected void traceFailed(int id, ClassMethodActor method, int tier, int compiler, long compileNanos) {
+            Log.print("Compilation ");
+            Log.print(id);
+            Log.print(": tier ");
+            Log.print(tier);
+            Log.print(' ');
+            Log.print(compilerName(compiler));
+            Log.print(' ');
+            Log.print(method);
+            Log.print(" failed after ");
+            Log.print(compileNanos / 1000);
+            Log.println(" us");
+        }
+    }
+
+// START GENERATED CODE
+    private static abstract class CompilationEventLoggerAuto extends com.sun.max.vm.log.VMLogger {
+        public enum Operation {
+            Compiled, Details, Failed, InlinedMethod,
+            Phases;
+
+            @SuppressWarnings("hiding")
+            public static final Operation[] VALUES = values();
+        }
+
+        private static final int[] REFMAPS = null;
+
+        protected CompilationEventLoggerAuto(String name, String optionDescription) {
+            super(name, Operation.VALUES.length, optionDescription, REFMAPS);
+        }
+
+        @Override
+        public String operationName(int opCode) {
+            return Operation.VALUES[opCode].name();
+        }
+
+        @INLINE
+        public final void logCompiled(int id, ClassMethodActor method, int tier, int compiler, boolean isDeopt, long queueNanos,
+                long compileNanos, int codeSize) {
+            log(Operation.Compiled.ordinal(), intArg(id), methodActorArg(method), intArg(tier), intArg(compiler), booleanArg(isDeopt),
+                longArg(queueNanos), longArg(compileNanos), intArg(codeSize));
+        }
+        protected abstract void traceCompiled(int id, ClassMethodActor method, int tier, int compiler, boolean isDeopt, long queueNanos,
+                long compileNanos, int codeSize);
+
+        @INLINE
+        public final void logDetails(int id, int bytecodes, int inlined, int dependencies, int deoptReasons, int deoptCount) {
+            log(Operation.Details.ordinal(), intArg(id), intArg(bytecodes), intArg(inlined), intArg(dependencies), intArg(deoptReasons),
+                intArg(deoptCount));
+        }
+        protected abstract void traceDetails(int id, int bytecodes, int inlined, int dependencies, int deoptReasons, int deoptCount);
+
+        @INLINE
+        public final void logFailed(int id, ClassMethodActor method, int tier, int compiler, long compileNanos) {
+            log(Operation.Failed.ordinal(), intArg(id), methodActorArg(method), intArg(tier), intArg(compiler), longArg(compileNanos));
+        }
+        protected abstract void traceFailed(int id, ClassMethodActor method, int tier, int compiler, long compileNanos);
+
+        @INLINE
+        public final void logInlinedMethod(int id, MethodActor inlinee) {
+            log(Operation.InlinedMethod.ordinal(), intArg(id), methodActorArg(inlinee));
+        }
+        protected abstract void traceInlinedMethod(int id, MethodActor inlinee);
+
+        @INLINE
+        public final void logPhases(int id, long parseNanos, long optimizeNanos, long registerAllocationNanos, long emitNanos, long installNanos) {
+            log(Operation.Phases.ordinal(), intArg(id), longArg(parseNanos), longArg(optimizeNanos), longArg(registerAllocationNanos), longArg(emitNanos),
+                longArg(installNanos));
+        }
+        protected abstract void tracePhases(int id, long parseNanos, long optimizeNanos, long registerAllocationNanos, long emitNanos, long installNanos);
+
+        @Override
+        protected void trace(Record r) {
+            switch (r.getOperation()) {
+                case 0: { //Compiled
+                    traceCompiled(toInt(r, 1), toClassMethodActor(r, 2), toInt(r, 3), toInt(r, 4), toBoolean(r, 5), toLong(r, 6), toLong(r, 7), toInt(r, 8));
+                    break;
+                }
+                case 1: { //Details
+                    traceDetails(toInt(r, 1), toInt(r, 2), toInt(r, 3), toInt(r, 4), toInt(r, 5), toInt(r, 6));
+                    break;
+                }
+                case 2: { //Failed
+                    traceFailed(toInt(r, 1), toClassMethodActor(r, 2), toInt(r, 3), toInt(r, 4), toLong(r, 5));
+                    break;
+                }
+                case 3: { //InlinedMethod
+                    traceInlinedMethod(toInt(r, 1), toMethodActor(r, 2));
+                    break;
+                }
+                case 4: { //Phases
+                    tracePhases(toInt(r, 1), toLong(r, 2), toLong(r, 3), toLong(r, 4), toLong(r, 5), toLong(r, 6));
+                    break;
+                }
+            }
+        }
+    }
+
+// END GENERATED CODE
+}
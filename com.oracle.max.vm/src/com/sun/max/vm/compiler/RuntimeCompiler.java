@@ -128,6 +128,23 @@ public interface RuntimeCompiler {
      */
     String name(ClassMethodActor classMethodActor);
 
+    /**
+     * Implemented by an optimizing compiler that can produce code entered in the middle of a method
+     * by {@linkplain com.sun.max.vm.compiler.deopt.OnStackReplacement on-stack replacement}.
+     */
+    interface OSRCapable {
+        /**
+         * Compiles a method such that its only entry point is the loop header at a given bytecode index.
+         * The compiled code expects the address of a buffer holding the values of all the method's locals,
+         * one word per local, to be passed by the caller and frees this buffer once the values are loaded.
+         *
+         * @param classMethodActor the method to compile
+         * @param bci the bytecode index of a loop header in {@code classMethodActor}
+         * @return the installed target method
+         */
+        TargetMethod compileOSR(ClassMethodActor classMethodActor, int bci);
+    }
+
     abstract class DefaultNameAdapter implements RuntimeCompiler {
         public String name(ClassMethodActor classMethodActor) {
             return getClass().getSimpleName();
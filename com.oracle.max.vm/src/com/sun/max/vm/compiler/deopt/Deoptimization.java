@@ -557,6 +557,11 @@ public class Deoptimization extends VmOperation {
          */
         NativeOrVmIP returnIP = new NativeOrVmIP();
 
+        /**
+         * The address of the slot holding {@link #returnIP}.
+         */
+        Pointer returnAddressPointer;
+
         /**
          * The instruction pointer in the caller of the frame being deoptimized.
          */
@@ -630,7 +635,8 @@ public class Deoptimization extends VmOperation {
             // reflected in current.ip(). We must use the actual return address after
             // deoptimizing the callee and so the code below by-passes any
             // stack frame walker "recovery".
-            returnIP.derive(calleeTM.returnAddressPointer(callee).readWord(0).asPointer());
+            returnAddressPointer = calleeTM.returnAddressPointer(callee);
+            returnIP.derive(returnAddressPointer.readWord(0).asPointer());
             return false;
         }
 
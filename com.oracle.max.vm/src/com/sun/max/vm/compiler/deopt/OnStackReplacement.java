@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.compiler.deopt;
+
+import static com.sun.max.platform.Platform.*;
+import static com.sun.max.vm.intrinsics.Infopoints.*;
+import static com.sun.max.vm.runtime.VMRegister.*;
+
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.compiler.*;
+import com.sun.max.vm.compiler.deopt.Deoptimization.Info;
+import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.stack.*;
+import com.sun.max.vm.thread.*;
+
+/**
+ * Mechanism for replacing the activation of a baseline method that is executing a hot loop with an
+ * activation of code that has been compiled to be entered at the header of that loop.
+ * This is the reverse of {@linkplain Deoptimization deoptimization} and reuses its frame
+ * {@linkplain Info analysis} and {@linkplain Stubs#unwind unwinding} machinery.
+ * <p>
+ * The values of the locals in the baseline frame are copied into a natively allocated buffer (one word per local)
+ * whose address is passed to the {@linkplain CallEntryPoint#OPTIMIZED_ENTRY_POINT optimized entry point} of the
+ * OSR code in the return register. The baseline frame is then discarded and the OSR code entered as if it had been
+ * called by the caller of the baseline method. The OSR code releases the buffer once it has loaded the values.
+ * Safepoints are disabled from the time the values are copied until then, as the garbage collector
+ * does not know about the references in the buffer.
+ */
+public final class OnStackReplacement {
+
+    private OnStackReplacement() {
+    }
+
+    /**
+     * Determines if an activation of a given baseline method can be migrated. The optimized code returns without
+     * popping any parameters so that the parameter area of the baseline frame must preserve the stack alignment.
+     */
+    public static boolean canMigrate(TargetMethod baselineMethod) {
+        int sizeOfParameters = ((JVMSFrameLayout) baselineMethod.frameLayout()).sizeOfParameters();
+        return sizeOfParameters % target().stackAlignment == 0;
+    }
+
+    /**
+     * Finds the most recent activation of a given method on the current thread's stack.
+     */
+    static final class Finder extends RawStackFrameVisitor {
+        final TargetMethod tm;
+        Pointer ip;
+        Pointer sp;
+        Pointer fp;
+
+        Finder(TargetMethod tm) {
+            this.tm = tm;
+        }
+
+        @Override
+        public boolean visitFrame(StackFrameCursor current, StackFrameCursor callee) {
+            if (current.targetMethod() == tm) {
+                ip = current.ipAsPointer();
+                sp = current.sp();
+                fp = current.fp();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Replaces the most recent activation of {@code baselineMethod} on the current thread's stack with an activation
+     * of {@code osrMethod}. This method does not return.
+     *
+     * @param baselineMethod a baseline method that is executing a backward branch to the loop header at which
+     *            {@code osrMethod} is entered
+     * @param osrMethod the code compiled for entering the method at the loop header
+     */
+    @NEVER_INLINE
+    public static void migrate(TargetMethod baselineMethod, TargetMethod osrMethod) {
+        VmThread thread = VmThread.current();
+        Finder finder = new Finder(baselineMethod);
+        new VmStackFrameWalker(thread.tla()).inspect(Pointer.fromLong(here()), getCpuStackPointer(), getCpuFramePointer(), finder);
+        FatalError.check(finder.ip != null, "baseline frame for on-stack replacement not found");
+
+        Info info = new Info(thread, finder.ip, finder.sp, finder.fp);
+        JVMSFrameLayout layout = (JVMSFrameLayout) baselineMethod.frameLayout();
+        int maxLocals = baselineMethod.classMethodActor.codeAttribute().maxLocals;
+        Pointer buffer = Memory.allocate(Size.fromInt(Math.max(maxLocals, 1) * Word.size()));
+
+        // the optimized code does not pop the parameters pushed by the caller of the baseline code
+        Pointer entrySP = info.returnAddressPointer.plus(layout.sizeOfParameters());
+
+        // No safepoint may occur once the locals (which may include references) are in the buffer.
+        // Safepoints are re-enabled by the OSR code once it has loaded the locals from the buffer.
+        SafepointPoll.disable();
+        for (int i = 0; i < maxLocals; i++) {
+            buffer.setWord(i, info.fp.readWord(layout.localVariableOffset(i)));
+        }
+        entrySP.writeWord(0, info.returnIP.asPointer());
+
+        Stubs.unwindLong(osrMethod.getEntryPoint(CallEntryPoint.OPTIMIZED_ENTRY_POINT).toAddress(), entrySP, info.callerFP, buffer.toLong());
+        FatalError.unexpected("should not reach here");
+    }
+}
@@ -25,12 +25,14 @@ import static com.sun.max.vm.VMOptions.*;
 
 import java.util.concurrent.*;
 
+import com.sun.cri.ci.*;
 import com.sun.max.annotate.*;
 import com.sun.max.vm.*;
 import com.sun.max.vm.actor.member.*;
 import com.sun.max.vm.compiler.*;
 import com.sun.max.vm.compiler.RuntimeCompiler.Nature;
 import com.sun.max.vm.heap.*;
+import com.sun.max.vm.profile.*;
 import com.sun.max.vm.runtime.*;
 import com.sun.max.vm.stack.*;
 import com.sun.max.vm.tele.*;
@@ -118,6 +120,28 @@ public class Compilation {
 
     public final RuntimeCompiler.Nature nature;
 
+    /**
+     * The profile whose entry counter is maintained by the code produced by this compilation, or {@code null}.
+     * Only set for compilations by an intermediate tier whose code is promoted to the
+     * {@linkplain CompilationBroker#topTierCompiler top tier} once the counter overflows.
+     */
+    public MethodProfile.Builder entryCounter;
+
+    /**
+     * The time at which this compilation was queued for a background compilation thread, or 0.
+     */
+    public long enqueueNanos;
+
+    /**
+     * The identifier of this compilation in the {@link CompilationEventLog}, 0 if it is not logged.
+     */
+    private final int eventId;
+
+    /**
+     * The statistics the compiler reports for the {@link CompilationEventLog}, {@code null} if this compilation is not logged.
+     */
+    private final CiStatistics stats;
+
     public Compilation(RuntimeCompiler compiler,
                        ClassMethodActor classMethodActor,
                        Compilations prevCompilations,
@@ -131,6 +155,13 @@ public class Compilation {
         this.compilingThread = compilingThread;
         this.nature = nature;
         this.isDeopt = isDeopt;
+        if (CompilationEventLog.enabled()) {
+            this.eventId = CompilationEventLog.nextId();
+            this.stats = new CiStatistics();
+        } else {
+            this.eventId = 0;
+            this.stats = null;
+        }
 
         for (Compilation scope = parent; scope != null; scope = scope.parent) {
             if (scope.classMethodActor.equals(classMethodActor) && scope.compiler == compiler) {
@@ -278,6 +309,12 @@ public class Compilation {
     public TargetMethod compile() {
         Throwable error = null;
         String methodString = "";
+        long startNanos = 0;
+        int previousEventId = 0;
+        if (stats != null) {
+            startNanos = System.nanoTime();
+            previousEventId = CompilationEventLog.enter(eventId);
+        }
 
         try {
             InspectableCompilationInfo.notifyCompilationEvent(classMethodActor, null);
@@ -292,10 +329,13 @@ public class Compilation {
 
             startCompilationMetricsCollection();
 
-            result = compiler.compile(classMethodActor, isDeopt, true, null);
+            result = compiler.compile(classMethodActor, isDeopt, true, stats);
             if (result == null) {
                 throw new InternalError(classMethodActor.format("Result of compiling of %H.%n(%p) is null"));
             }
+            if (entryCounter != null) {
+                entryCounter.finish(result);
+            }
 
             InspectableCompilationInfo.notifyCompilationEvent(result.classMethodActor, result);
 
@@ -308,6 +348,8 @@ public class Compilation {
             error = t;
         } finally {
             // invariant: (result != null) != (error != null)
+            // counted before the result is published so that a thread waiting for it sees the updated counts
+            CompilationBroker.recordTierTransition(this, result);
             synchronized (classMethodActor) {
                 // update the compilation state of the class method actor
                 if (result != null) {
@@ -331,6 +373,18 @@ public class Compilation {
             }
 
             COMPILATION.set(parent);
+            if (stats != null) {
+                CompilationEventLog.exit(previousEventId);
+            }
+        }
+        if (stats != null) {
+            final long compileNanos = System.nanoTime() - startNanos;
+            if (result != null) {
+                final long queueNanos = enqueueNanos == 0 ? 0 : startNanos - enqueueNanos;
+                CompilationEventLog.compiled(eventId, this, stats, queueNanos, compileNanos);
+            } else {
+                CompilationEventLog.failed(eventId, this, compileNanos);
+            }
         }
         if (error != null) {
             // an error occurred
@@ -0,0 +1,546 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap;
+
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.util.timer.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.log.*;
+import com.sun.max.vm.log.VMLog.Record;
+import com.sun.max.vm.log.hosted.*;
+
+/**
+ * A structured log of garbage collection events, meant for capacity planning rather than GC debugging.
+ * For every collection, the heap scheme reports the time spent in each {@linkplain Phase phase}, the occupancy of
+ * each of its {@linkplain Space spaces} after the collection and the number of bytes promoted. From these this
+ * class derives the bytes reclaimed and the allocation rate of the mutator since the previous collection.
+ * <p>
+ * Events are recorded by the {@link GCEventLogger}, hence are available through the usual {@link VMLogger}
+ * options ({@code -XX:+LogGCEvents}, {@code -XX:+TraceGCEvents}) and to the Inspector. In addition, one line per
+ * collection is appended to the file named by {@link #GCLogFile}, which is rotated once it exceeds
+ * {@link #GCLogFileSize}. Lines are formatted into a natively allocated buffer as collections run on the
+ * VM operation thread with heap allocation disabled.
+ * <p>
+ * A heap scheme reports a collection as follows:
+ * <pre>
+ *     if (GCEventLog.enabled()) {
+ *         GCEventLog.beginCollection(fullGC, reportUsedSpace());
+ *     }
+ *     ... collect, timing phases if {@link Heap#timeGCPhases()} ...
+ *     if (GCEventLog.enabled()) {
+ *         GCEventLog.phaseTime(GCEventLog.Phase.ROOTS, rootScanTime);
+ *         GCEventLog.spaceOccupancy(GCEventLog.Space.HEAP, reportUsedSpace(), committedSpace);
+ *         GCEventLog.endCollection(reportUsedSpace(), promotedBytes);
+ *     }
+ * </pre>
+ * Phase times are expressed in the unit of {@link HeapScheme#GC_TIMING_CLOCK}. Phases that a scheme does not
+ * time are reported as 0.
+ */
+public final class GCEventLog {
+
+    /**
+     * The file to which GC events are appended, one line per collection.
+     */
+    public static String GCLogFile;
+
+    /**
+     * The size beyond which the {@linkplain #GCLogFile GC log file} is rotated. No rotation is performed if zero.
+     */
+    public static Size GCLogFileSize = Size.M.times(8);
+
+    /**
+     * The number of GC log files kept, including the one being written.
+     */
+    public static int NumberOfGCLogFiles = 5;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "GCLogFile", GCEventLog.class,
+            "Append a line describing each garbage collection to the given file.", MaxineVM.Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "GCLogFileSize", GCEventLog.class,
+            "Rotate the GC log file once it exceeds this size (0 disables rotation).", MaxineVM.Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "NumberOfGCLogFiles", GCEventLog.class,
+            "Number of rotated GC log files to keep.", MaxineVM.Phase.STARTING);
+    }
+
+    /**
+     * The phases of a collection whose times are recorded.
+     */
+    public enum Phase {
+        ROOTS("roots"),
+        MARKING("marking"),
+        CARD_SCAN("cardScan"),
+        EVACUATION("evacuation"),
+        SWEEP("sweep"),
+        REFERENCE_PROCESSING("references");
+
+        public final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public static final Phase[] VALUES = values();
+    }
+
+    /**
+     * The spaces whose occupancy is recorded. Schemes with a single space report it as {@link #HEAP}.
+     */
+    public enum Space {
+        HEAP("heap"),
+        YOUNG("young"),
+        OLD("old");
+
+        public final String label;
+
+        Space(String label) {
+            this.label = label;
+        }
+
+        public static final Space[] VALUES = values();
+    }
+
+    public static final GCEventLogger logger = new GCEventLogger();
+
+    private static final String TIME_UNIT = TimerUtil.getHzSuffix(HeapScheme.GC_TIMING_CLOCK);
+
+    private static final int LINE_BUFFER_SIZE = 1024;
+
+    private static boolean fileOpen;
+    private static Pointer line = Pointer.zero();
+    private static int linePosition;
+
+    private static long vmStartNanos;
+
+    // state of the collection in progress
+    private static int gcId;
+    private static boolean fullGC;
+    private static long startNanos;
+    private static Size usedBefore = Size.zero();
+    private static long allocationRate;
+    private static final long[] phaseTimes = new long[Phase.VALUES.length];
+    private static final long[] spaceUsed = new long[Space.VALUES.length];
+    private static final long[] spaceCommitted = new long[Space.VALUES.length];
+    private static int spacesReported;
+
+    // state at the end of the last collection
+    private static long lastEndNanos;
+    private static Size lastUsedAfter = Size.zero();
+    private static long lastPauseNanos;
+    private static Size lastReclaimed = Size.zero();
+    private static Size lastPromoted = Size.zero();
+
+    private GCEventLog() {
+    }
+
+    /**
+     * Opens the {@linkplain #GCLogFile GC log file}, if any. Called once the VM options have been parsed.
+     * Collections before this point are recorded by the {@link #logger} only.
+     */
+    public static void initialize() {
+        vmStartNanos = System.nanoTime();
+        lastEndNanos = vmStartNanos;
+        if (GCLogFile != null) {
+            line = Memory.allocate(Size.fromInt(LINE_BUFFER_SIZE));
+            final Pointer path = CString.utf8FromJava(GCLogFile);
+            final int result = gcLog_open(path, GCLogFileSize.toLong(), NumberOfGCLogFiles);
+            Memory.deallocate(path);
+            fileOpen = result == 0 && !line.isZero();
+        }
+    }
+
+    /**
+     * Determines if GC events are being recorded, in which case the heap scheme must report its collections.
+     */
+    @INLINE
+    public static boolean enabled() {
+        return fileOpen || logger.enabled();
+    }
+
+    /**
+     * Notes the start of a collection.
+     *
+     * @param full {@code true} if the whole heap is collected, {@code false} for a young generation collection
+     * @param used the bytes in use in the whole heap before the collection, as given by
+     *            {@link HeapScheme#reportUsedSpace()}, whichever spaces are collected
+     */
+    public static void beginCollection(boolean full, Size used) {
+        startNanos = System.nanoTime();
+        gcId++;
+        fullGC = full;
+        usedBefore = used;
+        for (int i = 0; i < phaseTimes.length; i++) {
+            phaseTimes[i] = 0;
+        }
+        spacesReported = 0;
+        final Size allocated = allocatedSinceLastCollection();
+        final long mutatorNanos = startNanos - lastEndNanos;
+        allocationRate = mutatorNanos <= 0 ? 0 : (long) (allocated.toLong() * 1e9 / mutatorNanos);
+        logger.logBeginCollection(gcId, full, used, allocated, allocationRate);
+    }
+
+    /**
+     * Records the time spent in a phase of the current collection. Times of the same phase are accumulated.
+     *
+     * @param time the time in the unit of {@link HeapScheme#GC_TIMING_CLOCK}
+     */
+    public static void phaseTime(Phase phase, long time) {
+        phaseTimes[phase.ordinal()] += time;
+        logger.logPhaseTime(gcId, phase.ordinal(), time);
+    }
+
+    /**
+     * Records the occupancy of a space at the end of the current collection.
+     */
+    public static void spaceOccupancy(Space space, Size used, Size committed) {
+        spaceUsed[space.ordinal()] = used.toLong();
+        spaceCommitted[space.ordinal()] = committed.toLong();
+        spacesReported |= 1 << space.ordinal();
+        logger.logSpaceOccupancy(gcId, space.ordinal(), used, committed);
+    }
+
+    /**
+     * Notes the end of the current collection and writes its event to the log file.
+     *
+     * @param usedAfter the bytes in use in the whole heap after the collection, as given by
+     *            {@link HeapScheme#reportUsedSpace()}
+     * @param promoted the bytes promoted from the young to the old generation
+     */
+    public static void endCollection(Size usedAfter, Size promoted) {
+        final long endNanos = System.nanoTime();
+        lastPauseNanos = endNanos - startNanos;
+        lastReclaimed = usedBefore.greaterThan(usedAfter) ? usedBefore.minus(usedAfter).asSize() : Size.zero();
+        lastPromoted = promoted;
+        lastUsedAfter = usedAfter;
+        lastEndNanos = endNanos;
+        logger.logEndCollection(gcId, lastPauseNanos, usedAfter, lastReclaimed, promoted);
+        if (fileOpen) {
+            writeEvent(usedAfter);
+        }
+    }
+
+    private static Size allocatedSinceLastCollection() {
+        return usedBefore.greaterThan(lastUsedAfter) ? usedBefore.minus(lastUsedAfter).asSize() : Size.zero();
+    }
+
+    /**
+     * Number of collections recorded so far.
+     */
+    public static int collectionCount() {
+        return gcId;
+    }
+
+    /**
+     * Duration of the last collection, in nanoseconds.
+     */
+    public static long lastPauseNanos() {
+        return lastPauseNanos;
+    }
+
+    /**
+     * Bytes reclaimed by the last collection.
+     */
+    public static Size lastReclaimed() {
+        return lastReclaimed;
+    }
+
+    /**
+     * Bytes promoted by the last collection.
+     */
+    public static Size lastPromoted() {
+        return lastPromoted;
+    }
+
+    /**
+     * Allocation rate of the mutator, in bytes per second, between the last two collections.
+     */
+    public static long lastAllocationRate() {
+        return allocationRate;
+    }
+
+    /*
+     * Formatting of the log file lines. A line looks like:
+     *
+     * [1.234s] gc=3 type=young pause=0.812ms roots=0 marking=0 cardScan=0 evacuation=1 sweep=0 references=0 (ms)
+     *     used=1048576->262144 reclaimed=786432 promoted=4096 allocRate=52428800B/s young=0/2097152 old=266240/4194304
+     *
+     * (on a single line), where space occupancies are given as used/committed bytes.
+     */
+
+    private static void writeEvent(Size usedAfter) {
+        linePosition = 0;
+        put('[');
+        putMillis(startNanos - vmStartNanos, 1000000);
+        put("s] gc=");
+        put(gcId);
+        put(fullGC ? " type=full" : " type=young");
+        put(" pause=");
+        putMillis(lastPauseNanos, 1000);
+        put("ms");
+        for (Phase phase : Phase.VALUES) {
+            put(' ');
+            put(phase.label);
+            put('=');
+            put(phaseTimes[phase.ordinal()]);
+        }
+        put(" (");
+        put(TIME_UNIT);
+        put(") used=");
+        put(usedBefore.toLong());
+        put("->");
+        put(usedAfter.toLong());
+        put(" reclaimed=");
+        put(lastReclaimed.toLong());
+        put(" promoted=");
+        put(lastPromoted.toLong());
+        put(" allocRate=");
+        put(allocationRate);
+        put("B/s");
+        for (Space space : Space.VALUES) {
+            if ((spacesReported & (1 << space.ordinal())) != 0) {
+                put(' ');
+                put(space.label);
+                put('=');
+                put(spaceUsed[space.ordinal()]);
+                put('/');
+                put(spaceCommitted[space.ordinal()]);
+            }
+        }
+        // put() keeps the last byte free, so a truncated line still ends with a newline.
+        line.writeByte(linePosition++, (byte) '\n');
+        if (gcLog_write(line, linePosition) != 0) {
+            Log.println("Error writing GC log file, GC events will no longer be written to it");
+            fileOpen = false;
+        }
+    }
+
+    private static void put(char c) {
+        if (linePosition < LINE_BUFFER_SIZE - 1) {
+            line.writeByte(linePosition++, (byte) c);
+        }
+    }
+
+    private static void put(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            put(s.charAt(i));
+        }
+    }
+
+    private static void put(long value) {
+        if (value < 0) {
+            put('-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            put((char) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+    /**
+     * Prints {@code value / unit} with three decimals.
+     */
+    private static void putMillis(long value, long unit) {
+        final long thousandths = value / (unit / 1000);
+        put(thousandths / 1000);
+        put('.');
+        final long fraction = thousandths % 1000;
+        if (fraction < 100) {
+            put('0');
+        }
+        if (fraction < 10) {
+            put('0');
+        }
+        put(fraction);
+    }
+
+    @C_FUNCTION
+    private static native int gcLog_open(Pointer path, long fileSize, int fileCount);
+
+    @C_FUNCTION
+    private static native int gcLog_write(Pointer buffer, int length);
+
+    /*
+     * Logging support.
+     */
+
+    @HOSTED_ONLY
+    @VMLoggerInterface
+    private interface GCEventLoggerInterface {
+        void beginCollection(
+            @VMLogParam(name = "gcId") int gcId,
+            @VMLogParam(name = "full") boolean full,
+            @VMLogParam(name = "usedBefore") Size usedBefore,
+            @VMLogParam(name = "allocated") Size allocated,
+            @VMLogParam(name = "allocationRate") long allocationRate);
+
+        void phaseTime(
+            @VMLogParam(name = "gcId") int gcId,
+            @VMLogParam(name = "phase") int phase,
+            @VMLogParam(name = "time") long time);
+
+        void spaceOccupancy(
+            @VMLogParam(name = "gcId") int gcId,
+            @VMLogParam(name = "space") int space,
+            @VMLogParam(name = "used") Size used,
+            @VMLogParam(name = "committed") Size committed);
+
+        void endCollection(
+            @VMLogParam(name = "gcId") int gcId,
+            @VMLogParam(name = "pauseNanos") long pauseNanos,
+            @VMLogParam(name = "usedAfter") Size usedAfter,
+            @VMLogParam(name = "reclaimed") Size reclaimed,
+            @VMLogParam(name = "promoted") Size promoted);
+    }
+
+    public static final class GCEventLogger extends GCEventLoggerAuto {
+        GCEventLogger() {
+            super("GCEvents", "garbage collection events.");
+        }
+
+        @Override
+        protected void traceBeginCollection(int gcId, boolean full, Size usedBefore, Size allocated, long allocationRate) {
+            Log.print(full ? "Begin full GC " : "Begin young GC ");
+            Log.print(gcId);
+            Log.print(": used=");
+            Log.print(usedBefore.toLong());
+            Log.print(", allocated since last GC=");
+            Log.print(allocated.toLong());
+            Log.print(", allocation rate=");
+            Log.print(allocationRate);
+            Log.println(" B/s");
+        }
+
+        @Override
+        protected void tracePhaseTime(int gcId, int phase, long time) {
+            Log.print("  GC ");
+            Log.print(gcId);
+            Log.print(' ');
+            Log.print(Phase.VALUES[phase].label);
+            Log.print(": ");
+            Log.print(time);
+            Log.print(' ');
+            Log.println(TIME_UNIT);
+        }
+
+        @Override
+        protected void traceSpaceOccupancy(int gcId, int space, Size used, Size committed) {
+            Log.print("  GC ");
+            Log.print(gcId);
+            Log.print(' ');
+            Log.print(Space.VALUES[space].label);
+            Log.print(": used=");
+            Log.print(used.toLong());
+            Log.print(", committed=");
+            Log.println(committed.toLong());
+        }
+
+        @Override
+        protected void traceEndCollection(int gcId, long pauseNanos, Size usedAfter, Size reclaimed, Size promoted) {
+            Log.print("End GC ");
+            Log.print(gcId);
+            Log.print(": pause=");
+            Log.print(pauseNanos / 1000);
+            Log.print(" us, used=");
+            Log.print(usedAfter.toLong());
+            Log.print(", reclaimed=");
+            Log.print(reclaimed.toLong());
+            Log.print(", promoted=");
+            Log.println(promoted.toLong());
+        }
+    }
+
+// START GENERATED CODE
+    private static abstract class GCEventLoggerAuto extends com.sun.max.vm.log.VMLogger {
+        public enum Operation {
+            BeginCollection, EndCollection, PhaseTime, SpaceOccupancy;
+
+            @SuppressWarnings("hiding")
+            public static final Operation[] VALUES = values();
+        }
+
+        private static final int[] REFMAPS = null;
+
+        protected GCEventLoggerAuto(String name, String optionDescription) {
+            super(name, Operation.VALUES.length, optionDescription, REFMAPS);
+        }
+
+        @Override
+        public String operationName(int opCode) {
+            return Operation.VALUES[opCode].name();
+        }
+
+        @INLINE
+        public final void logBeginCollection(int gcId, boolean full, Size usedBefore, Size allocated, long allocationRate) {
+            log(Operation.BeginCollection.ordinal(), intArg(gcId), booleanArg(full), usedBefore, allocated, longArg(allocationRate));
+        }
+        protected abstract void traceBeginCollection(int gcId, boolean full, Size usedBefore, Size allocated, long allocationRate);
+
+        @INLINE
+        public final void logEndCollection(int gcId, long pauseNanos, Size usedAfter, Size reclaimed, Size promoted) {
+            log(Operation.EndCollection.ordinal(), intArg(gcId), longArg(pauseNanos), usedAfter, reclaimed, promoted);
+        }
+        protected abstract void traceEndCollection(int gcId, long pauseNanos, Size usedAfter, Size reclaimed, Size promoted);
+
+        @INLINE
+        public final void logPhaseTime(int gcId, int phase, long time) {
+            log(Operation.PhaseTime.ordinal(), intArg(gcId), intArg(phase), longArg(time));
+        }
+        protected abstract void tracePhaseTime(int gcId, int phase, long time);
+
+        @INLINE
+        public final void logSpaceOccupancy(int gcId, int space, Size used, Size committed) {
+            log(Operation.SpaceOccupancy.ordinal(), intArg(gcId), intArg(space), used, committed);
+        }
+        protected abstract void traceSpaceOccupancy(int gcId, int space, Size used, Size committed);
+
+        @Override
+        protected void trace(Record r) {
+            switch (r.getOperation()) {
+                case 0: { //BeginCollection
+                    traceBeginCollection(toInt(r, 1), toBoolean(r, 2), toSize(r, 3), toSize(r, 4), toLong(r, 5));
+                    break;
+                }
+                case 1: { //EndCollection
+                    traceEndCollection(toInt(r, 1), toLong(r, 2), toSize(r, 3), toSize(r, 4), toSize(r, 5));
+                    break;
+                }
+                case 2: { //PhaseTime
+                    tracePhaseTime(toInt(r, 1), toInt(r, 2), toLong(r, 3));
+                    break;
+                }
+                case 3: { //SpaceOccupancy
+                    traceSpaceOccupancy(toInt(r, 1), toInt(r, 2), toSize(r, 3), toSize(r, 4));
+                    break;
+                }
+            }
+        }
+    }
+
+// END GENERATED CODE
+}
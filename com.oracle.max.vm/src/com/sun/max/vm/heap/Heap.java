@@ -812,6 +812,15 @@ public final class Heap {
         return (gcAllLogger.enabled() || timeLogger.enabled()) && LogGCSuppressionCount <= 0;
     }
 
+    /**
+     * Determines if the timers of the garbage collection phases should run, either to log the timings
+     * or to record them in the {@link GCEventLog}.
+     */
+    @INLINE
+    public static boolean timeGCPhases() {
+        return logGCTime() || GCEventLog.enabled();
+    }
+
     /**
      * Disables phase, time and roots logging if greater than 0.
      */
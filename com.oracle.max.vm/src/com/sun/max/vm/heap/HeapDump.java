@@ -0,0 +1,745 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap;
+
+import static com.sun.max.vm.VMConfiguration.*;
+
+import java.io.*;
+
+import sun.misc.*;
+
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.layout.*;
+import com.sun.max.vm.reference.*;
+import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.thread.*;
+import com.sun.max.vm.type.*;
+
+/**
+ * A VM operation that writes a snapshot of the heap in the HPROF binary format (version 1.0.2) understood by
+ * the usual heap analysis tools. A dump can be requested by the {@linkplain #dump(String, boolean) management
+ * interface}, by a {@linkplain #HeapDumpSignal signal} or automatically on the first {@link OutOfMemoryError}.
+ * <p>
+ * The heap is walked with {@link HeapScheme#walkHeap(CallbackCellVisitor)} while all mutator threads are stopped.
+ * Nothing is allocated on the Java heap while dumping: records are encoded into a large natively allocated buffer
+ * that is written to the file each time it fills up. Objects are identified by their origin and classes by the
+ * origin of their {@link ClassActor}. Class actors and static tuples are therefore emitted as class dumps instead
+ * of instance dumps. A first pass over the heap emits the names and load records of all classes, a second pass
+ * emits the GC roots and the heap dump proper.
+ * <p>
+ * The GC roots reported are the thread objects, the objects with an inflated monitor, the mutable references in
+ * the boot heap and the classes in the boot heap. References held only by stack frames are not reported.
+ */
+public final class HeapDump extends VmOperation implements SignalHandler {
+
+    /**
+     * Write a heap dump on the first {@link OutOfMemoryError}.
+     */
+    public static boolean HeapDumpOnOutOfMemoryError;
+
+    /**
+     * The file or directory to which automatic heap dumps are written.
+     */
+    public static String HeapDumpPath;
+
+    /**
+     * The name of a signal (e.g. "USR2") on which a heap dump is written.
+     */
+    public static String HeapDumpSignal;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "HeapDumpOnOutOfMemoryError", HeapDump.class,
+            "Write a heap dump in HPROF format when the first OutOfMemoryError is thrown.", MaxineVM.Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "HeapDumpPath", HeapDump.class,
+            "File or directory for heap dumps written on an OutOfMemoryError or a signal (default: java_pid<pid>.hprof).",
+            MaxineVM.Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "HeapDumpSignal", HeapDump.class,
+            "Name of a signal (e.g. USR2) that writes a heap dump when received.", MaxineVM.Phase.STARTING);
+    }
+
+    /**
+     * Size of the output buffer. It bounds the size of the heap dump segments.
+     */
+    private static final int BUFFER_SIZE = 8 * 1024 * 1024;
+
+    // HPROF top-level record tags
+    private static final int HPROF_UTF8 = 0x01;
+    private static final int HPROF_LOAD_CLASS = 0x02;
+    private static final int HPROF_TRACE = 0x05;
+    private static final int HPROF_HEAP_DUMP_SEGMENT = 0x1C;
+    private static final int HPROF_HEAP_DUMP_END = 0x2C;
+
+    // HPROF heap dump sub-record tags
+    private static final int HPROF_GC_ROOT_UNKNOWN = 0xFF;
+    private static final int HPROF_GC_ROOT_STICKY_CLASS = 0x05;
+    private static final int HPROF_GC_ROOT_MONITOR_USED = 0x07;
+    private static final int HPROF_GC_ROOT_THREAD_OBJ = 0x08;
+    private static final int HPROF_GC_CLASS_DUMP = 0x20;
+    private static final int HPROF_GC_INSTANCE_DUMP = 0x21;
+    private static final int HPROF_GC_OBJ_ARRAY_DUMP = 0x22;
+    private static final int HPROF_GC_PRIM_ARRAY_DUMP = 0x23;
+
+    // HPROF basic types
+    private static final int HPROF_NORMAL_OBJECT = 2;
+    private static final int HPROF_BOOLEAN = 4;
+    private static final int HPROF_CHAR = 5;
+    private static final int HPROF_FLOAT = 6;
+    private static final int HPROF_DOUBLE = 7;
+    private static final int HPROF_BYTE = 8;
+    private static final int HPROF_SHORT = 9;
+    private static final int HPROF_INT = 10;
+    private static final int HPROF_LONG = 11;
+
+    /**
+     * Serial number of the single (empty) stack trace referred to by all objects.
+     */
+    private static final int STACK_TRACE_SERIAL = 1;
+
+    private static final int RECORD_HEADER_SIZE = 9;
+
+    private static final HeapDump operation = new HeapDump();
+
+    /**
+     * The value of {@link #HeapDumpPath} as a C string, converted at startup so that no allocation is required
+     * to dump on an {@link OutOfMemoryError}.
+     */
+    private static Pointer heapDumpPath = Pointer.zero();
+
+    private static boolean dumpedOnOutOfMemoryError;
+
+    private static int signalDumps;
+
+    private final int idSize = Word.size();
+
+    // the arguments and result of the current dump
+    private Pointer path;
+    private int sequence;
+    private int result;
+
+    // the output buffer
+    private int fd;
+    private Pointer buffer;
+    private int position;
+    private long written;
+
+    /**
+     * The buffer position of the header of the open heap dump segment or -1 if there is none.
+     */
+    private int segmentStart;
+
+    private HeapDump() {
+        super("HeapDump", null, Mode.Safepoint);
+    }
+
+    /**
+     * Installs the {@linkplain #HeapDumpSignal signal handler} and prepares for dumping on an
+     * {@link OutOfMemoryError}. Called once the VM options have been parsed.
+     */
+    public static void initialize() {
+        if (HeapDumpPath != null) {
+            heapDumpPath = CString.utf8FromJava(HeapDumpPath);
+        }
+        if (HeapDumpSignal != null) {
+            Signal.handle(new Signal(HeapDumpSignal), operation);
+        }
+    }
+
+    /**
+     * Writes a heap dump to a given file.
+     *
+     * @param fileName the file to create. It must not already exist.
+     * @param live if {@code true}, a garbage collection is performed first so that only live objects are dumped
+     * @throws IOException if the file could not be created or written
+     */
+    public static void dump(String fileName, boolean live) throws IOException {
+        if (live) {
+            Heap.collectGarbage();
+        }
+        final Pointer cFileName = CString.utf8FromJava(fileName);
+        final int error;
+        try {
+            error = dump(cFileName, 0);
+        } finally {
+            Memory.deallocate(cFileName);
+        }
+        if (error != 0) {
+            throw new IOException("Heap dump to " + fileName + " failed with errno " + -error);
+        }
+    }
+
+    /**
+     * Writes a heap dump if {@link #HeapDumpOnOutOfMemoryError} is enabled and this is the first
+     * {@link OutOfMemoryError}.
+     */
+    public static void dumpOnOutOfMemoryError() {
+        if (HeapDumpOnOutOfMemoryError && !dumpedOnOutOfMemoryError && !VmThread.current().isVmOperationThread()) {
+            dumpedOnOutOfMemoryError = true;
+            dump(heapDumpPath, 0);
+        }
+    }
+
+    public void handle(Signal signal) {
+        dump(heapDumpPath, ++signalDumps);
+    }
+
+    private static int dump(Pointer path, int sequence) {
+        synchronized (operation) {
+            operation.path = path;
+            operation.sequence = sequence;
+            operation.submit();
+            return operation.result;
+        }
+    }
+
+    @Override
+    protected boolean disablesHeapAllocation() {
+        return true;
+    }
+
+    @Override
+    protected void doIt() {
+        final long start = System.currentTimeMillis();
+        walkable = false;
+        vmConfig().heapScheme().walkHeap(walkProbe);
+        if (!walkable) {
+            Log.println("Heap dump failed: the heap scheme does not support walking the heap");
+            result = -95; // EOPNOTSUPP
+            return;
+        }
+        fd = heapDump_open(path, sequence);
+        if (fd < 0) {
+            result = fd;
+            return;
+        }
+        result = 0;
+        position = 0;
+        written = 0;
+        segmentStart = -1;
+        buffer = Memory.allocate(Size.fromInt(BUFFER_SIZE));
+        if (buffer.isZero()) {
+            Log.println("Unable to allocate heap dump buffer");
+            result = -12; // ENOMEM
+        } else {
+            writeHeader(start);
+            vmConfig().heapScheme().walkHeap(classVisitor);
+            writeStackTrace();
+            writeRoots();
+            vmConfig().heapScheme().walkHeap(objectVisitor);
+            endSegment();
+            beginRecord(HPROF_HEAP_DUMP_END, 0);
+            flush();
+            Memory.deallocate(buffer);
+            buffer = Pointer.zero();
+        }
+        final int closeResult = heapDump_close(fd);
+        if (result == 0) {
+            result = closeResult;
+        }
+        if (result == 0) {
+            Log.print("Heap dump file created [");
+            Log.print(written);
+            Log.print(" bytes in ");
+            Log.print(System.currentTimeMillis() - start);
+            Log.println(" ms]");
+        } else {
+            Log.print("Heap dump failed with errno ");
+            Log.println(-result);
+        }
+    }
+
+    // The output buffer
+
+    private void flush() {
+        if (position > 0 && result == 0) {
+            result = heapDump_write(fd, buffer, position);
+            written += position;
+        }
+        position = 0;
+    }
+
+    /**
+     * Ensures there is space for {@code n} more bytes in the buffer. A sub-record in a buffered segment is
+     * always known to fit so that the buffer is never flushed in the middle of such a segment.
+     */
+    private void ensure(int n) {
+        if (position + n > BUFFER_SIZE) {
+            assert segmentStart < 0 : "cannot flush an open heap dump segment";
+            flush();
+        }
+    }
+
+    private void u1(int value) {
+        ensure(1);
+        buffer.writeByte(position++, (byte) value);
+    }
+
+    private void u2(int value) {
+        ensure(2);
+        buffer.writeByte(position, (byte) (value >> 8));
+        buffer.writeByte(position + 1, (byte) value);
+        position += 2;
+    }
+
+    private void u4(int value) {
+        ensure(4);
+        writeInt(position, value);
+        position += 4;
+    }
+
+    private void writeInt(int offset, int value) {
+        buffer.writeByte(offset, (byte) (value >> 24));
+        buffer.writeByte(offset + 1, (byte) (value >> 16));
+        buffer.writeByte(offset + 2, (byte) (value >> 8));
+        buffer.writeByte(offset + 3, (byte) value);
+    }
+
+    private void u8(long value) {
+        u4((int) (value >>> 32));
+        u4((int) value);
+    }
+
+    private void id(Word value) {
+        if (idSize == 8) {
+            u8(value.asAddress().toLong());
+        } else {
+            u4(value.asAddress().toInt());
+        }
+    }
+
+    private void id(Object object) {
+        id(object == null ? Pointer.zero() : Reference.fromJava(object).toOrigin());
+    }
+
+    // Records
+
+    private void writeHeader(long timeMillis) {
+        final String format = "JAVA PROFILE 1.0.2";
+        for (int i = 0; i < format.length(); i++) {
+            u1(format.charAt(i));
+        }
+        u1(0);
+        u4(idSize);
+        u8(timeMillis);
+    }
+
+    private void beginRecord(int tag, int length) {
+        u1(tag);
+        u4(0);
+        u4(length);
+    }
+
+    /**
+     * Prepares for writing a heap dump sub-record of a given size, starting a new heap dump segment if the
+     * current one cannot hold it. A sub-record larger than the buffer gets a segment of its own that is streamed
+     * through the buffer.
+     */
+    private void beginSubRecord(long size) {
+        if (segmentStart >= 0 && position + size > BUFFER_SIZE) {
+            endSegment();
+        }
+        if (segmentStart < 0) {
+            if (position + RECORD_HEADER_SIZE + size > BUFFER_SIZE) {
+                flush();
+            }
+            if (RECORD_HEADER_SIZE + size <= BUFFER_SIZE) {
+                final int start = position;
+                beginRecord(HPROF_HEAP_DUMP_SEGMENT, 0);
+                segmentStart = start;
+            } else {
+                beginRecord(HPROF_HEAP_DUMP_SEGMENT, (int) size);
+            }
+        }
+    }
+
+    private void endSegment() {
+        if (segmentStart >= 0) {
+            writeInt(segmentStart + 5, position - segmentStart - RECORD_HEADER_SIZE);
+            segmentStart = -1;
+        }
+    }
+
+    /**
+     * Writes a UTF8 record for a string identified by a given object.
+     *
+     * @param id the object identifying the string
+     * @param s the string
+     * @param typeDescriptor if {@code true}, {@code s} is a type descriptor which is converted to the name format of
+     *            HPROF, i.e. the leading 'L' and trailing ';' of a class type are removed
+     */
+    private void writeUtf8(Object id, String s, boolean typeDescriptor) {
+        int start = 0;
+        int end = s.length();
+        if (typeDescriptor && s.charAt(0) == 'L') {
+            start = 1;
+            end--;
+        }
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            length += utf8Length(s.charAt(i));
+        }
+        beginRecord(HPROF_UTF8, idSize + length);
+        id(id);
+        for (int i = start; i < end; i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                u1(c);
+            } else if (c <= 0x07FF) {
+                u1(0xC0 | (c >> 6));
+                u1(0x80 | (c & 0x3F));
+            } else {
+                u1(0xE0 | (c >> 12));
+                u1(0x80 | ((c >> 6) & 0x3F));
+                u1(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static int utf8Length(char c) {
+        if (c >= 0x0001 && c <= 0x007F) {
+            return 1;
+        }
+        return c <= 0x07FF ? 2 : 3;
+    }
+
+    private void writeStackTrace() {
+        beginRecord(HPROF_TRACE, 12);
+        u4(STACK_TRACE_SERIAL);
+        u4(0);
+        u4(0);
+    }
+
+    /**
+     * Determines if a given class actor is represented by a class dump. Primitive types are not, as in HotSpot
+     * heap dumps.
+     */
+    private static boolean isDumpedClass(ClassActor classActor) {
+        return !classActor.isPrimitiveClassActor();
+    }
+
+    private boolean walkable;
+
+    /**
+     * Stops at the first object visited, to detect a heap scheme whose {@link HeapScheme#walkHeap(CallbackCellVisitor)}
+     * visits nothing and would produce an empty dump.
+     */
+    private final CallbackCellVisitor walkProbe = new CallbackCellVisitor() {
+        @Override
+        protected boolean callback(Object object) {
+            walkable = true;
+            return false;
+        }
+    };
+
+    /**
+     * Emits the name and the load record of each class as well as the names of its fields.
+     */
+    private final CallbackCellVisitor classVisitor = new CallbackCellVisitor() {
+        @Override
+        protected boolean callback(Object object) {
+            if (object instanceof ClassActor) {
+                final ClassActor classActor = (ClassActor) object;
+                if (isDumpedClass(classActor)) {
+                    writeUtf8(classActor.typeDescriptor, classActor.typeDescriptor.string, true);
+                    beginRecord(HPROF_LOAD_CLASS, 8 + 2 * idSize);
+                    u4(classActor.id);
+                    id(classActor);
+                    u4(STACK_TRACE_SERIAL);
+                    id(classActor.typeDescriptor);
+                    writeFieldNames(classActor.localStaticFieldActors());
+                    writeFieldNames(classActor.localInstanceFieldActors());
+                }
+            }
+            return result == 0;
+        }
+    };
+
+    private void writeFieldNames(FieldActor[] fieldActors) {
+        for (FieldActor fieldActor : fieldActors) {
+            writeUtf8(fieldActor.name, fieldActor.name.string, false);
+        }
+    }
+
+    private final Pointer.Procedure threadRootVisitor = new Pointer.Procedure() {
+        public void run(Pointer tla) {
+            final VmThread vmThread = VmThread.fromTLA(tla);
+            final Thread thread = vmThread.javaThread();
+            if (thread != null) {
+                beginSubRecord(1 + idSize + 8);
+                u1(HPROF_GC_ROOT_THREAD_OBJ);
+                id(thread);
+                u4(vmThread.id());
+                u4(STACK_TRACE_SERIAL);
+            }
+        }
+    };
+
+    /**
+     * Reports the objects referenced from the boot heap or from inflated monitors as roots.
+     */
+    private final class RootVisitor extends PointerIndexVisitor {
+        int tag;
+
+        @Override
+        public void visit(Pointer pointer, int wordIndex) {
+            final Pointer origin = pointer.getReference(wordIndex).toOrigin();
+            if (!origin.isZero()) {
+                beginSubRecord(1 + idSize);
+                u1(tag);
+                id(origin);
+            }
+        }
+    }
+
+    private final RootVisitor rootVisitor = new RootVisitor();
+
+    private void writeRoots() {
+        VmThreadMap.ACTIVE.forAllThreadLocals(null, threadRootVisitor);
+        rootVisitor.tag = HPROF_GC_ROOT_MONITOR_USED;
+        vmConfig().monitorScheme().scanReferences(rootVisitor);
+        rootVisitor.tag = HPROF_GC_ROOT_UNKNOWN;
+        Heap.bootHeapRegion.visitReferences(rootVisitor);
+    }
+
+    /**
+     * Emits a class dump, instance dump or array dump for each object.
+     */
+    private final CallbackCellVisitor objectVisitor = new CallbackCellVisitor() {
+        @Override
+        protected boolean callback(Object object) {
+            final Pointer origin = Reference.fromJava(object).toOrigin();
+            final Hub hub = UnsafeCast.asHub(Layout.readHubReference(origin).toJava());
+            final SpecificLayout specificLayout = hub.specificLayout;
+            if (object instanceof ClassActor) {
+                final ClassActor classActor = (ClassActor) object;
+                if (isDumpedClass(classActor)) {
+                    writeClassDump(classActor);
+                }
+            } else if (hub instanceof StaticHub) {
+                // static fields are part of the class dump
+            } else if (specificLayout.isReferenceArrayLayout()) {
+                writeObjectArrayDump(origin, hub.classActor);
+            } else if (specificLayout.isArrayLayout()) {
+                writePrimitiveArrayDump(origin, ((ArrayLayout) specificLayout).elementKind());
+            } else {
+                writeInstanceDump(origin, hub.classActor);
+            }
+            return result == 0;
+        }
+    };
+
+    private void writeClassDump(ClassActor classActor) {
+        final FieldActor[] staticFields = classActor.localStaticFieldActors();
+        final FieldActor[] instanceFields = classActor.localInstanceFieldActors();
+        final Object staticTuple = classActor.staticTuple();
+        final int staticCount = staticTuple == null ? 0 : staticFields.length;
+        long size = 1 + 7 * idSize + 4 + 4 + 2 + 2 + 2 + instanceFields.length * (idSize + 1);
+        for (int i = 0; i < staticCount; i++) {
+            size += idSize + 1 + typeSize(hprofType(staticFields[i].kind));
+        }
+
+        final boolean isBootClass = classActor.classLoader == null || classActor.classLoader == BootClassLoader.BOOT_CLASS_LOADER;
+        if (isBootClass) {
+            beginSubRecord(1 + idSize);
+            u1(HPROF_GC_ROOT_STICKY_CLASS);
+            id(classActor);
+        }
+
+        beginSubRecord(size);
+        u1(HPROF_GC_CLASS_DUMP);
+        id(classActor);
+        u4(STACK_TRACE_SERIAL);
+        id(classActor.superClassActor);
+        id(isBootClass ? null : classActor.classLoader);
+        id(Pointer.zero()); // signers
+        id(Pointer.zero()); // protection domain
+        id(Pointer.zero()); // reserved
+        id(Pointer.zero()); // reserved
+        u4(classActor.isTupleClass() || classActor.isHybridClass() ? classActor.dynamicTupleSize().toInt() : 0);
+        u2(0); // constant pool
+        u2(staticCount);
+        if (staticCount != 0) {
+            final Pointer staticOrigin = Reference.fromJava(staticTuple).toOrigin();
+            for (int i = 0; i < staticCount; i++) {
+                final FieldActor fieldActor = staticFields[i];
+                final int type = hprofType(fieldActor.kind);
+                id(fieldActor.name);
+                u1(type);
+                writeValue(staticOrigin, fieldActor.offset(), type);
+            }
+        }
+        u2(instanceFields.length);
+        for (FieldActor fieldActor : instanceFields) {
+            id(fieldActor.name);
+            u1(hprofType(fieldActor.kind));
+        }
+    }
+
+    private void writeInstanceDump(Pointer origin, ClassActor classActor) {
+        int fieldsSize = 0;
+        for (ClassActor c = classActor; c != null; c = c.superClassActor) {
+            for (FieldActor fieldActor : c.localInstanceFieldActors()) {
+                fieldsSize += typeSize(hprofType(fieldActor.kind));
+            }
+        }
+        beginSubRecord(1 + 2 * idSize + 8 + fieldsSize);
+        u1(HPROF_GC_INSTANCE_DUMP);
+        id(origin);
+        u4(STACK_TRACE_SERIAL);
+        id(classActor);
+        u4(fieldsSize);
+        for (ClassActor c = classActor; c != null; c = c.superClassActor) {
+            for (FieldActor fieldActor : c.localInstanceFieldActors()) {
+                writeValue(origin, fieldActor.offset(), hprofType(fieldActor.kind));
+            }
+        }
+    }
+
+    private void writeObjectArrayDump(Pointer origin, ClassActor arrayClass) {
+        final int length = Layout.readArrayLength(origin);
+        beginSubRecord(1 + 2 * idSize + 8 + (long) length * idSize);
+        u1(HPROF_GC_OBJ_ARRAY_DUMP);
+        id(origin);
+        u4(STACK_TRACE_SERIAL);
+        u4(length);
+        id(arrayClass);
+        for (int i = 0; i < length; i++) {
+            id(Layout.getReference(origin, i).toOrigin());
+        }
+    }
+
+    private void writePrimitiveArrayDump(Pointer origin, Kind<?> elementKind) {
+        final int length = Layout.readArrayLength(origin);
+        final int type = hprofType(elementKind);
+        final int elementSize = typeSize(type);
+        beginSubRecord(1 + idSize + 9 + (long) length * elementSize);
+        u1(HPROF_GC_PRIM_ARRAY_DUMP);
+        id(origin);
+        u4(STACK_TRACE_SERIAL);
+        u4(length);
+        u1(type);
+        final Pointer data = origin.plus(Layout.arrayLayout().getElementOffsetFromOrigin(0));
+        if (elementSize == 1) {
+            // copy the bytes directly in buffer sized chunks
+            int copied = 0;
+            while (copied < length) {
+                ensure(1);
+                final int n = Math.min(length - copied, BUFFER_SIZE - position);
+                Memory.copyBytes(data.plus(copied), buffer.plus(position), Size.fromInt(n));
+                position += n;
+                copied += n;
+            }
+        } else {
+            for (int i = 0; i < length; i++) {
+                writeValue(data, i * elementSize, type);
+            }
+        }
+    }
+
+    /**
+     * Writes the value at a given offset from an object origin in the big-endian format of HPROF.
+     */
+    private void writeValue(Pointer origin, int offset, int type) {
+        switch (type) {
+            case HPROF_NORMAL_OBJECT:
+                id(origin.readReference(offset).toOrigin());
+                break;
+            case HPROF_BOOLEAN:
+            case HPROF_BYTE:
+                u1(origin.readByte(offset));
+                break;
+            case HPROF_CHAR:
+            case HPROF_SHORT:
+                u2(origin.readShort(offset));
+                break;
+            case HPROF_FLOAT:
+            case HPROF_INT:
+                u4(origin.readInt(offset));
+                break;
+            default:
+                u8(origin.readLong(offset));
+                break;
+        }
+    }
+
+    /**
+     * Gets the HPROF basic type for a kind. {@link Word} values are dumped as integers of the word size.
+     */
+    private static int hprofType(Kind<?> kind) {
+        switch (kind.asEnum) {
+            case REFERENCE:
+                return HPROF_NORMAL_OBJECT;
+            case BOOLEAN:
+                return HPROF_BOOLEAN;
+            case BYTE:
+                return HPROF_BYTE;
+            case CHAR:
+                return HPROF_CHAR;
+            case SHORT:
+                return HPROF_SHORT;
+            case INT:
+                return HPROF_INT;
+            case FLOAT:
+                return HPROF_FLOAT;
+            case LONG:
+                return HPROF_LONG;
+            case DOUBLE:
+                return HPROF_DOUBLE;
+            case WORD:
+                return Word.size() == 8 ? HPROF_LONG : HPROF_INT;
+            default:
+                throw FatalError.unexpected("unexpected field kind in heap dump");
+        }
+    }
+
+    private int typeSize(int type) {
+        switch (type) {
+            case HPROF_NORMAL_OBJECT:
+                return idSize;
+            case HPROF_BOOLEAN:
+            case HPROF_BYTE:
+                return 1;
+            case HPROF_CHAR:
+            case HPROF_SHORT:
+                return 2;
+            case HPROF_FLOAT:
+            case HPROF_INT:
+                return 4;
+            default:
+                return 8;
+        }
+    }
+
+    @C_FUNCTION
+    private static native int heapDump_open(Pointer path, int sequence);
+
+    @C_FUNCTION
+    private static native int heapDump_write(int fd, Pointer buffer, int length);
+
+    @C_FUNCTION
+    private static native int heapDump_close(int fd);
+}
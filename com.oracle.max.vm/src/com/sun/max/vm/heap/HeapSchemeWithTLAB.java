@@ -145,6 +145,155 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
     private static final VmThreadLocal ALLOCATION_DISABLED
         = new VmThreadLocal(TLAB_DISABLED_THREAD_LOCAL_NAME, false, "HeapSchemeWithTLAB: disables per thread allocation if non-zero");
 
+    /**
+     * The actual top of the current TLAB while {@link #TLAB_TOP} is lowered to the thread's next allocation sample
+     * point, zero otherwise.
+     */
+    private static final VmThreadLocal TLAB_SAMPLE_SAVED_TOP
+        = new VmThreadLocal("TLAB_SAMPLE_SAVED_TOP", false, "HeapSchemeWithTLAB: top of current TLAB while lowered to an allocation sample point", Nature.Single);
+
+    /**
+     * Number of bytes allocated by a thread up to {@link #ALLOCATION_SAMPLE_MARK}, used to place allocation samples.
+     */
+    private static final VmThreadLocal ALLOCATION_SAMPLE_BYTES
+        = new VmThreadLocal("ALLOCATION_SAMPLE_BYTES", false, "HeapSchemeWithTLAB: bytes allocated by thread while sampling allocations", Nature.Single);
+
+    /**
+     * The TLAB allocation mark up to which {@link #ALLOCATION_SAMPLE_BYTES} accounts for, zero if none.
+     */
+    private static final VmThreadLocal ALLOCATION_SAMPLE_MARK
+        = new VmThreadLocal("ALLOCATION_SAMPLE_MARK", false, "HeapSchemeWithTLAB: TLAB allocation mark accounted for in allocation sampling", Nature.Single);
+
+    /**
+     * The value of {@link #ALLOCATION_SAMPLE_BYTES} at which the thread's next allocation is sampled, zero if not yet chosen.
+     */
+    private static final VmThreadLocal ALLOCATION_NEXT_SAMPLE
+        = new VmThreadLocal("ALLOCATION_NEXT_SAMPLE", false, "HeapSchemeWithTLAB: allocated bytes at which the next allocation is sampled", Nature.Single);
+
+    /**
+     * The sample returned by {@link AllocationSampler#sampleAllocation(Size)} for an object allocated but not yet
+     * {@linkplain AllocationSampler#sampledObjectAllocated(Object, Hub) reported} with its hub.
+     */
+    private static final VmThreadLocal ALLOCATION_SAMPLE
+        = new VmThreadLocal("ALLOCATION_SAMPLE", true, "HeapSchemeWithTLAB: pending allocation sample", Nature.Single);
+
+    /**
+     * The cell of the object of {@link #ALLOCATION_SAMPLE}.
+     */
+    private static final VmThreadLocal ALLOCATION_SAMPLE_CELL
+        = new VmThreadLocal("ALLOCATION_SAMPLE_CELL", false, "HeapSchemeWithTLAB: cell of the object of the pending allocation sample", Nature.Single);
+
+    /**
+     * Receiver of the allocations sampled by the allocation slow path.
+     * <p>
+     * Each thread is sampled after allocating a number of bytes given by {@link #nextSampleInterval()}. The check costs
+     * nothing on the TLAB allocation fast path: {@link #TLAB_TOP} is lowered to the next sample point, so that the
+     * allocation crossing it takes the slow path, where the real top is restored. As the slow path does not know the
+     * type of the object, a sample is made in two steps: {@link #sampleAllocation(Size)} before the allocation, on the
+     * allocating thread, and {@link #sampledObjectAllocated(Object, Hub)} once the object has been initialized, no later
+     * than the next slow path allocation or TLAB reset of the thread.
+     */
+    public interface AllocationSampler {
+
+        /**
+         * Gets the number of bytes the current thread allocates until its next sample.
+         */
+        long nextSampleInterval();
+
+        /**
+         * Samples an allocation about to be made by the current thread. This is called with allocation enabled and
+         * sampling suspended for the current thread, so it may allocate and walk the stack. Its allocations are not
+         * counted in the bytes allocated by the thread.
+         *
+         * @param size the size of the allocation
+         * @return an object identifying the sample, passed to {@link #sampledObjectAllocated(Object, Hub)}, or
+         *         {@code null} if the type of the allocated object is not needed
+         */
+        Object sampleAllocation(Size size);
+
+        /**
+         * Reports the hub of the object of a sample. This may be called by the VM operation thread during a GC, so it
+         * must not allocate nor block.
+         *
+         * @param sample the value returned by {@link #sampleAllocation(Size)}
+         * @param hub the hub of the sampled object
+         */
+        void sampledObjectAllocated(Object sample, Hub hub);
+    }
+
+    private static AllocationSampler allocationSampler;
+
+    /**
+     * Installs the allocation sampler. Threads start being sampled at their next allocation slow path.
+     *
+     * @param sampler the sampler, or {@code null} to stop sampling
+     */
+    public static void setAllocationSampler(AllocationSampler sampler) {
+        allocationSampler = sampler;
+    }
+
+    /**
+     * Gets the top of the TLAB of a thread, which may be above {@link #TLAB_TOP} if that is lowered to an allocation
+     * sample point.
+     */
+    @INLINE
+    private static Pointer tlabTop(Pointer etla, Pointer tlabTop) {
+        final Pointer savedTop = TLAB_SAMPLE_SAVED_TOP.load(etla);
+        return savedTop.isZero() ? tlabTop : savedTop;
+    }
+
+    /**
+     * Adds the bytes allocated in the current TLAB since {@link #ALLOCATION_SAMPLE_MARK} to {@link #ALLOCATION_SAMPLE_BYTES}.
+     *
+     * @param tlabMark the current allocation mark of the TLAB
+     * @param newSampleMark the new value of {@link #ALLOCATION_SAMPLE_MARK}
+     */
+    @INLINE
+    private static void accountSampledBytes(Pointer etla, Pointer tlabMark, Pointer newSampleMark) {
+        final Pointer sampleMark = ALLOCATION_SAMPLE_MARK.load(etla);
+        if (!sampleMark.isZero() && tlabMark.greaterThan(sampleMark)) {
+            ALLOCATION_SAMPLE_BYTES.store(etla, ALLOCATION_SAMPLE_BYTES.load(etla).plus(tlabMark.minus(sampleMark)));
+        }
+        ALLOCATION_SAMPLE_MARK.store(etla, newSampleMark);
+    }
+
+    /**
+     * Reports the pending sample of a thread, if any, to the allocation sampler. Must only be called when the object of
+     * the sample is known to be initialized, i.e. once the thread is past the allocation.
+     */
+    private static void completeAllocationSample(Pointer etla) {
+        final Reference sample = ALLOCATION_SAMPLE.loadRef(etla);
+        if (!sample.isZero()) {
+            final Pointer cell = ALLOCATION_SAMPLE_CELL.load(etla);
+            ALLOCATION_SAMPLE.store(etla, Reference.zero());
+            ALLOCATION_SAMPLE_CELL.store(etla, Word.zero());
+            final AllocationSampler sampler = allocationSampler;
+            if (sampler != null) {
+                final Object object = Reference.fromOrigin(Layout.cellToOrigin(cell)).toJava();
+                sampler.sampledObjectAllocated(sample.toJava(), ObjectAccess.readHub(object));
+            }
+        }
+    }
+
+    /**
+     * Lowers {@link #TLAB_TOP} to the next allocation sample point of the current thread if it is in the current TLAB.
+     *
+     * @param bytesToSample number of bytes the thread can allocate before the next sample
+     */
+    @INLINE
+    private static void armAllocationSample(Pointer etla, long bytesToSample) {
+        final Pointer tlabTop = TLAB_TOP.load(etla);
+        if (tlabTop.isZero()) {
+            // No TLAB: every allocation takes the slow path.
+            return;
+        }
+        final Pointer tlabMark = TLAB_MARK.load(etla);
+        if (bytesToSample < tlabTop.minus(tlabMark).toLong()) {
+            TLAB_SAMPLE_SAVED_TOP.store(etla, tlabTop);
+            TLAB_TOP.store(etla, tlabMark.plus(Math.max(bytesToSample, 0L)));
+        }
+    }
+
     /**
      * A procedure for resetting the TLAB of a thread.
      */
@@ -178,6 +327,13 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
                     refillPolicy.saveTlabTop(Address.zero());
                 }
             }
+            if (!TLAB_SAMPLE_SAVED_TOP.load(etla).isZero()) {
+                tlabTop = TLAB_SAMPLE_SAVED_TOP.load(etla);
+                TLAB_SAMPLE_SAVED_TOP.store(etla, Address.zero());
+            }
+            // The thread is stopped or detaching, so the object of a pending sample is initialized.
+            completeAllocationSample(etla);
+            accountSampledBytes(etla, tlabMark, Pointer.zero());
             doBeforeReset(etla, tlabMark, tlabTop);
             TLAB_TOP.store(etla, Address.zero());
             TLAB_MARK.store(etla, Address.zero());
@@ -376,8 +532,9 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
     public void refillTLAB(Pointer etla, Pointer tlab, Size size) {
         final Pointer tlabTop = tlab.plus(size); // top of the new TLAB
         final Pointer allocationMark = TLAB_MARK.load(etla);
+        accountSampledBytes(etla, allocationMark, tlab);
         if (!allocationMark.isZero()) {
-            final Pointer oldTop = TLAB_TOP.load(etla);
+            final Pointer oldTop = tlabTop(etla, TLAB_TOP.load(etla));
             globalTlabStats.leftover += oldTop.minus(allocationMark).toLong();
             // It is a refill, not an initial fill. So invoke handler.
             doBeforeTLABRefill(allocationMark, oldTop);
@@ -386,6 +543,7 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
                 "Must not refill TLAB when in custom allocator is set");
         }
 
+        TLAB_SAMPLE_SAVED_TOP.store(etla, Address.zero());
         TLAB_TOP.store(etla, tlabTop);
         TLAB_MARK.store(etla, tlab);
         if (logTLAB()) {
@@ -396,6 +554,8 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
 
     @INLINE
     protected final void fastRefillTLAB(Pointer etla, Pointer tlab, Size size) {
+        accountSampledBytes(etla, TLAB_MARK.load(etla), tlab);
+        TLAB_SAMPLE_SAVED_TOP.store(etla, Address.zero());
         TLAB_TOP.store(etla, tlab.plus(size));
         TLAB_MARK.store(etla, tlab);
     }
@@ -505,11 +665,92 @@ public abstract class HeapSchemeWithTLAB extends HeapSchemeAdaptor {
         if (!customAllocator.isZero()) {
             return customAllocate(customAllocator, size);
         }
+        if (allocationSampler != null || !TLAB_SAMPLE_SAVED_TOP.load(etla).isZero()) {
+            return sampledSlowPathAllocate(size, etla);
+        }
         globalTlabStats.tlabOverflowCount++;
         // This path will always be taken if TLAB allocation is not enabled.
         return handleTLABOverflow(size, etla, oldAllocationMark, tlabEnd);
     }
 
+    /**
+     * The allocation slow path when an {@linkplain AllocationSampler allocation sampler} is installed. The slow path may
+     * be taken because the allocation crosses the sample point to which {@link #TLAB_TOP} was lowered, in which case
+     * the TLAB may still have room for the allocation, or for any of the reasons {@link #slowPathAllocate} is taken.
+     */
+    @NO_SAFEPOINT_POLLS("object allocation and initialization must be atomic")
+    @NEVER_INLINE
+    private Pointer sampledSlowPathAllocate(Size size, Pointer etla) {
+        final Pointer savedTop = TLAB_SAMPLE_SAVED_TOP.load(etla);
+        if (!savedTop.isZero()) {
+            TLAB_TOP.store(etla, savedTop);
+            TLAB_SAMPLE_SAVED_TOP.store(etla, Address.zero());
+        }
+        final AllocationSampler sampler = allocationSampler;
+        if (sampler == null) {
+            return unsampledAllocate(size, etla);
+        }
+        // The object of the previous sample, if any, was initialized after the slow path that allocated it.
+        completeAllocationSample(etla);
+        accountSampledBytes(etla, TLAB_MARK.load(etla), TLAB_MARK.load(etla));
+
+        long nextSample = ALLOCATION_NEXT_SAMPLE.load(etla).asAddress().toLong();
+        if (nextSample == 0L) {
+            nextSample = ALLOCATION_SAMPLE_BYTES.load(etla).asAddress().toLong() + sampler.nextSampleInterval();
+        }
+        final boolean sampled = ALLOCATION_SAMPLE_BYTES.load(etla).asAddress().toLong() + size.toLong() >= nextSample;
+        Object sample = null;
+        if (sampled) {
+            // Suspend sampling while the sampler runs, as it may re-enter the slow path.
+            ALLOCATION_NEXT_SAMPLE.store(etla, Address.fromLong(Long.MAX_VALUE));
+            final Pointer allocatedBytes = ALLOCATION_SAMPLE_BYTES.load(etla);
+            sample = sampler.sampleAllocation(size);
+            // What the sampler allocated is not counted towards the thread's next sample.
+            ALLOCATION_SAMPLE_BYTES.store(etla, allocatedBytes);
+            ALLOCATION_SAMPLE_MARK.store(etla, TLAB_MARK.load(etla));
+        }
+
+        final Pointer cell = unsampledAllocate(size, etla);
+
+        // The object is accounted for explicitly, whether it was allocated in a TLAB or not.
+        ALLOCATION_SAMPLE_MARK.store(etla, TLAB_MARK.load(etla));
+        final long allocatedBytes = ALLOCATION_SAMPLE_BYTES.load(etla).asAddress().toLong() + size.toLong();
+        ALLOCATION_SAMPLE_BYTES.store(etla, Address.fromLong(allocatedBytes));
+        if (sampled) {
+            nextSample = allocatedBytes + sampler.nextSampleInterval();
+        }
+        ALLOCATION_NEXT_SAMPLE.store(etla, Address.fromLong(nextSample));
+        if (sample != null) {
+            ALLOCATION_SAMPLE.store(etla, Reference.fromJava(sample));
+            ALLOCATION_SAMPLE_CELL.store(etla, cell);
+            // Take the slow path at the next allocation, by which time the object has been initialized.
+            armAllocationSample(etla, 0L);
+        } else {
+            armAllocationSample(etla, nextSample - allocatedBytes);
+        }
+        return cell;
+    }
+
+    /**
+     * Allocates from the current TLAB, or through {@link #handleTLABOverflow} if it has no room.
+     */
+    @NO_SAFEPOINT_POLLS("object allocation and initialization must be atomic")
+    private Pointer unsampledAllocate(Size size, Pointer etla) {
+        final Pointer tlabMark = TLAB_MARK.load(etla);
+        final Pointer tlabEnd = TLAB_TOP.load(etla);
+        final Pointer cell = DebugHeap.adjustForDebugTag(tlabMark);
+        final Pointer end = cell.plus(size);
+        if (!tlabEnd.isZero() && end.lessEqual(tlabEnd)) {
+            TLAB_MARK.store(etla, end);
+            if (MaxineVM.isDebug()) {
+                doDebugAfterTlabAllocate(etla, cell, size);
+            }
+            return cell;
+        }
+        globalTlabStats.tlabOverflowCount++;
+        return handleTLABOverflow(size, etla, tlabMark, tlabEnd);
+    }
+
     @NEVER_INLINE
     private void checkAllocationEnabled(Size size) {
         if (!ALLOCATION_DISABLED.load(currentTLA()).isZero()) {
@@ -52,6 +52,24 @@ public class SpecialReferenceManager {
 
     private static final boolean FINALIZERS_SUPPORTED = true;
 
+    /**
+     * Number of threads draining the pending reference list after a GC. Cleaners such as those of
+     * {@code DirectByteBuffer} run on these threads, so a single thread can fall behind when many are pending.
+     */
+    public static int ReferenceHandlerThreads = 1;
+
+    /**
+     * Number of threads running finalizers.
+     */
+    public static int FinalizerThreads = 1;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "ReferenceHandlerThreads", SpecialReferenceManager.class,
+            "Number of threads enqueuing pending references and running cleaners.", Phase.STARTING);
+        VMOptions.addFieldOption("-XX:", "FinalizerThreads", SpecialReferenceManager.class,
+            "Number of threads running finalizers.", Phase.STARTING);
+    }
+
     /**
      * This interface forms a contract between the GC algorithm and the implementation of special references.
      */
@@ -83,6 +101,48 @@ public class SpecialReferenceManager {
         boolean mayRelocateLiveObjects();
     }
 
+    /**
+     * A table of weak roots maintained outside the object graph, such as the JVMTI object tag map. The table holds raw
+     * object origins that the GC does not trace; instead, it is updated in place once the set of surviving objects is
+     * known, which avoids allocating a {@link java.lang.ref.WeakReference} per entry.
+     */
+    public interface WeakRoots {
+        /**
+         * Called by the GC after the closure of all strongly reachable and {@linkplain #processDiscoveredSpecialReferences(GC) preserved}
+         * objects has been computed. Implementations must use {@link GC#isReachable(Reference)} to drop entries for dead objects
+         * and {@link GC#preserve(Reference)} to obtain the current location of live ones. No allocation may take place.
+         *
+         * @param gc interface to the GC implementation
+         */
+        void processWeakRoots(GC gc);
+    }
+
+    private static WeakRoots[] weakRoots = {};
+
+    /**
+     * Registers a table of weak roots to be {@linkplain WeakRoots#processWeakRoots(GC) processed} by every subsequent GC.
+     */
+    public static void registerWeakRoots(WeakRoots roots) {
+        synchronized (REFERENCE_LOCK) {
+            WeakRoots[] newWeakRoots = java.util.Arrays.copyOf(weakRoots, weakRoots.length + 1);
+            newWeakRoots[weakRoots.length] = roots;
+            weakRoots = newWeakRoots;
+        }
+    }
+
+    /**
+     * Processes the {@linkplain #registerWeakRoots(WeakRoots) registered} weak root tables. This must be called by the GC
+     * after the objects preserved by {@link #processDiscoveredSpecialReferences(GC)} have themselves been traced.
+     *
+     * @param gc interface to the GC implementation
+     */
+    public static void processWeakRoots(GC gc) {
+        final WeakRoots[] roots = weakRoots;
+        for (int i = 0; i < roots.length; i++) {
+            roots[i].processWeakRoots(gc);
+        }
+    }
+
     /**
      * The lock object associated with managing special references. This lock must
      * be held by the GC when it is updating the list of pending special references.
@@ -371,11 +431,25 @@ public class SpecialReferenceManager {
      * threads in their static initializers to handle weak references and finalizable objects.
      * However, in the target VM, these classes have already been initialized and these
      * threads need to be started manually.
+     * <p>
+     * The threads built into the boot image are started in the {@link Phase#PRISTINE} phase. The additional
+     * {@linkplain #ReferenceHandlerThreads reference handler} and {@linkplain #FinalizerThreads finalizer}
+     * threads requested on the command line are created in the {@link Phase#STARTING} phase, once
+     * {@link Thread}s can be allocated.
      *
      * @param phase the phase in which the VM is in
      */
     public static void initialize(Phase phase) {
-        if (phase == Phase.PRISTINE) {
+        if (phase == Phase.STARTING) {
+            for (int i = 1; i < ReferenceHandlerThreads; i++) {
+                new ReferenceHandlerHelper(i).start();
+            }
+            if (FINALIZERS_SUPPORTED) {
+                for (int i = 1; i < FinalizerThreads; i++) {
+                    new FinalizerHelper(i).start();
+                }
+            }
+        } else if (phase == Phase.PRISTINE) {
             clock = System.currentTimeMillis();
             discoveredList = sentinel;
             JLRRAlias sentinelAlias = asJLRRAlias(sentinel);
@@ -419,6 +493,39 @@ public class SpecialReferenceManager {
         }
     }
 
+    /**
+     * An additional reference handler thread. All reference handler threads take references off the
+     * pending list under {@link #REFERENCE_LOCK} and then run their cleaner or enqueue them in parallel.
+     */
+    private static final class ReferenceHandlerHelper extends Thread {
+        ReferenceHandlerHelper(int index) {
+            super(VmThread.systemThreadGroup, "Reference Handler " + index);
+            setPriority(Thread.MAX_PRIORITY);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            JDK_java_lang_ref_Reference.handlePendingReferences();
+        }
+    }
+
+    /**
+     * An additional finalizer thread. All finalizer threads take finalizable objects off the same queue.
+     */
+    private static final class FinalizerHelper extends Thread {
+        FinalizerHelper(int index) {
+            super(VmThread.systemThreadGroup, "Finalizer " + index);
+            setPriority(Thread.MAX_PRIORITY - 2);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            JDK_java_lang_ref_Finalizer.runFinalizers();
+        }
+    }
+
     // Logging
 
     public static final SpecialReferenceLogger specialReferenceLogger = new SpecialReferenceLogger();
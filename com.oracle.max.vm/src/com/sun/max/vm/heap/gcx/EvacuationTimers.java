@@ -48,7 +48,7 @@ public final class EvacuationTimers {
     }
 
     public void resetTrackTime() {
-        trackTime = Heap.logGCTime();
+        trackTime = Heap.timeGCPhases();
     }
 
     @INLINE
@@ -896,6 +896,8 @@ public final class FreeHeapSpaceManager extends Sweeper implements HeapSpace {
 
     @Override
     public void visit(CellRangeVisitor visitor) {
+        // Make the space left in the allocator iterable first.
+        smallObjectAllocator.unsafeMakeParsable();
         visitor.visitCells(committedHeapSpace.start(), committedHeapSpace.committedEnd());
     }
 
@@ -29,7 +29,9 @@ import com.sun.max.util.timer.*;
 import com.sun.max.vm.*;
 import com.sun.max.vm.MaxineVM.Phase;
 import com.sun.max.vm.heap.*;
+import com.sun.max.vm.layout.*;
 import com.sun.max.vm.runtime.*;
+import com.sun.max.vm.thread.*;
 
 /**
  * Adaptor for factoring a number of common boiler plate for HeapScheme implemented with components of the gcx package.
@@ -76,6 +78,51 @@ public abstract class HeapSchemeWithTLABAdaptor extends HeapSchemeWithTLAB {
         }
     }
     protected final TLABFiller tlabFiller = new TLABFiller();
+
+    /**
+     * Passes the objects of the iterable ranges of a heap space on to a {@link CallbackCellVisitor}, skipping
+     * {@linkplain HeapFreeChunk free chunks} and {@linkplain DarkMatter dark matter}. Unreachable objects that
+     * have not been reclaimed yet are reported too.
+     */
+    static final class HeapWalker implements CellRangeVisitor {
+        CallbackCellVisitor visitor;
+        boolean aborted;
+
+        @Override
+        public void visitCells(Address start, Address end) {
+            Pointer cell = start.asPointer();
+            while (!aborted && cell.lessThan(end)) {
+                final Pointer origin = Layout.cellToOrigin(cell);
+                if (HeapFreeChunk.isHeapFreeChunkOrigin(origin)) {
+                    cell = cell.plus(HeapFreeChunk.getFreechunkSize(cell));
+                } else if (DarkMatter.isDarkMatterHub(origin.readWord(Layout.hubIndex()))) {
+                    cell = cell.plus(Layout.size(origin));
+                } else {
+                    cell = visitor.visitCell(cell);
+                    aborted = cell.isZero();
+                }
+            }
+        }
+    }
+
+    private final HeapWalker heapWalker = new HeapWalker();
+
+    /**
+     * Starts a {@linkplain HeapScheme#walkHeap(CallbackCellVisitor) walk} of the heap: the objects of the immortal and boot
+     * heaps are visited and the TLABs of all threads are retired so that the heap spaces are iterable.
+     * Must be called while all mutator threads are stopped.
+     *
+     * @param visitor the visitor of the walk
+     * @return a visitor to pass to the {@link HeapSpace#visit(CellRangeVisitor)} method of the heap spaces of the scheme
+     */
+    protected final CellRangeVisitor startHeapWalk(CallbackCellVisitor visitor) {
+        ImmortalHeap.visitCells(visitor);
+        Heap.bootHeapRegion.visitCells(visitor);
+        VmThreadMap.ACTIVE.forAllThreadLocals(null, tlabFiller);
+        heapWalker.visitor = visitor;
+        heapWalker.aborted = false;
+        return heapWalker;
+    }
     public HeapSchemeWithTLABAdaptor() {
         super();
     }
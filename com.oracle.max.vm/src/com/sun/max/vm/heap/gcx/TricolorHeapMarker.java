@@ -445,6 +445,16 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
         Log.print(weakRefTimer.getLastElapsedTime());
     }
 
+    /**
+     * Records the times of the last marking in the {@link GCEventLog}.
+     */
+    public void logLastElapsedTimes() {
+        GCEventLog.phaseTime(GCEventLog.Phase.ROOTS, rootScanTimer.getLastElapsedTime() + bootHeapScanTimer.getLastElapsedTime() +
+                        codeScanTimer.getLastElapsedTime() + immortalSpaceScanTimer.getLastElapsedTime());
+        GCEventLog.phaseTime(GCEventLog.Phase.MARKING, heapMarkingTimer.getLastElapsedTime());
+        GCEventLog.phaseTime(GCEventLog.Phase.REFERENCE_PROCESSING, weakRefTimer.getLastElapsedTime());
+    }
+
     public void reportTotalElapsedTimes() {
         Log.print("root scan=");
         Log.print(rootScanTimer.getElapsedTime());
@@ -1775,7 +1785,7 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
 
     public void markAll() {
         final boolean traceGCPhases = Heap.logGCPhases();
-        traceGCTimes = Heap.logGCTime();
+        traceGCTimes = Heap.timeGCPhases();
         if (traceGCTimes) {
             recoveryScanTimer.reset();
         }
@@ -1805,6 +1815,7 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
         startTimer(weakRefTimer);
         SpecialReferenceManager.processDiscoveredSpecialReferences(forwardScanState);
         visitGreyObjects();
+        SpecialReferenceManager.processWeakRoots(forwardScanState);
         stopTimer(weakRefTimer);
         markPhase.traceEnd(traceGCPhases);
 
@@ -1854,7 +1865,7 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
      */
     public void markAll(HeapRegionRangeIterable regionsRanges) {
         final boolean traceGCPhases = Heap.logGCPhases();
-        traceGCTimes = Heap.logGCTime();
+        traceGCTimes = Heap.timeGCPhases();
         if (traceGCTimes) {
             recoveryScanTimer.reset();
         }
@@ -1901,6 +1912,7 @@ public class TricolorHeapMarker implements MarkingStack.OverflowHandler, HeapMan
         // need to iterate over the region ranges past the finger, hence the reset.
         regionsRanges.reset();
         visitGreyObjects(regionsRanges);
+        SpecialReferenceManager.processWeakRoots(forwardScanState);
         stopTimer(weakRefTimer);
         markPhase.traceEnd(traceGCPhases);
         FatalError.check(markingStack.isEmpty(), "Marking Stack must be empty after special references are processed.");
@@ -45,6 +45,7 @@ import com.sun.max.vm.layout.*;
 import com.sun.max.vm.reference.*;
 import com.sun.max.vm.runtime.*;
 import com.sun.max.vm.thread.*;
+import com.sun.max.vm.ti.*;
 
 
 /**
@@ -104,6 +105,16 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
      */
     private final NoAgingNurseryEvacuator youngSpaceEvacuator;
 
+    /**
+     * Background refinement of the old generation's dirty cards, if enabled.
+     */
+    private ConcurrentCardRefinement cardRefinement;
+
+    /**
+     * Ranges of the old generation refined by {@link #cardRefinement}, recorded at the end of every collection.
+     */
+    private ConcurrentCardRefinement.RangeSnapshot refinableOldRanges;
+
     /**
      * Operation to submit to the {@link VmOperationThread} to perform a generational collection.
      */
@@ -143,6 +154,13 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
     public void initialize(MaxineVM.Phase phase) {
         super.initialize(phase);
         cardTableRSet.initialize(phase);
+        if (phase == Phase.RUNNING && ConcurrentCardRefinement.isEnabled()) {
+            // Mutators never allocate in the old generation, whose ranges are recorded at the end of every collection.
+            // The old generation holds no object before the first collection.
+            refinableOldRanges = new ConcurrentCardRefinement.RangeSnapshot(RegionTable.theRegionTable().length());
+            cardRefinement = new ConcurrentCardRefinement(cardTableRSet, youngSpace, refinableOldRanges);
+            cardRefinement.start();
+        }
     }
 
     /**
@@ -329,6 +347,10 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
             if (Heap.verbose()) {
                 Log.println("--Begin nursery evacuation");
             }
+            final Size oldSpaceUsedBefore = oldSpace.usedSpace();
+            if (GCEventLog.enabled()) {
+                GCEventLog.beginCollection(false, reportUsedSpace());
+            }
             youngSpaceEvacuator.setGCOperation(this);
             HeapScheme.Inspect.notifyHeapPhaseChange(HeapPhase.ANALYZING);
             youngSpaceEvacuator.evacuate(Heap.logGCPhases());
@@ -340,6 +362,10 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
             if (VerifyAfterGC) {
                 verifyAfterEvacuation();
             }
+            if (GCEventLog.enabled()) {
+                final Size oldSpaceUsedAfter = oldSpace.usedSpace();
+                logGCEvent(oldSpaceUsedAfter.greaterThan(oldSpaceUsedBefore) ? oldSpaceUsedAfter.minus(oldSpaceUsedBefore).asSize() : Size.zero());
+            }
             Size worstCaseEvac = youngSpace.totalSpace();
             Size freeSpace = oldSpace.freeSpace();
             HeapScheme.Inspect.notifyHeapPhaseChange(HeapPhase.MUTATING);
@@ -347,7 +373,14 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
                 if (Heap.verbose()) {
                     Log.println("--Begin old geneneration collection");
                 }
+                if (GCEventLog.enabled()) {
+                    GCEventLog.beginCollection(true, reportUsedSpace());
+                }
                 doOldGenCollection();
+                if (GCEventLog.enabled()) {
+                    heapMarker.logLastElapsedTimes();
+                    logGCEvent(Size.zero());
+                }
                 if (Heap.verbose()) {
                     Log.println("--End   old geneneration collection");
                 }
@@ -363,9 +396,21 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
             }
             final GCRequest gcRequest = callingThread().gcRequest;
             gcRequest.lastInvocationCount = invocationCount;
+            if (cardRefinement != null) {
+                // Safe to iterate over the old generation here: the collector is done with it and mutators are stopped.
+                refinableOldRanges.reset();
+                oldSpace.visit(refinableOldRanges);
+                cardRefinement.notifyGC();
+            }
         }
     }
 
+    private void logGCEvent(Size promoted) {
+        GCEventLog.spaceOccupancy(GCEventLog.Space.YOUNG, youngSpace.usedSpace(), youngSpace.totalSpace());
+        GCEventLog.spaceOccupancy(GCEventLog.Space.OLD, oldSpace.usedSpace(), oldSpace.totalSpace());
+        GCEventLog.endCollection(reportUsedSpace(), promoted);
+    }
+
     @Override
     public boolean contains(Address address) {
         return theHeapRegionManager().contains(address);
@@ -373,7 +418,11 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
 
     @Override
     public boolean collectGarbage() {
+        // We invoke the VMTI callbacks here and not in the collection so that
+        // they occur on the actual thread causing the GC and not the VM operation thread.
+        VMTI.handler().beginGC();
         genCollection.submit();
+        VMTI.handler().endGC();
         return true;
     }
 
@@ -397,6 +446,13 @@ final public class GenMSEHeapScheme extends HeapSchemeWithTLABAdaptor  implement
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void walkHeap(CallbackCellVisitor visitor) {
+        final CellRangeVisitor heapWalker = startHeapWalk(visitor);
+        youngSpace.visit(heapWalker);
+        oldSpace.visit(heapWalker);
+    }
+
     @INLINE
     @Override
     public boolean needsBarrier(IntBitSet<WriteBarrierSpecification.WriteBarrierSpec> writeBarrierSpec) {
@@ -37,6 +37,7 @@ import com.sun.max.vm.heap.gcx.*;
 import com.sun.max.vm.reference.*;
 import com.sun.max.vm.runtime.*;
 import com.sun.max.vm.thread.*;
+import com.sun.max.vm.ti.*;
 
 /**
  * A simple mark-sweep collector. Only used for testing / debugging
@@ -153,7 +154,7 @@ public final class MSHeapScheme extends HeapSchemeWithTLABAdaptor {
     public boolean collectGarbage() {
         final GCRequest gcRequest = VmThread.current().gcRequest;
         if (gcRequest.explicit) {
-            collect.submit();
+            submitCollection();
             return true;
         }
         // We may reach here after a race. Don't run GC if request can be satisfied.
@@ -164,10 +165,20 @@ public final class MSHeapScheme extends HeapSchemeWithTLABAdaptor {
         if (objectSpace.canSatisfyAllocation(gcRequest.requestedBytes)) {
             return true;
         }
-        collect.submit();
+        submitCollection();
         return objectSpace.canSatisfyAllocation(gcRequest.requestedBytes);
     }
 
+    /**
+     * Runs a collection. The VMTI callbacks are invoked here rather than by the collection itself so that they occur
+     * on the thread requesting the GC and not on the VM operation thread.
+     */
+    private void submitCollection() {
+        VMTI.handler().beginGC();
+        collect.submit();
+        VMTI.handler().endGC();
+    }
+
     public boolean contains(Address address) {
         return objectSpace.contains(address);
     }
@@ -200,6 +211,11 @@ public final class MSHeapScheme extends HeapSchemeWithTLABAdaptor {
     public void writeBarrier(Reference from, Reference to) {
     }
 
+    @Override
+    public void walkHeap(CallbackCellVisitor visitor) {
+        objectSpace.visit(startHeapWalk(visitor));
+    }
+
     private static final class MSGCRequest extends GCRequest {
         protected MSGCRequest(VmThread thread) {
             super(thread);
@@ -276,7 +292,7 @@ public final class MSHeapScheme extends HeapSchemeWithTLABAdaptor {
 
         @Override
         public void collect(int invocationCount) {
-            traceGCTimes = Heap.logGCTime();
+            traceGCTimes = Heap.timeGCPhases();
             startTimer(totalPauseTime);
             VmThreadMap.ACTIVE.forAllThreadLocals(null, tlabFiller);
 
@@ -286,6 +302,9 @@ public final class MSHeapScheme extends HeapSchemeWithTLABAdaptor {
             objectSpace.doBeforeGC();
 
             collectionCount++;
+            if (GCEventLog.enabled()) {
+                GCEventLog.beginCollection(true, reportUsedSpace());
+            }
             if (MaxineVM.isDebug() && Heap.logGCPhases()) {
                 Log.print("Begin mark-sweep #");
                 Log.println(collectionCount);
@@ -313,9 +332,15 @@ public final class MSHeapScheme extends HeapSchemeWithTLABAdaptor {
             HeapScheme.Inspect.notifyHeapPhaseChange(HeapPhase.MUTATING);
             stopTimer(totalPauseTime);
 
-            if (traceGCTimes) {
+            if (Heap.logGCTime()) {
                 reportLastGCTimes();
             }
+            if (GCEventLog.enabled()) {
+                heapMarker.logLastElapsedTimes();
+                GCEventLog.phaseTime(GCEventLog.Phase.SWEEP, reclaimTimer.getLastElapsedTime());
+                GCEventLog.spaceOccupancy(GCEventLog.Space.HEAP, objectSpace.usedSpace(), objectSpace.totalSpace());
+                GCEventLog.endCollection(reportUsedSpace(), Size.zero());
+            }
         }
     }
 
@@ -42,6 +42,7 @@ import com.sun.max.vm.layout.*;
 import com.sun.max.vm.reference.*;
 import com.sun.max.vm.runtime.*;
 import com.sun.max.vm.thread.*;
+import com.sun.max.vm.ti.*;
 
 /**
  * Region-based Mark Sweep + Evacuation-based defragmentation Heap Scheme.
@@ -216,11 +217,11 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
         }
         if (gcRequest.explicit) {
             // This is a forced GC.
-            collect.submit();
+            submitCollection();
             reportFragmentationStats(true);
             return true;
         }
-        collect.submit();
+        submitCollection();
         if (MaxineVM.isDebug()) {
             usedSpaceAfterLastGC = markSweepSpace.usedSpace().toLong();
         }
@@ -229,6 +230,16 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
         return result;
     }
 
+    /**
+     * Runs a collection. The VMTI callbacks are invoked here rather than by the collection itself so that they occur
+     * on the thread requesting the GC and not on the VM operation thread.
+     */
+    private void submitCollection() {
+        VMTI.handler().beginGC();
+        collect.submit();
+        VMTI.handler().endGC();
+    }
+
     public boolean contains(Address address) {
         return  theHeapRegionManager().contains(address);
     }
@@ -261,6 +272,11 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
     public void writeBarrier(Reference from, Reference to) {
     }
 
+    @Override
+    public void walkHeap(CallbackCellVisitor visitor) {
+        markSweepSpace.visit(startHeapWalk(visitor));
+    }
+
     /**
      * Class implementing the garbage collection routine.
      * This is the {@link VmOperationThread}'s entry point to garbage collection.
@@ -311,7 +327,7 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
         @Override
         protected void collect(int invocationCount) {
             final boolean traceGCPhases = Heap.logGCPhases();
-            traceGCTimes = Heap.logGCTime();
+            traceGCTimes = Heap.timeGCPhases();
             startTimer(totalPauseTime);
             VmThreadMap.ACTIVE.forAllThreadLocals(null, tlabFiller);
 
@@ -320,6 +336,9 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
             vmConfig().monitorScheme().beforeGarbageCollection();
             markSweepSpace.doBeforeGC();
             collectionCount++;
+            if (GCEventLog.enabled()) {
+                GCEventLog.beginCollection(true, reportUsedSpace());
+            }
 
             theHeapRegionManager().checkOutgoingReferences();
 
@@ -351,9 +370,15 @@ public final class MSEHeapScheme extends HeapSchemeWithTLABAdaptor implements He
             HeapScheme.Inspect.notifyHeapPhaseChange(HeapPhase.MUTATING);
             stopTimer(totalPauseTime);
 
-            if (traceGCTimes) {
+            if (Heap.logGCTime()) {
                 reportLastGCTimes();
             }
+            if (GCEventLog.enabled()) {
+                heapMarker.logLastElapsedTimes();
+                GCEventLog.phaseTime(GCEventLog.Phase.SWEEP, reclaimTimer.getLastElapsedTime());
+                GCEventLog.spaceOccupancy(GCEventLog.Space.HEAP, reportUsedSpace(), markSweepSpace.totalSpace());
+                GCEventLog.endCollection(reportUsedSpace(), Size.zero());
+            }
         }
     }
 
@@ -24,16 +24,32 @@ package com.sun.max.vm.heap.gcx.rset.ctbl;
 
 import static com.sun.max.vm.heap.gcx.rset.ctbl.CardState.*;
 
+import com.sun.max.annotate.*;
+import com.sun.max.lang.*;
+import com.sun.max.memory.*;
 import com.sun.max.unsafe.*;
 /**
  * Card table implementation, when cards can have two states only: clean and dirty (@see {@link CardState}).
- *
+ * Searches for cards in a given state examine the table 8 cards at a time.
+ * Cards are read and written through the {@linkplain #tableAddress table address}, so that a table can also be backed
+ * by natively allocated memory (see {@link #initialize(Address, Address, Address)}).
  */
 public final class CardTable extends  Log2RegionToByteMapTable {
+    private static final long LOW_BYTES = 0x0101010101010101L;
+    private static final long HIGH_BYTE_BITS = 0x8080808080808080L;
+
     public CardTable() {
         super(CardTableRSet.LOG2_CARD_SIZE);
     }
 
+    /**
+     * Creates a table with the same two-state entries but where each entry covers 2^log2RangeSize bytes.
+     * Used for the coarse {@linkplain CardTableRSet#summaryTable summary table}.
+     */
+    CardTable(int log2RangeSize) {
+        super(log2RangeSize);
+    }
+
     @Override
     void initialize(Address coveredAreaStart, Size coveredAreaSize, Address storageArea) {
         super.initialize(coveredAreaStart, coveredAreaSize, storageArea);
@@ -59,7 +75,7 @@ public final class CardTable extends  Log2RegionToByteMapTable {
      * @param toIndex index to the last card of the range (exclusive)
      */
     public void clean(int fromIndex, int toIndex) {
-        fill(fromIndex, toIndex, CLEAN_CARD.value());
+        Memory.setBytes(tableAddress.plus(fromIndex), toIndex - fromIndex, CLEAN_CARD.value());
     }
 
     /**
@@ -69,7 +85,7 @@ public final class CardTable extends  Log2RegionToByteMapTable {
      * @param toIndex index to the last card of the range (exclusive)
      */
     public void dirty(int fromIndex, int toIndex) {
-        fill(fromIndex, toIndex, DIRTY_CARD.value());
+        Memory.setBytes(tableAddress.plus(fromIndex), toIndex - fromIndex, DIRTY_CARD.value());
     }
 
     /**
@@ -77,7 +93,7 @@ public final class CardTable extends  Log2RegionToByteMapTable {
      * @param index a card index
      */
     public void clean(int index) {
-        set(index, CLEAN_CARD.value());
+        unsafeSet(index, CLEAN_CARD.value());
     }
 
    /**
@@ -85,7 +101,7 @@ public final class CardTable extends  Log2RegionToByteMapTable {
     * @param index a card index
     */
     public void dirty(int index) {
-        set(index, DIRTY_CARD.value());
+        unsafeSet(index, DIRTY_CARD.value());
     }
 
     /**
@@ -104,23 +120,32 @@ public final class CardTable extends  Log2RegionToByteMapTable {
     * @return the index to the first card in the specified state, or the end index if none of the cards in the range are set to that state.
     */
     int first(int start, int end, CardState cardState) {
-        // This may be optimized with special support from the compiler to exploit cpu-specific instruction for string ops (e.g.).
-        // We may also get rid of the limit test by making the end of the range looking like a marked card.
-        // e.g.:   tmp = limit.getByte(); limit.setByte(1);  loop; limit.setByte(tmp); This could be factor over multiple call of firstNonZero...
-        final Pointer first = tableAddress.plus(start);
-        final Pointer limit = tableAddress.plus(end);
         final byte cardValue = cardState.value;
-        Pointer cursor = first;
-        while (cursor.getByte() != cardValue) {
-            cursor = cursor.plus(1);
-            if (cursor.greaterEqual(limit)) {
-                return end;
+        int index = start;
+        // Byte at a time up to the first 8-byte boundary relative to the (word aligned) start of the table.
+        while (index < end && (index & (Longs.SIZE - 1)) != 0) {
+            if (tableAddress.getByte(index) == cardValue) {
+                return index;
+            }
+            index++;
+        }
+        // Then 8 cards per load: a word holds a card in the requested state iff (word ^ pattern) has a zero byte.
+        final long pattern = replicate(cardValue);
+        while (index + Longs.SIZE <= end) {
+            if (hasZeroByte(tableAddress.readLong(index) ^ pattern)) {
+                break;
+            }
+            index += Longs.SIZE;
+        }
+        while (index < end) {
+            if (tableAddress.getByte(index) == cardValue) {
+                return index;
             }
+            index++;
         }
-        return cursor.minus(tableAddress).toInt();
+        return end;
     }
 
-
     /**
      * Find the first card not set to the specified card state in the specified range of entries in the table .
      * @param start index of the first card in the range (inclusive)
@@ -129,22 +154,39 @@ public final class CardTable extends  Log2RegionToByteMapTable {
     * @return the index to the first card in a state different than the specified state, or the end index if  all the cards in the range have that state.
     */
     int firstNot(int start, int end, CardState cardState) {
-        // This may be optimized with special support from the compiler to exploit cpu-specific instruction for string ops (e.g.).
-        // We may also get rid of the limit test by making the end of the range looking like a marked card.
-        // e.g.:   tmp = limit.getByte(); limit.setByte(1);  loop; limit.setByte(tmp); This could be factor over multiple call of firstNonZero...
-        final Pointer first = tableAddress.plus(start);
-        final Pointer limit = tableAddress.plus(end);
         final byte cardValue = cardState.value;
-        Pointer cursor = first;
-        while (cursor.getByte() == cardValue) {
-            cursor = cursor.plus(1);
-            if (cursor.greaterEqual(limit)) {
-                return end;
+        int index = start;
+        while (index < end && (index & (Longs.SIZE - 1)) != 0) {
+            if (tableAddress.getByte(index) != cardValue) {
+                return index;
             }
+            index++;
         }
-        return cursor.minus(tableAddress).toInt();
+        final long pattern = replicate(cardValue);
+        while (index + Longs.SIZE <= end) {
+            if (tableAddress.readLong(index) != pattern) {
+                break;
+            }
+            index += Longs.SIZE;
+        }
+        while (index < end) {
+            if (tableAddress.getByte(index) != cardValue) {
+                return index;
+            }
+            index++;
+        }
+        return end;
+    }
+
+    @INLINE
+    private static long replicate(byte value) {
+        return (value & 0xffL) * LOW_BYTES;
     }
 
+    @INLINE
+    private static boolean hasZeroByte(long word) {
+        return ((word - LOW_BYTES) & ~word & HIGH_BYTE_BITS) != 0L;
+    }
 
  /**
      * Set all cards completely covered by the specified range to the specified card state.
@@ -24,10 +24,12 @@ import static com.sun.max.vm.heap.HeapSchemeAdaptor.*;
 
 import java.util.*;
 
+import com.oracle.max.cri.intrinsics.*;
 import com.sun.cri.ci.CiAddress.Scale;
 import com.sun.cri.ci.*;
 import com.sun.cri.xir.*;
 import com.sun.cri.xir.CiXirAssembler.XirConstant;
+import com.sun.cri.xir.CiXirAssembler.XirLabel;
 import com.sun.cri.xir.CiXirAssembler.XirOperand;
 import com.sun.max.annotate.*;
 import com.sun.max.memory.*;
@@ -68,6 +70,28 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
 
     static final Address CARD_ADDRESS_MASK = Address.fromInt(CARD_SIZE - 1).not();
 
+    /**
+     * Log2 of the number of cards covered by a single entry of the {@linkplain #summaryTable summary table}.
+     */
+    static final int LOG2_CARDS_PER_SUMMARY_ENTRY = 6;
+
+    static final int LOG2_SUMMARY_ENTRY_SIZE = LOG2_CARD_SIZE + LOG2_CARDS_PER_SUMMARY_ENTRY;
+
+    /**
+     * Whether the remembered set maintains a {@linkplain #summaryTable summary table}.
+     * This is fixed at image build time (using the {@code max.heap.rset.summary} system property) as it
+     * changes the code of the write barriers.
+     */
+    public static final boolean UseSummaryTable = System.getProperty("max.heap.rset.summary") != null;
+
+    /**
+     * Whether write barriers only store to a card if it is not already dirty. This avoids having threads updating
+     * references in objects covered by the same card repeatedly write to the same cache line, at the cost of a load
+     * and a branch in the barrier. This is fixed at image build time (using the {@code max.heap.rset.conditional}
+     * system property) as it changes the code of the write barriers.
+     */
+    public static final boolean UseConditionalCardMarking = System.getProperty("max.heap.rset.conditional") != null;
+
     private static boolean TraceCardTableRSet = false;
 
     static {
@@ -106,47 +130,124 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
     public final CardFirstObjectTable cfoTable;
 
     /**
-     * CiConstant holding the card table's biased address in boot code region and used for all XirSnippets implementing the write barrier.
-     * Biased card table address XirConstant are initialized with this CiConstant which holds a  WrappedWord object with a dummy address.
-     * The WrappedWord object can be used during the serializing phase of boot image generation  to identify easily the literal locations
-     * in the boot code region that hold the biased card table address. A table of these location is added in the boot image and used at
-     * VM startup to patch them with the actual biased card table address once this one is known.
-     * See {@link #patchBootCodeLiterals()}
+     * Coarse table with one entry per 2^{@value #LOG2_CARDS_PER_SUMMARY_ENTRY} cards, only used if {@link #UseSummaryTable} is set.
+     * An entry is dirtied together with any of the cards it covers (by the write barrier or explicitly by the GC) so that
+     * a clean entry guarantees that all its cards are clean. Entries are cleaned lazily, when a scan finds all their cards clean.
+     * Scans for dirty cards can thus skip 2^{@value #LOG2_CARDS_PER_SUMMARY_ENTRY} clean cards per summary entry.
      */
-    @HOSTED_ONLY
-    private CiConstant biasedCardTableAddressCiConstant;
+    public final CardTable summaryTable;
 
-    @HOSTED_ONLY
-    private List<XirConstant> xirConstants = new ArrayList<XirConstant>(16);
+    /**
+     * Number of cards between the start of the area covered by the summary table and the start of the area covered
+     * by the card table. The summary table covers an area aligned on the size covered by a summary entry.
+     */
+    private int summaryCardBias;
 
     /**
-     * List of XIR constants representing the biased card table address.
-     * The list is used at startup to initialize the "startup-time" constant value.
+     * Literals holding the card table's biased address in the boot code region.
      */
-    private XirBiasedCardTableConstant [] biasedCardTableAddressXirConstants = new XirBiasedCardTableConstant[0];
+    private final BiasedTableLiterals cardTableLiterals = new BiasedTableLiterals("Card Table biased-address", 123456789L);
 
-    @HOSTED_ONLY
-    ReferenceLiteralLocationRecorder literalRecorder;
+    /**
+     * Literals holding the summary table's biased address in the boot code region.
+     */
+    private final BiasedTableLiterals summaryTableLiterals = new BiasedTableLiterals("Summary Table biased-address", 987654321L);
 
     /**
-     * Table holding all the locations in the boot code region of reference literals to the biased card table.
-     * This allows to patch these literals with the actual correct value of the biased card table, known only at
-     * heap scheme pristine initialization.
-     * The index are word indexes relative to the start of the boot code region.
+     * Support for the literals holding a table's biased address in boot code and XIR snippets implementing the write barrier.
+     * Biased table address XirConstants are initialized with a CiConstant which holds a  WrappedWord object with a dummy address.
+     * The WrappedWord object can be used during the serializing phase of boot image generation  to identify easily the literal locations
+     * in the boot code region that hold the biased table address. A table of these location is added in the boot image and used at
+     * VM startup to patch them with the actual biased table address once this one is known.
+     * See {@link #patch(Address)}
      */
-    private int [] bootCardTableLiterals;
+    static final class BiasedTableLiterals {
+        @HOSTED_ONLY
+        private final String name;
+
+        @HOSTED_ONLY
+        private final long dummyAddress;
+
+        @HOSTED_ONLY
+        private CiConstant biasedTableAddressCiConstant;
+
+        @HOSTED_ONLY
+        private List<XirConstant> xirConstants = new ArrayList<XirConstant>(16);
+
+        @HOSTED_ONLY
+        ReferenceLiteralLocationRecorder literalRecorder;
+
+        /**
+         * List of XIR constants representing the biased table address.
+         * The list is used at startup to initialize the "startup-time" constant value.
+         */
+        private XirBiasedCardTableConstant [] biasedTableAddressXirConstants = new XirBiasedCardTableConstant[0];
+
+        /**
+         * Table holding all the locations in the boot code region of reference literals to the biased table.
+         * This allows to patch these literals with the actual correct value of the biased table, known only at
+         * heap scheme pristine initialization.
+         * The index are word indexes relative to the start of the boot code region.
+         */
+        private int [] bootTableLiterals;
+
+        @HOSTED_ONLY
+        BiasedTableLiterals(String name, long dummyAddress) {
+            this.name = name;
+            this.dummyAddress = dummyAddress;
+        }
 
-    private void patchBootCodeLiterals() {
-        final Pointer base = Code.bootCodeRegion().start().asPointer();
-        final Address biasedTableAddress = cardTable.biasedTableAddress;
-        for (int literalPos : bootCardTableLiterals) {
-            base.setWord(literalPos, biasedTableAddress);
+        @HOSTED_ONLY
+        XirConstant xirConstant(CiXirAssembler asm) {
+            if (biasedTableAddressCiConstant == null) {
+                biasedTableAddressCiConstant = WordUtil.wrappedConstant(Address.fromLong(dummyAddress));
+            }
+            XirConstant constant = new XirBiasedCardTableConstant(asm, name, biasedTableAddressCiConstant);
+            xirConstants.add(constant);
+            return constant;
+        }
+
+        @HOSTED_ONLY
+        void recordLiteralLocations() {
+            if (biasedTableAddressCiConstant == null) {
+                // No code refers to the table.
+                bootTableLiterals = new int[0];
+                return;
+            }
+            // Build a table of indexes to reference literals that point to the table.
+            literalRecorder = new ReferenceLiteralLocationRecorder(Code.bootCodeRegion(), biasedTableAddressCiConstant.asObject());
+            bootTableLiterals = literalRecorder.getLiteralLocations();
+            biasedTableAddressXirConstants = xirConstants.toArray(biasedTableAddressXirConstants);
+        }
+
+        @HOSTED_ONLY
+        void fillLiteralLocations() {
+            if (literalRecorder != null) {
+                literalRecorder.fillLiteralLocations();
+            }
+        }
+
+        void patch(Address biasedTableAddress) {
+            if (bootTableLiterals != null) {
+                final Pointer base = Code.bootCodeRegion().start().asPointer();
+                for (int literalPos : bootTableLiterals) {
+                    base.setWord(literalPos, biasedTableAddress);
+                }
+            }
+        }
+
+        void initializeXirStartupConstants(Address biasedTableAddress) {
+            final CiConstant biasedTableCiConstant = CiConstant.forLong(biasedTableAddress.toLong());
+            for (XirBiasedCardTableConstant c : biasedTableAddressXirConstants) {
+                c.setStartupValue(biasedTableCiConstant);
+            }
         }
     }
 
     public CardTableRSet() {
         cardTable = new CardTable();
         cfoTable = new CardFirstObjectTable();
+        summaryTable = UseSummaryTable ? new CardTable(LOG2_SUMMARY_ENTRY_SIZE) : null;
         tablesMemory = new MemoryRegion("Card and FOT tables");
     }
 
@@ -158,13 +259,11 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
     public void initialize(MaxineVM.Phase phase) {
         if (MaxineVM.isHosted()) {
             if (phase == Phase.SERIALIZING_IMAGE) {
-                // Build a table of indexes to reference literals that point to the card table.
-                assert biasedCardTableAddressCiConstant != null;
-                literalRecorder = new ReferenceLiteralLocationRecorder(Code.bootCodeRegion(), biasedCardTableAddressCiConstant.asObject());
-                bootCardTableLiterals = literalRecorder.getLiteralLocations();
-                biasedCardTableAddressXirConstants = xirConstants.toArray(biasedCardTableAddressXirConstants);
+                cardTableLiterals.recordLiteralLocations();
+                summaryTableLiterals.recordLiteralLocations();
             } else if (phase == MaxineVM.Phase.WRITING_IMAGE) {
-                literalRecorder.fillLiteralLocations();
+                cardTableLiterals.fillLiteralLocations();
+                summaryTableLiterals.fillLiteralLocations();
             }
         } else if (phase == MaxineVM.Phase.PRIMORDIAL) {
             // We need to initialize the card table to cover the boot region before hitting any write barriers.
@@ -205,14 +304,43 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
         cardTable.initialize(coveredAreaStart, coveredAreaSize, tablesDataStart);
         final Address cfoTableStart = tablesDataStart.plus(cardTable.tableSize(coveredAreaSize).wordAligned());
         cfoTable.initialize(coveredAreaStart, coveredAreaSize, cfoTableStart);
-        if (bootCardTableLiterals != null) {
-            patchBootCodeLiterals();
+        cardTableLiterals.patch(cardTable.biasedTableAddress);
+        if (UseSummaryTable) {
+            final Address summaryTableStart = cfoTableStart.plus(cfoTable.tableSize(coveredAreaSize).wordAligned());
+            final Address summaryCoveredAreaStart = coveredAreaStart.alignDown(1 << LOG2_SUMMARY_ENTRY_SIZE);
+            final Address summaryCoveredAreaEnd = coveredAreaStart.plus(coveredAreaSize).alignUp(1 << LOG2_SUMMARY_ENTRY_SIZE);
+            summaryTable.initialize(summaryCoveredAreaStart, summaryCoveredAreaEnd.minus(summaryCoveredAreaStart).asSize(), summaryTableStart);
+            summaryCardBias = coveredAreaStart.minus(summaryCoveredAreaStart).unsignedShiftedRight(LOG2_CARD_SIZE).toInt();
+            summaryTableLiterals.patch(summaryTable.biasedTableAddress);
+        }
+    }
+
+    /**
+     * Testing support: initializes the card table and, if {@link #UseSummaryTable} is set, the summary table over natively allocated
+     * memory, and cleans both. The card first object table is left uninitialized.
+     *
+     * @param coveredAreaStart start of the contiguous range of heap covered by the remembered set
+     * @param coveredAreaSize size of the contiguous range of heap covered by the remembered set
+     * @param cardTableStart start of the memory backing the card table
+     * @param summaryTableStart start of the memory backing the summary table
+     */
+    @HOSTED_ONLY
+    void initialize(Address coveredAreaStart, Size coveredAreaSize, Address cardTableStart, Address summaryTableStart) {
+        final Address coveredAreaEnd = coveredAreaStart.plus(coveredAreaSize);
+        cardTable.initialize(coveredAreaStart, coveredAreaEnd, cardTableStart);
+        cardTable.clean(0, cardTable.tableLength(coveredAreaSize));
+        if (UseSummaryTable) {
+            final Address summaryCoveredAreaStart = coveredAreaStart.alignDown(1 << LOG2_SUMMARY_ENTRY_SIZE);
+            final Address summaryCoveredAreaEnd = coveredAreaEnd.alignUp(1 << LOG2_SUMMARY_ENTRY_SIZE);
+            summaryTable.initialize(summaryCoveredAreaStart, summaryCoveredAreaEnd, summaryTableStart);
+            summaryTable.clean(0, summaryTable.tableLength(summaryCoveredAreaEnd.minus(summaryCoveredAreaStart).asSize()));
+            summaryCardBias = coveredAreaStart.minus(summaryCoveredAreaStart).unsignedShiftedRight(LOG2_CARD_SIZE).toInt();
         }
     }
 
     static class XirBiasedCardTableConstant extends CiXirAssembler.XirConstant {
-        XirBiasedCardTableConstant(CiXirAssembler asm, CiConstant value) {
-            super(asm, "Card Table biased-address", value);
+        XirBiasedCardTableConstant(CiXirAssembler asm, String name, CiConstant value) {
+            super(asm, name, value);
             asm.recordConstant(this);
         }
 
@@ -227,20 +355,40 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
      * Typically, this is called at the end of the PRISTINE initialization of the heap scheme.
      */
     public void initializeXirStartupConstants() {
-        final CiConstant biasedCardTableCiConstant = CiConstant.forLong(cardTable.biasedTableAddress.toLong());
-        for (XirBiasedCardTableConstant c : biasedCardTableAddressXirConstants) {
-            c.setStartupValue(biasedCardTableCiConstant);
+        cardTableLiterals.initializeXirStartupConstants(cardTable.biasedTableAddress);
+        if (UseSummaryTable) {
+            summaryTableLiterals.initializeXirStartupConstants(summaryTable.biasedTableAddress);
         }
     }
 
     @HOSTED_ONLY
     private XirConstant biasedCardTableAddressXirConstant(CiXirAssembler asm) {
-        if (biasedCardTableAddressCiConstant == null) {
-            biasedCardTableAddressCiConstant = WordUtil.wrappedConstant(Address.fromLong(123456789L));
+        return cardTableLiterals.xirConstant(asm);
+    }
+
+    /**
+     * Generates the marking of the card whose index (biased as the card table's) is in {@code cardIndex}.
+     * If {@link #UseConditionalCardMarking} is set, the card is only stored to if it isn't already dirty.
+     * The summary table entry covering the card is dirtied too if the {@linkplain #UseSummaryTable summary table} is used.
+     */
+    @HOSTED_ONLY
+    private void genCardMark(CiXirAssembler asm, XirConstant biasedCardTableAddress, XirOperand cardIndex) {
+        XirLabel done = null;
+        if (UseConditionalCardMarking) {
+            done = asm.createInlineLabel("cardMarked");
+            final XirOperand card = asm.createTemp("card", CiKind.Int);
+            asm.pload(CiKind.Byte, card, biasedCardTableAddress, cardIndex, false);
+            asm.jeq(done, card, asm.i(CardState.DIRTY_CARD.value()));
+        }
+        asm.pstore(CiKind.Byte, biasedCardTableAddress, cardIndex, asm.i(CardState.DIRTY_CARD.value()), false);
+        if (UseSummaryTable) {
+            final XirOperand summaryIndex = asm.createTemp("summaryIndex", WordUtil.archKind());
+            asm.shr(summaryIndex, cardIndex, asm.i(LOG2_CARDS_PER_SUMMARY_ENTRY));
+            asm.pstore(CiKind.Byte, summaryTableLiterals.xirConstant(asm), summaryIndex, asm.i(CardState.DIRTY_CARD.value()), false);
+        }
+        if (done != null) {
+            asm.bindInline(done);
         }
-        XirConstant constant = new XirBiasedCardTableConstant(asm, biasedCardTableAddressCiConstant);
-        xirConstants.add(constant);
-        return constant;
     }
 
     @HOSTED_ONLY
@@ -251,7 +399,7 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
         // The GC will need to carefully skip reference table entries holding the biased base of the card table.
         // final XirConstant biasedCardTableAddress = asm.createConstant(CiConstant.forObject(dummyCardTable));
         final XirConstant biasedCardTableAddress = biasedCardTableAddressXirConstant(asm);
-        asm.pstore(CiKind.Byte, biasedCardTableAddress, temp, asm.i(CardState.DIRTY_CARD.value()), false);
+        genCardMark(asm, biasedCardTableAddress, temp);
 
         // FIXME: remove this temp debug code
         if (MaxineVM.isDebug()) {
@@ -269,7 +417,7 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
         asm.shr(temp, temp, asm.i(CardTableRSet.LOG2_CARD_SIZE));
         // final XirConstant biasedCardTableAddress = asm.createConstant(CiConstant.forObject(dummyCardTable));
         final XirConstant biasedCardTableAddress = biasedCardTableAddressXirConstant(asm);
-        asm.pstore(CiKind.Byte, biasedCardTableAddress, temp, asm.i(CardState.DIRTY_CARD.value()), false);
+        genCardMark(asm, biasedCardTableAddress, temp);
     }
 
     /**
@@ -278,7 +426,7 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
      * @param offset the offset from the origin of the cell to the updated reference.
      */
     public void record(Reference ref, Offset offset) {
-        cardTable.dirtyCovered(ref.toOrigin().plus(offset));
+        dirtyCovered(ref.toOrigin().plus(offset));
     }
 
     /**
@@ -288,7 +436,112 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
      * @param index a word index to the updated reference
      */
     public void record(Reference ref,  int displacement, int index) {
-        cardTable.dirtyCovered(ref.toOrigin().plus(Address.fromInt(index).shiftedLeft(Word.widthValue().log2numberOfBytes).plus(displacement)));
+        dirtyCovered(ref.toOrigin().plus(Address.fromInt(index).shiftedLeft(Word.widthValue().log2numberOfBytes).plus(displacement)));
+    }
+
+    void dirtyCovered(Address coveredAddress) {
+        if (UseConditionalCardMarking && cardTable.unsafeGet(coveredAddress) == CardState.DIRTY_CARD.value) {
+            return;
+        }
+        cardTable.dirtyCovered(coveredAddress);
+        if (UseSummaryTable) {
+            summaryTable.dirtyCovered(coveredAddress);
+        }
+    }
+
+    /**
+     * Index of the summary table entry covering a card.
+     */
+    private int summaryIndex(int cardIndex) {
+        return (cardIndex + summaryCardBias) >> LOG2_CARDS_PER_SUMMARY_ENTRY;
+    }
+
+    /**
+     * Index of the first card covered by a summary table entry. This may be negative for the first entry of the summary table.
+     */
+    private int firstCardIndex(int summaryIndex) {
+        return (summaryIndex << LOG2_CARDS_PER_SUMMARY_ENTRY) - summaryCardBias;
+    }
+
+    /**
+     * Find the first dirty card in the specified range of card indexes, skipping over the cards covered by clean summary table entries.
+     * Summary table entries whose cards are all found clean are cleaned if {@code cleanSummary} is set. This must only be
+     * requested when no mutator can concurrently dirty cards.
+     *
+     * @param start index of the first card in the range (inclusive)
+     * @param end index of the last card of the range (exclusive)
+     * @param cleanSummary specifies whether summary table entries covering only clean cards are cleaned
+     * @return the index to the first dirty card, or the end index if none of the cards in the range are dirty.
+     */
+    int firstDirtyCard(int start, int end, boolean cleanSummary) {
+        if (!UseSummaryTable) {
+            return cardTable.first(start, end, CardState.DIRTY_CARD);
+        }
+        if (start >= end) {
+            return end;
+        }
+        final int summaryEnd = summaryIndex(end - 1) + 1;
+        int cardIndex = start;
+        while (cardIndex < end) {
+            final int summaryIndex = summaryTable.first(summaryIndex(cardIndex), summaryEnd, CardState.DIRTY_CARD);
+            if (summaryIndex >= summaryEnd) {
+                return end;
+            }
+            final int firstCovered = firstCardIndex(summaryIndex);
+            final int endCovered = firstCardIndex(summaryIndex + 1);
+            cardIndex = Math.max(cardIndex, firstCovered);
+            final int limit = Math.min(end, endCovered);
+            final int dirtyCardIndex = cardTable.first(cardIndex, limit, CardState.DIRTY_CARD);
+            if (dirtyCardIndex < limit) {
+                return dirtyCardIndex;
+            }
+            if (cleanSummary && cardIndex == firstCovered && limit == endCovered) {
+                summaryTable.clean(summaryIndex);
+            }
+            cardIndex = limit;
+        }
+        return end;
+    }
+
+    /**
+     * Cleans the summary table entries that only cover clean cards in the specified range of card indexes, while mutators
+     * may concurrently dirty cards. Each entry is cleaned before the cards it covers are checked, and dirtied again if one
+     * of them is dirty. As the write barrier dirties the card before the summary table entry, a card dirtied concurrently
+     * is never left covered by a clean summary table entry.
+     * Summary table entries covering cards outside of the range are left unchanged.
+     *
+     * @param start index of the first card in the range (inclusive)
+     * @param end index of the last card of the range (exclusive)
+     * @return the number of summary table entries cleaned
+     */
+    int concurrentlyCleanSummary(int start, int end) {
+        if (!UseSummaryTable || start >= end) {
+            return 0;
+        }
+        int summaryIndex = summaryIndex(start);
+        if (firstCardIndex(summaryIndex) < start) {
+            summaryIndex++;
+        }
+        final int summaryEnd = summaryIndex(end);
+        int cleaned = 0;
+        summaryIndex = summaryTable.first(summaryIndex, summaryEnd, CardState.DIRTY_CARD);
+        while (summaryIndex < summaryEnd) {
+            final int firstCovered = firstCardIndex(summaryIndex);
+            final int endCovered = firstCardIndex(summaryIndex + 1);
+            if (cardTable.first(firstCovered, endCovered, CardState.DIRTY_CARD) >= endCovered) {
+                summaryTable.clean(summaryIndex);
+                if (!MaxineVM.isHosted()) {
+                    MemoryBarriers.barrier(MemoryBarriers.STORE_LOAD);
+                }
+                if (cardTable.first(firstCovered, endCovered, CardState.DIRTY_CARD) < endCovered) {
+                    summaryTable.dirty(summaryIndex);
+                } else {
+                    cleaned++;
+                }
+            }
+            summaryIndex = summaryTable.first(summaryIndex + 1, summaryEnd, CardState.DIRTY_CARD);
+        }
+        return cleaned;
     }
 
     /**
@@ -308,7 +561,7 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
      *
      * @param cellVisitor the logic to apply to the visited cell
      */
-    private void visitCards(int startCardIndex, int endCardIndex, OverlappingCellVisitor cellVisitor) {
+    void visitCards(int startCardIndex, int endCardIndex, OverlappingCellVisitor cellVisitor) {
         final Address start = cardTable.rangeStart(startCardIndex);
         final Address end = cardTable.rangeStart(endCardIndex);
         Pointer cell = cfoTable.cellStart(startCardIndex).asPointer();
@@ -368,7 +621,16 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
     }
 
     public void setCards(Address start, Address end, CardState cardState) {
-        cardTable.fill(cardTable.tableEntryIndex(start), cardTable.tableEntryIndex(end), cardState.value);
+        final int startIndex = cardTable.tableEntryIndex(start);
+        final int endIndex = cardTable.tableEntryIndex(end);
+        if (cardState == CardState.CLEAN_CARD) {
+            cardTable.clean(startIndex, endIndex);
+        } else {
+            cardTable.dirty(startIndex, endIndex);
+            if (UseSummaryTable && startIndex < endIndex) {
+                summaryTable.dirty(summaryIndex(startIndex), summaryIndex(endIndex - 1) + 1);
+            }
+        }
     }
 
     public static abstract class CardRangeVisitor {
@@ -377,7 +639,7 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
 
     public void cleanAndVisitCards(Address start, Address end, CardRangeVisitor cardRangeVisitor) {
         final int endOfRange = cardTable.tableEntryIndex(end);
-        int startCardIndex = cardTable.first(cardTable.tableEntryIndex(start), endOfRange, CardState.DIRTY_CARD);
+        int startCardIndex = firstDirtyCard(cardTable.tableEntryIndex(start), endOfRange, true);
         while (startCardIndex < endOfRange) {
             int endCardIndex = cardTable.firstNot(startCardIndex + 1, endOfRange, CardState.DIRTY_CARD);
             if (traceCardTableRSet()) {
@@ -388,7 +650,7 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
             if (++endCardIndex >= endOfRange) {
                 return;
             }
-            startCardIndex = cardTable.first(endCardIndex, endOfRange, CardState.DIRTY_CARD);
+            startCardIndex = firstDirtyCard(endCardIndex, endOfRange, true);
         }
     }
 
@@ -400,7 +662,7 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
      */
     public void cleanAndVisitCards(Address start, Address end, OverlappingCellVisitor cellVisitor) {
         final int endOfRange = cardTable.tableEntryIndex(end);
-        int startCardIndex = cardTable.first(cardTable.tableEntryIndex(start), endOfRange, CardState.DIRTY_CARD);
+        int startCardIndex = firstDirtyCard(cardTable.tableEntryIndex(start), endOfRange, true);
         while (startCardIndex < endOfRange) {
             int endCardIndex = cardTable.firstNot(startCardIndex + 1, endOfRange, CardState.DIRTY_CARD);
             if (traceCardTableRSet()) {
@@ -411,7 +673,7 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
             if (++endCardIndex >= endOfRange) {
                 return;
             }
-            startCardIndex = cardTable.first(endCardIndex, endOfRange, CardState.DIRTY_CARD);
+            startCardIndex = firstDirtyCard(endCardIndex, endOfRange, true);
         }
     }
 
@@ -438,7 +700,12 @@ public final class CardTableRSet extends DeadSpaceListener implements HeapManage
      */
     @Override
     public Size memoryRequirement(Size maxCoveredAreaSize) {
-        return cardTable.tableSize(maxCoveredAreaSize).plus(cfoTable.tableSize(maxCoveredAreaSize));
+        Size size = cardTable.tableSize(maxCoveredAreaSize).wordAligned().plus(cfoTable.tableSize(maxCoveredAreaSize));
+        if (UseSummaryTable) {
+            // The summary table may need one more entry, as its covered area is aligned on the size covered by an entry.
+            size = size.wordAligned().plus(summaryTable.tableSize(maxCoveredAreaSize.plus(2 << LOG2_SUMMARY_ENTRY_SIZE)));
+        }
+        return size;
     }
 
     /**
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.heap.gcx.rset.ctbl;
+
+import static com.sun.max.vm.heap.gcx.HeapFreeChunk.*;
+
+import com.oracle.max.cri.intrinsics.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.MaxineVM.Phase;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.heap.gcx.*;
+import com.sun.max.vm.layout.*;
+import com.sun.max.vm.runtime.*;
+
+/**
+ * Background thread that refines a {@link CardTableRSet} between collections so as to bound the number of dirty cards
+ * a minor collection has to process.
+ * <p>
+ * The thread periodically scans the dirty cards of the old generation. Each dirty card is cleaned first, then the cells
+ * overlapping it (found with the {@link CardFirstObjectTable}) are scanned for references into the young generation.
+ * Cards that still hold such references are dirtied again; the others remain clean. Cleaning the card before scanning
+ * it guarantees that a reference store racing with the scan re-dirties the card. This does not hold with
+ * {@linkplain CardTableRSet#UseConditionalCardMarking conditional card marking}, with which refinement is disabled.
+ * The remaining dirty cards are then summarized: the {@linkplain CardTableRSet#UseSummaryTable summary table} entries
+ * covering only clean cards are cleaned, so that the pause only visits the summary entries of the cards left dirty.
+ * <p>
+ * Cards are refined in batches during which the refinement thread doesn't reach safepoints, so that a collection never
+ * observes a partially refined card. The heap scheme must {@linkplain #notifyGC() notify} the end of every collection so that
+ * a pass over the old generation interrupted by a collection is abandoned. Only the ranges of the old generation that
+ * are iterable and that no mutator allocates to between collections must be {@linkplain RefinableSpace provided} to the
+ * refinement thread. Heap spaces whose iteration state is shared with the collector or the allocators record their
+ * ranges in a {@link RangeSnapshot} at the end of every collection instead.
+ */
+public class ConcurrentCardRefinement extends Thread {
+
+    private static boolean ConcurrentRefinement;
+    private static int ConcurrentRefinementPeriod = 20;
+    private static int ConcurrentRefinementBatchSize = 64;
+    private static boolean TraceConcurrentRefinement;
+
+    static {
+        VMOptions.addFieldOption("-XX:", "ConcurrentRefinement", ConcurrentCardRefinement.class,
+            "Refine the card table remembered set with a background thread between collections (generational heap schemes only).", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "ConcurrentRefinementPeriod", ConcurrentCardRefinement.class,
+            "Period (in ms) between two passes of the concurrent refinement thread.", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "ConcurrentRefinementBatchSize", ConcurrentCardRefinement.class,
+            "Maximum number of dirty cards refined by the concurrent refinement thread without reaching a safepoint.", Phase.PRISTINE);
+        VMOptions.addFieldOption("-XX:", "TraceConcurrentRefinement", ConcurrentCardRefinement.class,
+            "Trace the passes of the concurrent refinement thread.", Phase.PRISTINE);
+    }
+
+    /**
+     * Determines if concurrent refinement was requested and can be used.
+     */
+    public static boolean isEnabled() {
+        if (ConcurrentRefinement && CardTableRSet.UseConditionalCardMarking) {
+            Log.println("Concurrent refinement is incompatible with conditional card marking, ignoring -XX:+ConcurrentRefinement");
+            ConcurrentRefinement = false;
+        }
+        return ConcurrentRefinement;
+    }
+
+    /**
+     * Provider of the ranges of the old generation that can be refined.
+     */
+    public interface RefinableSpace {
+        /**
+         * Visit the iterable ranges of the old generation that are not allocated to between collections.
+         * Called by the refinement thread outside of safepoints.
+         */
+        void visitRefinableRanges(CellRangeVisitor visitor);
+    }
+
+    /**
+     * Copy of the address ranges of a heap space, recorded by the collector at the end of every collection. The refinement
+     * thread iterates over the copy and never over the data structures the collector and the allocators use to track the
+     * regions of the space. The capacity is fixed at construction so that recording doesn't allocate.
+     */
+    public static final class RangeSnapshot implements RefinableSpace, CellRangeVisitor {
+        private final long[] starts;
+        private final long[] ends;
+        private int count;
+
+        /**
+         * @param maxRanges maximum number of discontiguous ranges to record
+         */
+        public RangeSnapshot(int maxRanges) {
+            starts = new long[maxRanges];
+            ends = new long[maxRanges];
+        }
+
+        /**
+         * Discards the recorded ranges before recording new ones with {@link #visitCells(Address, Address)}.
+         * Must be called by the collector, at safepoint.
+         */
+        public void reset() {
+            count = 0;
+        }
+
+        /**
+         * Records a range. Must be called by the collector, at safepoint.
+         */
+        @Override
+        public void visitCells(Address start, Address end) {
+            if (count > 0 && ends[count - 1] == start.toLong()) {
+                ends[count - 1] = end.toLong();
+                return;
+            }
+            FatalError.check(count < starts.length, "Too many ranges for concurrent refinement");
+            starts[count] = start.toLong();
+            ends[count] = end.toLong();
+            count++;
+        }
+
+        /**
+         * Visits the recorded ranges. A collection may replace them concurrently, in which case the
+         * refinement pass visiting them is {@linkplain RangeRefiner#aborted abandoned}.
+         */
+        @Override
+        public void visitRefinableRanges(CellRangeVisitor visitor) {
+            final int n = count;
+            for (int i = 0; i < n; i++) {
+                visitor.visitCells(Address.fromLong(starts[i]), Address.fromLong(ends[i]));
+            }
+        }
+    }
+
+    /**
+     * Scans the cells overlapping a card for references into the young generation.
+     * All the references of a tuple are scanned, not just those over the card, because the write barrier dirties the card
+     * holding the tuple's header, not the card holding the updated reference. The array part of a hybrid holds words the
+     * collector doesn't scan, but hybrids are rare enough outside of the boot region that cards overlapping one are simply
+     * left dirty for the collector.
+     */
+    final class YoungReferenceFinder extends PointerIndexVisitor implements OverlappingCellVisitor {
+        boolean found;
+
+        @Override
+        public void visit(Pointer pointer, int wordIndex) {
+            if (!found && youngSpace.contains(pointer.getReference(wordIndex).toOrigin())) {
+                found = true;
+            }
+        }
+
+        @Override
+        public Pointer visitCell(Pointer cell, Address start, Address end) {
+            final Pointer origin = Layout.cellToOrigin(cell);
+            final Hub hub = Layout.getHub(origin);
+            if (hub == heapFreeChunkHub()) {
+                return cell.plus(getFreechunkSize(origin));
+            }
+            final SpecificLayout specificLayout = hub.specificLayout;
+            if (specificLayout.isTupleLayout()) {
+                TupleReferenceMap.visitReferences(hub, origin, this);
+                if (hub.isJLRReference) {
+                    visit(origin, SpecialReferenceManager.referentIndex());
+                }
+                return found ? end.asPointer() : cell.plus(hub.tupleSize);
+            }
+            if (specificLayout.isHybridLayout()) {
+                found = true;
+            } else if (specificLayout.isReferenceArrayLayout()) {
+                final Pointer firstElement = origin.plusWords(Layout.firstElementIndex());
+                final Pointer elementsEnd = firstElement.plusWords(Layout.readArrayLength(origin));
+                Pointer p = firstElement.greaterThan(start) ? firstElement : start.asPointer();
+                final Pointer limit = elementsEnd.lessThan(end) ? elementsEnd : end.asPointer();
+                while (p.lessThan(limit) && !found) {
+                    visit(p, 0);
+                    p = p.plusWords(1);
+                }
+            }
+            return found ? end.asPointer() : cell.plus(Layout.size(origin));
+        }
+    }
+
+    /**
+     * Refines the dirty cards of an iterable range, in batches.
+     */
+    final class RangeRefiner implements CellRangeVisitor {
+        /**
+         * Value of {@link ConcurrentCardRefinement#gcEpoch} when the current pass started.
+         */
+        int epoch;
+        /**
+         * Set when the current pass is abandoned because of a collection.
+         */
+        boolean aborted;
+
+        @Override
+        public void visitCells(Address start, Address end) {
+            final CardTable cardTable = rset.cardTable;
+            int cardIndex = cardTable.tableEntryIndex(start);
+            if (!cardTable.atBoundary(start)) {
+                // Only cards completely covered by the range are refined.
+                cardIndex++;
+            }
+            final int startIndex = cardIndex;
+            final int endIndex = cardTable.tableEntryIndex(end);
+            while (cardIndex < endIndex && !aborted) {
+                SafepointPoll.disable();
+                if (epoch != gcEpoch) {
+                    aborted = true;
+                } else {
+                    cardIndex = refineBatch(cardIndex, endIndex);
+                }
+                SafepointPoll.enable();
+            }
+            if (!aborted) {
+                SafepointPoll.disable();
+                if (epoch != gcEpoch) {
+                    aborted = true;
+                } else {
+                    cleanedSummaryEntries += rset.concurrentlyCleanSummary(startIndex, endIndex);
+                }
+                SafepointPoll.enable();
+            }
+        }
+    }
+
+    private final CardTableRSet rset;
+    private final EvacuatingSpace youngSpace;
+    private final RefinableSpace oldSpace;
+    private final YoungReferenceFinder youngReferenceFinder = new YoungReferenceFinder();
+    private final RangeRefiner rangeRefiner = new RangeRefiner();
+
+    /**
+     * Count of collections, incremented by the collector at the end of every collection.
+     */
+    private volatile int gcEpoch;
+
+    /**
+     * Statistics for tracing.
+     */
+    private int refinedCards;
+    private int cleanedCards;
+    private int cleanedSummaryEntries;
+
+    public ConcurrentCardRefinement(CardTableRSet rset, EvacuatingSpace youngSpace, RefinableSpace oldSpace) {
+        super("ConcurrentRefinement");
+        setDaemon(true);
+        this.rset = rset;
+        this.youngSpace = youngSpace;
+        this.oldSpace = oldSpace;
+    }
+
+    /**
+     * Notifies the refinement thread of the end of a collection. Must be called by the collector, at safepoint.
+     */
+    public void notifyGC() {
+        gcEpoch++;
+    }
+
+    /**
+     * Refine up to {@link #ConcurrentRefinementBatchSize} dirty cards in the specified range of card indexes.
+     * Must be called with safepoints disabled.
+     *
+     * @return index of the card after the last refined card, or the end index if no dirty card remains in the range
+     */
+    private int refineBatch(int startIndex, int endIndex) {
+        final CardTable cardTable = rset.cardTable;
+        int remaining = ConcurrentRefinementBatchSize;
+        int cardIndex = rset.firstDirtyCard(startIndex, endIndex, false);
+        while (cardIndex < endIndex) {
+            cardTable.clean(cardIndex);
+            // The clean card must be visible before reading references, so that a racing store re-dirties it.
+            if (!MaxineVM.isHosted()) {
+                MemoryBarriers.barrier(MemoryBarriers.STORE_LOAD);
+            }
+            refinedCards++;
+            if (refersToYoung(cardIndex)) {
+                cardTable.dirty(cardIndex);
+            } else {
+                cleanedCards++;
+            }
+            cardIndex++;
+            if (--remaining == 0) {
+                return cardIndex;
+            }
+            cardIndex = rset.firstDirtyCard(cardIndex, endIndex, false);
+        }
+        return endIndex;
+    }
+
+    /**
+     * Determines whether the cells overlapping a card hold references into the young generation.
+     * Overridden by tests, which have no heap to scan.
+     *
+     * @param cardIndex index of a clean card
+     */
+    boolean refersToYoung(int cardIndex) {
+        youngReferenceFinder.found = false;
+        rset.visitCards(cardIndex, cardIndex + 1, youngReferenceFinder);
+        return youngReferenceFinder.found;
+    }
+
+    /**
+     * Makes one refinement pass over the refinable ranges of the old generation.
+     */
+    void refine() {
+        refinedCards = 0;
+        cleanedCards = 0;
+        cleanedSummaryEntries = 0;
+        rangeRefiner.epoch = gcEpoch;
+        rangeRefiner.aborted = false;
+        oldSpace.visitRefinableRanges(rangeRefiner);
+        if (TraceConcurrentRefinement && refinedCards > 0) {
+            final boolean lockDisabledSafepoints = Log.lock();
+            Log.print("Concurrent refinement: refined ");
+            Log.print(refinedCards);
+            Log.print(" cards, cleaned ");
+            Log.print(cleanedCards);
+            if (CardTableRSet.UseSummaryTable) {
+                Log.print(" cards and ");
+                Log.print(cleanedSummaryEntries);
+                Log.print(" summary entries");
+            }
+            if (rangeRefiner.aborted) {
+                Log.print(" (interrupted by GC)");
+            }
+            Log.println();
+            Log.unlock(lockDisabledSafepoints);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                Thread.sleep(ConcurrentRefinementPeriod);
+            } catch (InterruptedException e) {
+            }
+            refine();
+        }
+    }
+}
@@ -327,6 +327,17 @@ public final class GenSSHeapScheme extends HeapSchemeWithTLABAdaptor implements
     @INSPECTED
     private final EvacuatorToCardSpace oldSpaceEvacuator;
 
+    /**
+     * Background refinement of the old generation's dirty cards, if enabled.
+     */
+    private ConcurrentCardRefinement cardRefinement;
+
+    /**
+     * End of the part of the old generation that can be refined concurrently. Set at the end of every collection to the top of the
+     * old generation's allocator: cells above it may be allocated by mutators between collections.
+     */
+    private Address refinementLimit = Address.zero();
+
     /**
      * Record the decision taken at the end of a minor collection.
      * This also simplifies the reference model of the inspector to identify whether the current
@@ -367,7 +378,7 @@ public final class GenSSHeapScheme extends HeapSchemeWithTLABAdaptor implements
     /**
      * Storage for recording references to be excluded from the set of verified by the reference verifier.
      */
-    private final long [] refExclusions = new long[1];
+    private final long [] refExclusions = new long[CardTableRSet.UseSummaryTable ? 2 : 1];
 
     /**
      * A verifier that checks that all roots are pointing to memory areas holding live objects.
@@ -459,6 +470,20 @@ public final class GenSSHeapScheme extends HeapSchemeWithTLABAdaptor implements
         if (phase == PRISTINE) {
             lastFullGCTime = System.currentTimeMillis();
         }
+        if (phase == RUNNING && ConcurrentCardRefinement.isEnabled()) {
+            refinementLimit = oldSpace.space.start();
+            cardRefinement = new ConcurrentCardRefinement(cardTableRSet, youngSpace, new ConcurrentCardRefinement.RefinableSpace() {
+                @Override
+                public void visitRefinableRanges(CellRangeVisitor visitor) {
+                    final Address start = oldSpace.space.start();
+                    final Address end = refinementLimit;
+                    if (end.greaterThan(start)) {
+                        visitor.visitCells(start, end);
+                    }
+                }
+            });
+            cardRefinement.start();
+        }
         if (phase == TERMINATING) {
             if (Heap.logGCTime()) {
                 timeLogger.logPhaseTimes(-1,
@@ -736,6 +761,10 @@ public final class GenSSHeapScheme extends HeapSchemeWithTLABAdaptor implements
             Log.println("--Begin nursery evacuation");
         }
         final long startGCTime = System.currentTimeMillis();
+        final Size oldSpaceUsedBefore = oldSpace.usedSpace();
+        if (GCEventLog.enabled()) {
+            GCEventLog.beginCollection(false, reportUsedSpace());
+        }
         evacTimers.start(TOTAL);
         youngSpaceEvacuator.setGCOperation(genCollection);
         HeapScheme.Inspect.notifyHeapPhaseChange(HeapPhase.ANALYZING);
@@ -764,6 +793,10 @@ public final class GenSSHeapScheme extends HeapSchemeWithTLABAdaptor implements
         }
         final Size estimatedEvac = estimatedNextEvac();
         evacTimers.stop(TOTAL);
+        if (GCEventLog.enabled()) {
+            final Size oldSpaceUsedAfter = oldSpace.usedSpace();
+            logGCEvent(oldSpaceUsedAfter.greaterThan(oldSpaceUsedBefore) ? oldSpaceUsedAfter.minus(oldSpaceUsedBefore).asSize() : Size.zero());
+        }
         if (Heap.logGCTime()) {
             timeLogger.logPhaseTimes(invocationCount,
                             evacTimers.get(ROOT_SCAN).getLastElapsedTime(),
@@ -782,6 +815,9 @@ public final class GenSSHeapScheme extends HeapSchemeWithTLABAdaptor implements
             if (MaxineVM.isDebug() && Heap.verbose()) {
                 Log.println("--Begin old generation collection");
             }
+            if (GCEventLog.enabled()) {
+                GCEventLog.beginCollection(true, reportUsedSpace());
+            }
             evacTimers.start(TOTAL);
             doOldGenCollection();
             if (MaxineVM.isDebug() && Heap.verbose()) {
@@ -797,6 +833,9 @@ public final class GenSSHeapScheme extends HeapSchemeWithTLABAdaptor implements
                 resize(oldSpace, resizingPolicy.oldGenSize());
             }
             evacTimers.stop(TOTAL);
+            if (GCEventLog.enabled()) {
+                logGCEvent(Size.zero());
+            }
 
             if (Heap.logGCTime()) {
                 timeLogger.logPhaseTimes(invocationCount,
@@ -833,6 +872,11 @@ public final class GenSSHeapScheme extends HeapSchemeWithTLABAdaptor implements
         oldOverflowEvacuationMark = Address.zero();
         youngOverflowEvacuationOp = null;
         oldOverflowEvacuationOp = null;
+        if (cardRefinement != null) {
+            final Address top = oldSpace.allocator().unsafeTop();
+            refinementLimit = top.greaterThan(oldSpace.space.start()) && top.lessEqual(oldSpace.space.committedEnd()) ? top : oldSpace.space.start();
+            cardRefinement.notifyGC();
+        }
         final long endGCTime = System.currentTimeMillis();
         if (requiresFullGC) {
             gcRequest.fullGCOccurred = requiresFullGC;
@@ -845,6 +889,20 @@ public final class GenSSHeapScheme extends HeapSchemeWithTLABAdaptor implements
         HeapScheme.Inspect.notifyHeapPhaseChange(HeapPhase.MUTATING);
     }
 
+    /**
+     * Reports the collection that just completed to the {@link GCEventLog}.
+     */
+    private void logGCEvent(Size promoted) {
+        GCEventLog.phaseTime(GCEventLog.Phase.ROOTS, evacTimers.get(ROOT_SCAN).getLastElapsedTime() + evacTimers.get(BOOT_HEAP_SCAN).getLastElapsedTime() +
+                        evacTimers.get(CODE_SCAN).getLastElapsedTime() + evacTimers.get(IMMORTAL_SCAN).getLastElapsedTime());
+        GCEventLog.phaseTime(GCEventLog.Phase.CARD_SCAN, evacTimers.get(RSET_SCAN).getLastElapsedTime());
+        GCEventLog.phaseTime(GCEventLog.Phase.EVACUATION, evacTimers.get(COPY).getLastElapsedTime());
+        GCEventLog.phaseTime(GCEventLog.Phase.REFERENCE_PROCESSING, evacTimers.get(WEAK_REF).getLastElapsedTime());
+        GCEventLog.spaceOccupancy(GCEventLog.Space.YOUNG, youngSpace.usedSpace(), youngSpace.totalSpace());
+        GCEventLog.spaceOccupancy(GCEventLog.Space.OLD, oldSpace.usedSpace(), oldSpace.totalSpace());
+        GCEventLog.endCollection(reportUsedSpace(), promoted);
+    }
+
     @Override
     public Size reportFreeSpace() {
         return oldSpace.freeSpace().plus(youngSpace.freeSpace());
@@ -940,6 +998,9 @@ public final class GenSSHeapScheme extends HeapSchemeWithTLABAdaptor implements
             initializeCoverage(firstUnusedByteAddress, oldSpace.highestAddress().minus(firstUnusedByteAddress).asSize());
             cardTableRSet.initializeXirStartupConstants();
             refExclusions[0] = cardTableRSet.cardTable.biasedTableAddress().toLong();
+            if (CardTableRSet.UseSummaryTable) {
+                refExclusions[1] = cardTableRSet.summaryTable.biasedTableAddress().toLong();
+            }
             refVerifier.setExclusions(refExclusions);
             /*
              * The evacuators include their own local allocation buffer, refilled via the EvacuationBufferProvider interface implemented by the GenSSHeapScheme.
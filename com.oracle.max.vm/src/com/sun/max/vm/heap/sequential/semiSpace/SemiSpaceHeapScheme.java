@@ -267,13 +267,13 @@ public class SemiSpaceHeapScheme extends HeapSchemeWithTLAB implements CellVisit
     }
 
     private static void startTimer(Timer timer) {
-        if (Heap.logGCTime()) {
+        if (Heap.timeGCPhases()) {
             timer.start();
         }
     }
 
     private static void stopTimer(Timer timer) {
-        if (Heap.logGCTime()) {
+        if (Heap.timeGCPhases()) {
             timer.stop();
         }
     }
@@ -345,6 +345,9 @@ public class SemiSpaceHeapScheme extends HeapSchemeWithTLAB implements CellVisit
 
                 final long startGCTime = System.currentTimeMillis();
                 collectionCount++;
+                if (GCEventLog.enabled()) {
+                    GCEventLog.beginCollection(true, reportUsedSpace());
+                }
                 startTimer(gcTimer);
 
                 startTimer(clearTimer);
@@ -407,6 +410,7 @@ public class SemiSpaceHeapScheme extends HeapSchemeWithTLAB implements CellVisit
                 }
                 startTimer(weakRefTimer);
                 SpecialReferenceManager.processDiscoveredSpecialReferences(refForwarder);
+                SpecialReferenceManager.processWeakRoots(refForwarder);
                 stopTimer(weakRefTimer);
                 stopTimer(gcTimer);
                 if (Heap.logGCPhases()) {
@@ -452,6 +456,14 @@ public class SemiSpaceHeapScheme extends HeapSchemeWithTLAB implements CellVisit
                                     gcTimer.getLastElapsedTime());
 
                 }
+                if (GCEventLog.enabled()) {
+                    GCEventLog.phaseTime(GCEventLog.Phase.ROOTS, rootScanTimer.getLastElapsedTime() + bootHeapScanTimer.getLastElapsedTime() +
+                                    codeScanTimer.getLastElapsedTime() + immortalSpaceScanTimer.getLastElapsedTime());
+                    GCEventLog.phaseTime(GCEventLog.Phase.EVACUATION, copyTimer.getLastElapsedTime());
+                    GCEventLog.phaseTime(GCEventLog.Phase.REFERENCE_PROCESSING, weakRefTimer.getLastElapsedTime());
+                    GCEventLog.spaceOccupancy(GCEventLog.Space.HEAP, reportUsedSpace(), toSpace.size());
+                    GCEventLog.endCollection(reportUsedSpace(), Size.zero());
+                }
             } catch (Throwable throwable) {
                 FatalError.unexpected("Exception during GC", throwable);
             }
@@ -29,6 +29,8 @@ import com.sun.max.vm.classfile.constant.*;
 
 /**
  * Method substitutions for {@link java.lang.String java.lang.String}.
+ * The comparison and search methods are implemented with the word-at-a-time helpers in {@link JDK_java_util_Arrays}.
+ * They assume the representation of strings without offset and count fields.
  */
 @METHOD_SUBSTITUTIONS(String.class)
 public final class JDK_java_lang_String {
@@ -40,6 +42,20 @@ public final class JDK_java_lang_String {
     @INTRINSIC(UNSAFE_CAST)
     private native String thisString();
 
+    static class StringAlias {
+        @ALIAS(declaringClass = String.class)
+        char[] value;
+        @ALIAS(declaringClass = String.class)
+        int hash;
+    }
+
+    @INTRINSIC(UNSAFE_CAST)
+    private static native StringAlias asStringAlias(String s);
+
+    private static char[] valueOf(String s) {
+        return asStringAlias(s).value;
+    }
+
     /**
      * Intern this string, returning a canonicalized version.
      * @see java.lang.String#intern()
@@ -50,4 +66,127 @@ public final class JDK_java_lang_String {
     public String intern() {
         return SymbolTable.intern(thisString());
     }
+
+    /**
+     * @see java.lang.String#equals(Object)
+     */
+    @SUBSTITUTE
+    public boolean equals(Object anObject) {
+        final String thisString = thisString();
+        if (thisString == anObject) {
+            return true;
+        }
+        if (anObject instanceof String) {
+            final char[] v1 = valueOf(thisString);
+            final char[] v2 = valueOf((String) anObject);
+            return v1.length == v2.length && JDK_java_util_Arrays.regionEquals(v1, v2, JDK_java_util_Arrays.CHAR_ARRAY_BASE_OFFSET, (long) v1.length << 1);
+        }
+        return false;
+    }
+
+    /**
+     * Substituted together with {@link #equals(Object)}, with the same cached hash code as the JDK's implementation.
+     * @see java.lang.String#hashCode()
+     */
+    @SUBSTITUTE
+    public int hashCode() {
+        final StringAlias thisString = asStringAlias(thisString());
+        int h = thisString.hash;
+        if (h == 0) {
+            for (char c : thisString.value) {
+                h = 31 * h + c;
+            }
+            thisString.hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * @see java.lang.String#compareTo(String)
+     */
+    @SUBSTITUTE
+    public int compareTo(String anotherString) {
+        final char[] v1 = valueOf(thisString());
+        final char[] v2 = valueOf(anotherString);
+        final int len1 = v1.length;
+        final int len2 = v2.length;
+        final int lim = Math.min(len1, len2);
+        int k = (int) (JDK_java_util_Arrays.equalPrefix(v1, v2, JDK_java_util_Arrays.CHAR_ARRAY_BASE_OFFSET, (long) lim << 1) >> 1);
+        for (; k < lim; k++) {
+            final char c1 = v1[k];
+            final char c2 = v2[k];
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return len1 - len2;
+    }
+
+    /**
+     * @see java.lang.String#indexOf(int, int)
+     */
+    @SUBSTITUTE
+    public int indexOf(int ch, int fromIndex) {
+        final char[] value = valueOf(thisString());
+        final int max = value.length;
+        if (fromIndex < 0) {
+            fromIndex = 0;
+        } else if (fromIndex >= max) {
+            return -1;
+        }
+        if (ch < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            if (ch < 0) {
+                return -1;
+            }
+            return JDK_java_util_Arrays.indexOf(value, fromIndex, max, (char) ch);
+        }
+        if (Character.isValidCodePoint(ch)) {
+            final char hi = Character.highSurrogate(ch);
+            final char lo = Character.lowSurrogate(ch);
+            for (int i = fromIndex; i < max - 1; i++) {
+                if (value[i] == hi && value[i + 1] == lo) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Searches a range of characters for a sequence of characters. This is the method used by
+     * {@link String#indexOf(String)} and {@link StringBuilder#indexOf(String)}.
+     */
+    @SUBSTITUTE(optional = true)
+    static int indexOf(char[] source, int sourceOffset, int sourceCount, char[] target, int targetOffset, int targetCount, int fromIndex) {
+        if (fromIndex >= sourceCount) {
+            return targetCount == 0 ? sourceCount : -1;
+        }
+        if (fromIndex < 0) {
+            fromIndex = 0;
+        }
+        if (targetCount == 0) {
+            return fromIndex;
+        }
+        final char first = target[targetOffset];
+        final int max = sourceOffset + (sourceCount - targetCount);
+        int i = sourceOffset + fromIndex;
+        while (i <= max) {
+            i = JDK_java_util_Arrays.indexOf(source, i, max + 1, first);
+            if (i < 0) {
+                return -1;
+            }
+            int j = i + 1;
+            int k = targetOffset + 1;
+            final int end = j + targetCount - 1;
+            while (j < end && source[j] == target[k]) {
+                j++;
+                k++;
+            }
+            if (j == end) {
+                return i - sourceOffset;
+            }
+            i++;
+        }
+        return -1;
+    }
 }
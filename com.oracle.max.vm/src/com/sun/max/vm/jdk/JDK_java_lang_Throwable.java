@@ -22,6 +22,7 @@
  */
 package com.sun.max.vm.jdk;
 
+import static com.sun.max.vm.compiler.target.Stub.Type.*;
 import static com.sun.max.vm.intrinsics.Infopoints.*;
 import static com.sun.max.vm.intrinsics.MaxineIntrinsicIDs.*;
 
@@ -32,6 +33,7 @@ import com.sun.max.unsafe.*;
 import com.sun.max.vm.*;
 import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.compiler.target.*;
 import com.sun.max.vm.runtime.*;
 import com.sun.max.vm.stack.*;
 import com.sun.max.vm.thread.*;
@@ -73,8 +75,8 @@ public final class JDK_java_lang_Throwable {
     private static StackTraceElement[] UNASSIGNED_STACK;
 
     /**
-     * Fills in the stack trace for this exception. This implementation eagerly creates a
-     * stack trace and fills in all the {@link java.lang.StackTraceElement stack trace elements}.
+     * Fills in the stack trace for this exception. This implementation only records a {@link CompactBacktrace};
+     * the {@link java.lang.StackTraceElement stack trace elements} are created when the stack trace is first requested.
      *
      * @see java.lang.Throwable#fillInStackTrace()
      * @return the throwable with a filled-in stack trace (typically this object)
@@ -100,8 +102,10 @@ public final class JDK_java_lang_Throwable {
         final Pointer sp = VMRegister.getCpuStackPointer();
         final Pointer fp = VMRegister.getCpuFramePointer();
         try {
-            Backtrace backtrace = getBacktrace(sfw, ip, sp, fp, throwableActor, Integer.MAX_VALUE);
+            CompactBacktrace backtrace = new CompactBacktrace(throwableActor);
+            sfw.inspect(ip, sp, fp, backtrace);
             this.backtrace = backtrace;
+            stackTrace = UNASSIGNED_STACK;
         } catch (OutOfMemoryError e) {
             // Could not build backtrace due to memory shortage
             stackTrace = new StackTraceElement[0];
@@ -172,6 +176,73 @@ public final class JDK_java_lang_Throwable {
         }
     }
 
+    /**
+     * A back trace that only records, for each frame, its target method and the position of the instruction
+     * being executed in it. Expanding a frame into source frames (which involves inlining information) and
+     * resolving line numbers are deferred until the trace is {@linkplain #resolve() resolved}, which is typically
+     * never as most exceptions are caught without their stack trace being examined.
+     */
+    public static class CompactBacktrace extends RawStackFrameVisitor {
+
+        final ClassActor exceptionClass;
+
+        public int count;
+
+        /**
+         * The target methods of the recorded frames.
+         */
+        TargetMethod[] methods;
+
+        /**
+         * The code positions of the recorded frames, shifted left by one with the low bit
+         * set if the frame is stopped at a trap.
+         */
+        int[] positions;
+
+        public CompactBacktrace(ClassActor exceptionClass) {
+            this.exceptionClass = exceptionClass;
+            methods = new TargetMethod[Backtrace.INITIAL_LENGTH];
+            positions = new int[Backtrace.INITIAL_LENGTH];
+        }
+
+        @Override
+        public boolean visitFrame(StackFrameCursor current, StackFrameCursor callee) {
+            final TargetMethod targetMethod = current.targetMethod();
+            if (targetMethod == null || targetMethod.classMethodActor == null) {
+                // native frames, stubs, trampolines, adapters etc never appear in a stack trace
+                return true;
+            }
+            if (count == methods.length) {
+                int newLength = methods.length * 2;
+                methods = Arrays.copyOf(methods, newLength);
+                positions = Arrays.copyOf(positions, newLength);
+            }
+            final boolean trapped = callee.targetMethod() != null && callee.targetMethod().is(TrapStub);
+            methods[count] = targetMethod;
+            positions[count] = (targetMethod.posFor(current.vmIP()) << 1) | (trapped ? 1 : 0);
+            count++;
+            return true;
+        }
+
+        /**
+         * Expands the recorded frames into source frames and resolves their line numbers.
+         */
+        public Backtrace resolve() {
+            final Backtrace backtrace = new Backtrace(exceptionClass, Math.max(count, 1));
+            for (int i = 0; i < count; i++) {
+                final TargetMethod targetMethod = methods[i];
+                final int pos = positions[i] >> 1;
+                final boolean trapped = (positions[i] & 1) != 0;
+                // a frame whose position cannot be mapped (e.g. its code has been evicted) is reported without a line number
+                final CodePointer ip = pos < 0 ? CodePointer.zero() : targetMethod.codeStart().plus(pos);
+                if (!backtrace.visitTargetFrame(targetMethod, ip, trapped, i)) {
+                    break;
+                }
+            }
+            return backtrace;
+        }
+    }
+
     /**
      * Gets a back trace for a given stack.
      *
@@ -211,14 +282,15 @@ public final class JDK_java_lang_Throwable {
     public static native JDK_java_lang_Throwable asJLT(Throwable t);
 
     /**
-     * Gets the backtrace from an exception object. This is only non-null between the call to
+     * Gets the backtrace from an exception object. This is only available between the call to
      * {@link #fillInStackTrace()} and the first call to {@link #getOurStackTrace()}.
      *
-     * @return the {@link Backtrace} object fro {@code t} if available, {@code null} otherwise
+     * @return the resolved {@link Backtrace} for {@code t} if available, {@code null} otherwise
      */
     public static Backtrace getBacktrace(Throwable t) {
         final JDK_java_lang_Throwable jlt = asJLT(t);
-        return (Backtrace) jlt.backtrace;
+        final CompactBacktrace backtrace = (CompactBacktrace) jlt.backtrace;
+        return backtrace == null ? null : backtrace.resolve();
     }
 
     @SUBSTITUTE
@@ -236,7 +308,7 @@ public final class JDK_java_lang_Throwable {
                 TRACE_UNDER_CONSTRUCTION.set(throwable);
 
                 try {
-                    stackTrace = ((Backtrace) backtrace).getTrace();
+                    stackTrace = ((CompactBacktrace) backtrace).resolve().getTrace();
                 } catch (OutOfMemoryError e) {
                     // Could not build backtrace due to memory shortage
                     stackTrace = new StackTraceElement[0];
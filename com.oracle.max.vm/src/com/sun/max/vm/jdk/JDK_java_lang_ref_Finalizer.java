@@ -37,22 +37,47 @@ import sun.misc.*;
  * Substitutions for java.lang.ref.Finalizer.
  */
 @METHOD_SUBSTITUTIONS(className = "java.lang.ref.Finalizer")
-final class JDK_java_lang_ref_Finalizer {
+public final class JDK_java_lang_ref_Finalizer {
 
     private static boolean TraceFinalization;
     static {
         VMOptions.addFieldOption("-XX:", "TraceFinalization", JDK_java_lang_ref_Finalizer.class, "Trace calls to Object.finalize() by the finalization subsystem.");
     }
 
+    @ALIAS(declaringClassName = "java.lang.ref.Finalizer")
+    private static java.lang.ref.ReferenceQueue<Object> queue;
+
     @ALIAS(declaringClassName = "java.lang.ref.Finalizer")
     private native boolean hasBeenFinalized();
 
     @ALIAS(declaringClassName = "java.lang.ref.Finalizer")
     private native void remove();
 
+    @ALIAS(declaringClassName = "java.lang.ref.Finalizer", name = "runFinalizer")
+    private native void callRunFinalizer(JavaLangAccess jla);
+
     @INTRINSIC(UNSAFE_CAST)
     private static native java.lang.ref.Reference asReference(Object cl);
 
+    @INTRINSIC(UNSAFE_CAST)
+    private static native JDK_java_lang_ref_Finalizer asThis(Object finalizer);
+
+    /**
+     * Runs the finalizers of the objects on the finalizer queue forever. This is the body of the additional
+     * finalizer threads (see {@link com.sun.max.vm.heap.SpecialReferenceManager#FinalizerThreads}), which share
+     * the queue with the JDK's {@code FinalizerThread}.
+     */
+    public static void runFinalizers() {
+        final JavaLangAccess jla = SharedSecrets.getJavaLangAccess();
+        while (true) {
+            try {
+                asThis(queue.remove()).callRunFinalizer(jla);
+            } catch (InterruptedException e) {
+                // continue
+            }
+        }
+    }
+
     /**
      * This substitution provides a point at which finalization can be traced.
      */
@@ -116,5 +116,14 @@ public final class JDK_java_lang_ref_Reference {
         return true;
     }
 
-
+    /**
+     * Drains the pending list forever. This is the body of the additional reference handler threads
+     * (see {@link com.sun.max.vm.heap.SpecialReferenceManager#ReferenceHandlerThreads}), which share the
+     * pending list with the JDK's {@code ReferenceHandler} thread.
+     */
+    public static void handlePendingReferences() {
+        while (true) {
+            tryHandlePending(true);
+        }
+    }
 }
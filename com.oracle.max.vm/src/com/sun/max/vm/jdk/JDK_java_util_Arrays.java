@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.jdk;
+
+import java.util.*;
+
+import com.sun.max.annotate.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.layout.*;
+import com.sun.max.vm.reference.*;
+
+/**
+ * Method substitutions for the comparison and fill operations of {@link java.util.Arrays} on small primitive
+ * element types. These process eight bytes at a time instead of one element at a time. The word-at-a-time
+ * helpers are also used by the {@linkplain JDK_java_lang_String string substitutions}.
+ * <p>
+ * The helpers access array elements without bounds checks by their byte offset from the array's origin;
+ * callers are responsible for passing offsets within the array. Eight-byte reads start at the word aligned
+ * array base or at a multiple of eight; eight-byte writes always start at a multiple of eight. Byte offsets
+ * and sizes are {@code long} values, as they exceed the {@code int} range for large arrays.
+ */
+@METHOD_SUBSTITUTIONS(Arrays.class)
+public final class JDK_java_util_Arrays {
+
+    private JDK_java_util_Arrays() {
+    }
+
+    static final int BYTE_ARRAY_BASE_OFFSET = Layout.byteArrayLayout().getElementOffsetFromOrigin(0).toInt();
+    static final int CHAR_ARRAY_BASE_OFFSET = Layout.charArrayLayout().getElementOffsetFromOrigin(0).toInt();
+    static final int SHORT_ARRAY_BASE_OFFSET = Layout.shortArrayLayout().getElementOffsetFromOrigin(0).toInt();
+    static final int INT_ARRAY_BASE_OFFSET = Layout.intArrayLayout().getElementOffsetFromOrigin(0).toInt();
+    static final int LONG_ARRAY_BASE_OFFSET = Layout.longArrayLayout().getElementOffsetFromOrigin(0).toInt();
+
+    private static final long LOW_CHARS = 0x0001000100010001L;
+    private static final long HIGH_CHAR_BITS = 0x8000800080008000L;
+
+    /**
+     * Gets the number of leading bytes, rounded down to a multiple of eight, that are known to be equal in
+     * two array regions starting at the same offset.
+     *
+     * @param a the first array
+     * @param b the second array
+     * @param offset the offset of both regions from the array origins. This must be word aligned.
+     * @param numBytes the size of the regions in bytes
+     */
+    static long equalPrefix(Object a, Object b, int offset, long numBytes) {
+        final Reference ra = Reference.fromJava(a);
+        final Reference rb = Reference.fromJava(b);
+        final long end = offset + (numBytes & ~7L);
+        long i = offset;
+        while (i < end && ra.readLong(Offset.fromLong(i)) == rb.readLong(Offset.fromLong(i))) {
+            i += 8;
+        }
+        return i - offset;
+    }
+
+    /**
+     * Determines if two array regions starting at the same offset hold the same bytes.
+     *
+     * @param offset the offset of both regions from the array origins. This must be word aligned.
+     */
+    static boolean regionEquals(Object a, Object b, int offset, long numBytes) {
+        long i = equalPrefix(a, b, offset, numBytes);
+        if (i < (numBytes & ~7L)) {
+            return false;
+        }
+        final Reference ra = Reference.fromJava(a);
+        final Reference rb = Reference.fromJava(b);
+        for (i += offset; i < offset + numBytes; i++) {
+            if (ra.readByte(Offset.fromLong(i)) != rb.readByte(Offset.fromLong(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first occurrence of a character in a range of a character array. Four characters are tested
+     * at once by checking whether any 16-bit lane of a word xor'ed with the replicated character is zero.
+     *
+     * @param value the array to search
+     * @param fromIndex the first index to search
+     * @param toIndex the index after the last index to search. This must not be greater than the length of {@code value}.
+     * @param c the character to search for
+     * @return the index of the first occurrence of {@code c} in the range or -1 if there is none
+     */
+    static int indexOf(char[] value, int fromIndex, int toIndex, char c) {
+        int i = fromIndex;
+        while (i < toIndex && (charOffset(i) & 7) != 0) {
+            if (value[i] == c) {
+                return i;
+            }
+            i++;
+        }
+        final Reference r = Reference.fromJava(value);
+        final long pattern = c * LOW_CHARS;
+        while (i + 4 <= toIndex) {
+            final long x = r.readLong(Offset.fromLong(charOffset(i))) ^ pattern;
+            if (((x - LOW_CHARS) & ~x & HIGH_CHAR_BITS) != 0) {
+                break;
+            }
+            i += 4;
+        }
+        for (; i < toIndex; i++) {
+            if (value[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the byte offset of an element from the origin of an array.
+     *
+     * @param baseOffset the offset of the element at index 0
+     * @param index the index of the element
+     * @param log2ElementSize the log2 of the element size in bytes
+     */
+    private static long elementOffset(int baseOffset, int index, int log2ElementSize) {
+        return baseOffset + ((long) index << log2ElementSize);
+    }
+
+    private static long charOffset(int index) {
+        return elementOffset(CHAR_ARRAY_BASE_OFFSET, index, 1);
+    }
+
+    /**
+     * Fills a region of a primitive array with a value.
+     *
+     * @param array the array to fill
+     * @param fromOffset the offset of the first element to fill from the array origin
+     * @param toOffset the offset after the last element to fill
+     * @param elementSize the size of an element in bytes, which must be 1, 2 or 4
+     * @param pattern the value replicated to fill eight bytes
+     */
+    private static void fill(Object array, long fromOffset, long toOffset, int elementSize, long pattern) {
+        final Reference r = Reference.fromJava(array);
+        long offset = fromOffset;
+        while (offset < toOffset && (offset & 7) != 0) {
+            writeElement(r, offset, elementSize, pattern);
+            offset += elementSize;
+        }
+        for (; offset + 8 <= toOffset; offset += 8) {
+            r.writeLong(Offset.fromLong(offset), pattern);
+        }
+        for (; offset < toOffset; offset += elementSize) {
+            writeElement(r, offset, elementSize, pattern);
+        }
+    }
+
+    private static void writeElement(Reference r, long offset, int elementSize, long pattern) {
+        if (elementSize == 1) {
+            r.writeByte(Offset.fromLong(offset), (byte) pattern);
+        } else if (elementSize == 2) {
+            r.writeShort(Offset.fromLong(offset), (short) pattern);
+        } else {
+            r.writeInt(Offset.fromLong(offset), (int) pattern);
+        }
+    }
+
+    private static void rangeCheck(int arrayLength, int fromIndex, int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new IllegalArgumentException("fromIndex(" + fromIndex + ") > toIndex(" + toIndex + ")");
+        }
+        if (fromIndex < 0) {
+            throw new ArrayIndexOutOfBoundsException(fromIndex);
+        }
+        if (toIndex > arrayLength) {
+            throw new ArrayIndexOutOfBoundsException(toIndex);
+        }
+    }
+
+    private static long replicateByte(byte val) {
+        return (val & 0xFFL) * 0x0101010101010101L;
+    }
+
+    private static long replicateChar(int val) {
+        return (val & 0xFFFFL) * LOW_CHARS;
+    }
+
+    private static long replicateInt(int val) {
+        return (val & 0xFFFFFFFFL) * 0x0000000100000001L;
+    }
+
+    @SUBSTITUTE
+    public static boolean equals(byte[] a, byte[] a2) {
+        if (a == a2) {
+            return true;
+        }
+        if (a == null || a2 == null || a.length != a2.length) {
+            return false;
+        }
+        return regionEquals(a, a2, BYTE_ARRAY_BASE_OFFSET, a.length);
+    }
+
+    @SUBSTITUTE
+    public static boolean equals(char[] a, char[] a2) {
+        if (a == a2) {
+            return true;
+        }
+        if (a == null || a2 == null || a.length != a2.length) {
+            return false;
+        }
+        return regionEquals(a, a2, CHAR_ARRAY_BASE_OFFSET, (long) a.length << 1);
+    }
+
+    @SUBSTITUTE
+    public static boolean equals(short[] a, short[] a2) {
+        if (a == a2) {
+            return true;
+        }
+        if (a == null || a2 == null || a.length != a2.length) {
+            return false;
+        }
+        return regionEquals(a, a2, SHORT_ARRAY_BASE_OFFSET, (long) a.length << 1);
+    }
+
+    @SUBSTITUTE
+    public static boolean equals(int[] a, int[] a2) {
+        if (a == a2) {
+            return true;
+        }
+        if (a == null || a2 == null || a.length != a2.length) {
+            return false;
+        }
+        return regionEquals(a, a2, INT_ARRAY_BASE_OFFSET, (long) a.length << 2);
+    }
+
+    @SUBSTITUTE
+    public static boolean equals(long[] a, long[] a2) {
+        if (a == a2) {
+            return true;
+        }
+        if (a == null || a2 == null || a.length != a2.length) {
+            return false;
+        }
+        return regionEquals(a, a2, LONG_ARRAY_BASE_OFFSET, (long) a.length << 3);
+    }
+
+    @SUBSTITUTE
+    public static void fill(byte[] a, byte val) {
+        fill(a, BYTE_ARRAY_BASE_OFFSET, elementOffset(BYTE_ARRAY_BASE_OFFSET, a.length, 0), 1, replicateByte(val));
+    }
+
+    @SUBSTITUTE
+    public static void fill(byte[] a, int fromIndex, int toIndex, byte val) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        fill(a, elementOffset(BYTE_ARRAY_BASE_OFFSET, fromIndex, 0), elementOffset(BYTE_ARRAY_BASE_OFFSET, toIndex, 0), 1, replicateByte(val));
+    }
+
+    @SUBSTITUTE
+    public static void fill(char[] a, char val) {
+        fill(a, CHAR_ARRAY_BASE_OFFSET, charOffset(a.length), 2, replicateChar(val));
+    }
+
+    @SUBSTITUTE
+    public static void fill(char[] a, int fromIndex, int toIndex, char val) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        fill(a, charOffset(fromIndex), charOffset(toIndex), 2, replicateChar(val));
+    }
+
+    @SUBSTITUTE
+    public static void fill(short[] a, short val) {
+        fill(a, SHORT_ARRAY_BASE_OFFSET, elementOffset(SHORT_ARRAY_BASE_OFFSET, a.length, 1), 2, replicateChar(val));
+    }
+
+    @SUBSTITUTE
+    public static void fill(short[] a, int fromIndex, int toIndex, short val) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        fill(a, elementOffset(SHORT_ARRAY_BASE_OFFSET, fromIndex, 1), elementOffset(SHORT_ARRAY_BASE_OFFSET, toIndex, 1), 2, replicateChar(val));
+    }
+
+    @SUBSTITUTE
+    public static void fill(int[] a, int val) {
+        fill(a, INT_ARRAY_BASE_OFFSET, elementOffset(INT_ARRAY_BASE_OFFSET, a.length, 2), 4, replicateInt(val));
+    }
+
+    @SUBSTITUTE
+    public static void fill(int[] a, int fromIndex, int toIndex, int val) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        fill(a, elementOffset(INT_ARRAY_BASE_OFFSET, fromIndex, 2), elementOffset(INT_ARRAY_BASE_OFFSET, toIndex, 2), 4, replicateInt(val));
+    }
+}
@@ -415,10 +415,21 @@ public abstract class VMLog implements Heap.GCCallback {
         traceDumpFlusher = new TraceDumpFlusher();
     }
 
-    private VMLogger getLogger(int id) {
+    /**
+     * Returns the logger with the given {@link VMLogger#loggerId id}, which may be {@code null}.
+     * @param id {@code 1 <= id <= }{@link #numLoggers()}
+     */
+    public VMLogger getLogger(int id) {
         return loggers[id - 1];
     }
 
+    /**
+     * Returns the number of loggers registered with this log, which is also the largest valid logger id.
+     */
+    public int numLoggers() {
+        return loggers.length;
+    }
+
     /**
      * Called when a new thread is started so any thread-specific log state can be setup.
      */
@@ -487,6 +498,17 @@ public abstract class VMLog implements Heap.GCCallback {
      */
     protected abstract Record getRecord(int argCount);
 
+    /**
+     * Returns the value used to order {@code r} with respect to the records of other threads
+     * when the log is written out by a {@link VMLogFileFlusher}. By default this is the unique id,
+     * but an implementation that does not maintain a global id can substitute a timestamp.
+     * @param r a record being flushed
+     * @param uuid the id passed to {@link Flusher#flushRecord}
+     */
+    public long getRecordOrder(Record r, int uuid) {
+        return uuid;
+    }
+
     /**
      * Controls logging (for all loggers) for the current thread.
      * Initially logging is enabled.
@@ -605,13 +627,16 @@ public abstract class VMLog implements Heap.GCCallback {
      *
      * The default output is "raw", which means no interpretation of the bits, which is left to an offline tool. This is
      * the most robust approach. The alternative is "trace" which invokes the trace method on the logger, which
-     * may crash, particularly if the log is being flushed on a VM crash.
+     * may crash, particularly if the log is being flushed on a VM crash. Finally, "binary" writes the records
+     * to the file given by {@code -XX:VMLogFile} in the format read by {@link VMLogFileDecoder}, which is
+     * the most compact and leaves all interpretation to that tool. Like the other outputs, each flush holds the
+     * {@link Log} lock.
      */
     private static class VMLogFlushOption extends VMStringOption {
 
         @HOSTED_ONLY
         VMLogFlushOption() {
-            super("-XX:VMLogFlush=", false, null, "flush VMLog: mode,output. mode=crash|exit|full, output=raw|trace");
+            super("-XX:VMLogFlush=", false, null, "flush VMLog: mode,output. mode=crash|exit|full, output=raw|trace|binary");
         }
 
         @Override
@@ -625,6 +650,8 @@ public abstract class VMLog implements Heap.GCCallback {
                         vmLog.flusher = rawDumpFlusher;
                     } else if (param.equals("trace")) {
                         vmLog.flusher = traceDumpFlusher;
+                    } else if (param.equals("binary")) {
+                        vmLog.flusher = new VMLogFileFlusher(vmLog, VMLogFileOption.getValue());
                     } else if (param.equals("exit")) {
                         vmLog.flushMode |= FLUSHMODE_EXIT;
                     } else if (param.equals("crash")) {
@@ -644,6 +671,8 @@ public abstract class VMLog implements Heap.GCCallback {
 
     }
 
+    private static VMStringOption VMLogFileOption = VMOptions.register(new VMStringOption("-XX:VMLogFile=", false, "vmlog.bin",
+        "file written by -XX:VMLogFlush=...,binary"), MaxineVM.Phase.STARTING);
     private static VMStringOption VMLogFlushOption = VMOptions.register(new VMLogFlushOption(), MaxineVM.Phase.STARTING);
     public static final int FLUSHMODE_CRASH = 1;
     public static final int FLUSHMODE_EXIT = 2;
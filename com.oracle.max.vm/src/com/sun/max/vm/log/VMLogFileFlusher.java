@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.log;
+
+import com.sun.max.annotate.*;
+import com.sun.max.memory.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.log.VMLog.Flusher;
+import com.sun.max.vm.log.VMLog.Record;
+import com.sun.max.vm.log.hosted.*;
+import com.sun.max.vm.thread.*;
+
+/**
+ * A {@link Flusher} that writes records to a binary file, to be merged and printed offline by {@link VMLogFileDecoder}.
+ *
+ * Records are encoded into a natively allocated staging buffer that is written out when it fills and at the end of each
+ * flush, so flushing does not allocate on the heap. Flushes from different threads, e.g., the per-thread buffers of a
+ * {@link VMLog#isPerThread() per-thread log} filling up, are serialized on the {@link Log#lock() log lock}.
+ *
+ * The file is in the native byte order of the VM and consists of 4 and 8 byte values:
+ * <pre>
+ *   file:    MAGIC VERSION loggerCount logger* chunk*
+ *   logger:  loggerId name numOps name*          (name: int length, then length chars as 2-byte units, padded to 4 bytes)
+ *   chunk:   THREAD threadId name record*
+ *   record:  RECORD header uuid 0 order(long) arg(long)*   (argument count from the header)
+ * </pre>
+ * A chunk holds the records from one flush of one thread's log (or of the whole log, with thread id 0, if it is not per-thread).
+ * The {@code order} of a record is the value of {@link VMLog#getRecordOrder}, which is used to merge the chunks.
+ */
+public class VMLogFileFlusher extends Flusher {
+
+    public static final int MAGIC = 0x564d4c46; // "VMLF"
+    public static final int VERSION = 1;
+    public static final int THREAD = 1;
+    public static final int RECORD = 2;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final VMLog vmLog;
+    private final String path;
+
+    private int fd = -1;
+    private boolean failed;
+    private Pointer buffer = Pointer.zero();
+    private int position;
+    private boolean lockDisabledSafepoints;
+
+    /**
+     * Creates a flusher for {@code vmLog} that will write to {@code path}. The file is created by the first flush.
+     */
+    public VMLogFileFlusher(VMLog vmLog, String path) {
+        this.vmLog = vmLog;
+        this.path = path;
+    }
+
+    @Override
+    public void start(VmThread vmThread) {
+        lockDisabledSafepoints = Log.lock();
+        if (fd < 0 && !failed) {
+            open();
+        }
+        if (fd >= 0) {
+            putInt(THREAD);
+            putInt(vmThread == null ? 0 : vmThread.id());
+            putString(vmThread == null ? "VMLog" : vmThread.getName());
+        }
+    }
+
+    @Override
+    public void flushRecord(VmThread vmThread, Record r, int uuid) {
+        if (fd < 0) {
+            return;
+        }
+        int argCount = r.getArgCount();
+        ensure(16 + (1 + argCount) * 8);
+        putInt(RECORD);
+        putInt(r.getHeader());
+        putInt(uuid);
+        putInt(0);
+        putLong(vmLog.getRecordOrder(r, uuid));
+        for (int i = 1; i <= argCount; i++) {
+            putLong(r.getArg(i).asAddress().toLong());
+        }
+    }
+
+    @Override
+    public void end(VmThread vmThread) {
+        if (fd >= 0) {
+            drain();
+        }
+        Log.unlock(lockDisabledSafepoints);
+    }
+
+    private void open() {
+        buffer = Memory.allocate(Size.fromInt(BUFFER_SIZE));
+        if (buffer.isZero()) {
+            failed = true;
+            return;
+        }
+        final Pointer cpath = CString.utf8FromJava(path);
+        fd = vmLogFile_open(cpath);
+        Memory.deallocate(cpath);
+        if (fd < 0) {
+            failed = true;
+            Memory.deallocate(buffer);
+            buffer = Pointer.zero();
+            return;
+        }
+        putInt(MAGIC);
+        putInt(VERSION);
+        int loggerCount = vmLog.numLoggers();
+        putInt(loggerCount);
+        for (int id = 1; id <= loggerCount; id++) {
+            VMLogger logger = vmLog.getLogger(id);
+            putInt(logger == null ? 0 : logger.loggerId);
+            putString(logger == null ? "" : logger.name);
+            int numOps = logger == null ? 0 : logger.numOps();
+            putInt(numOps);
+            for (int op = 0; op < numOps; op++) {
+                putString(logger.operationName(op));
+            }
+        }
+    }
+
+    private void drain() {
+        if (position > 0) {
+            if (vmLogFile_write(fd, buffer, position) != 0) {
+                Log.println("VMLog: error writing binary log file, output disabled");
+                vmLogFile_close(fd);
+                fd = -1;
+                failed = true;
+            }
+            position = 0;
+        }
+    }
+
+    private void ensure(int size) {
+        if (position + size > BUFFER_SIZE) {
+            drain();
+        }
+    }
+
+    private void putInt(int value) {
+        ensure(4);
+        buffer.writeInt(position, value);
+        position += 4;
+    }
+
+    private void putLong(long value) {
+        ensure(8);
+        buffer.writeLong(position, value);
+        position += 8;
+    }
+
+    /**
+     * Writes a string without allocating, which precludes conversion to UTF-8.
+     */
+    private void putString(String s) {
+        int length = s.length();
+        putInt(length);
+        for (int i = 0; i < length; i++) {
+            ensure(2);
+            buffer.writeChar(position, s.charAt(i));
+            position += 2;
+        }
+        if ((length & 1) != 0) {
+            ensure(2);
+            buffer.writeChar(position, (char) 0);
+            position += 2;
+        }
+    }
+
+    @C_FUNCTION
+    private static native int vmLogFile_open(Pointer path);
+
+    @C_FUNCTION
+    private static native int vmLogFile_write(int fd, Pointer buffer, int length);
+
+    @C_FUNCTION
+    private static native void vmLogFile_close(int fd);
+}
@@ -200,6 +200,13 @@ public class VMLogger {
         this.vmLog = vmLog;
     }
 
+    /**
+     * Number of distinct operations that can be logged.
+     */
+    public int numOps() {
+        return numOps;
+    }
+
     /**
      * Provides a mnemonic name for the given operation.
      * Default is {@code OpN}.
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.log.hosted;
+
+import static com.sun.max.vm.log.VMLogFileFlusher.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+import com.sun.max.annotate.*;
+import com.sun.max.vm.log.*;
+import com.sun.max.vm.log.VMLog.Record;
+
+/**
+ * Decodes a file written by {@link VMLogFileFlusher}, merging the records of all threads by their
+ * {@link VMLog#getRecordOrder order} and printing them with the logger and operation names recorded in the file.
+ * Arguments are printed in hex, as by {@link VMLog.RawDumpFlusher}.
+ *
+ * Usage: {@code VMLogFileDecoder [-t threadId] file}
+ */
+@HOSTED_ONLY
+public class VMLogFileDecoder {
+
+    private static class DecodedRecord {
+        final int header;
+        final int uuid;
+        final long order;
+        final long[] args;
+
+        DecodedRecord(int header, int uuid, long order, long[] args) {
+            this.header = header;
+            this.uuid = uuid;
+            this.order = order;
+            this.args = args;
+        }
+    }
+
+    /**
+     * The records of one thread, which are in order in the file.
+     */
+    private static class ThreadRecords {
+        final int id;
+
+        /**
+         * The position of the thread's first chunk among those of all threads, which decides between records of equal order.
+         */
+        final int seq;
+        String name;
+        final ArrayList<DecodedRecord> records = new ArrayList<DecodedRecord>();
+        int index;
+
+        ThreadRecords(int id, int seq) {
+            this.id = id;
+            this.seq = seq;
+        }
+
+        DecodedRecord current() {
+            return records.get(index);
+        }
+    }
+
+    private final ByteBuffer buffer;
+    private String[] loggerNames;
+    private String[][] operationNames;
+    private final Map<Integer, ThreadRecords> threads = new LinkedHashMap<Integer, ThreadRecords>();
+
+    private VMLogFileDecoder(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String fileName = null;
+        int threadFilter = -1;
+        // Checkstyle: stop modified control variable check
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-t")) {
+                threadFilter = Integer.parseInt(args[++i]);
+            } else {
+                fileName = args[i];
+            }
+        }
+        // Checkstyle: resume modified control variable check
+        if (fileName == null) {
+            System.err.println("usage: VMLogFileDecoder [-t threadId] file");
+            System.exit(1);
+        }
+        FileInputStream in = new FileInputStream(fileName);
+        try {
+            FileChannel channel = in.getChannel();
+            PrintStream out = new PrintStream(new BufferedOutputStream(System.out));
+            decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), out, threadFilter);
+            out.flush();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Decodes the contents of a file written by {@link VMLogFileFlusher} and prints its records in order.
+     *
+     * @param threadFilter the id of the only thread whose records are printed, or -1 to print the records of all threads
+     */
+    public static void decode(ByteBuffer buffer, PrintStream out, int threadFilter) throws IOException {
+        VMLogFileDecoder decoder = new VMLogFileDecoder(buffer);
+        decoder.read();
+        decoder.print(out, threadFilter);
+    }
+
+    private void read() throws IOException {
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("not a binary VMLog file");
+            }
+        }
+        buffer.getInt();
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported binary VMLog file version " + version);
+        }
+        int loggerCount = buffer.getInt();
+        loggerNames = new String[loggerCount + 1];
+        operationNames = new String[loggerCount + 1][];
+        for (int i = 0; i < loggerCount; i++) {
+            int loggerId = buffer.getInt();
+            String name = getString();
+            int numOps = buffer.getInt();
+            String[] opNames = new String[numOps];
+            for (int op = 0; op < numOps; op++) {
+                opNames[op] = getString();
+            }
+            if (loggerId > 0 && loggerId <= loggerCount) {
+                loggerNames[loggerId] = name;
+                operationNames[loggerId] = opNames;
+            }
+        }
+
+        ThreadRecords thread = null;
+        while (buffer.remaining() >= 4) {
+            int tag = buffer.getInt();
+            if (tag == THREAD) {
+                int id = buffer.getInt();
+                String name = getString();
+                thread = threads.get(id);
+                if (thread == null) {
+                    thread = new ThreadRecords(id, threads.size());
+                    threads.put(id, thread);
+                }
+                thread.name = name;
+            } else if (tag == RECORD && thread != null) {
+                int header = buffer.getInt();
+                int uuid = buffer.getInt();
+                buffer.getInt();
+                long order = buffer.getLong();
+                long[] args = new long[Record.getArgCount(header)];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = buffer.getLong();
+                }
+                thread.records.add(new DecodedRecord(header, uuid, order, args));
+            } else {
+                throw new IOException("corrupt binary VMLog file at offset " + (buffer.position() - 4));
+            }
+        }
+    }
+
+    private String getString() {
+        int length = buffer.getInt();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        if ((length & 1) != 0) {
+            buffer.getChar();
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Merges the per-thread record lists by order, ties going to the thread seen first.
+     */
+    private void print(PrintStream out, int threadFilter) {
+        PriorityQueue<ThreadRecords> queue = new PriorityQueue<ThreadRecords>(Math.max(1, threads.size()), new Comparator<ThreadRecords>() {
+            public int compare(ThreadRecords a, ThreadRecords b) {
+                long orderA = a.current().order;
+                long orderB = b.current().order;
+                if (orderA != orderB) {
+                    return orderA < orderB ? -1 : 1;
+                }
+                return a.seq - b.seq;
+            }
+        });
+        for (ThreadRecords thread : threads.values()) {
+            if (!thread.records.isEmpty() && (threadFilter < 0 || thread.id == threadFilter)) {
+                queue.add(thread);
+            }
+        }
+        long firstOrder = queue.isEmpty() ? 0 : queue.peek().current().order;
+        while (!queue.isEmpty()) {
+            ThreadRecords thread = queue.poll();
+            printRecord(out, thread, thread.current(), firstOrder);
+            thread.index++;
+            if (thread.index < thread.records.size()) {
+                queue.add(thread);
+            }
+        }
+    }
+
+    private void printRecord(PrintStream out, ThreadRecords thread, DecodedRecord r, long firstOrder) {
+        int loggerId = Record.getLoggerId(r.header);
+        int op = Record.getOperation(r.header);
+        String loggerName = loggerId < loggerNames.length && loggerNames[loggerId] != null ? loggerNames[loggerId] : "Logger" + loggerId;
+        String[] opNames = loggerId < operationNames.length ? operationNames[loggerId] : null;
+        String opName = opNames != null && op < opNames.length ? opNames[op] : "Op" + op;
+        StringBuilder sb = new StringBuilder();
+        sb.append(r.order - firstOrder).append(' ');
+        sb.append(thread.name).append('[').append(thread.id).append("] ");
+        sb.append(r.uuid).append(' ');
+        sb.append(loggerName).append('.').append(opName);
+        for (int i = 0; i < r.args.length; i++) {
+            sb.append(i == 0 ? " " : ", ").append("0x").append(Long.toHexString(r.args[i]));
+        }
+        out.println(sb);
+    }
+}
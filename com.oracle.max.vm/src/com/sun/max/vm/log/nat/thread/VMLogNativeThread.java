@@ -107,7 +107,7 @@ public abstract class VMLogNativeThread extends VMLogNative {
     /**
      * Space for header and the id.
      */
-    protected final int getArgsOffset() {
+    protected int getArgsOffset() {
         return ARGS_OFFSET;
     }
 
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.log.nat.thread.time;
+
+import com.sun.max.annotate.*;
+import com.sun.max.lang.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.log.*;
+import com.sun.max.vm.log.nat.thread.*;
+import com.sun.max.vm.thread.*;
+
+/**
+ * Per-thread log buffer with fixed size records that are ordered by a timestamp rather than by the
+ * {@link VMLog#nextId global id}. Allocating a record therefore touches only thread local state,
+ * so threads that log heavily do not contend on a shared cache line.
+ *
+ * Each record holds, after the header, a per-thread sequence number in the id slot and the value of
+ * {@link MaxineVM#native_nanoTime()} when the record was allocated. The records of different threads
+ * are merged by timestamp when the log is written out, see {@link VMLogFileFlusher}, which is the
+ * intended {@link VMLog.Flusher} for this log: {@code -XX:VMLogFlush=full,exit,binary}.
+ *
+ * Since the records are of fixed size the first record of a wrapped buffer is always the one at
+ * {@link #nextOffset}, so the thread local offsets word holds the sequence number of the next record
+ * in place of the first offset:
+ * <ul>
+ * <li>bit 0: {@link #DISABLED}</li>
+ * <li>bits 1-30: the offset where the next record should be written</li>
+ * <li>bit 32: {@link #WRAPPED}</li>
+ * <li>bits 33-62: the sequence number of the next record</li>
+ * </ul>
+ * A log with a flusher flushes the buffer of a thread when it is full, as for
+ * {@link com.sun.max.vm.log.nat.thread.var.VMLogNativeThreadVariableUnbound}.
+ *
+ * N.B. This log is not (yet) understood by the Inspector.
+ */
+public class VMLogNativeThreadTimed extends VMLogNativeThread {
+    public static final String VMLOG_TIMED_RECORD_NAME = "VMLOG_TIMED_RECORD";
+    public static final String VMLOG_TIMED_BUFFER_NAME = "VMLOG_TIMED_BUFFER";
+    public static final String VMLOG_TIMED_BUFFER_OFFSETS_NAME = "VMLOG_TIMED_BUFFER_OFFSETS";
+    public static final VmThreadLocal VMLOG_TIMED_RECORD = new VmThreadLocal(VMLOG_TIMED_RECORD_NAME, true, "VMLog.Record");
+    public static final VmThreadLocal VMLOG_TIMED_BUFFER = new VmThreadLocal(VMLOG_TIMED_BUFFER_NAME, false, "VMLog buffer");
+    public static final VmThreadLocal VMLOG_TIMED_BUFFER_OFFSETS = new VmThreadLocal(VMLOG_TIMED_BUFFER_OFFSETS_NAME, false, "VMLog buffer next offset/sequence number");
+
+    public static final int TIMESTAMP_OFFSET = 2 * Ints.SIZE;
+    public static final int TIMED_ARGS_OFFSET = TIMESTAMP_OFFSET + Longs.SIZE;
+    public static final int SEQ_SHIFT = 33;
+    public static final long SEQ_MASK = 0x3FFFFFFFL;
+
+    @Override
+    public void initialize(MaxineVM.Phase phase) {
+        super.initialize(phase);
+        if (MaxineVM.isHosted() && phase == MaxineVM.Phase.BOOTSTRAPPING) {
+            setNativeRecordThreadLocal(VMLOG_TIMED_RECORD);
+            setBufferThreadLocals(VMLOG_TIMED_BUFFER, VMLOG_TIMED_BUFFER_OFFSETS);
+        }
+    }
+
+    @Override
+    protected int getArgsOffset() {
+        return TIMED_ARGS_OFFSET;
+    }
+
+    @Override
+    public void threadStart() {
+        // allocate the NativeRecord early, as for VMLogNativeThreadVariableUnbound
+        if (!MaxineVM.isPrimordialOrPristine()) {
+            getNativeRecord(VmThread.currentTLA());
+        }
+    }
+
+    @Override
+    @NO_SAFEPOINT_POLLS("atomic")
+    protected Record getRecord(int argCount) {
+        final long timestamp = MaxineVM.native_nanoTime();
+        Pointer tla = VmThread.currentTLA();
+        Pointer buffer = getBuffer(tla);
+        long offsets = vmLogBufferOffsetsTL.load(tla).toLong();
+        if (isWrapped(offsets) && flusher != null) {
+            // about to overwrite the oldest record
+            flush(FLUSHMODE_FULL, VmThread.fromTLA(tla));
+            offsets = vmLogBufferOffsetsTL.load(tla).toLong();
+        }
+        final int nextOffset = nextOffset(offsets);
+        final long seq = (offsets >>> SEQ_SHIFT) & SEQ_MASK;
+        long wrap = offsets & WRAPPED;
+        int newNextOffset = nextOffset + defaultNativeRecordSize;
+        if (newNextOffset == logSize) {
+            newNextOffset = 0;
+            wrap = WRAPPED;
+        }
+        vmLogBufferOffsetsTL.store3(Address.fromLong((((seq + 1) & SEQ_MASK) << SEQ_SHIFT) | wrap | newNextOffset));
+
+        Pointer recordAddress = buffer.plus(nextOffset);
+        recordAddress.writeInt(ID_OFFSET, (int) seq);
+        recordAddress.writeLong(TIMESTAMP_OFFSET, timestamp);
+        NativeRecord record = getNativeRecord(tla);
+        record.address = recordAddress;
+        return record;
+    }
+
+    /**
+     * Returns the timestamp of {@code r}.
+     */
+    @Override
+    public long getRecordOrder(Record r, int uuid) {
+        return ((NativeRecord) r).address.readLong(TIMESTAMP_OFFSET);
+    }
+
+    @Override
+    public void scanLog(Pointer tla, PointerIndexVisitor visitor) {
+        scanOrFlushLog(tla, visitor, true);
+    }
+
+    private void scanOrFlushLog(Pointer tla, PointerIndexVisitor visitor, boolean scanning) {
+        long offsets = vmLogBufferOffsetsTL.load(tla).toLong();
+        int nextOffset = nextOffset(offsets);
+        if (nextOffset == 0 && !isWrapped(offsets)) {
+            // nothing to scan (and therefore no buffer or NativeRecord yet)
+            return;
+        }
+
+        Pointer buffer = getBuffer(tla);
+        NativeRecord r = getNativeRecord(tla);
+        VmThread vmThread = VmThread.fromTLA(tla);
+        int offset = isWrapped(offsets) ? nextOffset : 0;
+        // a GC scan may be provoked by flushing, see VMLogNativeThreadVariableUnbound
+        Pointer saveAddress = r.address;
+        do {
+            r.address = buffer.plus(offset);
+            if (scanning) {
+                scanArgs(r, r.address.plus(TIMED_ARGS_OFFSET), visitor);
+            } else {
+                flusher.flushRecord(vmThread, r, r.address.readInt(ID_OFFSET));
+            }
+            offset = modLogSize(offset + defaultNativeRecordSize);
+        } while (offset != nextOffset);
+        if (scanning) {
+            r.address = saveAddress;
+        }
+    }
+
+    @Override
+    protected void flushRecords(VmThread vmThread) {
+        Pointer tla = vmThread.tla();
+        scanOrFlushLog(tla, null, false);
+        // reset the log, keeping the sequence number and enabled state
+        long offsets = vmLogBufferOffsetsTL.load(tla).toLong();
+        vmLogBufferOffsetsTL.store3(tla, Address.fromLong(offsets & ((SEQ_MASK << SEQ_SHIFT) | DISABLED)));
+    }
+
+}
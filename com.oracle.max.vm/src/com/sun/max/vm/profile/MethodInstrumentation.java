@@ -28,6 +28,7 @@ import com.sun.max.vm.code.*;
 import com.sun.max.vm.compiler.*;
 import com.sun.max.vm.object.ArrayAccess;
 import com.sun.max.vm.object.ObjectAccess;
+import com.sun.max.vm.runtime.*;
 
 /**
  * This class contains several utility methods for dealing with method instrumentation.
@@ -47,12 +48,25 @@ public class MethodInstrumentation {
 
     private static boolean enabled;
 
+    /**
+     * Determines if an overflow of the counter on a backward branch triggers {@linkplain CompilationBroker#backedgeCounterOverflow on-stack replacement}.
+     */
+    private static boolean osrEnabled;
+
     public static void enable(int initialEntryCount) {
         enabled = true;
         MethodInstrumentation.initialEntryBackedgeCount = initialEntryCount;
         MethodInstrumentation.protectionThreshold = (int) (1 - PROTECTION_PERCENTAGE) * initialEntryCount;
     }
 
+    public static void enableOSR() {
+        osrEnabled = true;
+    }
+
+    public static boolean isOSREnabled() {
+        return osrEnabled;
+    }
+
     public static MethodProfile.Builder createMethodProfile(ClassMethodActor classMethodActor) {
         if (enabled) {
             return new MethodProfile.Builder();
@@ -82,14 +96,34 @@ public class MethodInstrumentation {
         }
     }
 
+    /**
+     * The method called upon entry to code compiled by an intermediate optimizing tier.
+     *
+     * @see CompilationBroker#topTierCompiler
+     */
+    public static final CriticalMethod recordOptimizedEntrypoint = new CriticalMethod(MethodInstrumentation.class, "recordOptimizedEntrypoint", null);
+
+    /**
+     * Records an entry to a method compiled by an intermediate optimizing tier. Unlike the baseline
+     * code which inlines {@link #recordEntrypoint}, optimized code calls this method.
+     */
+    @NEVER_INLINE
+    public static void recordOptimizedEntrypoint(MethodProfile mpo, Object receiver) {
+        if (--mpo.entryBackedgeCount <= 0) {
+            CompilationBroker.instrumentationCounterOverflow(mpo, receiver);
+        }
+    }
+
     @INLINE
     public static void recordExceptionSeen(MethodProfile mpo, int mpoIndex) {
         incrementProfileCounterAtIndex(mpo, mpoIndex);
     }
 
     @INLINE
-    public static void recordBackwardBranch(MethodProfile mpo) {
-        mpo.entryBackedgeCount--;
+    public static void recordBackwardBranch(MethodProfile mpo, int bci) {
+        if (--mpo.entryBackedgeCount <= 0 && osrEnabled) {
+            CompilationBroker.backedgeCounterOverflow(mpo, bci);
+        }
     }
 
     @INLINE
@@ -112,6 +112,13 @@ public class MethodProfile {
      */
     public boolean compilationDisabled;
 
+    /**
+     * The methods compiled for {@linkplain com.sun.max.vm.compiler.deopt.OnStackReplacement on-stack replacement}
+     * of {@link #method}, keyed by the bci of the loop header at which they are entered. A {@code null} value
+     * records a failed compilation. Accesses are synchronized on this profile.
+     */
+    public Map<Integer, TargetMethod> osrMethods;
+
     protected MethodProfile() {
     }
 
@@ -0,0 +1,605 @@
+/*
+ * Copyright (c) 2007, 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.sun.max.vm.profilers.sampling;
+
+import static com.sun.max.vm.VMConfiguration.*;
+import static com.sun.max.vm.intrinsics.Infopoints.*;
+import static com.sun.max.vm.runtime.VMRegister.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import com.sun.max.annotate.*;
+import com.sun.max.unsafe.*;
+import com.sun.max.vm.*;
+import com.sun.max.vm.actor.holder.*;
+import com.sun.max.vm.actor.member.*;
+import com.sun.max.vm.heap.*;
+import com.sun.max.vm.stack.*;
+
+/**
+ * Allocation sampling profiler. Each thread is sampled after allocating a randomized number of bytes, with
+ * exponentially distributed intervals around a mean {@linkplain #interval() interval}, so that the samples are not
+ * biased by allocation patterns. The sample point is checked in the TLAB refill slow path of
+ * {@link HeapSchemeWithTLAB}, which makes allocations crossing it take the slow path; other allocations run at full
+ * speed. Only the allocating thread is stopped to record its stack, and samples are aggregated by allocation site and
+ * class of the allocated object.
+ * <p>
+ * Results are available through {@link #sites()} and can be written in a compact binary format with
+ * {@link #writeTo(OutputStream)}. At VM termination, they are written to the file given by the {@code file} option
+ * or else the top sites are printed to the {@link Log}.
+ */
+public final class AllocationSamplingProfiler implements HeapSchemeWithTLAB.AllocationSampler {
+
+    /**
+     * The first bytes of the {@linkplain #writeTo(OutputStream) binary output}.
+     */
+    public static final int MAGIC = 0x4d584150; // "MXAP"
+
+    /**
+     * The version of the {@linkplain #writeTo(OutputStream) binary output}.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Default mean sampling interval in bytes.
+     */
+    private static final int DEFAULT_INTERVAL = 512 * 1024;
+
+    /**
+     * Default maximum number of frames recorded for a sample.
+     */
+    private static final int DEFAULT_DEPTH = 16;
+
+    /**
+     * Default number of sites printed at termination.
+     */
+    private static final int DEFAULT_TOP = 20;
+
+    /**
+     * Packages whose frames are skipped at the top of a sampled stack, as they belong to the allocation path itself.
+     */
+    private static final String[] ALLOCATION_PATH_PACKAGES = {
+        "com.sun.max.vm.profilers.", "com.sun.max.vm.heap.", "com.sun.max.vm.object.", "com.sun.max.vm.layout.",
+        "com.sun.max.vm.compiler.", "com.oracle.max.vm.ext.maxri."
+    };
+
+    private final String optionPrefix;
+
+    private final long interval;
+
+    private final int maxDepth;
+
+    private final int top;
+
+    private final String fileName;
+
+    private final Random random = new Random();
+
+    /**
+     * Samples whose class is known, not yet aggregated into {@link #sites}. This is pushed onto without allocation
+     * by {@link #sampledObjectAllocated(Object, Hub)} and drained by the next {@link #sampleAllocation(Size)}, so it
+     * holds at most about one sample per sampled thread.
+     */
+    private final AtomicReference<Sample> completedSamples = new AtomicReference<Sample>();
+
+    /**
+     * Aggregated samples, guarded by {@code this}.
+     */
+    private final HashMap<AllocationSite, AllocationSite> sites = new HashMap<AllocationSite, AllocationSite>();
+
+    private final AtomicLong sampleCount = new AtomicLong();
+
+    private volatile boolean isProfiling;
+
+    /**
+     * Creates the profiler and starts sampling.
+     *
+     * @param optionPrefix the name of the option that requested profiling
+     * @param optionValue a string of the form {@code :interval=bytes,depth=d,top=n,file=path} where any element may be
+     *            omitted
+     */
+    public AllocationSamplingProfiler(String optionPrefix, String optionValue) {
+        this.optionPrefix = optionPrefix;
+        long interval = DEFAULT_INTERVAL;
+        int depth = DEFAULT_DEPTH;
+        int top = DEFAULT_TOP;
+        String fileName = null;
+        if (optionValue.length() > 0) {
+            if (optionValue.charAt(0) != ':') {
+                usage();
+            }
+            for (String option : optionValue.substring(1).split(",")) {
+                if (option.startsWith("interval=")) {
+                    interval = getOption(option);
+                } else if (option.startsWith("depth=")) {
+                    depth = (int) getOption(option);
+                } else if (option.startsWith("top=")) {
+                    top = (int) getOption(option);
+                } else if (option.startsWith("file=")) {
+                    fileName = option.substring("file=".length());
+                } else {
+                    usage();
+                }
+            }
+        }
+        if (interval <= 0 || depth <= 0 || top < 0) {
+            usage();
+        }
+        this.interval = interval;
+        this.maxDepth = depth;
+        this.top = top;
+        this.fileName = fileName;
+        if (vmConfig().heapScheme() instanceof HeapSchemeWithTLAB) {
+            isProfiling = true;
+            HeapSchemeWithTLAB.setAllocationSampler(this);
+        } else {
+            Log.println(optionPrefix + ": allocation sampling requires a heap scheme with TLABs");
+        }
+    }
+
+    private void usage() {
+        System.err.println("usage: " + optionPrefix + ":interval=bytes,depth=d,top=n,file=path");
+        MaxineVM.native_exit(1);
+    }
+
+    private long getOption(String s) {
+        final String value = s.substring(s.indexOf('=') + 1);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            usage();
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the mean number of bytes a thread allocates between two samples.
+     */
+    public long interval() {
+        return interval;
+    }
+
+    /**
+     * Gets the number of samples taken since the profiler was started or last {@linkplain #restart() restarted}.
+     */
+    public long sampleCount() {
+        return sampleCount.get();
+    }
+
+    /**
+     * Draws an interval from an exponential distribution with mean {@link #interval}, so that every allocated byte
+     * is equally likely to be sampled.
+     */
+    public long nextSampleInterval() {
+        final double u = random.nextDouble();
+        final double next = -Math.log(1.0 - u) * interval;
+        return Math.max(1L, Math.min((long) next, interval * 64));
+    }
+
+    @NEVER_INLINE
+    public Object sampleAllocation(Size size) {
+        if (!isProfiling) {
+            return null;
+        }
+        final StackRecorder recorder = new StackRecorder(maxDepth);
+        recorder.walk(null, Pointer.fromLong(here()), getCpuStackPointer(), getCpuFramePointer());
+        return sample(recorder.toStack(), size.toLong());
+    }
+
+    /**
+     * Creates a sample, after aggregating the samples completed so far. This runs on the allocating thread with
+     * allocation enabled, unlike {@link #sampledObjectAllocated(Object, Hub)}.
+     */
+    private Sample sample(Stack stack, long size) {
+        drain();
+        sampleCount.incrementAndGet();
+        return new Sample(stack, size);
+    }
+
+    /**
+     * Samples an allocation of an object of a given class from a given stack, as {@link #sampleAllocation(Size)} and
+     * {@link #sampledObjectAllocated(Object, Hub)} do together.
+     *
+     * @param methods the methods of the allocating stack, innermost first
+     * @param bcis the bytecode indexes in {@code methods}
+     */
+    @HOSTED_ONLY
+    public void sampleAllocation(ClassMethodActor[] methods, int[] bcis, ClassActor classActor, long size) {
+        complete(sample(new Stack(methods.clone(), bcis.clone()), size), classActor);
+    }
+
+    public void sampledObjectAllocated(Object sample, Hub hub) {
+        complete((Sample) sample, hub.classActor);
+    }
+
+    private void complete(Sample s, ClassActor classActor) {
+        s.classActor = classActor;
+        Sample head;
+        do {
+            head = completedSamples.get();
+            s.next = head;
+        } while (!completedSamples.compareAndSet(head, s));
+    }
+
+    /**
+     * Aggregates the completed samples into {@link #sites}.
+     */
+    private synchronized void drain() {
+        Sample s = completedSamples.getAndSet(null);
+        while (s != null) {
+            final AllocationSite key = new AllocationSite(s.stack, s.classActor);
+            AllocationSite site = sites.get(key);
+            if (site == null) {
+                site = key;
+                sites.put(site, site);
+            }
+            site.samples++;
+            site.sampledBytes += s.size;
+            site.estimatedBytes += estimatedBytes(s.size);
+            s = s.next;
+        }
+    }
+
+    /**
+     * Gets the number of bytes represented by a sample of a given size. With exponentially distributed intervals of
+     * mean {@code m}, an object of size {@code s} is sampled with probability {@code 1 - exp(-s/m)}.
+     */
+    private long estimatedBytes(long size) {
+        return (long) (size / -Math.expm1(-(double) size / interval));
+    }
+
+    /**
+     * Gets the allocation sites sampled so far, by decreasing estimated number of allocated bytes. Samples whose class
+     * is not yet known, because their thread has not allocated again since, are not included.
+     */
+    public synchronized List<AllocationSite> sites() {
+        drain();
+        final ArrayList<AllocationSite> result = new ArrayList<AllocationSite>(sites.size());
+        for (AllocationSite site : sites.values()) {
+            result.add(site.copy());
+        }
+        Collections.sort(result, new Comparator<AllocationSite>() {
+            public int compare(AllocationSite a, AllocationSite b) {
+                return a.estimatedBytes > b.estimatedBytes ? -1 : a.estimatedBytes < b.estimatedBytes ? 1 : 0;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Discards the samples taken so far.
+     */
+    public synchronized void restart() {
+        isProfiling = false;
+        drain();
+        sites.clear();
+        sampleCount.set(0);
+        isProfiling = true;
+    }
+
+    /**
+     * Stops sampling and outputs the results.
+     */
+    public void terminate() {
+        isProfiling = false;
+        HeapSchemeWithTLAB.setAllocationSampler(null);
+        if (fileName != null) {
+            try {
+                final OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName));
+                try {
+                    writeTo(out);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                Log.println(optionPrefix + ": error writing " + fileName + ": " + e);
+            }
+        } else {
+            print();
+        }
+    }
+
+    private void print() {
+        final List<AllocationSite> sites = sites();
+        final boolean lockDisabledSafepoints = Log.lock();
+        try {
+            Log.print("Allocation Sampling Profiler: ");
+            Log.print(sampleCount());
+            Log.print(" samples, interval ");
+            Log.print(interval);
+            Log.println(" bytes");
+            final int n = Math.min(top, sites.size());
+            for (int i = 0; i < n; i++) {
+                final AllocationSite site = sites.get(i);
+                Log.print(site.estimatedBytes / 1024);
+                Log.print("KB  ");
+                Log.print(site.samples);
+                Log.print(" samples  ");
+                Log.println(site.classActor == null ? "?" : site.classActor.name.string);
+                final StackTraceElement[] trace = site.stackTrace();
+                for (StackTraceElement element : trace) {
+                    Log.print("    at ");
+                    Log.println(element.toString());
+                }
+            }
+        } finally {
+            Log.unlock(lockDisabledSafepoints);
+        }
+    }
+
+    /**
+     * Writes the sampled allocation sites. The output is a header followed by constant pools and the site events,
+     * all big-endian:
+     * <pre>
+     *     int magic ("MXAP"), short version, long interval, long sampleCount
+     *     int n, n * utf                                  // string pool
+     *     int n, n * (int name)                           // class pool: index in string pool
+     *     int n, n * (int holder, int name, int signature) // method pool: indexes in string pool
+     *     int n, n * (int depth, depth * (int method, int line)) // stack pool, innermost frame first
+     *     int n, n * (int stack, int class, long samples, long sampledBytes, long estimatedBytes) // sites
+     * </pre>
+     * A class index of -1 denotes an unknown class.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        final List<AllocationSite> sites = sites();
+        final Pool<String> strings = new Pool<String>();
+        final Pool<ClassActor> classes = new Pool<ClassActor>();
+        final Pool<ClassMethodActor> methods = new Pool<ClassMethodActor>();
+        final Pool<Stack> stacks = new Pool<Stack>();
+        for (AllocationSite site : sites) {
+            if (site.classActor != null) {
+                classes.indexOf(site.classActor);
+            }
+            stacks.indexOf(site.stack);
+            for (ClassMethodActor method : site.stack.methods) {
+                methods.indexOf(method);
+            }
+        }
+        for (ClassActor classActor : classes.values) {
+            strings.indexOf(classActor.name.string);
+        }
+        for (ClassMethodActor method : methods.values) {
+            strings.indexOf(method.holder().name.string);
+            strings.indexOf(method.name.string);
+            strings.indexOf(method.descriptor().string);
+        }
+
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeLong(interval);
+        data.writeLong(sampleCount());
+        data.writeInt(strings.values.size());
+        for (String s : strings.values) {
+            data.writeUTF(s);
+        }
+        data.writeInt(classes.values.size());
+        for (ClassActor classActor : classes.values) {
+            data.writeInt(strings.indexOf(classActor.name.string));
+        }
+        data.writeInt(methods.values.size());
+        for (ClassMethodActor method : methods.values) {
+            data.writeInt(strings.indexOf(method.holder().name.string));
+            data.writeInt(strings.indexOf(method.name.string));
+            data.writeInt(strings.indexOf(method.descriptor().string));
+        }
+        data.writeInt(stacks.values.size());
+        for (Stack stack : stacks.values) {
+            data.writeInt(stack.methods.length);
+            for (int i = 0; i < stack.methods.length; i++) {
+                data.writeInt(methods.indexOf(stack.methods[i]));
+                data.writeInt(stack.methods[i].sourceLineNumber(stack.bcis[i]));
+            }
+        }
+        data.writeInt(sites.size());
+        for (AllocationSite site : sites) {
+            data.writeInt(stacks.indexOf(site.stack));
+            data.writeInt(site.classActor == null ? -1 : classes.indexOf(site.classActor));
+            data.writeLong(site.samples);
+            data.writeLong(site.sampledBytes);
+            data.writeLong(site.estimatedBytes);
+        }
+        data.flush();
+    }
+
+    /**
+     * Assigns consecutive indexes to distinct values.
+     */
+    private static final class Pool<T> {
+        final HashMap<T, Integer> indexes = new HashMap<T, Integer>();
+        final ArrayList<T> values = new ArrayList<T>();
+
+        int indexOf(T value) {
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = values.size();
+                indexes.put(value, index);
+                values.add(value);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * A sampled allocation, from the time its stack is recorded until it is aggregated into a site.
+     */
+    private static final class Sample {
+        final Stack stack;
+        final long size;
+        ClassActor classActor;
+        Sample next;
+
+        Sample(Stack stack, long size) {
+            this.stack = stack;
+            this.size = size;
+        }
+    }
+
+    /**
+     * The source frames of a sampled stack, innermost first.
+     */
+    private static final class Stack {
+        final ClassMethodActor[] methods;
+        final int[] bcis;
+        private final int hashCode;
+
+        Stack(ClassMethodActor[] methods, int[] bcis) {
+            this.methods = methods;
+            this.bcis = bcis;
+            this.hashCode = Arrays.hashCode(methods) * 31 + Arrays.hashCode(bcis);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof Stack) {
+                final Stack stack = (Stack) other;
+                return hashCode == stack.hashCode && Arrays.equals(methods, stack.methods) && Arrays.equals(bcis, stack.bcis);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Records up to a given number of source frames, skipping the frames of the allocation path.
+     */
+    private static final class StackRecorder extends SourceFrameVisitor {
+        final ClassMethodActor[] methods;
+        final int[] bcis;
+        int depth;
+
+        StackRecorder(int maxDepth) {
+            methods = new ClassMethodActor[maxDepth];
+            bcis = new int[maxDepth];
+        }
+
+        @Override
+        public boolean visitSourceFrame(ClassMethodActor method, int bci, boolean trapped, long frameId) {
+            final ClassMethodActor original = method.original();
+            if (depth == 0 && isAllocationPath(original.holder())) {
+                return true;
+            }
+            methods[depth] = original;
+            bcis[depth] = bci;
+            depth++;
+            return depth < methods.length;
+        }
+
+        private static boolean isAllocationPath(ClassActor holder) {
+            final String name = holder.name.string;
+            for (String prefix : ALLOCATION_PATH_PACKAGES) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Stack toStack() {
+            return new Stack(Arrays.copyOf(methods, depth), Arrays.copyOf(bcis, depth));
+        }
+    }
+
+    /**
+     * The samples of objects of one class allocated from one stack.
+     */
+    public static final class AllocationSite {
+        final Stack stack;
+        final ClassActor classActor;
+        long samples;
+        long sampledBytes;
+        long estimatedBytes;
+
+        AllocationSite(Stack stack, ClassActor classActor) {
+            this.stack = stack;
+            this.classActor = classActor;
+        }
+
+        AllocationSite copy() {
+            final AllocationSite copy = new AllocationSite(stack, classActor);
+            copy.samples = samples;
+            copy.sampledBytes = sampledBytes;
+            copy.estimatedBytes = estimatedBytes;
+            return copy;
+        }
+
+        /**
+         * Gets the class of the allocated objects.
+         */
+        public ClassActor classActor() {
+            return classActor;
+        }
+
+        /**
+         * Gets the allocating stack, innermost frame first.
+         */
+        public StackTraceElement[] stackTrace() {
+            final StackTraceElement[] trace = new StackTraceElement[stack.methods.length];
+            for (int i = 0; i < trace.length; i++) {
+                trace[i] = stack.methods[i].toStackTraceElement(stack.bcis[i]);
+            }
+            return trace;
+        }
+
+        /**
+         * Gets the number of samples taken at this site.
+         */
+        public long samples() {
+            return samples;
+        }
+
+        /**
+         * Gets the total size of the sampled objects.
+         */
+        public long sampledBytes() {
+            return sampledBytes;
+        }
+
+        /**
+         * Gets the estimated number of bytes allocated at this site, extrapolated from the samples.
+         */
+        public long estimatedBytes() {
+            return estimatedBytes;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other instanceof AllocationSite) {
+                final AllocationSite site = (AllocationSite) other;
+                return classActor == site.classActor && stack.equals(site.stack);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return stack.hashCode() ^ System.identityHashCode(classActor);
+        }
+    }
+}
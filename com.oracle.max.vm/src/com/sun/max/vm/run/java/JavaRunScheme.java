@@ -30,8 +30,12 @@ import com.sun.max.vm.MaxineVM.Phase;
 import com.sun.max.vm.actor.holder.ClassActor;
 import com.sun.max.vm.actor.member.MethodActor;
 import com.sun.max.vm.actor.member.StaticMethodActor;
+import com.sun.max.vm.compiler.CompilationEventLog;
 import com.sun.max.vm.compiler.deopt.Deoptimization;
+import com.sun.max.vm.heap.GCEventLog;
 import com.sun.max.vm.heap.Heap;
+import com.sun.max.vm.heap.HeapDump;
+import com.sun.max.vm.heap.SpecialReferenceManager;
 import com.sun.max.vm.hosted.CompiledPrototype;
 import com.sun.max.vm.instrument.InstrumentationManager;
 import com.sun.max.vm.jni.JniFunctions;
@@ -94,6 +98,8 @@ public class JavaRunScheme extends AbstractVMScheme implements RunScheme {
         "-Xprof", false, null, "run CPU sampling profiler"), MaxineVM.Phase.STARTING);
     private static final VMStringOption hprofOption = register(new VMStringOption(
         "-Xhprof", false, null, "run heap sampling profiler"), MaxineVM.Phase.STARTING);
+    private static final VMStringOption aprofOption = register(new VMStringOption(
+        "-Xaprof", false, null, "run allocation sampling profiler"), MaxineVM.Phase.STARTING);
 
     /**
      * List of classes to explicitly reinitialise in the {@link Phase#STARTING} phase.
@@ -102,6 +108,7 @@ public class JavaRunScheme extends AbstractVMScheme implements RunScheme {
     private static List<String> reinitClasses = new LinkedList<String>();
     private static CPUSamplingProfiler cpuSamplingProfiler;
     private static HeapSamplingProfiler heapSamplingProfiler;
+    private static AllocationSamplingProfiler allocationSamplingProfiler;
     private static String mainClassName;
 
     @HOSTED_ONLY
@@ -180,6 +187,9 @@ public class JavaRunScheme extends AbstractVMScheme implements RunScheme {
         if (heapSamplingProfiler != null) {
             heapSamplingProfiler.terminate();
         }
+        if (allocationSamplingProfiler != null) {
+            allocationSamplingProfiler.terminate();
+        }
     }
 
     public static void restartProfilers() {
@@ -189,6 +199,9 @@ public class JavaRunScheme extends AbstractVMScheme implements RunScheme {
         if (heapSamplingProfiler != null) {
             heapSamplingProfiler.restart();
         }
+        if (allocationSamplingProfiler != null) {
+            allocationSamplingProfiler.restart();
+        }
     }
 
     @ALIAS(declaringClass = System.class)
@@ -244,6 +257,10 @@ public class JavaRunScheme extends AbstractVMScheme implements RunScheme {
                     final String heapProfOptionPrefix = hprofOption.toString();
                     heapSamplingProfiler = new HeapSamplingProfiler(heapProfOptionPrefix, heapProfOptionValue);
                 }
+                final String allocationProfOptionValue = aprofOption.getValue();
+                if (allocationProfOptionValue != null) {
+                    allocationSamplingProfiler = new AllocationSamplingProfiler(aprofOption.toString(), allocationProfOptionValue);
+                }
                 break;
             }
 
@@ -279,6 +296,10 @@ public class JavaRunScheme extends AbstractVMScheme implements RunScheme {
             }
             // Install the signal handler for dumping threads when SIGHUP is received
             Signal.handle(new Signal("QUIT"), new PrintThreads(false));
+            HeapDump.initialize();
+            GCEventLog.initialize();
+            CompilationEventLog.initialize();
+            SpecialReferenceManager.initialize(MaxineVM.Phase.STARTING);
         }
     }
 
@@ -410,6 +431,13 @@ public class JavaRunScheme extends AbstractVMScheme implements RunScheme {
         return heapSamplingProfiler;
     }
 
+    /**
+     * @return AllocationSamplingProfiler instance or null
+     */
+    public static AllocationSamplingProfiler getAllocationSamplingProfiler() {
+        return allocationSamplingProfiler;
+    }
+
     /**
      * Finds the main class name from the command line either explicitly or via the jar file.
      *
@@ -32,6 +32,7 @@ import com.sun.max.vm.MaxineVM.*;
 import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.actor.member.*;
 import com.sun.max.vm.compiler.target.*;
+import com.sun.max.vm.heap.*;
 import com.sun.max.vm.jdk.*;
 import com.sun.max.vm.jdk.JDK_java_lang_Throwable.*;
 import com.sun.max.vm.object.*;
@@ -150,6 +151,9 @@ public final class Throw {
                 }
             }
         }
+        if (throwable instanceof OutOfMemoryError) {
+            HeapDump.dumpOnOutOfMemoryError();
+        }
         if (FatalOutOfMemory && throwable instanceof OutOfMemoryError) {
             Log.print("Failing fast on ");
             Log.println(throwable);
@@ -82,11 +82,28 @@ public class SourceFrameVisitor extends RawStackFrameVisitor implements TargetMe
         }
 
         // TODO this value is not stable in the face of deoptimzation as frames can move.
-        frameId = current.sp().toLong() << 16;
+        final long frameId = current.sp().toLong() << 16;
+        final boolean trapped = callee.targetMethod() != null && callee.targetMethod().is(TrapStub);
+        return visitTargetFrame(targetMethod, current.vmIP(), trapped, frameId);
+    }
 
-        trapped = callee.targetMethod() != null && callee.targetMethod().is(TrapStub);
+    /**
+     * Iterates over the source methods of the frame of a given target method, calling
+     * {@link #visitSourceFrame(ClassMethodActor, int, boolean, long)} for each of them. This is what
+     * {@link #visitFrame(StackFrameCursor, StackFrameCursor)} does for a frame on the stack; it can also be used
+     * to expand a frame that was recorded earlier as a target method and an instruction pointer.
+     *
+     * @param targetMethod a target method that is not a stub
+     * @param ip an instruction pointer in {@code targetMethod}
+     * @param trapped specifies if execution is stopped in {@code targetMethod} at a trap
+     * @param frameId a unique identifier for the activation of {@code targetMethod}
+     * @return {@code true} if the stack walk should continue
+     */
+    public final boolean visitTargetFrame(TargetMethod targetMethod, CodePointer ip, boolean trapped, long frameId) {
+        this.frameId = frameId;
+        this.trapped = trapped;
         stopped = false;
-        int count = targetMethod.forEachCodePos(this, current.vmIP());
+        int count = targetMethod.forEachCodePos(this, ip);
         if (count == 0 && !stopped) {
             return visitSourceFrame(targetMethod.classMethodActor, -1, trapped, frameId);
         }
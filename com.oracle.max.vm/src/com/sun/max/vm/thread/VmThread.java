@@ -42,6 +42,7 @@ import com.sun.max.vm.*;
 import com.sun.max.vm.actor.holder.*;
 import com.sun.max.vm.bytecode.refmaps.*;
 import com.sun.max.vm.code.*;
+import com.sun.max.vm.compiler.*;
 import com.sun.max.vm.compiler.target.*;
 import com.sun.max.vm.heap.*;
 import com.sun.max.vm.hosted.*;
@@ -806,6 +807,8 @@ public class VmThread {
 
         thread.traceThreadAfterTermination();
 
+        CompilationEventLog.notifyCurrentThreadDetach();
+
         // GC may now reclaim or prepare any of its resources before the thread vanishes forever.
         vmConfig().heapScheme().notifyCurrentThreadDetach();
 
@@ -27,6 +27,7 @@ import static com.oracle.max.vma.tools.gen.vma.AdviceGeneratorHelper.*;
 import java.lang.reflect.*;
 import java.util.*;
 
+import com.oracle.max.vm.ext.vma.store.bin.*;
 import com.oracle.max.vm.ext.vma.store.txt.*;
 import com.oracle.max.vm.ext.vma.store.txt.sbps.*;
 import com.oracle.max.vma.tools.gen.vma.*;
@@ -54,6 +55,8 @@ public class SBPSVMATextStoreGenerator {
             generate(m);
         }
         AdviceGeneratorHelper.updateSource(SBPSVMATextStore.class, null, false);
+        // the binary store shares the short form translation
+        AdviceGeneratorHelper.updateSource(MMVMABinaryStore.class, null, false);
     }
 
     private static Set<Method> nsfMethods = new HashSet<Method>();
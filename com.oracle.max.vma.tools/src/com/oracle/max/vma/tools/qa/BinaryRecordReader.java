@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.max.vma.tools.qa;
+
+import static com.oracle.max.vm.ext.vma.store.bin.VMABinaryStoreFormat.*;
+import static com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat.BATCHED;
+import static com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat.PER_THREAD;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.oracle.max.vm.ext.vma.store.bin.*;
+import com.oracle.max.vm.ext.vma.store.txt.*;
+import com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat.Key;
+
+/**
+ * Streams the records of a store written by {@link MMVMABinaryStore} as the {@code String[]} components
+ * that {@link ProcessLog} gets from splitting a text record.
+ *
+ * The files of a per-thread store are merged by time as they are read, with the thread short form
+ * inserted into each timed record. The result is a single time ordered store in absolute time mode,
+ * so there is no need for the intermediate merge that the text per-thread store uses.
+ * Optionally each file is decoded by its own {@link Prefetcher} thread.
+ */
+public class BinaryRecordReader extends ProcessLog.RecordReader {
+
+    private static final Key[] KEYS = Key.values();
+
+    /**
+     * Upper bound on the number of components of a record, beyond which the record is taken to run into the
+     * zero filled end of a store that was not finalized.
+     */
+    private static final int MAX_RECORD_PARTS = 64;
+
+    /**
+     * One store file being decoded, holding its next record.
+     */
+    private static class Segment {
+        final File file;
+        final DataInputStream in;
+        final int index;
+        boolean perThread;
+        String threadShortForm;
+        /**
+         * Absolute time of the last timed record, which is also the time given to untimed records.
+         */
+        long lastTime;
+        Key key;
+        String[] record;
+        private final ArrayList<String> parts = new ArrayList<String>();
+        /**
+         * The record being merged, which lags the record being decoded when {@link #prefetcher} is active.
+         */
+        Key currentKey;
+        String[] currentRecord;
+        long currentTime;
+        Prefetcher prefetcher;
+
+        Segment(File file, int index) throws IOException {
+            this.file = file;
+            this.index = index;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a binary VMA store");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException(file + ": unsupported binary VMA store version " + version);
+            }
+            if (!next() || key != Key.INITIALIZE_STORE) {
+                throw new IOException(file + ": missing store header");
+            }
+            int mode = Integer.parseInt(record[3]);
+            perThread = (mode & PER_THREAD) != 0;
+            if ((mode & BATCHED) != 0 && !perThread) {
+                throw new IOException(file + ": batched global binary store is not supported, use per-thread mode");
+            }
+        }
+
+        /**
+         * Decodes the next record.
+         * @return {@code false} at the end of the data, which for a store that was not finalized is either the
+         *         zero filled rest of its last segment or a record cut short
+         */
+        boolean next() throws IOException {
+            try {
+                if (decode()) {
+                    return true;
+                }
+            } catch (EOFException ex) {
+                // the last record was cut short
+            }
+            key = null;
+            record = null;
+            return false;
+        }
+
+        private boolean decode() throws IOException {
+            int b = in.read();
+            if (b <= 0) {
+                return false;
+            }
+            long code = b & 0x7F;
+            if ((b & 0x80) != 0) {
+                code |= readVarLong() << 7;
+            }
+            if (code > KEYS.length) {
+                throw new IOException(file + ": corrupt record, key " + code);
+            }
+            key = KEYS[(int) code - 1];
+            parts.clear();
+            parts.add(key.code);
+            boolean insertThread = perThread && VMATextStoreFormat.hasTimeAndThread(key);
+            while (parts.size() <= MAX_RECORD_PARTS) {
+                int first = in.readUnsignedByte();
+                int tag = first & TAG_MASK;
+                long payload = (first >> TAG_BITS) & 0xF;
+                if ((first & 0x80) != 0) {
+                    payload |= readVarLong() << 4;
+                }
+                switch (tag) {
+                    case LONG:
+                        parts.add(Long.toString(unzigzag(payload)));
+                        break;
+                    case TIME:
+                        lastTime += unzigzag(payload);
+                        parts.add(Long.toString(lastTime));
+                        if (insertThread) {
+                            parts.add(threadShortForm);
+                        }
+                        break;
+                    case CHAR:
+                        parts.add(String.valueOf((char) payload));
+                        break;
+                    case FLOAT:
+                        parts.add(Float.toString(in.readFloat()));
+                        break;
+                    case DOUBLE:
+                        parts.add(Double.toString(in.readDouble()));
+                        break;
+                    case STRING: {
+                        byte[] bytes = new byte[(int) payload];
+                        in.readFully(bytes);
+                        parts.add(new String(bytes, "UTF-8"));
+                        break;
+                    }
+                    case SPECIAL:
+                        if (payload == END) {
+                            record = parts.toArray(new String[parts.size()]);
+                            if (key == Key.THREAD_DEFINITION) {
+                                threadShortForm = record[2];
+                            }
+                            return true;
+                        } else if (payload == VMABinaryStoreFormat.REPEAT_ID) {
+                            parts.add(String.valueOf(VMATextStoreFormat.REPEAT_ID));
+                        } else {
+                            parts.add(Boolean.toString(payload == TRUE));
+                        }
+                        break;
+                    default:
+                        throw new IOException(file + ": corrupt record, tag " + tag);
+                }
+            }
+            // a record cut short, followed by the zero filled rest of the segment
+            return false;
+        }
+
+        /**
+         * Moves to the next record to be merged, decoding it in this thread or taking it from the {@link #prefetcher}.
+         * @return {@code false} at end of file
+         */
+        boolean nextRecord() throws IOException {
+            if (prefetcher != null) {
+                return prefetcher.take(this);
+            }
+            if (!next()) {
+                return false;
+            }
+            currentKey = key;
+            currentRecord = record;
+            currentTime = lastTime;
+            return true;
+        }
+
+        private long readVarLong() throws IOException {
+            long result = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = in.readUnsignedByte();
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return result;
+        }
+    }
+
+    /**
+     * Decodes a {@link Segment} in its own thread, handing over records in batches.
+     * A batch with no records marks the end of the segment.
+     */
+    private static class Prefetcher extends Thread {
+        private static final int BATCH_SIZE = 1024;
+        private static final int MAX_BATCHES = 16;
+
+        private static class Batch {
+            final Key[] keys = new Key[BATCH_SIZE];
+            final String[][] records = new String[BATCH_SIZE][];
+            final long[] times = new long[BATCH_SIZE];
+            int count;
+        }
+
+        private final Segment segment;
+        private final ArrayBlockingQueue<Batch> batches = new ArrayBlockingQueue<Batch>(MAX_BATCHES);
+        private volatile IOException error;
+        private Batch batch;
+        private int batchIndex;
+
+        Prefetcher(Segment segment) {
+            this.segment = segment;
+            setName("BinaryRecordReader-" + segment.file.getName());
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Batch next = new Batch();
+                    boolean more = true;
+                    while (next.count < BATCH_SIZE && (more = segment.next())) {
+                        next.keys[next.count] = segment.key;
+                        next.records[next.count] = segment.record;
+                        next.times[next.count] = segment.lastTime;
+                        next.count++;
+                        if (segment.key == Key.FINALIZE_STORE) {
+                            more = false;
+                            break;
+                        }
+                    }
+                    if (next.count > 0) {
+                        batches.put(next);
+                    }
+                    if (!more) {
+                        break;
+                    }
+                }
+            } catch (IOException ex) {
+                error = ex;
+            } catch (InterruptedException ex) {
+                return;
+            }
+            try {
+                batches.put(new Batch());
+            } catch (InterruptedException ex) {
+            }
+        }
+
+        boolean take(Segment segment) throws IOException {
+            if (batch == null || batchIndex == batch.count) {
+                if (batch != null && batch.count == 0) {
+                    return false;
+                }
+                try {
+                    batch = batches.take();
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException();
+                }
+                batchIndex = 0;
+                if (batch.count == 0) {
+                    if (error != null) {
+                        throw error;
+                    }
+                    return false;
+                }
+            }
+            segment.currentKey = batch.keys[batchIndex];
+            segment.currentRecord = batch.records[batchIndex];
+            segment.currentTime = batch.times[batchIndex];
+            batchIndex++;
+            return true;
+        }
+    }
+
+    private final PriorityQueue<Segment> queue = new PriorityQueue<Segment>(11, new Comparator<Segment>() {
+        public int compare(Segment a, Segment b) {
+            if (a.currentTime != b.currentTime) {
+                return a.currentTime < b.currentTime ? -1 : 1;
+            }
+            return a.index - b.index;
+        }
+    });
+
+    private final ArrayList<Segment> segments = new ArrayList<Segment>();
+    private String[] header;
+    private String[] trailer;
+    private long finalTime;
+
+    /**
+     * Opens the binary store {@code files}, which are either the single global store or the per-thread stores.
+     * @param parallel decode each file in its own thread, leaving only the merge to the caller's thread
+     */
+    public BinaryRecordReader(File[] files, boolean parallel) throws IOException {
+        long startTime = Long.MAX_VALUE;
+        for (File file : files) {
+            if (file.length() == 0) {
+                continue;
+            }
+            Segment segment = new Segment(file, segments.size());
+            segments.add(segment);
+            startTime = Math.min(startTime, segment.lastTime);
+        }
+        if (segments.isEmpty()) {
+            throw new FileNotFoundException("no binary VMA store files");
+        }
+        for (Segment segment : segments) {
+            if (parallel && segments.size() > 1) {
+                segment.prefetcher = new Prefetcher(segment);
+                segment.prefetcher.start();
+            }
+            advance(segment);
+        }
+        header = new String[] {Key.INITIALIZE_STORE.code, Long.toString(startTime), "true", "0"};
+    }
+
+    /**
+     * Checks whether {@code files} (a single store file or the contents of a store directory) is a binary store.
+     */
+    public static boolean isBinaryStore(File[] files) {
+        for (File file : files) {
+            if (file.length() != 0) {
+                return VMABinaryStoreFormat.isBinaryStore(file);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the next record of {@code segment} and queues it, unless the segment has ended.
+     */
+    private void advance(Segment segment) throws IOException {
+        while (segment.nextRecord()) {
+            switch (segment.currentKey) {
+                case INITIALIZE_STORE:
+                case THREAD_SWITCH:
+                    continue;
+                case FINALIZE_STORE:
+                    finalTime = Math.max(finalTime, segment.currentTime);
+                    return;
+                default:
+                    queue.add(segment);
+                    return;
+            }
+        }
+        // truncated store, e.g. VM did not terminate normally
+        finalTime = Math.max(finalTime, segment.currentTime);
+    }
+
+    @Override
+    public String[] readLine() throws IOException {
+        if (header != null) {
+            String[] result = header;
+            header = null;
+            return result;
+        }
+        Segment segment = queue.poll();
+        if (segment == null) {
+            if (trailer == null) {
+                trailer = new String[] {Key.FINALIZE_STORE.code, Long.toString(finalTime)};
+                return trailer;
+            }
+            return null;
+        }
+        String[] result = segment.currentRecord;
+        finalTime = Math.max(finalTime, segment.currentTime);
+        advance(segment);
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments) {
+            if (segment.prefetcher != null) {
+                segment.prefetcher.interrupt();
+            }
+            segment.in.close();
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.max.vma.tools.qa;
+
+/**
+ * An open addressing hash table from object ids to the little state that {@link StreamingProcessLog} keeps per object,
+ * held in parallel primitive arrays. This costs about 28 bytes per live object, compared with an {@link ObjectRecord}
+ * plus its map entry and advice record list.
+ *
+ * Ids are the (unqualified) object ids from the trace. Id {@link #FREE} is reserved to mark free slots.
+ */
+class ObjectStateTable {
+
+    static final long FREE = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private long[] ids;
+    private int[] classIndices;
+    private long[] endCreationTimes;
+    private long[] lastModifyTimes;
+    private int size;
+
+    ObjectStateTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        java.util.Arrays.fill(ids, FREE);
+        classIndices = new int[capacity];
+        endCreationTimes = new long[capacity];
+        lastModifyTimes = new long[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static int hash(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the slot holding {@code id}, or -1 if absent.
+     */
+    int find(long id) {
+        final int mask = ids.length - 1;
+        int i = hash(id) & mask;
+        while (true) {
+            long slotId = ids[i];
+            if (slotId == id) {
+                return i;
+            } else if (slotId == FREE) {
+                return -1;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Adds {@code id}, which must be absent, and returns its slot.
+     */
+    int add(long id, int classIndex, long creationTime) {
+        if ((size + 1) * 4 > ids.length * 3) {
+            grow();
+        }
+        final int mask = ids.length - 1;
+        int i = hash(id) & mask;
+        while (ids[i] != FREE) {
+            i = (i + 1) & mask;
+        }
+        ids[i] = id;
+        classIndices[i] = classIndex;
+        endCreationTimes[i] = creationTime;
+        lastModifyTimes[i] = -1;
+        size++;
+        return i;
+    }
+
+    /**
+     * Removes the entry at {@code slot}, shifting back any entries in the same probe sequence.
+     */
+    void remove(int slot) {
+        final int mask = ids.length - 1;
+        int hole = slot;
+        int i = (slot + 1) & mask;
+        while (ids[i] != FREE) {
+            int home = hash(ids[i]) & mask;
+            // move the entry at i into the hole unless its home lies cyclically in (hole, i]
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                ids[hole] = ids[i];
+                classIndices[hole] = classIndices[i];
+                endCreationTimes[hole] = endCreationTimes[i];
+                lastModifyTimes[hole] = lastModifyTimes[i];
+                hole = i;
+            }
+            i = (i + 1) & mask;
+        }
+        ids[hole] = FREE;
+        size--;
+    }
+
+    private void grow() {
+        long[] oldIds = ids;
+        int[] oldClassIndices = classIndices;
+        long[] oldEndCreationTimes = endCreationTimes;
+        long[] oldLastModifyTimes = lastModifyTimes;
+        allocate(oldIds.length * 2);
+        size = 0;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != FREE) {
+                int slot = add(oldIds[i], oldClassIndices[i], oldEndCreationTimes[i]);
+                lastModifyTimes[slot] = oldLastModifyTimes[i];
+            }
+        }
+    }
+
+    long id(int slot) {
+        return ids[slot];
+    }
+
+    int classIndex(int slot) {
+        return classIndices[slot];
+    }
+
+    long endCreationTime(int slot) {
+        return endCreationTimes[slot];
+    }
+
+    void setEndCreationTime(int slot, long time) {
+        endCreationTimes[slot] = time;
+    }
+
+    long lastModifyTime(int slot) {
+        return lastModifyTimes[slot];
+    }
+
+    void setLastModifyTime(int slot, long time) {
+        lastModifyTimes[slot] = time;
+    }
+
+    /**
+     * Returns the capacity, i.e. the bound for slot indices when iterating.
+     */
+    int capacity() {
+        return ids.length;
+    }
+
+    boolean isFree(int slot) {
+        return ids[slot] == FREE;
+    }
+}
@@ -38,7 +38,8 @@ import com.oracle.max.vma.tools.log.ConvertLog.MergeCommand.PushRecord;
 import com.sun.max.program.*;
 
 /**
- * Reads a log file in the format generated by {@link CSFVMATextStore}.
+ * Reads a log file in the format generated by {@link CSFVMATextStore}, or a binary store generated by
+ * {@link com.oracle.max.vm.ext.vma.store.bin.MMVMABinaryStore}, which is decoded by {@link BinaryRecordReader}.
  *
  * Object identifiers in the log may be reused owing to garbage collection. Object identifiers in the {@link #objects}
  * map are unique and always qualified by the allocation (gc) epoch, {@link #allocationEpoch). I.e., an id X in the log is
@@ -401,10 +402,30 @@ public class ProcessLog {
         return length / AVG_LINE_LENGTH;
     }
 
-    private TraceRun doProcessTrace(String dataDirName) throws IOException {
-        long chunkStartTime = System.currentTimeMillis();
-        long processStartTime = chunkStartTime;
+    /**
+     * Returns the files holding the trace denoted by {@code dataDirName}.
+     */
+    private static File[] traceFiles(String dataDirName) throws IOException {
+        File dataDir = new File(dataDirName);
+        if (dataDir.isDirectory()) {
+            File dataFile = new File(dataDir, VMAStoreFile.GLOBAL_STORE);
+            return dataFile.exists() ? new File[] {dataFile} : dataDir.listFiles();
+        } else if (dataDir.exists()) {
+            return new File[] {dataDir};
+        } else {
+            throw new FileNotFoundException(dataDirName);
+        }
+    }
+
+    /**
+     * Opens a time ordered {@link RecordReader} on the trace denoted by {@code dataDirName}.
+     * @param parallel decode the files of a per-thread binary store in parallel
+     */
+    static RecordReader openTrace(String dataDirName, boolean verbose, boolean parallel) throws IOException {
+        return new ProcessLog(verbose, Integer.MAX_VALUE).openReader(dataDirName, parallel);
+    }
 
+    private RecordReader openReader(String dataDirName, boolean parallel) throws IOException {
         File dataDir = new File(dataDirName);
         File dataFile =  null;
         if (dataDir.isDirectory()) {
@@ -413,24 +434,33 @@ public class ProcessLog {
             dataFile = dataDir;
         }
 
-        int adviceRecordListCountEstimate = 0;
-        RecordReader reader = null;
-
         if (dataFile.exists()) {
-            adviceRecordListCountEstimate = estimateRecordCount(new File[] {dataFile});
-            reader = checkTimeOrdered(dataFile);
+            if (BinaryRecordReader.isBinaryStore(new File[] {dataFile})) {
+                return new BinaryRecordReader(new File[] {dataFile}, false);
+            } else {
+                return checkTimeOrdered(dataFile);
+            }
         } else {
             // either a per-thread store or an error
-            if (dataDir.isDirectory()) {
-                adviceRecordListCountEstimate = estimateRecordCount(dataDir.listFiles());
+            if (dataDir.isDirectory() && BinaryRecordReader.isBinaryStore(dataDir.listFiles())) {
+                // merged by time as it is decoded
+                return new BinaryRecordReader(dataDir.listFiles(), parallel);
+            } else if (dataDir.isDirectory()) {
                 PushReader pushReader = new PushReader();
-                reader = pushReader;
                 new PushReaderThread(dataDir.listFiles(), pushReader).start();
+                return pushReader;
             } else {
                 throw new FileNotFoundException(dataDirName);
             }
         }
+    }
+
+    private TraceRun doProcessTrace(String dataDirName) throws IOException {
+        long chunkStartTime = System.currentTimeMillis();
+        long processStartTime = chunkStartTime;
 
+        int adviceRecordListCountEstimate = estimateRecordCount(traceFiles(dataDirName));
+        RecordReader reader = openReader(dataDirName, false);
 
         if (verbose) {
             System.out.println("processing trace file " + dataDirName + " starting");
@@ -36,6 +36,11 @@ public class QueryAnalysis {
 
     private static boolean verbose = false;
     private static int maxLines = Integer.MAX_VALUE;
+    /**
+     * Non-null when the traces were processed with {@link StreamingProcessLog}, in which case
+     * only queries that implement {@link StreamingQuery} can be run.
+     */
+    private static ArrayList<StreamingTraceRun> streamingRuns;
 
     public static void main(String[] args) {
         ArrayList<String> dataDirs = new ArrayList<String>();
@@ -83,6 +88,8 @@ public class QueryAnalysis {
                 verbose = true;
             } else if (arg.equals("-l")) {
                 maxLines = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-stream")) {
+                streamingRuns = new ArrayList<StreamingTraceRun>();
             } else {
                 System.err.println("Unknown command " + arg);
                 usage();
@@ -101,7 +108,11 @@ public class QueryAnalysis {
                 QueryBase.addQueryClassDir(queryClassUrl);
                 ArrayList<TraceRun> traceRuns = new ArrayList<TraceRun>(dataDirs.size());
                 for (int t = 0; t < dataDirs.size(); t++) {
-                    traceRuns.add(ProcessLog.processTrace(dataDirs.get(t), verbose, maxLines));
+                    if (streamingRuns != null) {
+                        streamingRuns.add(StreamingProcessLog.processTrace(dataDirs.get(t), verbose, maxLines));
+                    } else {
+                        traceRuns.add(ProcessLog.processTrace(dataDirs.get(t), verbose, maxLines));
+                    }
                 }
 
                 if (commandFile != null) {
@@ -118,7 +129,7 @@ public class QueryAnalysis {
     }
 
     private static void usage() {
-        System.err.println("usage: -f datafile1 datafile2 ... [-i commandfile] [-v]");
+        System.err.println("usage: -f datafile1 datafile2 ... [-i commandfile] [-v] [-stream]");
         System.exit(1);
     }
 
@@ -143,7 +154,13 @@ public class QueryAnalysis {
                         String[] args = new String[lineParts.length - 2];
                         System.arraycopy(lineParts, 2, args, 0, args.length);
                         QueryBase query = QueryBase.ensureLoaded(queryName);
-                        query.execute(traceRuns, traceFocus, ps, query.parseStandardArgs(args));
+                        if (streamingRuns == null) {
+                            query.execute(traceRuns, traceFocus, ps, query.parseStandardArgs(args));
+                        } else if (query instanceof StreamingQuery) {
+                            ((StreamingQuery) query).executeStreaming(streamingRuns, traceFocus, ps, query.parseStandardArgs(args));
+                        } else {
+                            System.err.println("query " + queryName + " is not supported in streaming mode");
+                        }
                         break;
 
                     case 'i': {
@@ -110,13 +110,17 @@ public abstract class QueryBase {
      * @param cr
      */
     public boolean classMatches(ClassRecord cr) {
+        return classNameMatches(cr.getName());
+    }
+
+    public boolean classNameMatches(String name) {
         if (className == null) {
             return true;
         }
         if (classPattern == null) {
             classPattern = Pattern.compile(className);
         }
-        return classPattern.matcher(cr.getName()).matches();
+        return classPattern.matcher(name).matches();
     }
 
     /**
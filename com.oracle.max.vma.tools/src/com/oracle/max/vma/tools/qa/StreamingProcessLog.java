@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.max.vma.tools.qa;
+
+import static com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat.*;
+
+import java.io.*;
+import java.util.*;
+
+import com.oracle.max.vm.ext.vma.store.txt.*;
+import com.oracle.max.vma.tools.qa.ProcessLog.RecordReader;
+import com.oracle.max.vma.tools.qa.StreamingTraceRun.ClassSummary;
+
+/**
+ * Processes a trace in a single pass, in memory bounded by the number of live objects and classes rather than
+ * by the size of the trace, producing a {@link StreamingTraceRun}.
+ *
+ * Objects are held in an {@link ObjectStateTable}, keyed by their id in the trace, and are folded into the
+ * {@link ClassSummary} of their class when they are removed, when their id is reused, or at the end of the trace.
+ * The end of construction is found as in {@link ProcessLog}, i.e., the {@code RETURN} that matches the
+ * {@code METHOD_ENTRY} of {@code <init>}, but the matching is done per thread as the records arrive.
+ * An object that never enters {@code <init>} is taken to be constructed when it is created.
+ *
+ * The files of a per-thread binary store are decoded in parallel by {@link BinaryRecordReader}.
+ */
+public class StreamingProcessLog {
+
+    /**
+     * Bound on the number of objects per thread that have been created but have not (yet) entered {@code <init>}.
+     * Beyond it the oldest such object is evicted, and taken to be constructed when it was created.
+     */
+    private static final int MAX_PENDING = 64;
+
+    private static class ThreadState {
+        long lastId;
+        final long[] pending = new long[MAX_PENDING];
+        int pendingCount;
+        long[] frameIds = new long[16];
+        int[] frameDepths = new int[16];
+        int frameCount;
+
+        /**
+         * Records an object that has been created but has not entered {@code <init>}.
+         * @return {@code true} if the oldest such object was evicted to make room
+         */
+        boolean addPending(long id) {
+            boolean evicted = false;
+            if (pendingCount == MAX_PENDING) {
+                // oldest is very likely uninstrumented
+                System.arraycopy(pending, 1, pending, 0, MAX_PENDING - 1);
+                pendingCount--;
+                evicted = true;
+            }
+            pending[pendingCount++] = id;
+            return evicted;
+        }
+
+        boolean removePending(long id) {
+            for (int i = pendingCount - 1; i >= 0; i--) {
+                if (pending[i] == id) {
+                    System.arraycopy(pending, i + 1, pending, i, pendingCount - i - 1);
+                    pendingCount--;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void pushFrame(long id) {
+            if (frameCount == frameIds.length) {
+                frameIds = Arrays.copyOf(frameIds, frameCount * 2);
+                frameDepths = Arrays.copyOf(frameDepths, frameCount * 2);
+            }
+            frameIds[frameCount] = id;
+            frameDepths[frameCount] = 0;
+            frameCount++;
+        }
+    }
+
+    private final boolean verbose;
+    private final int maxLines;
+
+    private final ObjectStateTable objects = new ObjectStateTable();
+    private final ArrayList<ClassSummary> classes = new ArrayList<ClassSummary>();
+    private final Map<String, Integer> classIndices = new HashMap<String, Integer>();
+    private final Set<String> initMethods = new HashSet<String>();
+    private final Map<String, ThreadState> threads = new HashMap<String, ThreadState>();
+
+    private long adviceRecordCount;
+    private int missingConstructorCount;
+    private long collectedUnloggedCount;
+    private long evictedPendingCount;
+    private long startTime;
+    private long lastTime;
+    private boolean absTime;
+
+    private String[] recordParts;
+    private ThreadState threadState;
+
+    private StreamingProcessLog(boolean verbose, int maxLines) {
+        this.verbose = verbose;
+        this.maxLines = maxLines;
+    }
+
+    public static StreamingTraceRun processTrace(String dataDir, boolean verbose, int maxLines) throws IOException {
+        return new StreamingProcessLog(verbose, maxLines).doProcessTrace(dataDir);
+    }
+
+    private StreamingTraceRun doProcessTrace(String dataDirName) throws IOException {
+        long chunkStartTime = System.currentTimeMillis();
+        RecordReader reader = ProcessLog.openTrace(dataDirName, verbose, true);
+        if (verbose) {
+            System.out.println("streaming trace file " + dataDirName + " starting");
+        }
+        int lineNumber = 1;
+        try {
+            while (true) {
+                recordParts = reader.readLine();
+                if (recordParts == null) {
+                    break;
+                }
+                if (recordParts.length == 0 || recordParts[0].charAt(0) == '#') {
+                    continue;
+                }
+                try {
+                    processRecord();
+                } catch (RuntimeException ex) {
+                    System.err.println("line " + lineNumber + ": " + ex);
+                }
+                lineNumber++;
+                if (lineNumber >= maxLines) {
+                    System.out.println("reached max line count - terminating processing");
+                    break;
+                }
+                if (verbose && ((lineNumber % 1000000) == 0)) {
+                    long endTime = System.currentTimeMillis();
+                    System.out.printf("streamed %d traces in %d ms, %d objects%n", lineNumber, endTime - chunkStartTime, objects.size());
+                    chunkStartTime = endTime;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        // objects remaining at the end are live
+        for (int slot = 0; slot < objects.capacity(); slot++) {
+            if (!objects.isFree(slot)) {
+                fold(slot, false);
+            }
+        }
+
+        if (verbose) {
+            System.out.println("streaming trace file " + dataDirName + " complete");
+        }
+        return new StreamingTraceRun(dataDirName, adviceRecordCount, classes, missingConstructorCount, collectedUnloggedCount, evictedPendingCount, startTime, lastTime);
+    }
+
+    private void processRecord() {
+        Key key = VMATextStoreFormat.getCommand(false, recordParts[KEY_INDEX]);
+        if (key == null) {
+            throw new IllegalArgumentException("unknown record key " + recordParts[KEY_INDEX] + ", text key stores are not supported in streaming mode");
+        }
+        if (VMATextStoreFormat.hasTime(key) || key == Key.REMOVAL) {
+            adviceRecordCount++;
+        }
+        long time = lastTime;
+        if (VMATextStoreFormat.hasTime(key)) {
+            long timeValue = Long.parseLong(recordParts[TIME_INDEX]);
+            time = absTime ? timeValue : lastTime + timeValue;
+            lastTime = time;
+            threadState = getThreadState(recordParts[THREAD_INDEX]);
+        }
+
+        switch (key) {
+            case INITIALIZE_STORE:
+                startTime = Long.parseLong(recordParts[1]);
+                lastTime = startTime;
+                absTime = Boolean.parseBoolean(recordParts[2]);
+                break;
+
+            case FINALIZE_STORE: {
+                long t = Long.parseLong(recordParts[1]);
+                lastTime = absTime ? t : lastTime + t;
+                break;
+            }
+
+            case THREAD_SWITCH:
+                throw new IllegalArgumentException("batched log is not supported - use ConvertLog -unbatch");
+
+            case CLASS_DEFINITION: {
+                ClassSummary cs = getClassSummary(recordParts[DEFINE_ARG_INDEX + 2]);
+                cs.name = ClassRecord.getCanonicalName(recordParts[DEFINE_ARG_INDEX]);
+                cs.classLoaderId = recordParts[DEFINE_ARG_INDEX + 1];
+                break;
+            }
+
+            case METHOD_DEFINITION:
+                if (recordParts[DEFINE_ARG_INDEX + 1].equals("<init>")) {
+                    initMethods.add(recordParts[DEFINE_ARG_INDEX + 2]);
+                }
+                break;
+
+            case UNSEEN:
+            case ADVISE_AFTER_NEW:
+            case ADVISE_AFTER_NEW_ARRAY: {
+                long id = objectId();
+                int slot = objects.find(id);
+                if (slot >= 0) {
+                    // id reused without a removal record, e.g., after a GC: the previous object is dead
+                    collectedUnloggedCount++;
+                    retire(slot, true);
+                }
+                String classShortForm = recordParts[NEW_CLASSNAME_INDEX];
+                getClassSummary(classShortForm).count++;
+                objects.add(id, classIndices.get(classShortForm), time);
+                if (key == Key.UNSEEN) {
+                    missingConstructorCount++;
+                } else if (key == Key.ADVISE_AFTER_NEW && threadState.addPending(id)) {
+                    evictedPendingCount++;
+                }
+                break;
+            }
+
+            case REMOVAL: {
+                int slot = objects.find(Long.parseLong(recordParts[1]));
+                if (slot >= 0) {
+                    retire(slot, true);
+                }
+                break;
+            }
+
+            case ADVISE_BEFORE_PUT_FIELD:
+                modified(objectId(), time);
+                break;
+
+            case ADVISE_BEFORE_ARRAY_STORE:
+                modified(objectId(), time);
+                if (recordParts[ARRAY_INDEX_INDEX + 1].charAt(0) == OBJ_VALUE) {
+                    // ProcessLog also adds the record to the trace of the stored object, where it counts as a modification
+                    modified(Long.parseLong(recordParts[ARRAY_INDEX_INDEX + 2]), time);
+                }
+                break;
+
+            case ADVISE_AFTER_METHOD_ENTRY: {
+                long id = objectId();
+                if (initMethods.contains(recordParts[ID_MEMBERNAME_INDEX]) && threadState.removePending(id)) {
+                    threadState.pushFrame(id);
+                } else if (threadState.frameCount > 0) {
+                    threadState.frameDepths[threadState.frameCount - 1]++;
+                }
+                break;
+            }
+
+            case ADVISE_BEFORE_RETURN:
+                unwind(1, time);
+                break;
+
+            case ADVISE_BEFORE_RETURN_BY_THROW:
+                objectId();
+                unwind(Integer.parseInt(recordParts[RETURN_THROW_POP_INDEX]), time);
+                break;
+
+            default:
+                if (VMATextStoreFormat.hasId(key)) {
+                    // maintain the repeat id
+                    objectId();
+                }
+        }
+    }
+
+    private ThreadState getThreadState(String thread) {
+        ThreadState result = threads.get(thread);
+        if (result == null) {
+            result = new ThreadState();
+            threads.put(thread, result);
+        }
+        return result;
+    }
+
+    private ClassSummary getClassSummary(String classShortForm) {
+        Integer index = classIndices.get(classShortForm);
+        if (index == null) {
+            // forward reference, or definition
+            index = classes.size();
+            classes.add(new ClassSummary());
+            classIndices.put(classShortForm, index);
+        }
+        return classes.get(index);
+    }
+
+    /**
+     * Returns the object id of the current record, resolving a repeated id.
+     */
+    private long objectId() {
+        String arg = recordParts[OBJ_ID_INDEX];
+        if (arg.charAt(0) == REPEAT_ID) {
+            return threadState.lastId;
+        }
+        long id = Long.parseLong(arg);
+        threadState.lastId = id;
+        return id;
+    }
+
+    private void modified(long id, long time) {
+        int slot = objects.find(id);
+        if (slot >= 0) {
+            objects.setLastModifyTime(slot, time);
+        }
+    }
+
+    /**
+     * Handles the return from {@code frames} method invocations, ending the construction of objects whose
+     * {@code <init>} returns.
+     */
+    private void unwind(int frames, long time) {
+        ThreadState ts = threadState;
+        while (frames > 0 && ts.frameCount > 0) {
+            int top = ts.frameCount - 1;
+            if (ts.frameDepths[top] < frames) {
+                frames -= ts.frameDepths[top] + 1;
+                int slot = objects.find(ts.frameIds[top]);
+                if (slot >= 0) {
+                    objects.setEndCreationTime(slot, time);
+                }
+                ts.frameCount--;
+            } else {
+                ts.frameDepths[top] -= frames;
+                frames = 0;
+            }
+        }
+    }
+
+    /**
+     * Folds the object at {@code slot} into its class summary and removes it.
+     */
+    private void retire(int slot, boolean removed) {
+        fold(slot, removed);
+        objects.remove(slot);
+    }
+
+    private void fold(int slot, boolean removed) {
+        ClassSummary cs = classes.get(objects.classIndex(slot));
+        if (objects.lastModifyTime(slot) <= objects.endCreationTime(slot)) {
+            cs.immutableCount++;
+        }
+        if (!removed) {
+            cs.liveCount++;
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package com.oracle.max.vma.tools.qa;
+
+import java.util.*;
+
+/**
+ * The result of processing a trace in a single pass with {@link StreamingProcessLog}.
+ * Unlike {@link TraceRun} it holds no per-object or per-record data, just the aggregates
+ * that the {@link StreamingQuery streaming queries} report.
+ */
+public class StreamingTraceRun {
+
+    /**
+     * Aggregate data on the instances of one class.
+     */
+    public static class ClassSummary {
+        /**
+         * Canonical class name, {@code null} until the class definition has been seen.
+         */
+        public String name;
+        public String classLoaderId;
+        /**
+         * Instances created.
+         */
+        public long count;
+        /**
+         * Instances not modified after construction.
+         */
+        public long immutableCount;
+        /**
+         * Instances with no removal record whose id was not reused either.
+         */
+        public long liveCount;
+
+        public boolean isArray() {
+            return name != null && name.contains("[");
+        }
+    }
+
+    public final String name;
+    public final long adviceRecordCount;
+    /**
+     * Classes in the order their short forms were first seen.
+     */
+    public final List<ClassSummary> classes;
+    public final int classLoaderCount;
+    public final long objectCount;
+    public final long arrayCount;
+    public final long immutableObjectCount;
+    public final long immutableArrayCount;
+    public final long liveObjectCount;
+    public final long liveArrayCount;
+    public final int missingConstructorCount;
+    /**
+     * Instances found dead when their id was reused, with no removal record.
+     */
+    public final long collectedUnloggedCount;
+    /**
+     * Instances dropped from the objects awaiting their {@code <init>} in a thread, because too many were pending.
+     * They are taken to be constructed when they were created.
+     */
+    public final long evictedPendingCount;
+    public final long startTime;
+    public final long lastTime;
+
+    StreamingTraceRun(String name, long adviceRecordCount, List<ClassSummary> classes, int missingConstructorCount, long collectedUnloggedCount,
+                    long evictedPendingCount, long startTime, long lastTime) {
+        this.name = name;
+        this.adviceRecordCount = adviceRecordCount;
+        this.classes = classes;
+        this.missingConstructorCount = missingConstructorCount;
+        this.collectedUnloggedCount = collectedUnloggedCount;
+        this.evictedPendingCount = evictedPendingCount;
+        this.startTime = startTime;
+        this.lastTime = lastTime;
+        Set<String> classLoaders = new HashSet<String>();
+        long objects = 0;
+        long arrays = 0;
+        long immutableObjects = 0;
+        long immutableArrays = 0;
+        long liveObjects = 0;
+        long liveArrays = 0;
+        for (ClassSummary cs : classes) {
+            if (cs.classLoaderId != null) {
+                classLoaders.add(cs.classLoaderId);
+            }
+            if (cs.isArray()) {
+                arrays += cs.count;
+                immutableArrays += cs.immutableCount;
+                liveArrays += cs.liveCount;
+            } else {
+                objects += cs.count;
+                immutableObjects += cs.immutableCount;
+                liveObjects += cs.liveCount;
+            }
+        }
+        this.classLoaderCount = classLoaders.size();
+        this.objectCount = objects;
+        this.arrayCount = arrays;
+        this.immutableObjectCount = immutableObjects;
+        this.immutableArrayCount = immutableArrays;
+        this.liveObjectCount = liveObjects;
+        this.liveArrayCount = liveArrays;
+    }
+
+}
@@ -31,7 +31,7 @@ import com.oracle.max.vma.tools.qa.*;
  * Outputs basic information on the trace. Displays the number of classes, classloaders, objects, arrays, the number of
  * missing constructors.
  */
-public class BasicCountsQuery extends QueryBase {
+public class BasicCountsQuery extends QueryBase implements StreamingQuery {
 
     @Override
     public Object execute(ArrayList<TraceRun> traceRuns, int traceFocus, PrintStream ps, String[] args) {
@@ -46,6 +46,20 @@ public class BasicCountsQuery extends QueryBase {
         return null;
     }
 
+    public Object executeStreaming(ArrayList<StreamingTraceRun> traceRuns, int traceFocus, PrintStream ps, String[] args) {
+        StreamingTraceRun traceRun = traceRuns.get(traceFocus);
+        ps.println("Advice Records: " + traceRun.adviceRecordCount);
+        ps.println("Classes: " + traceRun.classes.size());
+        ps.println("ClassLoaders: " + traceRun.classLoaderCount);
+        long objs = traceRun.objectCount;
+        long arrays = traceRun.arrayCount;
+        ps.format("Instances: %d (Arrays: %d, Non-Arrays: %d)\n", objs + arrays, arrays, objs);
+        ps.println("Missing Constructors: " + traceRun.missingConstructorCount);
+        ps.println("Collected Without Removal Record: " + traceRun.collectedUnloggedCount);
+        ps.println("Unmatched Constructors (pending limit exceeded): " + traceRun.evictedPendingCount);
+        return null;
+    }
+
     private int getNumClasses(TraceRun traceRun) {
         int result = 0;
         Iterator<ClassRecord> iter = traceRun.getClassesIterator();
@@ -32,7 +32,7 @@ import com.oracle.max.vma.tools.qa.*;
  * Show data on all classes (in all class loaders).
  */
 
-public class DataByClassQuery extends DataByClassQueryHelper {
+public class DataByClassQuery extends DataByClassQueryHelper implements StreamingQuery {
     @Override
     public Object execute(ArrayList<TraceRun> traceRuns, int traceFocus, PrintStream ps,
             String[] args) {
@@ -40,4 +40,9 @@ public class DataByClassQuery extends DataByClassQueryHelper {
         showXDataByClasses(this, traceRun, ps, args, traceRun.getClassesIterator(), "", true);
         return null;
     }
+
+    public Object executeStreaming(ArrayList<StreamingTraceRun> traceRuns, int traceFocus, PrintStream ps, String[] args) {
+        showXDataByClasses(this, traceRuns.get(traceFocus), ps, args, "", true);
+        return null;
+    }
 }
@@ -136,6 +136,80 @@ public class DataByClassQueryHelper extends QueryBase {
         }
     }
 
+    /**
+     * The streaming variant, which has no per-object data and so always shows the summary,
+     * with objects counted as immutable only if they were never modified after construction.
+     */
+    protected static void showXDataByClasses(QueryBase query, StreamingTraceRun traceRun,
+            PrintStream ps, String[] args, String indent, boolean showCl) {
+        percentOnly = false;
+        ocount_g = pcount_g = 0;
+        summaryArray = null;
+        SummaryArrayElement.SortKey summaryArraySortKey = SummaryArrayElement.SortKey.Total;
+
+        // Checkstyle: stop modified control variable check
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-sort_summary")) {
+                summaryArray = new ArrayList<SummaryArrayElement>();
+                i++;
+                if (i < args.length) {
+                    String k = args[i];
+                    if (k.equals("class"))
+                        summaryArraySortKey = SummaryArrayElement.SortKey.ClassName;
+                    else if (k.equals("total"))
+                        summaryArraySortKey = SummaryArrayElement.SortKey.Total;
+                    else if (k.equals("imm_total"))
+                        summaryArraySortKey = SummaryArrayElement.SortKey.ImmTotal;
+                    else
+                        i--;
+                }
+            } else if (arg.equals("-percent")) {
+                percentOnly = true;
+            } else if (arg.equals("-sort_lt") || arg.equals("-sort_mlt") || arg.equals("-pci") || arg.equals("-showthread")) {
+                ps.println(indent + arg + " is not supported in streaming mode");
+                return;
+            }
+        }
+        // Checkstyle: resume modified control variable check
+
+        ps.println(indent + "Objects organized by class");
+        for (StreamingTraceRun.ClassSummary cs : traceRun.classes) {
+            if (cs.name == null || !query.classNameMatches(cs.name)) {
+                continue;
+            }
+            ocount_g += cs.count;
+            pcount_g += cs.immutableCount;
+            if (summaryArray != null) {
+                summaryArray.add(new SummaryArrayElement(cs.name, cs.count, cs.immutableCount));
+            }
+            if (!percentOnly) {
+                ps.print(indent + cs.name + ", total objects " + cs.count + (showCl ? ", cl: " + cs.classLoaderId : ""));
+                if (cs.count > 0) {
+                    double pp = ((double) cs.immutableCount / (double) cs.count) * 100.0;
+                    ps.print(", objects immutable: " + cs.immutableCount +
+                            " (" + TimeFunctions.ftime(pp, TimeFunctions.format2d) + "%)");
+                }
+                ps.println("");
+            }
+        }
+
+        double pp = ((double) pcount_g / (double) ocount_g) * 100.0;
+        ps.println("Total objects immutable: " + pcount_g + " ("
+                + TimeFunctions.ftime(pp, TimeFunctions.format2d) + "%)");
+
+        if (summaryArray != null) {
+            SummaryArrayElement[] saeArray = summaryArray.toArray(new SummaryArrayElement[summaryArray.size()]);
+            Arrays.sort(saeArray, 0, saeArray.length,
+                    new SummaryArrayElement.ThisComparator(summaryArraySortKey));
+            ps.println("\nSummary sorted by " + summaryArraySortKey);
+            ps.println("\nClass, Total, Total Immutable");
+            for (SummaryArrayElement sae : saeArray) {
+                ps.println(sae);
+            }
+        }
+    }
+
     private static void showDataOnClass(QueryBase query, TraceRun traceRun, PrintStream ps,
             ClassRecord cr, String indent, boolean showCl, boolean showThread) {
         String className = cr.getName();
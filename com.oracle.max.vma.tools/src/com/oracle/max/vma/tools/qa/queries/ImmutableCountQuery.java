@@ -32,20 +32,26 @@ import com.oracle.max.vma.tools.qa.*;
  * Reports the percentage of objects that are immutable, defined as no writes after construction.
  */
 
-public class ImmutableCountQuery extends QueryBase {
+public class ImmutableCountQuery extends QueryBase implements StreamingQuery {
     @Override
     public Object execute(ArrayList<TraceRun> traceRuns, int traceFocus,
             PrintStream ps, String[] args) {
         TraceRun traceRun = traceRuns.get(traceFocus);
-        long iobjs = traceRun.getImmutableObjectCount();
-        long objs = traceRun.objectCount;
-        long iarrays = traceRun.getImmutableArrayCount();
-        long arrays = traceRun.arrayCount;
+        show(ps, traceRun.getImmutableObjectCount(), traceRun.objectCount, traceRun.getImmutableArrayCount(), traceRun.arrayCount);
+        return null;
+    }
+
+    public Object executeStreaming(ArrayList<StreamingTraceRun> traceRuns, int traceFocus, PrintStream ps, String[] args) {
+        StreamingTraceRun traceRun = traceRuns.get(traceFocus);
+        show(ps, traceRun.immutableObjectCount, traceRun.objectCount, traceRun.immutableArrayCount, traceRun.arrayCount);
+        return null;
+    }
+
+    private static void show(PrintStream ps, long iobjs, long objs, long iarrays, long arrays) {
         ps.println("Immutable instance percentage: "
                 + d4d(percent(iobjs + iarrays, objs + arrays)));
         ps.println("Immutable object percentage: " + d4d(percent(iobjs, objs)));
         ps.println("Immutable array percentage: "
                 + d4d(percent(iarrays, arrays)));
-        return null;
     }
 }
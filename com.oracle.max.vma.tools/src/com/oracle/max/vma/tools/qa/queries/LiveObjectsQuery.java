@@ -36,7 +36,7 @@ import com.oracle.max.vma.tools.qa.*;
  * object death records.
  *
  */
-public class LiveObjectsQuery extends QueryBase {
+public class LiveObjectsQuery extends QueryBase implements StreamingQuery {
     @Override
     public Object execute(ArrayList<TraceRun> traceRuns, int traceFocus,
             PrintStream ps, String[] args) {
@@ -60,5 +60,15 @@ public class LiveObjectsQuery extends QueryBase {
         return null;
     }
 
+    public Object executeStreaming(ArrayList<StreamingTraceRun> traceRuns, int traceFocus, PrintStream ps, String[] args) {
+        StreamingTraceRun traceRun = traceRuns.get(traceFocus);
+        long totalNumber = traceRun.liveObjectCount;
+        long totalArray = traceRun.liveArrayCount;
+        ps.println("Total number of live instances: "
+                + (totalNumber + totalArray) + ", objects: " + totalNumber
+                + ", live arrays: " + totalArray);
+        return null;
+    }
+
 }
 
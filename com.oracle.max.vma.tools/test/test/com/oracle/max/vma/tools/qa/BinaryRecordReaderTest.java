@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.com.oracle.max.vma.tools.qa;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+
+import com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat.Key;
+import com.oracle.max.vma.tools.qa.*;
+
+/**
+ * Tests {@link BinaryRecordReader} on finalized stores and on stores left as written by a VM that did not terminate
+ * normally, i.e. ending with the zero filled rest of their last mapped segment.
+ */
+public class BinaryRecordReaderTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(BinaryRecordReaderTest.class);
+    }
+
+    private static BinaryStoreWriter writeRecords() throws IOException {
+        BinaryStoreWriter w = new BinaryStoreWriter(1000);
+        w.key(Key.THREAD_DEFINITION);
+        w.string("main");
+        w.value(0);
+        w.end();
+        w.key(Key.ADVISE_BEFORE_GC);
+        w.time(1005);
+        w.value(0);
+        w.end();
+        w.key(Key.ADVISE_BEFORE_GOTO);
+        w.time(1007);
+        w.value(0);
+        w.value(3);
+        w.value(7);
+        w.end();
+        return w;
+    }
+
+    private static List<String> read(File file) throws IOException {
+        BinaryRecordReader reader = new BinaryRecordReader(new File[] {file}, false);
+        List<String> result = new ArrayList<String>();
+        try {
+            String[] record;
+            while ((record = reader.readLine()) != null) {
+                result.add(Arrays.toString(record));
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private static void assertRecords(List<String> records, String finalTime) {
+        assertEquals(Arrays.asList(
+                        "[" + Key.INITIALIZE_STORE.code + ", 1000, true, 0]",
+                        "[" + Key.THREAD_DEFINITION.code + ", main, 0]",
+                        "[" + Key.ADVISE_BEFORE_GC.code + ", 1005, 0]",
+                        "[" + Key.ADVISE_BEFORE_GOTO.code + ", 1007, 0, 3, 7]",
+                        "[" + Key.FINALIZE_STORE.code + ", " + finalTime + "]"), records);
+    }
+
+    public void test_finalized() throws IOException {
+        BinaryStoreWriter w = writeRecords();
+        w.key(Key.FINALIZE_STORE);
+        w.time(1010);
+        w.end();
+        File file = w.write(0);
+        assertTrue(BinaryRecordReader.isBinaryStore(new File[] {file}));
+        assertRecords(read(file), "1010");
+    }
+
+    public void test_unfinalizedSegment() throws IOException {
+        File file = writeRecords().write(64 * 1024);
+        assertRecords(read(file), "1007");
+    }
+
+    public void test_unfinalizedSegmentWithPartialRecord() throws IOException {
+        BinaryStoreWriter w = writeRecords();
+        w.key(Key.ADVISE_BEFORE_GOTO);
+        w.time(1009);
+        File file = w.write(64 * 1024);
+        assertRecords(read(file), "1007");
+    }
+
+    public void test_unfinalizedSegmentEndingWithPartialRecord() throws IOException {
+        BinaryStoreWriter w = writeRecords();
+        w.key(Key.ADVISE_BEFORE_GOTO);
+        w.time(1009);
+        w.value(0);
+        assertRecords(read(w.write(0)), "1007");
+    }
+}
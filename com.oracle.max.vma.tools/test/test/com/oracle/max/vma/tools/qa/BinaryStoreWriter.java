@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.com.oracle.max.vma.tools.qa;
+
+import static com.oracle.max.vm.ext.vma.store.bin.VMABinaryStoreFormat.*;
+
+import java.io.*;
+
+import com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat.Key;
+
+/**
+ * Encodes records as {@link com.oracle.max.vm.ext.vma.store.bin.MMVMABinaryIdStore} does.
+ */
+class BinaryStoreWriter {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private long lastTime;
+
+    BinaryStoreWriter(long startTime) throws IOException {
+        this(startTime, 0);
+    }
+
+    /**
+     * @param mode the store mode, e.g. {@link com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat#PER_THREAD}
+     */
+    BinaryStoreWriter(long startTime, int mode) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        key(Key.INITIALIZE_STORE);
+        time(startTime);
+        token(SPECIAL, TRUE);
+        value(mode);
+        end();
+    }
+
+    void key(Key key) {
+        varLong(key.ordinal() + 1);
+    }
+
+    void time(long time) {
+        token(TIME, zigzag(time - lastTime));
+        lastTime = time;
+    }
+
+    void value(long value) {
+        token(LONG, zigzag(value));
+    }
+
+    void character(char c) {
+        token(CHAR, c);
+    }
+
+    void string(String s) throws IOException {
+        byte[] utf8 = s.getBytes("UTF-8");
+        token(STRING, utf8.length);
+        bytes.write(utf8);
+    }
+
+    void end() {
+        token(SPECIAL, END);
+    }
+
+    private void token(int tag, long payload) {
+        long rest = payload >>> 4;
+        int first = tag | ((int) (payload & 0xF) << TAG_BITS);
+        if (rest == 0) {
+            bytes.write(first);
+        } else {
+            bytes.write(first | 0x80);
+            varLong(rest);
+        }
+    }
+
+    private void varLong(long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        bytes.write((int) value);
+    }
+
+    /**
+     * Writes the records to {@code file}, followed by {@code padding} zero bytes.
+     */
+    File write(File file, int padding) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            bytes.writeTo(out);
+            out.write(new byte[padding]);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Writes the records to a temporary file, followed by {@code padding} zero bytes.
+     */
+    File write(int padding) throws IOException {
+        File file = File.createTempFile("vmastore", ".bin");
+        file.deleteOnExit();
+        return write(file, padding);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2012, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+package test.com.oracle.max.vma.tools.qa;
+
+import static com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat.*;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+
+import com.oracle.max.vm.ext.vma.store.txt.VMATextStoreFormat.Key;
+import com.oracle.max.vma.tools.qa.*;
+import com.oracle.max.vma.tools.qa.queries.*;
+
+/**
+ * Tests that the streaming mode of {@link QueryAnalysis}, i.e. {@link StreamingProcessLog}, reports the same numbers
+ * as {@link ProcessLog} for the queries it supports, on a per-thread binary store whose files it decodes in parallel.
+ */
+public class StreamingProcessLogTest extends TestCase {
+
+    public static void main(String[] args) {
+        junit.textui.TestRunner.run(StreamingProcessLogTest.class);
+    }
+
+    private static final String FOO = "1";
+    private static final String INT_ARRAY = "2";
+    private static final String FOO_INIT = "3";
+    private static final String FOO_X = "4";
+
+    private File storeDir;
+
+    @Override
+    protected void setUp() throws IOException {
+        storeDir = File.createTempFile("vmastore", "");
+        assertTrue(storeDir.delete() && storeDir.mkdir());
+        writeMainThread().write(new File(storeDir, "0"), 0);
+        writeWorkerThread().write(new File(storeDir, "1"), 0);
+    }
+
+    @Override
+    protected void tearDown() {
+        for (File file : storeDir.listFiles()) {
+            file.delete();
+        }
+        storeDir.delete();
+    }
+
+    private static BinaryStoreWriter thread(String name, String shortForm) throws IOException {
+        BinaryStoreWriter w = new BinaryStoreWriter(1000, PER_THREAD);
+        w.key(Key.THREAD_DEFINITION);
+        w.string(name);
+        w.string(shortForm);
+        w.end();
+        return w;
+    }
+
+    private static void define(BinaryStoreWriter w, Key key, String... args) throws IOException {
+        w.key(key);
+        for (String arg : args) {
+            w.string(arg);
+        }
+        w.end();
+    }
+
+    private static void record(BinaryStoreWriter w, Key key, long time, int bci) {
+        w.key(key);
+        w.time(time);
+        w.value(bci);
+    }
+
+    private static void newObject(BinaryStoreWriter w, Key key, long time, long id, String classShortForm) throws IOException {
+        record(w, key, time, 0);
+        w.value(id);
+        w.string(classShortForm);
+    }
+
+    private static void init(BinaryStoreWriter w, long entryTime, long id, long returnTime) throws IOException {
+        record(w, Key.ADVISE_AFTER_METHOD_ENTRY, entryTime, 0);
+        w.value(id);
+        w.string(FOO_INIT);
+        w.end();
+        record(w, Key.ADVISE_BEFORE_RETURN, returnTime, 1);
+        w.end();
+    }
+
+    private static void putField(BinaryStoreWriter w, long time, long id, long value) throws IOException {
+        record(w, Key.ADVISE_BEFORE_PUT_FIELD, time, 2);
+        w.value(id);
+        w.string(FOO_X);
+        w.character(LONG_VALUE);
+        w.value(value);
+        w.end();
+    }
+
+    private static void finalizeStore(BinaryStoreWriter w, long time) {
+        w.key(Key.FINALIZE_STORE);
+        w.time(time);
+        w.end();
+    }
+
+    private static BinaryStoreWriter writeMainThread() throws IOException {
+        BinaryStoreWriter w = thread("main", "0");
+        define(w, Key.CLASS_DEFINITION, "Foo", "0", FOO);
+        define(w, Key.CLASS_DEFINITION, "[I", "0", INT_ARRAY);
+        define(w, Key.METHOD_DEFINITION, FOO, "<init>", FOO_INIT);
+        define(w, Key.FIELD_DEFINITION, FOO, "x", FOO_X);
+
+        // immutable, although written in its constructor
+        newObject(w, Key.ADVISE_AFTER_NEW, 1010, 100, FOO);
+        w.end();
+        record(w, Key.ADVISE_AFTER_METHOD_ENTRY, 1011, 0);
+        w.value(100);
+        w.string(FOO_INIT);
+        w.end();
+        putField(w, 1012, 100, 5);
+        record(w, Key.ADVISE_BEFORE_RETURN, 1013, 1);
+        w.end();
+
+        // written after its construction
+        newObject(w, Key.ADVISE_AFTER_NEW, 1014, 101, FOO);
+        w.end();
+        init(w, 1015, 101, 1016);
+        putField(w, 1020, 101, 6);
+
+        // written array
+        newObject(w, Key.ADVISE_AFTER_NEW_ARRAY, 1021, 102, INT_ARRAY);
+        w.value(4);
+        w.end();
+        record(w, Key.ADVISE_BEFORE_ARRAY_STORE, 1022, 3);
+        w.value(102);
+        w.value(1);
+        w.character(LONG_VALUE);
+        w.value(7);
+        w.end();
+
+        finalizeStore(w, 1030);
+        return w;
+    }
+
+    private static BinaryStoreWriter writeWorkerThread() throws IOException {
+        BinaryStoreWriter w = thread("worker", "1");
+
+        // array never written
+        newObject(w, Key.ADVISE_AFTER_NEW_ARRAY, 1012, 200, INT_ARRAY);
+        w.value(2);
+        w.end();
+
+        // object whose allocation was not seen
+        newObject(w, Key.UNSEEN, 1017, 201, FOO);
+        w.end();
+
+        // another object constructed concurrently with those of the main thread
+        newObject(w, Key.ADVISE_AFTER_NEW, 1018, 202, FOO);
+        w.end();
+        init(w, 1019, 202, 1023);
+
+        // death of the first object of the main thread
+        w.key(Key.REMOVAL);
+        w.value(100);
+        w.end();
+
+        finalizeStore(w, 1025);
+        return w;
+    }
+
+    private String run(QueryBase query, String... args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(bytes);
+        ArrayList<TraceRun> traceRuns = new ArrayList<TraceRun>();
+        traceRuns.add(ProcessLog.processTrace(storeDir.getPath(), false, Integer.MAX_VALUE));
+        query.execute(traceRuns, 0, ps, query.parseStandardArgs(args.clone()));
+        ps.close();
+        return bytes.toString();
+    }
+
+    private String runStreaming(QueryBase query, String... args) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream ps = new PrintStream(bytes);
+        ArrayList<StreamingTraceRun> traceRuns = new ArrayList<StreamingTraceRun>();
+        traceRuns.add(StreamingProcessLog.processTrace(storeDir.getPath(), false, Integer.MAX_VALUE));
+        ((StreamingQuery) query).executeStreaming(traceRuns, 0, ps, query.parseStandardArgs(args.clone()));
+        ps.close();
+        return bytes.toString();
+    }
+
+    /**
+     * Gets the lines of {@code output} starting with the first that starts with {@code from}.
+     */
+    private static List<String> lines(String output, String from) {
+        List<String> lines = Arrays.asList(output.split("\n"));
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).startsWith(from)) {
+                return lines.subList(i, lines.size());
+            }
+        }
+        fail("no line starting with " + from + " in:\n" + output);
+        return null;
+    }
+
+    public void test_basicCounts() throws IOException {
+        String expected = run(new BasicCountsQuery());
+        String actual = runStreaming(new BasicCountsQuery());
+        assertTrue(expected, expected.contains("Instances: 6 (Arrays: 2, Non-Arrays: 4)"));
+        assertTrue(expected, expected.contains("Missing Constructors: 1"));
+        // the streaming variant adds lines on what it could not match
+        assertTrue(actual, actual.startsWith(expected));
+    }
+
+    public void test_liveObjects() throws IOException {
+        String expected = run(new LiveObjectsQuery());
+        assertEquals("Total number of live instances: 5, objects: 3, live arrays: 2\n", expected);
+        assertEquals(expected, runStreaming(new LiveObjectsQuery()));
+    }
+
+    public void test_immutableCount() throws IOException {
+        String expected = run(new ImmutableCountQuery());
+        assertEquals(expected, runStreaming(new ImmutableCountQuery()));
+    }
+
+    /**
+     * The non-streaming variant counts an object as immutable from the times it was last accessed, which the
+     * streaming variant does not keep. Its counts are therefore checked against the objects that were never
+     * modified after their construction in the {@link TraceRun}, as {@link ImmutableCountQuery} counts them.
+     */
+    public void test_dataByClass() throws IOException {
+        TraceRun traceRun = ProcessLog.processTrace(storeDir.getPath(), false, Integer.MAX_VALUE);
+        SortedSet<String> expected = new TreeSet<String>();
+        Iterator<ClassRecord> iter = traceRun.getClassesIterator();
+        while (iter.hasNext()) {
+            ClassRecord cr = iter.next();
+            int immutable = 0;
+            for (ObjectRecord or : cr.getObjects()) {
+                if (or.getModifyLifeTime() == 0) {
+                    immutable++;
+                }
+            }
+            expected.add(cr.getName() + ", " + cr.getObjects().size() + ", " + immutable);
+        }
+        assertEquals(new TreeSet<String>(Arrays.asList("Foo, 4, 3", "int[], 2, 1")), expected);
+        List<String> actual = lines(runStreaming(new DataByClassQuery(), "-sort_summary", "class"), "Summary sorted by");
+        // skip the heading, the column titles and the separator line
+        assertEquals(new ArrayList<String>(expected), actual.subList(3, actual.size()));
+    }
+}
@@ -50,6 +50,17 @@ elif platform == "Darwin":
     ldenv['LD_LIBRARY_PATH'] = ldenv['MAXINE_HOME'] + "/com.oracle.max.vm.native/build/" + mx.get_os() +"/substrate"
 
 
+def analyzecore(args):
+    """report on the heap, threads and code cache of a VM without the Inspector
+
+    Produce a class histogram, the objects with the largest retained
+    sizes, the thread stacks and the code cache contents of a VM,
+    typically a core dump (e.g. "-mode=attach -target=file -location=core").
+
+    Use "mx analyzecore -help" to see what the options are."""
+
+    mx.run_java(['-cp', mx.classpath(), 'com.sun.max.tele.analysis.CoreAnalyzer', '-vmdir=' + _vmdir] + args)
+
 def c1x(args):
     """alias for "mx olc -c=C1X ..." """
     olc(['-c=C1X'] + args)
@@ -731,6 +742,7 @@ def mx_init(suite):
     mx.add_argument('--vmdir', dest='vmdir', help='directory for VM executable, shared libraries boot image and related files', metavar='<path>')
 
     commands = {
+        'analyzecore': [analyzecore, '[options]'],
         'c1x': [c1x, '[options] patterns...'],
         'configs': [configs, ''],
         'copycheck': [copycheck, ''],